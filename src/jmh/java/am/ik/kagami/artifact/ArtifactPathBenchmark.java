@@ -0,0 +1,50 @@
+package am.ik.kagami.artifact;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for parsing an artifact request path and its Maven coordinates
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactPathBenchmark {
+
+	@Param({ "org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar",
+			"org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar",
+			"org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar.sha1",
+			"org/springframework/spring-core/maven-metadata.xml" })
+	String artifactPath;
+
+	String requestUri;
+
+	@Setup
+	public void setUp() {
+		this.requestUri = "/artifacts/central/" + this.artifactPath;
+	}
+
+	@Benchmark
+	public ArtifactPath parse() {
+		return ArtifactPath.parse(this.requestUri);
+	}
+
+	@Benchmark
+	public ArtifactCoordinates parseCoordinates() {
+		return ArtifactPath.of("central", this.artifactPath).coordinates();
+	}
+
+}
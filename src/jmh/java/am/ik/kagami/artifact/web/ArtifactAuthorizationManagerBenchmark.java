@@ -0,0 +1,94 @@
+package am.ik.kagami.artifact.web;
+
+import am.ik.kagami.KagamiProperties;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.access.intercept.RequestMatcherDelegatingAuthorizationManager;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.HEAD;
+import static org.springframework.security.authorization.AuthorityAuthorizationManager.hasRole;
+import static org.springframework.security.authorization.AuthorizationManagers.anyOf;
+import static org.springframework.security.oauth2.core.authorization.OAuth2AuthorizationManagers.hasScope;
+
+/**
+ * Benchmarks for authorizing an artifact request against the last configured repository,
+ * comparing {@link ArtifactAuthorizationManager} with the per-repository request matchers
+ * it replaces
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactAuthorizationManagerBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	int repositoryCount;
+
+	String requestUri;
+
+	Supplier<Authentication> authentication;
+
+	ArtifactAuthorizationManager routeTable;
+
+	RequestMatcherDelegatingAuthorizationManager requestMatchers;
+
+	@Setup
+	public void setUp() {
+		Map<String, KagamiProperties.Repository> repositories = new HashMap<>();
+		RequestMatcherDelegatingAuthorizationManager.Builder builder = RequestMatcherDelegatingAuthorizationManager
+			.builder();
+		PathPatternRequestMatcher.Builder matcher = PathPatternRequestMatcher.withDefaults();
+		for (int i = 0; i < this.repositoryCount; i++) {
+			String repositoryId = "repo" + i;
+			repositories.put(repositoryId, new KagamiProperties.Repository("https://example.com", null, null, true));
+			String pattern = "/artifacts/%s/**".formatted(repositoryId);
+			builder.add(matcher.matcher(GET, pattern), anyOf(hasScope("artifacts:read"), hasRole("USER")));
+			builder.add(matcher.matcher(HEAD, pattern), anyOf(hasScope("artifacts:read"), hasRole("USER")));
+			builder.add(matcher.matcher(DELETE, pattern), anyOf(hasScope("artifacts:delete"), hasRole("USER")));
+		}
+		this.requestMatchers = builder.build();
+		this.routeTable = new ArtifactAuthorizationManager(repositories);
+		this.requestUri = "/artifacts/repo%d/org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar"
+			.formatted(this.repositoryCount - 1);
+		Authentication user = UsernamePasswordAuthenticationToken.authenticated("user", null,
+				AuthorityUtils.createAuthorityList("ROLE_USER"));
+		this.authentication = () -> user;
+	}
+
+	@Benchmark
+	public AuthorizationResult routeTable() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", this.requestUri);
+		return this.routeTable.authorize(this.authentication, new RequestAuthorizationContext(request));
+	}
+
+	@Benchmark
+	public AuthorizationResult requestMatchers() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", this.requestUri);
+		return this.requestMatchers.authorize(this.authentication, request);
+	}
+
+}
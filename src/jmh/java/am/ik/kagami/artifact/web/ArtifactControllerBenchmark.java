@@ -0,0 +1,38 @@
+package am.ik.kagami.artifact.web;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+
+/**
+ * Benchmarks for the content type detection of artifact responses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactControllerBenchmark {
+
+	@Param({ "org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar",
+			"org/springframework/spring-core/6.1.3/spring-core-6.1.3.pom",
+			"org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar.sha1",
+			"org/springframework/spring-core/6.1.3/spring-core-6.1.3.module" })
+	String artifactPath;
+
+	@Benchmark
+	public MediaType determineContentType() {
+		return ArtifactController.determineContentType(this.artifactPath);
+	}
+
+}
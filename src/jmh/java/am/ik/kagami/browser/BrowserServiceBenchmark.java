@@ -0,0 +1,99 @@
+package am.ik.kagami.browser;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.storage.ArtifactStoredEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Benchmarks for browsing a large directory such as {@code org/apache/maven/plugins},
+ * with and without the listing cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrowserServiceBenchmark {
+
+	static final String REPOSITORY_ID = "central";
+
+	static final String DIRECTORY = "org/apache/maven/plugins";
+
+	static final BrowseQuery PAGE = new BrowseQuery(null, 100, BrowseSort.NAME, false, null, null);
+
+	static final BrowseQuery FILTERED_PAGE = new BrowseQuery(null, 100, BrowseSort.LAST_MODIFIED, true, "plugin-1",
+			"directory");
+
+	@Param({ "100", "2000" })
+	int entryCount;
+
+	Path storagePath;
+
+	BrowserService browserService;
+
+	ArtifactStoredEvent storedEvent;
+
+	@Setup
+	public void setUp() throws IOException {
+		this.storagePath = Files.createTempDirectory("kagami-jmh");
+		Path directory = this.storagePath.resolve(REPOSITORY_ID).resolve(DIRECTORY);
+		for (int i = 0; i < this.entryCount; i++) {
+			// a mix of artifact directories and files
+			if (i % 10 == 0) {
+				Files.writeString(Files.createDirectories(directory).resolve("maven-metadata-" + i + ".xml"), "<x/>");
+			}
+			else {
+				Files.createDirectories(directory.resolve("maven-plugin-" + i));
+			}
+		}
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage(this.storagePath.toString()),
+				Map.of(REPOSITORY_ID,
+						new KagamiProperties.Repository("https://repo.maven.apache.org/maven2", null, null, false)),
+				null, new KagamiProperties.Jwt(null, null),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
+		this.browserService = new BrowserService(properties);
+		this.storedEvent = new ArtifactStoredEvent(ArtifactPath.of(REPOSITORY_ID, DIRECTORY + "/maven-metadata.xml"));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		FileSystemUtils.deleteRecursively(this.storagePath);
+	}
+
+	@Benchmark
+	public BrowserService.BrowseResult browseCached() throws IOException {
+		return this.browserService.browseRepository(REPOSITORY_ID, DIRECTORY, PAGE);
+	}
+
+	@Benchmark
+	public BrowserService.BrowseResult browseUncached() throws IOException {
+		this.browserService.onArtifactStored(this.storedEvent);
+		return this.browserService.browseRepository(REPOSITORY_ID, DIRECTORY, PAGE);
+	}
+
+	@Benchmark
+	public BrowserService.BrowseResult browseCachedSortedAndFiltered() throws IOException {
+		return this.browserService.browseRepository(REPOSITORY_ID, DIRECTORY, FILTERED_PAGE);
+	}
+
+}
@@ -0,0 +1,126 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Benchmarks for fetching an artifact that is not cached yet with each fetch engine, from
+ * an upstream on the loopback interface. Besides the time per artifact, the files written
+ * to the storage per artifact are reported. For the system calls per artifact, run with
+ * {@code -prof perfnorm} on Linux.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchEngineBenchmark {
+
+	@Param({ "resolver", "direct" })
+	String engine;
+
+	@Param({ "65536" })
+	int size;
+
+	LoopbackUpstream upstream;
+
+	Path storagePath;
+
+	RemoteRepositoryService remoteRepositoryService;
+
+	int version;
+
+	Path lastDirectory;
+
+	@Setup
+	public void setUp() throws IOException {
+		this.upstream = new LoopbackUpstream(this.size);
+		this.storagePath = Files.createTempDirectory("kagami-jmh");
+		KagamiProperties.Repository repository = new KagamiProperties.Repository(this.upstream.url(), null, null, false,
+				new KagamiProperties.Repository.Hedge(false, 0.95, Duration.ofMillis(50), Duration.ofSeconds(1),
+						List.of()),
+				new KagamiProperties.Repository.Http(true, 50, Duration.ofSeconds(10), Duration.ofSeconds(60),
+						Duration.ofMinutes(5)),
+				new KagamiProperties.Repository.Fetch(
+						KagamiProperties.Repository.FetchEngine.valueOf(this.engine.toUpperCase()), true,
+						Duration.ofMinutes(1)),
+				new KagamiProperties.Repository.Resolver("daily",
+						KagamiProperties.Repository.Resolver.ChecksumPolicy.WARN,
+						KagamiProperties.Repository.Resolver.LocalRepositoryManager.SIMPLE, 1,
+						KagamiProperties.Repository.Resolver.NamedLockFactory.RWLOCK_LOCAL, Duration.ofMinutes(5)));
+		this.remoteRepositoryService = this.upstream.remoteRepositoryService(this.storagePath, repository);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.upstream.close();
+		FileSystemUtils.deleteRecursively(this.storagePath);
+	}
+
+	@TearDown(Level.Invocation)
+	public void countFiles(FileCounters counters) throws IOException {
+		try (Stream<Path> files = Files.list(this.lastDirectory)) {
+			counters.filesWritten += files.count();
+		}
+		counters.artifacts++;
+	}
+
+	@Benchmark
+	public FetchOutcome fetch() {
+		// a new version every time, so that it is never cached
+		int version = ++this.version;
+		ArtifactPath artifactPath = ArtifactPath.of(LoopbackUpstream.REPOSITORY_ID,
+				"com/example/demo/" + version + "/demo-" + version + ".jar");
+		this.lastDirectory = this.storagePath.resolve(LoopbackUpstream.REPOSITORY_ID)
+			.resolve(artifactPath.path())
+			.getParent();
+		FetchOutcome outcome = this.remoteRepositoryService.fetch(artifactPath);
+		if (outcome != FetchOutcome.FETCHED) {
+			throw new IllegalStateException("Failed to fetch " + artifactPath + ": " + outcome);
+		}
+		return outcome;
+	}
+
+	/**
+	 * Files written to the storage; divided by the artifacts for the files per artifact
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class FileCounters {
+
+		public long filesWritten;
+
+		public long artifacts;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.filesWritten = 0;
+			this.artifacts = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,85 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.storage.DeleteJobService;
+import am.ik.kagami.storage.LocalStorageService;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.InstantSource;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import org.springframework.web.client.RestClient;
+
+/**
+ * An upstream repository on the loopback interface that serves the same content and its
+ * SHA-1 checksum for every jar, so that any version can be fetched
+ */
+class LoopbackUpstream implements AutoCloseable {
+
+	static final String REPOSITORY_ID = "central";
+
+	private final HttpServer server;
+
+	LoopbackUpstream(int size) throws IOException {
+		byte[] jar = new byte[size];
+		byte[] sha1;
+		try {
+			sha1 = HexFormat.of()
+				.formatHex(MessageDigest.getInstance("SHA-1").digest(jar))
+				.getBytes(StandardCharsets.US_ASCII);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		// otherwise Nagle's algorithm delays every response on the loopback interface
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		this.server.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			byte[] body = path.endsWith(".jar") ? jar : path.endsWith(".jar.sha1") ? sha1 : null;
+			if (body == null) {
+				exchange.sendResponseHeaders(404, -1);
+			}
+			else {
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			}
+			exchange.close();
+		});
+		this.server.start();
+	}
+
+	String url() {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort();
+	}
+
+	/**
+	 * Create a service that fetches from this upstream into the storage
+	 */
+	RemoteRepositoryService remoteRepositoryService(Path storagePath, KagamiProperties.Repository repository) {
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage(storagePath.toString()),
+				Map.of(REPOSITORY_ID, repository), new KagamiProperties.Proxy(""), new KagamiProperties.Jwt(null, null),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		LocalStorageService storageService = new LocalStorageService(properties, event -> {
+		}, new DeleteJobService(properties, InstantSource.system()), meterRegistry, ObservationRegistry.NOOP);
+		return new RemoteRepositoryService(properties, storageService, RestClient.builder(), event -> {
+		}, meterRegistry, ObservationRegistry.NOOP);
+	}
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+	}
+
+}
@@ -0,0 +1,96 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Benchmarks for concurrent fetches of artifacts that are not cached yet through Maven
+ * Resolver with different session settings. Consecutive fetches are artifacts with
+ * different classifiers of the same version, so that locks per version would contend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ResolverSessionBenchmark {
+
+	static final int CLASSIFIERS = 8;
+
+	@Param({ "SIMPLE", "ENHANCED" })
+	KagamiProperties.Repository.Resolver.LocalRepositoryManager localRepositoryManager;
+
+	@Param({ "RWLOCK_LOCAL", "FILE_LOCK" })
+	KagamiProperties.Repository.Resolver.NamedLockFactory namedLockFactory;
+
+	@Param({ "WARN", "IGNORE" })
+	KagamiProperties.Repository.Resolver.ChecksumPolicy checksumPolicy;
+
+	LoopbackUpstream upstream;
+
+	Path storagePath;
+
+	RemoteRepositoryService remoteRepositoryService;
+
+	final AtomicInteger fetches = new AtomicInteger();
+
+	@Setup
+	public void setUp() throws IOException {
+		this.upstream = new LoopbackUpstream(65536);
+		this.storagePath = Files.createTempDirectory("kagami-jmh");
+		KagamiProperties.Repository repository = new KagamiProperties.Repository(this.upstream.url(), null, null, false,
+				new KagamiProperties.Repository.Hedge(false, 0.95, Duration.ofMillis(50), Duration.ofSeconds(1),
+						List.of()),
+				new KagamiProperties.Repository.Http(true, 50, Duration.ofSeconds(10), Duration.ofSeconds(60),
+						Duration.ofMinutes(5)),
+				new KagamiProperties.Repository.Fetch(KagamiProperties.Repository.FetchEngine.RESOLVER, true,
+						Duration.ofMinutes(1)),
+				new KagamiProperties.Repository.Resolver("daily", this.checksumPolicy, this.localRepositoryManager, 1,
+						this.namedLockFactory, Duration.ofMinutes(5)));
+		this.remoteRepositoryService = this.upstream.remoteRepositoryService(this.storagePath, repository);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.upstream.close();
+		FileSystemUtils.deleteRecursively(this.storagePath);
+	}
+
+	@Benchmark
+	public FetchOutcome fetch() {
+		int fetch = this.fetches.incrementAndGet();
+		int version = fetch / CLASSIFIERS;
+		String classifier = "c" + fetch % CLASSIFIERS;
+		ArtifactPath artifactPath = ArtifactPath.of(LoopbackUpstream.REPOSITORY_ID,
+				"com/example/demo/" + version + "/demo-" + version + "-" + classifier + ".jar");
+		FetchOutcome outcome = this.remoteRepositoryService.fetch(artifactPath);
+		if (outcome != FetchOutcome.FETCHED) {
+			throw new IllegalStateException("Failed to fetch " + artifactPath + ": " + outcome);
+		}
+		return outcome;
+	}
+
+}
@@ -0,0 +1,75 @@
+package am.ik.kagami.search;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for searching an index of 200,000 cached artifacts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SearchIndexBenchmark {
+
+	SearchIndex searchIndex;
+
+	@Setup
+	public void setUp() {
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage("/tmp/kagami-jmh"),
+				Map.of("central",
+						new KagamiProperties.Repository("https://repo.maven.apache.org/maven2", null, null, false)),
+				null, new KagamiProperties.Jwt(null, null),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
+		this.searchIndex = new SearchIndex(properties);
+		// 1000 groups x 20 artifacts x 5 versions x (jar, pom)
+		for (int g = 0; g < 1000; g++) {
+			String group = "com/example/group" + g;
+			for (int a = 0; a < 20; a++) {
+				String artifactId = "library-" + g + "-" + a;
+				for (int v = 0; v < 5; v++) {
+					String version = "1." + v + ".0";
+					String directory = group + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version;
+					this.searchIndex.add(ArtifactPath.of("central", directory + ".jar"));
+					this.searchIndex.add(ArtifactPath.of("central", directory + ".pom"));
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public SearchResult searchArtifactIdPrefix() {
+		return this.searchIndex.search("library-42-1", null, false, 50);
+	}
+
+	@Benchmark
+	public SearchResult searchFields() {
+		return this.searchIndex.search("g:com.example.group42 a:library-42-1 v:1.4", null, false, 50);
+	}
+
+	@Benchmark
+	public SearchResult searchFuzzy() {
+		return this.searchIndex.search("librray-42-17", null, true, 50);
+	}
+
+	@Benchmark
+	public SearchResult searchBroadPrefix() {
+		return this.searchIndex.search("lib", null, false, 50);
+	}
+
+}
@@ -0,0 +1,91 @@
+package am.ik.kagami.storage;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.InstantSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Benchmarks for path validation and lookup performed by {@link LocalStorageService} on
+ * every artifact request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalStorageServiceBenchmark {
+
+	static final String REPOSITORY_ID = "central";
+
+	static final ArtifactPath CACHED_PATH = ArtifactPath.of(REPOSITORY_ID,
+			"org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+
+	static final ArtifactPath MISSING_PATH = ArtifactPath.of(REPOSITORY_ID,
+			"org/springframework/spring-core/6.1.3/spring-core-6.1.3-javadoc.jar");
+
+	Path storagePath;
+
+	LocalStorageService storageService;
+
+	@Setup
+	public void setUp() throws IOException {
+		this.storagePath = Files.createTempDirectory("kagami-jmh");
+		Path cached = this.storagePath.resolve(REPOSITORY_ID).resolve(CACHED_PATH.path());
+		Files.createDirectories(cached.getParent());
+		Files.write(cached, new byte[1024]);
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage(this.storagePath.toString()),
+				Map.of(), null, new KagamiProperties.Jwt(null, null),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
+		this.storageService = new LocalStorageService(properties, event -> {
+		}, new DeleteJobService(properties, InstantSource.system()), new SimpleMeterRegistry(),
+				ObservationRegistry.NOOP);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		FileSystemUtils.deleteRecursively(this.storagePath);
+	}
+
+	@Benchmark
+	public void validatePath() {
+		this.storageService.validatePath(CACHED_PATH);
+	}
+
+	@Benchmark
+	public Path resolvePath() {
+		return this.storageService.resolvePath(CACHED_PATH);
+	}
+
+	@Benchmark
+	public void retrieveHit(Blackhole blackhole) {
+		blackhole.consume(this.storageService.retrieve(CACHED_PATH));
+	}
+
+	@Benchmark
+	public void retrieveMiss(Blackhole blackhole) {
+		blackhole.consume(this.storageService.retrieve(MISSING_PATH));
+	}
+
+}
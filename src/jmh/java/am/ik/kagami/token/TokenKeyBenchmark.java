@@ -0,0 +1,82 @@
+package am.ik.kagami.token;
+
+import am.ik.kagami.KagamiProperties;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.util.Base64URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the signature cost of each supported token signing algorithm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenKeyBenchmark {
+
+	@Param({ "RS256", "ES256", "EdDSA" })
+	String algorithm;
+
+	TokenKey key;
+
+	JWSHeader header;
+
+	byte[] signingInput;
+
+	Base64URL signature;
+
+	@Setup
+	public void setUp() throws GeneralSecurityException, JOSEException {
+		KeyPair keyPair = switch (this.algorithm) {
+			case "RS256" -> {
+				KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+				generator.initialize(2048);
+				yield generator.generateKeyPair();
+			}
+			case "ES256" -> {
+				KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+				generator.initialize(new ECGenParameterSpec("secp256r1"));
+				yield generator.generateKeyPair();
+			}
+			default -> KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+		};
+		this.key = TokenKey
+			.of(new KagamiProperties.Jwt.Key(keyPair.getPublic(), keyPair.getPrivate(), this.algorithm, null));
+		this.header = new JWSHeader.Builder(this.key.algorithm()).keyID(this.key.keyId()).build();
+		this.signingInput = (this.header.toBase64URL() + "."
+				+ Base64URL
+					.encode("{\"sub\":\"demo\",\"kagami:repositories\":[\"central\",\"private\"],\"exp\":1767225600}"))
+			.getBytes(StandardCharsets.US_ASCII);
+		this.signature = this.key.signer().sign(this.header, this.signingInput);
+	}
+
+	@Benchmark
+	public Base64URL sign() throws JOSEException {
+		return this.key.signer().sign(this.header, this.signingInput);
+	}
+
+	@Benchmark
+	public boolean verify() throws JOSEException {
+		return this.key.verifier().verify(this.header, this.signingInput, this.signature);
+	}
+
+}
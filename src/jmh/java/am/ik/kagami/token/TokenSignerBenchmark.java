@@ -0,0 +1,60 @@
+package am.ik.kagami.token;
+
+import am.ik.kagami.KagamiProperties;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for signing access tokens
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenSignerBenchmark {
+
+	TokenSigner tokenSigner;
+
+	JWTClaimsSet claimsSet;
+
+	@Setup
+	public void setUp() {
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage("/tmp"), Map.of(), null,
+				new KagamiProperties.Jwt("classpath:kagami-public.pem", "classpath:kagami-private.pem"),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
+		this.tokenSigner = new TokenSigner(properties, InstantSource.system());
+		Instant now = Instant.now();
+		this.claimsSet = new JWTClaimsSet.Builder().subject("demo")
+			.issuer("http://localhost:8080")
+			.audience("kagami")
+			.issueTime(Date.from(now))
+			.expirationTime(Date.from(now.plusSeconds(3600)))
+			.claim("scope", List.of("artifacts:read"))
+			.claim(KagamiJwtClaims.REPOSITORIES, List.of("central", "private"))
+			.build();
+	}
+
+	@Benchmark
+	public SignedJWT sign() {
+		return this.tokenSigner.sign(this.claimsSet);
+	}
+
+}
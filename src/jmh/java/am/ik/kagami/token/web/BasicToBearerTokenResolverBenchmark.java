@@ -0,0 +1,59 @@
+package am.ik.kagami.token.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Benchmarks for extracting the bearer token from Bearer and Basic authorization headers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasicToBearerTokenResolverBenchmark {
+
+	// A token of realistic length; the resolver does not verify it
+	static final String TOKEN = "eyJ0eXAiOiJKV1QiLCJhbGciOiJSUzI1NiJ9." + "x".repeat(420) + "." + "y".repeat(342);
+
+	BasicToBearerTokenResolver resolver;
+
+	MockHttpServletRequest bearerRequest;
+
+	MockHttpServletRequest basicRequest;
+
+	@Setup
+	public void setUp() {
+		this.resolver = new BasicToBearerTokenResolver();
+		this.bearerRequest = new MockHttpServletRequest("GET", "/artifacts/private/a/b/1.0/b-1.0.jar");
+		this.bearerRequest.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN);
+		this.basicRequest = new MockHttpServletRequest("GET", "/artifacts/private/a/b/1.0/b-1.0.jar");
+		this.basicRequest.addHeader(HttpHeaders.AUTHORIZATION,
+				"Basic " + Base64.getEncoder().encodeToString(("maven:" + TOKEN).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Benchmark
+	public String resolveBearer() {
+		return this.resolver.resolve(this.bearerRequest);
+	}
+
+	@Benchmark
+	public String resolveBasic() {
+		return this.resolver.resolve(this.basicRequest);
+	}
+
+}
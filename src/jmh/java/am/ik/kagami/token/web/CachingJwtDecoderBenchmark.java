@@ -0,0 +1,80 @@
+package am.ik.kagami.token.web;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.token.KagamiJwtClaims;
+import am.ik.kagami.token.TokenSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+/**
+ * Benchmarks for decoding the token sent on an artifact request, with and without the
+ * verified token cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachingJwtDecoderBenchmark {
+
+	NimbusJwtDecoder nimbusJwtDecoder;
+
+	CachingJwtDecoder cachingJwtDecoder;
+
+	String token;
+
+	@Setup
+	public void setUp() {
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage("/tmp"), Map.of(), null,
+				new KagamiProperties.Jwt("classpath:kagami-public.pem", "classpath:kagami-private.pem"),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
+		Instant now = Instant.now();
+		TokenSigner tokenSigner = new TokenSigner(properties, InstantSource.system());
+		this.token = tokenSigner
+			.sign(new JWTClaimsSet.Builder().subject("demo")
+				.issueTime(Date.from(now))
+				.expirationTime(Date.from(now.plusSeconds(3600)))
+				.claim(KagamiJwtClaims.REPOSITORIES, List.of("central", "private*"))
+				.build())
+			.serialize();
+		MockHttpServletRequest request = new MockHttpServletRequest("GET",
+				"/artifacts/private/org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+		this.nimbusJwtDecoder = new NimbusJwtDecoder(tokenSigner.keyRing().jwtProcessor());
+		this.nimbusJwtDecoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(JwtValidators.createDefault(),
+				new RepositoryTokenValidator(request)));
+		this.cachingJwtDecoder = new CachingJwtDecoder(new NimbusJwtDecoder(tokenSigner.keyRing().jwtProcessor()),
+				new RepositoryTokenValidator(request), request, InstantSource.system(), 100);
+	}
+
+	@Benchmark
+	public Jwt nimbus() {
+		return this.nimbusJwtDecoder.decode(this.token);
+	}
+
+	@Benchmark
+	public Jwt cached() {
+		return this.cachingJwtDecoder.decode(this.token);
+	}
+
+}
@@ -0,0 +1,57 @@
+package am.ik.kagami.token.web;
+
+import am.ik.kagami.token.KagamiJwtClaims;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Benchmarks for the repository claim check performed on every authenticated artifact
+ * request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryTokenValidatorBenchmark {
+
+	RepositoryTokenValidator validator;
+
+	Jwt token;
+
+	@Setup
+	public void setUp() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET",
+				"/artifacts/private/org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+		this.validator = new RepositoryTokenValidator(request);
+		Instant now = Instant.now();
+		this.token = Jwt.withTokenValue("token")
+			.header("alg", "RS256")
+			.subject("demo")
+			.issuedAt(now)
+			.expiresAt(now.plusSeconds(3600))
+			.claim(KagamiJwtClaims.REPOSITORIES, List.of("central", "snapshots", "private*"))
+			.build();
+	}
+
+	@Benchmark
+	public OAuth2TokenValidatorResult validate() {
+		return this.validator.validate(this.token);
+	}
+
+}
@@ -7,33 +7,363 @@ import java.nio.charset.StandardCharsets;
 import java.security.KeyFactory;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
+import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 import org.springframework.boot.io.ApplicationResourceLoader;
 import org.springframework.boot.ssl.pem.PemContent;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Configuration properties for Kagami mirror server
  */
 @ConfigurationProperties(prefix = "kagami")
 public record KagamiProperties(@DefaultValue Storage storage, @DefaultValue Map<String, Repository> repositories,
-		Proxy proxy, @DefaultValue Jwt jwt, @DefaultValue Authentication authentication) {
+		Proxy proxy, @DefaultValue Jwt jwt, @DefaultValue Authentication authentication, @DefaultValue Scrub scrub) {
 
-	public record Storage(String path) {
+	@ConstructorBinding
+	public KagamiProperties {
 	}
 
-	public record Repository(String url, String username, String password, @DefaultValue("false") boolean isPrivate) {
+	/**
+	 * Create properties with the defaults for all other settings
+	 */
+	public KagamiProperties(Storage storage, Map<String, Repository> repositories, Proxy proxy, Jwt jwt,
+			Authentication authentication) {
+		this(storage, repositories, proxy, jwt, authentication, Scrub.DEFAULT);
+	}
+
+	/**
+	 * Settings of the local storage
+	 *
+	 * @param path the directory of the cached files
+	 * @param usageRecountInterval how often the size of the repositories is counted again
+	 * by walking them, to correct what the stored and deleted files didn't account for;
+	 * zero to count only at startup
+	 */
+	public record Storage(String path, @DefaultValue("24h") Duration usageRecountInterval) {
+
+		@ConstructorBinding
+		public Storage {
+		}
+
+		/**
+		 * Create settings with the defaults for all other settings
+		 */
+		public Storage(String path) {
+			this(path, Duration.ofHours(24));
+		}
+
+	}
+
+	public record Repository(String url, String username, String password, @DefaultValue("false") boolean isPrivate,
+			@DefaultValue Hedge hedge, @DefaultValue Http http, @DefaultValue Fetch fetch,
+			@DefaultValue Resolver resolver) {
+
+		@ConstructorBinding
+		public Repository {
+		}
+
+		/**
+		 * Create a repository with the defaults for all other settings
+		 */
+		public Repository(String url, String username, String password, boolean isPrivate) {
+			this(url, username, password, isPrivate, Hedge.DEFAULT, Http.DEFAULT, Fetch.DEFAULT, Resolver.DEFAULT);
+		}
+
+		/**
+		 * Settings of hedged requests. When an upstream request has not answered within
+		 * the given percentile of recent response times, a second request is sent and the
+		 * first answer wins.
+		 *
+		 * @param enabled whether to send hedged requests
+		 * @param percentile the percentile of recent times to response headers after
+		 * which a hedged request is sent
+		 * @param minDelay the lower bound of the delay before a hedged request
+		 * @param maxDelay the upper bound of the delay, also used until enough response
+		 * times have been recorded
+		 * @param mirrors alternate URLs of the repository to send hedged requests to; the
+		 * repository's credentials are not sent to them
+		 */
+		public record Hedge(@DefaultValue("false") boolean enabled, @DefaultValue("0.95") double percentile,
+				@DefaultValue("50ms") Duration minDelay, @DefaultValue("1s") Duration maxDelay,
+				@DefaultValue List<String> mirrors) {
+
+			static final Hedge DEFAULT = new Hedge(false, 0.95, Duration.ofMillis(50), Duration.ofSeconds(1),
+					List.of());
+
+		}
+
+		/**
+		 * Settings of the HTTP connections to the repository, shared by Maven Resolver
+		 * and direct downloads
+		 *
+		 * @param http2 whether direct downloads may use HTTP/2, multiplexing requests
+		 * over one connection; Maven Resolver always uses HTTP/1.1
+		 * @param maxConnections the maximum number of concurrent connections, or of
+		 * concurrent requests over HTTP/2
+		 * @param connectTimeout the timeout to establish a connection
+		 * @param readTimeout the timeout to wait for response data
+		 * @param keepAlive how long Maven Resolver keeps a pooled connection open
+		 */
+		public record Http(@DefaultValue("true") boolean http2, @DefaultValue("50") int maxConnections,
+				@DefaultValue("10s") Duration connectTimeout, @DefaultValue("60s") Duration readTimeout,
+				@DefaultValue("5m") Duration keepAlive) {
+
+			static final Http DEFAULT = new Http(true, 50, Duration.ofSeconds(10), Duration.ofSeconds(60),
+					Duration.ofMinutes(5));
+
+		}
+
+		/**
+		 * Settings of how artifacts are fetched from the repository
+		 *
+		 * @param engine the engine that fetches standard artifacts
+		 * @param verifyChecksums whether the direct engine verifies an artifact against
+		 * the SHA-1 checksum published next to it before storing it
+		 * @param headTtl how long the answer of the repository to a HEAD request for a
+		 * file that is not cached is reused
+		 * @param parallel settings of downloading large files over several connections
+		 * @param resume settings of resuming interrupted downloads
+		 * @param deadline how long a request waits for a file to be fetched; it does not
+		 * shorten the timeouts of the requests to the repository
+		 * @param abandoned what happens to a fetch that no request waits for anymore
+		 * @param retry settings of retrying fetches that failed
+		 * @param rateLimit settings of limiting the rate of fetches
+		 */
+		public record Fetch(@DefaultValue("resolver") FetchEngine engine, @DefaultValue("true") boolean verifyChecksums,
+				@DefaultValue("1m") Duration headTtl, @DefaultValue Parallel parallel, @DefaultValue Resume resume,
+				@DefaultValue("1m") Duration deadline, @DefaultValue("finish-releases") AbandonPolicy abandoned,
+				@DefaultValue Retry retry, @DefaultValue RateLimit rateLimit) {
+
+			static final Fetch DEFAULT = new Fetch(FetchEngine.RESOLVER, true, Duration.ofMinutes(1), Parallel.DEFAULT,
+					Resume.DEFAULT, Duration.ofMinutes(1), AbandonPolicy.FINISH_RELEASES, Retry.DEFAULT,
+					RateLimit.DEFAULT);
+
+			@ConstructorBinding
+			public Fetch {
+			}
+
+			/**
+			 * Create settings that download every file over one connection, resume and
+			 * retry interrupted downloads and don't limit the rate of fetches
+			 */
+			public Fetch(FetchEngine engine, boolean verifyChecksums, Duration headTtl) {
+				this(engine, verifyChecksums, headTtl, Parallel.DEFAULT, Resume.DEFAULT, Duration.ofMinutes(1),
+						AbandonPolicy.FINISH_RELEASES, Retry.DEFAULT, RateLimit.DEFAULT);
+			}
+
+			/**
+			 * Settings of downloading large files in ranges over several connections at
+			 * once, for repositories that limit the throughput of each connection. Only
+			 * files that are downloaded directly rather than by Maven Resolver are split.
+			 *
+			 * @param enabled whether large files are downloaded in ranges
+			 * @param threshold the size from which a file is downloaded in ranges
+			 * @param chunkSize the size of each range
+			 * @param connections how many ranges of a file are downloaded at once
+			 */
+			public record Parallel(@DefaultValue("false") boolean enabled, @DefaultValue("64MB") DataSize threshold,
+					@DefaultValue("8MB") DataSize chunkSize, @DefaultValue("4") int connections) {
+
+				static final Parallel DEFAULT = new Parallel(false, DataSize.ofMegabytes(64), DataSize.ofMegabytes(8),
+						4);
+
+			}
+
+			/**
+			 * Settings of resuming downloads that were interrupted. The part of a file
+			 * downloaded so far is kept with its {@code ETag} or {@code Last-Modified}
+			 * header, and the next download of the file only requests the rest if the
+			 * file has not changed. Only files that are downloaded directly over one
+			 * connection are resumed.
+			 *
+			 * @param enabled whether interrupted downloads are kept and resumed
+			 * @param maxAge how long an interrupted download is kept
+			 */
+			public record Resume(@DefaultValue("true") boolean enabled, @DefaultValue("1d") Duration maxAge) {
+
+				static final Resume DEFAULT = new Resume(true, Duration.ofDays(1));
+
+			}
+
+			/**
+			 * Settings of retrying fetches that failed, e.g. because of a server error or
+			 * a dropped connection, but not those of files that were not found or did not
+			 * match their checksum. Retries wait for a jittered exponential backoff, and
+			 * are capped by a budget shared by all fetches from the repository so that
+			 * they don't multiply the load on a repository that is failing. Maven
+			 * Resolver's own retries are turned off while enabled.
+			 *
+			 * @param enabled whether failed fetches are retried
+			 * @param maxAttempts the maximum number of attempts of a fetch, including the
+			 * first one
+			 * @param initialBackoff the upper bound of the wait before the first retry,
+			 * doubled for each further retry
+			 * @param maxBackoff the upper bound of the wait before any retry
+			 * @param budget the ratio of retries to fetches
+			 * @param burst how many retries the budget holds at most, which are also
+			 * available before any fetch has added to it
+			 */
+			public record Retry(@DefaultValue("true") boolean enabled, @DefaultValue("3") int maxAttempts,
+					@DefaultValue("100ms") Duration initialBackoff, @DefaultValue("2s") Duration maxBackoff,
+					@DefaultValue("0.1") double budget, @DefaultValue("10") int burst) {
+
+				static final Retry DEFAULT = new Retry(true, 3, Duration.ofMillis(100), Duration.ofSeconds(2), 0.1, 10);
+
+			}
+
+			/**
+			 * Settings of limiting the rate at which fetches from the repository start,
+			 * for repositories that throttle clients sending too many requests. Fetches
+			 * beyond the rate wait in a queue in which those of clients go ahead of
+			 * background work such as the repairs of the integrity scrubber. Retries are
+			 * not limited, as they are within the retry budget.
+			 *
+			 * @param enabled whether the rate of fetches is limited
+			 * @param rate the fetches that start per second
+			 * @param burst how many fetches may start at once after a quiet period
+			 * @param maxWait how long a fetch waits in the queue at most; one that would
+			 * wait longer fails at once
+			 */
+			public record RateLimit(@DefaultValue("false") boolean enabled, @DefaultValue("20") double rate,
+					@DefaultValue("50") int burst, @DefaultValue("5s") Duration maxWait) {
+
+				static final RateLimit DEFAULT = new RateLimit(false, 20, 50, Duration.ofSeconds(5));
+
+			}
+
+		}
+
+		/**
+		 * Settings of the Maven Resolver session of the repository
+		 *
+		 * @param updatePolicy how often an artifact that was not found is looked up
+		 * again: {@code never}, {@code daily}, {@code always} or
+		 * {@code interval:<minutes>}
+		 * @param checksumPolicy what to do when a checksum does not match or is missing
+		 * @param localRepositoryManager how downloaded artifacts are tracked in the
+		 * storage
+		 * @param connectorThreads the threads of a connector that downloads several files
+		 * in one request; Kagami requests one artifact at a time
+		 * @param namedLockFactory the locks that keep concurrent fetches of the same
+		 * artifact from downloading it twice
+		 * @param lockTimeout how long a fetch waits for another fetch of the same
+		 * artifact
+		 */
+		public record Resolver(@DefaultValue("daily") String updatePolicy,
+				@DefaultValue("warn") ChecksumPolicy checksumPolicy,
+				@DefaultValue("simple") LocalRepositoryManager localRepositoryManager,
+				@DefaultValue("1") int connectorThreads,
+				@DefaultValue("rwlock-local") NamedLockFactory namedLockFactory,
+				@DefaultValue("5m") Duration lockTimeout) {
+
+			static final Resolver DEFAULT = new Resolver("daily", ChecksumPolicy.WARN, LocalRepositoryManager.SIMPLE, 1,
+					NamedLockFactory.RWLOCK_LOCAL, Duration.ofMinutes(5));
+
+			public enum ChecksumPolicy {
+
+				FAIL, WARN, IGNORE
+
+			}
+
+			public enum LocalRepositoryManager {
+
+				/**
+				 * Treat every file in the storage as available. Each repository has its
+				 * own directory, so tracking where a file came from is not needed.
+				 */
+				SIMPLE,
+
+				/**
+				 * Record the repository of every file in {@code _remote.repositories}
+				 * files, which are read and written under a lock on every fetch
+				 */
+				ENHANCED
+
+			}
+
+			public enum NamedLockFactory {
+
+				/**
+				 * In-process read-write locks
+				 */
+				RWLOCK_LOCAL,
+
+				/**
+				 * In-process semaphores
+				 */
+				SEMAPHORE_LOCAL,
+
+				/**
+				 * File locks, for a storage shared by several Kagami instances
+				 */
+				FILE_LOCK,
+
+				/**
+				 * No locking; concurrent fetches of the same artifact download it more
+				 * than once
+				 */
+				NOOP
+
+			}
+
+		}
+
+		/**
+		 * What happens to a fetch when the last request waiting for it has stopped
+		 * waiting, because its deadline has passed
+		 */
+		public enum AbandonPolicy {
+
+			/**
+			 * Cancel the fetch, which aborts the upstream request
+			 */
+			CANCEL,
+
+			/**
+			 * Finish the fetch in the background, so that the file is cached for the next
+			 * request
+			 */
+			FINISH,
+
+			/**
+			 * Finish fetches of release artifacts in the background, which never change
+			 * once cached, and cancel fetches of snapshots and metadata
+			 */
+			FINISH_RELEASES
+
+		}
+
+		public enum FetchEngine {
+
+			/**
+			 * Resolve artifacts with Maven Resolver, which also writes its tracking files
+			 * and checksum files to the storage
+			 */
+			RESOLVER,
+
+			/**
+			 * Stream {@code GET {url}/{path}} straight into the storage
+			 */
+			DIRECT
+
+		}
+
 	}
 
 	public record Proxy(String url) {
@@ -41,27 +371,66 @@ public record KagamiProperties(@DefaultValue Storage storage, @DefaultValue Map<
 
 	public static class Jwt {
 
-		private final RSAPublicKey publicKey;
+		private final PublicKey publicKey;
+
+		private final PrivateKey privateKey;
 
-		private final RSAPrivateKey privateKey;
+		private final Cache cache;
+
+		private final List<Key> keys;
 
 		// to support `base64:` prefix
 		private static final ResourceLoader resourceLoader = ApplicationResourceLoader.get();
 
+		private static final List<String> PUBLIC_KEY_ALGORITHMS = List.of("RSA", "EC", "Ed25519");
+
 		public Jwt(String publicKey, String privateKey) {
+			this(publicKey, privateKey, new Cache(10_000), List.of());
+		}
+
+		/**
+		 * @param publicKey the public key of the primary key pair
+		 * @param privateKey the private key of the primary key pair
+		 * @param cache the verified token cache settings
+		 * @param keys additional key pairs used for key rotation
+		 */
+		@ConstructorBinding
+		public Jwt(String publicKey, String privateKey, @DefaultValue Cache cache, @DefaultValue List<Key> keys) {
 			this.publicKey = publicKey == null ? null : resourceToPublicKey(resourceLoader.getResource(publicKey));
 			this.privateKey = privateKey == null ? null : resourceToPrivateKey(resourceLoader.getResource(privateKey));
+			this.cache = cache;
+			List<Key> allKeys = new ArrayList<>();
+			if (this.publicKey != null) {
+				allKeys.add(new Key(this.publicKey, this.privateKey, null, null));
+			}
+			allKeys.addAll(keys);
+			this.keys = List.copyOf(allKeys);
 		}
 
-		public RSAPublicKey publicKey() {
+		public PublicKey publicKey() {
 			return publicKey;
 		}
 
-		public RSAPrivateKey privateKey() {
+		public PrivateKey privateKey() {
 			return privateKey;
 		}
 
+		public Cache cache() {
+			return cache;
+		}
+
+		/**
+		 * Return the primary key pair followed by the additional key pairs
+		 */
+		public List<Key> keys() {
+			return keys;
+		}
+
 		public String keyId() {
+			return keyId(publicKey);
+		}
+
+		static String keyId(PublicKey publicKey) {
 			byte[] publicKeyDERBytes = publicKey.getEncoded();
 			try {
 				MessageDigest hasher = MessageDigest.getInstance("SHA-256");
@@ -73,7 +442,7 @@ public record KagamiProperties(@DefaultValue Storage storage, @DefaultValue Map<
 			}
 		}
 
-		static RSAPublicKey resourceToPublicKey(Resource resource) {
+		static PublicKey resourceToPublicKey(Resource resource) {
 			try (InputStream stream = resource.getInputStream()) {
 				byte[] content = Base64.getDecoder()
 					.decode(StreamUtils.copyToString(stream, StandardCharsets.UTF_8)
@@ -81,26 +450,98 @@ public record KagamiProperties(@DefaultValue Storage storage, @DefaultValue Map<
 						.replace("-----END PUBLIC KEY-----", "")
 						.replace("\n", ""));
 				X509EncodedKeySpec spec = new X509EncodedKeySpec(content);
-				return (RSAPublicKey) KeyFactory.getInstance("RSA").generatePublic(spec);
+				for (String algorithm : PUBLIC_KEY_ALGORITHMS) {
+					try {
+						return KeyFactory.getInstance(algorithm).generatePublic(spec);
+					}
+					catch (InvalidKeySpecException e) {
+						// try the next algorithm
+					}
+				}
+				throw new IllegalArgumentException(
+						"Unsupported public key. Supported algorithms are " + PUBLIC_KEY_ALGORITHMS);
 			}
 			catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
-			catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
+			catch (NoSuchAlgorithmException e) {
 				throw new RuntimeException(e);
 			}
 		}
 
-		static RSAPrivateKey resourceToPrivateKey(Resource resource) {
+		static PrivateKey resourceToPrivateKey(Resource resource) {
 			try (InputStream stream = resource.getInputStream()) {
-				return (RSAPrivateKey) PemContent.of(StreamUtils.copyToString(stream, StandardCharsets.UTF_8))
-					.getPrivateKey();
+				return PemContent.of(StreamUtils.copyToString(stream, StandardCharsets.UTF_8)).getPrivateKey();
 			}
 			catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
 		}
 
+		/**
+		 * Cache of verified tokens so that a token sent on every request of a build is
+		 * verified only once until it expires
+		 *
+		 * @param maximumSize the maximum number of verified tokens to keep. {@code 0}
+		 * disables the cache.
+		 */
+		public record Cache(@DefaultValue("10000") long maximumSize) {
+		}
+
+		/**
+		 * Key pair for signing and verifying tokens. RSA (RS256), EC P-256 (ES256) and
+		 * Ed25519 (EdDSA) keys are supported.
+		 */
+		public static class Key {
+
+			private final PublicKey publicKey;
+
+			private final PrivateKey privateKey;
+
+			private final String keyId;
+
+			private final Instant activateAt;
+
+			/**
+			 * @param publicKey the location of the public key
+			 * @param privateKey the location of the private key. A key without a private
+			 * key is only used to verify tokens.
+			 * @param keyId the key id. Defaults to the SHA-256 hash of the public key.
+			 * @param activateAt the time from which the key is used to sign tokens.
+			 * Defaults to immediately.
+			 */
+			@ConstructorBinding
+			public Key(String publicKey, String privateKey, String keyId, Instant activateAt) {
+				this(resourceToPublicKey(resourceLoader.getResource(publicKey)),
+						privateKey == null ? null : resourceToPrivateKey(resourceLoader.getResource(privateKey)), keyId,
+						activateAt);
+			}
+
+			public Key(PublicKey publicKey, PrivateKey privateKey, String keyId, Instant activateAt) {
+				this.publicKey = publicKey;
+				this.privateKey = privateKey;
+				this.keyId = keyId == null ? Jwt.keyId(publicKey) : keyId;
+				this.activateAt = activateAt;
+			}
+
+			public PublicKey publicKey() {
+				return publicKey;
+			}
+
+			public PrivateKey privateKey() {
+				return privateKey;
+			}
+
+			public String keyId() {
+				return keyId;
+			}
+
+			public Instant activateAt() {
+				return activateAt;
+			}
+
+		}
+
 	}
 
 	public record Authentication(@DefaultValue("simple") AuthenticationType type,
@@ -112,4 +553,43 @@ public record KagamiProperties(@DefaultValue Storage storage, @DefaultValue Map<
 		SIMPLE, OIDC
 
 	}
+
+	/**
+	 * Settings of the background integrity scrubber
+	 *
+	 * @param enabled whether to verify cached files periodically
+	 * @param initialDelay the delay after startup before the first run
+	 * @param interval the delay between the end of a run and the start of the next one
+	 * @param readRate the maximum number of bytes read per second across all threads
+	 * @param parallelism the number of files hashed concurrently
+	 * @param action what to do with a file that does not match its checksum
+	 */
+	public record Scrub(@DefaultValue("false") boolean enabled, @DefaultValue("1h") Duration initialDelay,
+			@DefaultValue("24h") Duration interval, @DefaultValue("10MB") DataSize readRate,
+			@DefaultValue("2") int parallelism, @DefaultValue("report") ScrubAction action) {
+
+		static final Scrub DEFAULT = new Scrub(false, Duration.ofHours(1), Duration.ofHours(24),
+				DataSize.ofMegabytes(10), 2, ScrubAction.REPORT);
+
+	}
+
+	public enum ScrubAction {
+
+		/**
+		 * Only count and log corrupt files
+		 */
+		REPORT,
+
+		/**
+		 * Move corrupt files and their checksums out of the repository so that they are
+		 * fetched again on the next request
+		 */
+		QUARANTINE,
+
+		/**
+		 * Quarantine corrupt files and fetch them again right away
+		 */
+		REFETCH
+
+	}
 }
\ No newline at end of file
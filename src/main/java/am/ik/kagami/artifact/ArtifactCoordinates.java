@@ -0,0 +1,8 @@
+package am.ik.kagami.artifact;
+
+/**
+ * Maven coordinates of an artifact file
+ */
+public record ArtifactCoordinates(String groupId, String artifactId, String version, String classifier,
+		String extension) {
+}
@@ -0,0 +1,218 @@
+package am.ik.kagami.artifact;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Set;
+
+/**
+ * Path of an artifact within a repository, parsed once per request and shared by the
+ * security layer, the controller, the storage and the remote repository resolver. Parsing
+ * only records segment boundaries; Maven coordinates are derived lazily from those
+ * indexes without splitting the path.
+ */
+public final class ArtifactPath {
+
+	static final String ARTIFACTS_PREFIX = "/artifacts/";
+
+	private static final String REQUEST_ATTRIBUTE = ArtifactPath.class.getName();
+
+	// extensions of the checksum and signature files published next to artifacts
+	private static final Set<String> SIDECAR_EXTENSIONS = Set.of("md5", "sha1", "sha256", "sha512", "asc");
+
+	// marks coordinates that have not been parsed yet, as null marks a non-standard path
+	private static final ArtifactCoordinates UNPARSED = new ArtifactCoordinates("", "", "", "", "");
+
+	private final String repositoryId;
+
+	private final String path;
+
+	private final boolean valid;
+
+	private final int fileNameStart;
+
+	// an ArtifactPath is shared between threads, e.g. by concurrent fetches of the same
+	// file, so the coordinates are published in one volatile field
+	private volatile ArtifactCoordinates coordinates = UNPARSED;
+
+	private ArtifactPath(String repositoryId, String path) {
+		this.repositoryId = repositoryId;
+		this.path = path;
+		this.valid = isValid(path);
+		this.fileNameStart = path.lastIndexOf('/') + 1;
+	}
+
+	/**
+	 * Create an artifact path
+	 * @param repositoryId the repository identifier
+	 * @param path the relative path of the artifact within the repository
+	 * @return the artifact path
+	 */
+	public static ArtifactPath of(String repositoryId, String path) {
+		return new ArtifactPath(repositoryId, path);
+	}
+
+	/**
+	 * Parse an artifact path from a request path that looks like
+	 * {@code /artifacts/{repositoryId}/{path}}
+	 * @param requestPath the request path without the context path
+	 * @return the artifact path, or null if the request path is not an artifact path
+	 */
+	public static ArtifactPath parse(String requestPath) {
+		return parse(requestPath, 0);
+	}
+
+	/**
+	 * Return the artifact path of the given request. The result is cached as a request
+	 * attribute so that the request URI is parsed only once per request.
+	 * @param request the current request
+	 * @return the artifact path, or null if the request is not an artifact request
+	 */
+	public static ArtifactPath from(HttpServletRequest request) {
+		if (request.getAttribute(REQUEST_ATTRIBUTE) instanceof ArtifactPath artifactPath) {
+			return artifactPath;
+		}
+		ArtifactPath artifactPath = parse(request.getRequestURI(), request.getContextPath().length());
+		if (artifactPath != null) {
+			request.setAttribute(REQUEST_ATTRIBUTE, artifactPath);
+		}
+		return artifactPath;
+	}
+
+	private static ArtifactPath parse(String uri, int offset) {
+		if (!uri.startsWith(ARTIFACTS_PREFIX, offset)) {
+			return null;
+		}
+		int repositoryIdStart = offset + ARTIFACTS_PREFIX.length();
+		int repositoryIdEnd = uri.indexOf('/', repositoryIdStart);
+		if (repositoryIdEnd <= repositoryIdStart) {
+			return null;
+		}
+		return new ArtifactPath(uri.substring(repositoryIdStart, repositoryIdEnd), uri.substring(repositoryIdEnd + 1));
+	}
+
+	private static boolean isValid(String path) {
+		if (path.isBlank()) {
+			return false;
+		}
+		char first = path.charAt(0);
+		// Reject absolute paths and path traversal attempts
+		return first != '/' && first != '\\' && !path.contains("..") && path.indexOf('~') < 0;
+	}
+
+	public String repositoryId() {
+		return this.repositoryId;
+	}
+
+	/**
+	 * Return the relative path of the artifact within the repository
+	 */
+	public String path() {
+		return this.path;
+	}
+
+	/**
+	 * Return the last segment of the path
+	 */
+	public String fileName() {
+		return this.path.substring(this.fileNameStart);
+	}
+
+	/**
+	 * Whether the path is not empty and cannot escape the repository directory
+	 */
+	public boolean isValid() {
+		return this.valid;
+	}
+
+	public boolean endsWith(String suffix) {
+		return this.path.endsWith(suffix);
+	}
+
+	/**
+	 * Return the Maven coordinates of the artifact
+	 * @return the coordinates, or null if the path is not a standard Maven artifact path
+	 * (e.g. {@code maven-metadata.xml} or checksum files)
+	 */
+	public ArtifactCoordinates coordinates() {
+		ArtifactCoordinates coordinates = this.coordinates;
+		if (coordinates == UNPARSED) {
+			// parsing twice in a race is harmless
+			coordinates = parseCoordinates();
+			this.coordinates = coordinates;
+		}
+		return coordinates;
+	}
+
+	private ArtifactCoordinates parseCoordinates() {
+		// Example: org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar
+		// Example: org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar
+		// Example: org/springframework/spring-core/6.1.3/spring-core-6.1.3.pom
+		String path = this.path;
+		int fileNameStart = this.fileNameStart;
+		int end = path.length();
+		if (fileNameStart < 2 || fileNameStart == end) {
+			return null;
+		}
+		int versionStart = path.lastIndexOf('/', fileNameStart - 2) + 1;
+		if (versionStart < 2) {
+			return null;
+		}
+		int artifactIdStart = path.lastIndexOf('/', versionStart - 2) + 1;
+		if (artifactIdStart < 2) {
+			return null; // Not a standard Maven path
+		}
+		int versionLength = fileNameStart - 1 - versionStart;
+		int artifactIdLength = versionStart - 1 - artifactIdStart;
+
+		// The filename must start with "{artifactId}-{version}"
+		int remainder = fileNameStart + artifactIdLength + 1 + versionLength;
+		if (remainder > end || !path.regionMatches(fileNameStart, path, artifactIdStart, artifactIdLength)
+				|| path.charAt(fileNameStart + artifactIdLength) != '-'
+				|| !path.regionMatches(fileNameStart + artifactIdLength + 1, path, versionStart, versionLength)) {
+			return null; // Filename doesn't match expected pattern
+		}
+
+		String classifier = "";
+		String extension = "jar";
+		if (remainder < end && path.charAt(remainder) == '-') {
+			// Has classifier
+			int dotIndex = path.lastIndexOf('.');
+			if (dotIndex > remainder + 1) {
+				classifier = path.substring(remainder + 1, dotIndex);
+				extension = path.substring(dotIndex + 1);
+				if (SIDECAR_EXTENSIONS.contains(extension)) {
+					// e.g., sources.jar.sha1 is a checksum file rather than an artifact
+					return null;
+				}
+			}
+		}
+		else if (remainder < end && path.charAt(remainder) == '.') {
+			// No classifier, just extension
+			if (path.indexOf('.', remainder + 1) >= 0) {
+				// e.g., jar.sha1 is a checksum file rather than an artifact
+				return null;
+			}
+			extension = path.substring(remainder + 1);
+		}
+
+		String groupId = path.substring(0, artifactIdStart - 1).replace('/', '.');
+		return new ArtifactCoordinates(groupId, path.substring(artifactIdStart, versionStart - 1),
+				path.substring(versionStart, fileNameStart - 1), classifier, extension);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return this == o || (o instanceof ArtifactPath that && this.repositoryId.equals(that.repositoryId)
+				&& this.path.equals(that.path));
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.repositoryId.hashCode() + this.path.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return this.repositoryId + "/" + this.path;
+	}
+
+}
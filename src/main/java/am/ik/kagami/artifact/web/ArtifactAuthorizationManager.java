@@ -0,0 +1,67 @@
+package am.ik.kagami.artifact.web;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import static org.springframework.security.authorization.AuthorityAuthorizationManager.hasRole;
+import static org.springframework.security.authorization.AuthorizationManagers.anyOf;
+import static org.springframework.security.oauth2.core.authorization.OAuth2AuthorizationManagers.hasScope;
+
+/**
+ * Authorizes {@code /artifacts/**} requests with a route table keyed by repository id, so
+ * that the cost per request does not depend on the number of configured repositories.
+ * <ul>
+ * <li>GET and HEAD are permitted for public repositories and require the
+ * {@code artifacts:read} scope or the {@code USER} role for private repositories</li>
+ * <li>DELETE requires the {@code artifacts:delete} scope or the {@code USER} role</li>
+ * <li>Any other request requires the {@code USER} role</li>
+ * </ul>
+ */
+public class ArtifactAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+	private static final AuthorizationManager<RequestAuthorizationContext> PERMIT_ALL = (authentication,
+			context) -> new AuthorizationDecision(true);
+
+	private final Map<String, Route> routes;
+
+	private final AuthorizationManager<RequestAuthorizationContext> fallback = hasRole("USER");
+
+	public ArtifactAuthorizationManager(Map<String, KagamiProperties.Repository> repositories) {
+		AuthorizationManager<RequestAuthorizationContext> read = anyOf(hasScope("artifacts:read"), hasRole("USER"));
+		AuthorizationManager<RequestAuthorizationContext> delete = anyOf(hasScope("artifacts:delete"), hasRole("USER"));
+		Map<String, Route> routes = new HashMap<>();
+		repositories.forEach((repositoryId, repository) -> routes.put(repositoryId,
+				new Route(repository.isPrivate() ? read : PERMIT_ALL, delete)));
+		this.routes = Map.copyOf(routes);
+	}
+
+	@Override
+	public AuthorizationResult authorize(Supplier<? extends Authentication> authentication,
+			RequestAuthorizationContext context) {
+		HttpServletRequest request = context.getRequest();
+		ArtifactPath artifactPath = ArtifactPath.from(request);
+		Route route = (artifactPath != null) ? this.routes.get(artifactPath.repositoryId()) : null;
+		if (route == null) {
+			return this.fallback.authorize(authentication, context);
+		}
+		return switch (request.getMethod()) {
+			case "GET", "HEAD" -> route.read().authorize(authentication, context);
+			case "DELETE" -> route.delete().authorize(authentication, context);
+			default -> this.fallback.authorize(authentication, context);
+		};
+	}
+
+	private record Route(AuthorizationManager<RequestAuthorizationContext> read,
+			AuthorizationManager<RequestAuthorizationContext> delete) {
+	}
+
+}
@@ -2,22 +2,36 @@ package am.ik.kagami.artifact.web;
 
 import am.ik.kagami.KagamiProperties;
 import am.ik.kagami.KagamiProperties.Repository;
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.repository.FetchOutcome;
+import am.ik.kagami.repository.RemoteFile;
+import am.ik.kagami.repository.RemoteHead;
 import am.ik.kagami.repository.RemoteRepositoryService;
+import am.ik.kagami.storage.DeleteJob;
 import am.ik.kagami.storage.StorageService;
+import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.net.URI;
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Map;
 import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
  * REST controller for Maven artifact operations
@@ -26,21 +40,45 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/artifacts")
 public class ArtifactController {
 
+	private static final MediaType APPLICATION_JAVA_ARCHIVE = MediaType.parseMediaType("application/java-archive");
+
+	private static final MediaType APPLICATION_PGP_SIGNATURE = MediaType.parseMediaType("application/pgp-signature");
+
+	static final String X_CHECKSUM_SHA1 = "X-Checksum-SHA1";
+
+	static final String X_CHECKSUM_SHA256 = "X-Checksum-SHA256";
+
+	private static final CacheControl PRIVATE_CACHE_CONTROL = CacheControl.maxAge(Duration.ofSeconds(31536000))
+		.cachePrivate();
+
+	private static final CacheControl PUBLIC_CACHE_CONTROL = CacheControl.maxAge(Duration.ofSeconds(31536000))
+		.cachePublic();
+
 	private final StorageService storageService;
 
 	private final RemoteRepositoryService remoteRepositoryService;
 
 	private final Map<String, Repository> repositories;
 
+	private final Map<String, CacheMeters> meters = new HashMap<>();
+
 	public ArtifactController(StorageService storageService, RemoteRepositoryService remoteRepositoryService,
-			KagamiProperties properties) {
+			KagamiProperties properties, MeterRegistry meterRegistry) {
 		this.storageService = storageService;
 		this.remoteRepositoryService = remoteRepositoryService;
 		this.repositories = properties.repositories();
+		this.repositories.keySet()
+			.forEach(repositoryId -> this.meters.put(repositoryId, new CacheMeters(repositoryId, meterRegistry)));
 	}
 
 	@GetMapping("/{repositoryId}/**")
-	public ResponseEntity<Resource> getArtifact(@PathVariable String repositoryId, HttpServletRequest request) {
+	public ResponseEntity<Resource> getArtifact(HttpServletRequest request) {
+		// Extract artifact path from request
+		ArtifactPath artifactPath = ArtifactPath.from(request);
+		if (artifactPath == null) {
+			return ResponseEntity.notFound().build();
+		}
+		String repositoryId = artifactPath.repositoryId();
 		// Validate repository
 		if (!this.remoteRepositoryService.isRepositoryConfigured(repositoryId)) {
 			return ResponseEntity.notFound().build();
@@ -50,75 +88,203 @@ public class ArtifactController {
 			// This should not happen
 			return ResponseEntity.notFound().build();
 		}
-		// Extract artifact path from request
-		String artifactPath = extractArtifactPath(request, repositoryId);
-
+		CacheMeters meters = this.meters.get(repositoryId);
 		// Try to retrieve from local storage first
-		Resource resource = this.storageService.retrieve(repositoryId, artifactPath);
+		Resource resource = this.storageService.retrieve(artifactPath);
 
+		String cacheResult;
+		FetchOutcome outcome = FetchOutcome.NOT_FOUND;
 		if (resource == null) {
-			// Not in local storage, try to fetch from remote
-			boolean fetched = this.remoteRepositoryService.fetchArtifact(repositoryId, artifactPath);
-			if (fetched) {
-				resource = this.storageService.retrieve(repositoryId, artifactPath);
+			// A checksum file of a stored file is computed rather than fetched
+			resource = retrieveChecksum(artifactPath);
+			if (resource != null) {
+				cacheResult = CacheMeters.COMPUTED;
+				meters.computed.increment();
+			}
+			else {
+				// Not in local storage, try to fetch from remote
+				outcome = this.remoteRepositoryService.fetch(artifactPath);
+				cacheResult = CacheMeters.cacheResult(outcome);
+				meters.lookups.get(outcome).increment();
+				if (outcome == FetchOutcome.FETCHED) {
+					resource = this.storageService.retrieve(artifactPath);
+				}
 			}
 		}
+		else {
+			cacheResult = CacheMeters.HIT;
+			meters.hits.increment();
+		}
+		// attribute the latency of the request span to the cache outcome
+		ServerHttpObservationFilter.findObservationContext(request)
+			.ifPresent(context -> context.addHighCardinalityKeyValue(KeyValue.of("kagami.cache.result", cacheResult)));
 
 		if (resource != null && resource.exists()) {
 			try {
-				CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(31536000));
-				return ResponseEntity.ok()
-					.contentType(determineContentType(artifactPath))
-					.contentLength(resource.contentLength())
-					.cacheControl(repository.isPrivate() ? cacheControl.cachePrivate() : cacheControl.cachePublic())
-					.header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=%s".formatted(resource.getFilename()))
-					.body(resource);
+				long contentLength = resource.contentLength();
+				meters.servedBytes.increment(contentLength);
+				return ok(artifactPath, repository, contentLength).body(resource);
 			}
 			catch (IOException e) {
 				return ResponseEntity.internalServerError().build();
 			}
 		}
 
-		return ResponseEntity.notFound().build();
+		return notFetched(outcome, repository);
 	}
 
-	@DeleteMapping("/{repositoryId}/**")
-	public ResponseEntity<Void> deleteArtifact(@PathVariable String repositoryId, HttpServletRequest request) {
-		// Validate repository
-		if (!this.remoteRepositoryService.isRepositoryConfigured(repositoryId)) {
+	/**
+	 * Answer a request for a file that could not be served. Only a file that the remote
+	 * repository does not have is not found, as Maven remembers that and doesn't request
+	 * the file again until its update interval has elapsed.
+	 */
+	private static <T> ResponseEntity<T> notFetched(FetchOutcome outcome, Repository repository) {
+		return switch (outcome) {
+			// a fetched file may have been deleted in the meantime
+			case FETCHED, NOT_FOUND, CACHED_NOT_FOUND -> ResponseEntity.notFound().build();
+			case REJECTED, REFUSED, FAILED -> ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+			case TIMED_OUT -> ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+			// the queue for the rate limit is at most the maximum wait long
+			case THROTTLED -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, retryAfter(repository.fetch().rateLimit().maxWait()))
+				.build();
+		};
+	}
+
+	/**
+	 * @return the value of a {@code Retry-After} header, the wait rounded up to whole
+	 * seconds and at least one
+	 */
+	static String retryAfter(Duration wait) {
+		long seconds = wait.toSeconds() + (wait.toNanosPart() > 0 ? 1 : 0);
+		return String.valueOf(Math.max(1, seconds));
+	}
+
+	/**
+	 * Describe an artifact without its content. A file that is not cached is described by
+	 * the remote repository rather than fetched.
+	 */
+	@RequestMapping(path = "/{repositoryId}/**", method = RequestMethod.HEAD)
+	public ResponseEntity<Void> headArtifact(HttpServletRequest request) {
+		ArtifactPath artifactPath = ArtifactPath.from(request);
+		if (artifactPath == null || !this.remoteRepositoryService.isRepositoryConfigured(artifactPath.repositoryId())) {
 			return ResponseEntity.notFound().build();
 		}
-		// Extract artifact path from request
-		String artifactPath = extractArtifactPath(request, repositoryId);
+		Repository repository = this.repositories.get(artifactPath.repositoryId());
+		if (repository == null) {
+			// This should not happen
+			return ResponseEntity.notFound().build();
+		}
+		Resource resource = this.storageService.retrieve(artifactPath);
+		if (resource == null) {
+			resource = retrieveChecksum(artifactPath);
+		}
+		if (resource != null && resource.exists()) {
+			try {
+				return ok(artifactPath, repository, resource.contentLength()).build();
+			}
+			catch (IOException e) {
+				return ResponseEntity.internalServerError().build();
+			}
+		}
+		RemoteHead remoteHead = this.remoteRepositoryService.head(artifactPath);
+		RemoteFile remoteFile = remoteHead.file();
+		if (remoteFile == null) {
+			return notFetched(remoteHead.outcome(), repository);
+		}
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+			.contentType(determineContentType(artifactPath.path()))
+			.header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + artifactPath.fileName());
+		if (remoteFile.contentLength() >= 0) {
+			builder.contentLength(remoteFile.contentLength());
+		}
+		if (remoteFile.sha1() != null) {
+			builder.header(X_CHECKSUM_SHA1, remoteFile.sha1());
+		}
+		return builder.build();
+	}
 
+	/**
+	 * Start a response for a stored file
+	 */
+	private ResponseEntity.BodyBuilder ok(ArtifactPath artifactPath, Repository repository, long contentLength) {
+		return ResponseEntity.ok()
+			.contentType(determineContentType(artifactPath.path()))
+			.contentLength(contentLength)
+			.cacheControl(repository.isPrivate() ? PRIVATE_CACHE_CONTROL : PUBLIC_CACHE_CONTROL)
+			.header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + artifactPath.fileName())
+			.headers(headers -> addChecksumHeaders(artifactPath, headers));
+	}
+
+	/**
+	 * Send the known checksums of a file, so that clients supporting them, like Maven
+	 * Resolver, don't request its checksum files. The file is not hashed for them, which
+	 * would delay the response.
+	 */
+	private void addChecksumHeaders(ArtifactPath artifactPath, HttpHeaders headers) {
 		try {
-			boolean deleted = this.storageService.delete(repositoryId, artifactPath);
-			if (deleted) {
-				return ResponseEntity.noContent().build();
+			String sha1 = this.storageService.knownChecksum(artifactPath, "sha1");
+			if (sha1 == null) {
+				// a checksum file, not known, or deleted in the meantime
+				return;
 			}
-			else {
-				return ResponseEntity.notFound().build();
+			headers.set(X_CHECKSUM_SHA1, sha1);
+			String sha256 = this.storageService.knownChecksum(artifactPath, "sha256");
+			if (sha256 != null) {
+				headers.set(X_CHECKSUM_SHA256, sha256);
 			}
 		}
 		catch (IOException e) {
-			return ResponseEntity.internalServerError().build();
+			// the checksum files can still be requested
+		}
+	}
+
+	private Resource retrieveChecksum(ArtifactPath artifactPath) {
+		try {
+			return this.storageService.retrieveChecksum(artifactPath);
+		}
+		catch (IOException e) {
+			// the upstream may still have it
+			return null;
 		}
 	}
 
-	private String extractArtifactPath(HttpServletRequest request, String repositoryId) {
-		String fullPath = request.getRequestURI();
-		// Remove the leading "/artifacts/" and repository ID to get the artifact path
-		String prefix = "/artifacts/" + repositoryId + "/";
-		if (fullPath.startsWith(prefix)) {
-			return fullPath.substring(prefix.length());
+	/**
+	 * Delete an artifact or a directory. A directory is removed from the repository at
+	 * once, but its contents are deleted in the background; the response is then
+	 * {@code 202 Accepted} with the location of the job to poll for progress.
+	 */
+	@DeleteMapping("/{repositoryId}/**")
+	public ResponseEntity<DeleteJob.Progress> deleteArtifact(HttpServletRequest request) {
+		// Extract artifact path from request
+		ArtifactPath artifactPath = ArtifactPath.from(request);
+		// Validate repository
+		if (artifactPath == null || !this.remoteRepositoryService.isRepositoryConfigured(artifactPath.repositoryId())) {
+			return ResponseEntity.notFound().build();
+		}
+
+		try {
+			DeleteJob job = this.storageService.delete(artifactPath);
+			if (job == null) {
+				return ResponseEntity.notFound().build();
+			}
+			if (job.isBackground()) {
+				URI location = ServletUriComponentsBuilder.fromContextPath(request)
+					.path("/delete-jobs/{id}")
+					.buildAndExpand(job.id())
+					.toUri();
+				return ResponseEntity.accepted().location(location).body(job.progress());
+			}
+			return ResponseEntity.noContent().build();
+		}
+		catch (IOException e) {
+			return ResponseEntity.internalServerError().build();
 		}
-		// Fallback - this shouldn't happen with proper routing
-		return fullPath.substring(fullPath.indexOf(repositoryId) + repositoryId.length() + 1);
 	}
 
-	private MediaType determineContentType(String artifactPath) {
+	static MediaType determineContentType(String artifactPath) {
 		if (artifactPath.endsWith(".jar")) {
-			return MediaType.parseMediaType("application/java-archive");
+			return APPLICATION_JAVA_ARCHIVE;
 		}
 		else if (artifactPath.endsWith(".pom") || artifactPath.endsWith(".xml")) {
 			return MediaType.APPLICATION_XML;
@@ -128,11 +294,64 @@ public class ArtifactController {
 			return MediaType.TEXT_PLAIN;
 		}
 		else if (artifactPath.endsWith(".asc")) {
-			return MediaType.parseMediaType("application/pgp-signature");
+			return APPLICATION_PGP_SIGNATURE;
 		}
 		else {
 			return MediaType.APPLICATION_OCTET_STREAM;
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Meters of the cache of one repository
+	 */
+	private static final class CacheMeters {
+
+		static final String HIT = "hit";
+
+		static final String COMPUTED = "computed";
+
+		private final Counter hits;
+
+		// checksum files computed from a stored file
+		private final Counter computed;
+
+		// lookups that missed the cache by the outcome of the upstream fetch
+		private final Map<FetchOutcome, Counter> lookups = new EnumMap<>(FetchOutcome.class);
+
+		private final Counter servedBytes;
+
+		CacheMeters(String repositoryId, MeterRegistry meterRegistry) {
+			this.hits = lookupCounter(repositoryId, HIT, meterRegistry);
+			this.computed = lookupCounter(repositoryId, COMPUTED, meterRegistry);
+			for (FetchOutcome outcome : FetchOutcome.values()) {
+				this.lookups.put(outcome, lookupCounter(repositoryId, cacheResult(outcome), meterRegistry));
+			}
+			this.servedBytes = Counter.builder("kagami.artifacts.served")
+				.description("Bytes of artifacts served to clients")
+				.baseUnit("bytes")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+		}
+
+		static String cacheResult(FetchOutcome outcome) {
+			return switch (outcome) {
+				case FETCHED -> "miss";
+				case NOT_FOUND -> "not_found";
+				case CACHED_NOT_FOUND -> "negative_hit";
+				case TIMED_OUT -> "timed_out";
+				case THROTTLED -> "throttled";
+				case REJECTED, REFUSED, FAILED -> "error";
+			};
+		}
+
+		private static Counter lookupCounter(String repositoryId, String result, MeterRegistry meterRegistry) {
+			return Counter.builder("kagami.cache.lookups")
+				.description("Artifact requests by whether they were served from the cache")
+				.tag("repository", repositoryId)
+				.tag("result", result)
+				.register(meterRegistry);
+		}
+
+	}
+
+}
@@ -0,0 +1,54 @@
+package am.ik.kagami.artifact.web;
+
+import am.ik.kagami.storage.DeleteJob;
+import am.ik.kagami.storage.DeleteJobService;
+import am.ik.kagami.token.web.RepositoryTokenValidator;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for the progress of background deletions
+ */
+@RestController
+public class DeleteJobController {
+
+	private final DeleteJobService deleteJobService;
+
+	private final RepositoryTokenValidator repositoryTokenValidator;
+
+	public DeleteJobController(DeleteJobService deleteJobService, RepositoryTokenValidator repositoryTokenValidator) {
+		this.deleteJobService = deleteJobService;
+		this.repositoryTokenValidator = repositoryTokenValidator;
+	}
+
+	/**
+	 * Get the progress of a directory deletion
+	 * @param id the job id returned in the {@code Location} header of the delete request
+	 * @return the progress, or 404 if the job is unknown, finished more than an hour ago
+	 * or deletes from a repository the token doesn't grant access to
+	 */
+	@GetMapping("/delete-jobs/{id}")
+	public ResponseEntity<DeleteJob.Progress> getDeleteJob(@PathVariable String id, Authentication authentication) {
+		DeleteJob job = this.deleteJobService.getJob(id);
+		if (job == null || !isAccessible(job, authentication)) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(job.progress());
+	}
+
+	/**
+	 * Whether the job can be seen with the given authentication; a token only sees the
+	 * jobs of the repositories it can access artifacts of
+	 */
+	private boolean isAccessible(DeleteJob job, Authentication authentication) {
+		if (authentication instanceof JwtAuthenticationToken token) {
+			return !this.repositoryTokenValidator.validate(token.getToken(), job.repositoryId()).hasErrors();
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,112 @@
+package am.ik.kagami.browser;
+
+import am.ik.kagami.browser.BrowserService.RepositoryEntry;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import org.springframework.util.StringUtils;
+
+/**
+ * Page request for browsing a directory.
+ * <p>
+ * The cursor is an opaque token holding the sort keys of the last entry of the previous
+ * page. The next page starts right after that position in the current listing, so entries
+ * stored or deleted between requests neither shift nor repeat the remaining entries as an
+ * offset would.
+ *
+ * @param cursor the cursor returned with the previous page (null for the first page)
+ * @param limit the maximum number of entries
+ * @param sort the sort order
+ * @param descending whether to reverse the sort order
+ * @param search case-insensitive substring the entry name must contain (null for any)
+ * @param type {@code file} or {@code directory} (null for both)
+ */
+public record BrowseQuery(String cursor, int limit, BrowseSort sort, boolean descending, String search, String type) {
+
+	/**
+	 * All entries sorted by name
+	 */
+	public static final BrowseQuery ALL = new BrowseQuery(null, Integer.MAX_VALUE, BrowseSort.NAME, false, null, null);
+
+	private static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+	private static final Base64.Decoder CURSOR_DECODER = Base64.getUrlDecoder();
+
+	public BrowseQuery {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Invalid limit: " + limit);
+		}
+		if (type != null && !type.equals("file") && !type.equals("directory")) {
+			throw new IllegalArgumentException("Invalid type: " + type);
+		}
+		if (sort == null) {
+			sort = BrowseSort.NAME;
+		}
+		if (!StringUtils.hasText(search)) {
+			search = null;
+		}
+	}
+
+	public boolean isFiltered() {
+		return this.search != null || this.type != null;
+	}
+
+	Comparator<RepositoryEntry> comparator() {
+		return this.descending ? this.sort.comparator().reversed() : this.sort.comparator();
+	}
+
+	Predicate<RepositoryEntry> filter() {
+		String search = this.search;
+		String type = this.type;
+		return entry -> (type == null || type.equals(entry.type()))
+				&& (search == null || containsIgnoreCase(entry.name(), search));
+	}
+
+	/**
+	 * Find the index of the first entry after the cursor
+	 * @param entries entries sorted in the order of this query
+	 * @return the index to start the page at
+	 */
+	int startIndex(List<RepositoryEntry> entries) {
+		if (this.cursor == null) {
+			return 0;
+		}
+		int index = Collections.binarySearch(entries, decodeCursor(this.cursor), comparator());
+		return (index >= 0) ? index + 1 : -index - 1;
+	}
+
+	String cursorOf(RepositoryEntry entry) {
+		// file names never contain '/'
+		String value = entry.name() + "/" + entry.lastModified() + "/" + ((entry.size() == null) ? "" : entry.size());
+		return CURSOR_ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static RepositoryEntry decodeCursor(String cursor) {
+		try {
+			String[] values = new String(CURSOR_DECODER.decode(cursor), StandardCharsets.UTF_8).split("/", -1);
+			if (values.length != 3) {
+				throw new IllegalArgumentException("Invalid cursor: " + cursor);
+			}
+			Long size = values[2].isEmpty() ? null : Long.valueOf(values[2]);
+			return new RepositoryEntry(values[0], null, null, size, Instant.parse(values[1]));
+		}
+		catch (DateTimeException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+		}
+	}
+
+	private static boolean containsIgnoreCase(String value, String search) {
+		for (int i = 0; i <= value.length() - search.length(); i++) {
+			if (value.regionMatches(true, i, search, 0, search.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
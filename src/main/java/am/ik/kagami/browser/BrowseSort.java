@@ -0,0 +1,48 @@
+package am.ik.kagami.browser;
+
+import am.ik.kagami.browser.BrowserService.RepositoryEntry;
+import java.util.Comparator;
+
+/**
+ * Sort orders of a directory listing. Entries with the same sort key are ordered by name
+ * so that every order is total and a cursor identifies a unique position.
+ */
+public enum BrowseSort {
+
+	NAME("name", Comparator.comparing(RepositoryEntry::name)),
+
+	LAST_MODIFIED("lastModified",
+			Comparator.comparing(RepositoryEntry::lastModified).thenComparing(RepositoryEntry::name)),
+
+	// directories have no size and come before files
+	SIZE("size", Comparator.comparingLong((RepositoryEntry entry) -> (entry.size() == null) ? -1 : entry.size())
+		.thenComparing(RepositoryEntry::name));
+
+	private final String value;
+
+	private final Comparator<RepositoryEntry> comparator;
+
+	BrowseSort(String value, Comparator<RepositoryEntry> comparator) {
+		this.value = value;
+		this.comparator = comparator;
+	}
+
+	public Comparator<RepositoryEntry> comparator() {
+		return this.comparator;
+	}
+
+	/**
+	 * Resolve a sort order from its request parameter value
+	 * @param value {@code name}, {@code lastModified} or {@code size}
+	 * @return the sort order
+	 */
+	public static BrowseSort of(String value) {
+		for (BrowseSort sort : values()) {
+			if (sort.value.equals(value)) {
+				return sort;
+			}
+		}
+		throw new IllegalArgumentException("Invalid sort: " + value);
+	}
+
+}
@@ -1,16 +1,30 @@
 package am.ik.kagami.browser;
 
 import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.storage.ArtifactDeletedEvent;
+import am.ik.kagami.storage.ArtifactStoredEvent;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -20,10 +34,24 @@ import org.springframework.util.StringUtils;
 @Service
 public class BrowserService {
 
+	// safety net for changes that are not published as events, e.g. files written by
+	// Maven Resolver for failed fetches
+	private static final Duration LISTING_CACHE_TTL = Duration.ofSeconds(30);
+
+	private static final long LISTING_CACHE_MAXIMUM_SIZE = 10_000;
+
+	// directories with fewer entries are not worth reading in parallel
+	private static final int PARALLEL_THRESHOLD = 256;
+
 	private final Path basePath;
 
 	private final KagamiProperties properties;
 
+	private final Cache<Path, DirectoryListing> listingCache = Caffeine.newBuilder()
+		.expireAfterWrite(LISTING_CACHE_TTL)
+		.maximumSize(LISTING_CACHE_MAXIMUM_SIZE)
+		.build();
+
 	public BrowserService(KagamiProperties properties) {
 		this.properties = properties;
 		this.basePath = Path.of(properties.storage().path()).toAbsolutePath().normalize();
@@ -72,9 +100,65 @@ public class BrowserService {
 	 * Browse repository contents at the specified path
 	 * @param repositoryId the repository identifier
 	 * @param path the path within the repository (null or empty for root)
-	 * @return browse result with entries
+	 * @return browse result with all entries sorted by name
 	 */
 	public BrowseResult browseRepository(String repositoryId, String path) throws IOException {
+		return browseRepository(repositoryId, path, BrowseQuery.ALL);
+	}
+
+	/**
+	 * Browse a page of the repository contents at the specified path. Directory listings
+	 * are cached until an artifact is stored or deleted below the directory, so paging
+	 * through a directory reads it from disk only once.
+	 * @param repositoryId the repository identifier
+	 * @param path the path within the repository (null or empty for root)
+	 * @param query the cursor, page size, sort order and filter
+	 * @return browse result with the entries of the page and the cursor of the next page
+	 */
+	public BrowseResult browseRepository(String repositoryId, String path, BrowseQuery query) throws IOException {
+		String normalizedPath = normalizePath(path);
+		List<RepositoryEntry> entries = sortedEntries(repositoryId, path, query);
+		Predicate<RepositoryEntry> filter = query.filter();
+		int start = query.startIndex(entries);
+		List<RepositoryEntry> page = new ArrayList<>(Math.min(query.limit(), entries.size() - start));
+		String nextCursor = null;
+		for (int i = start; i < entries.size(); i++) {
+			RepositoryEntry entry = entries.get(i);
+			if (!filter.test(entry)) {
+				continue;
+			}
+			if (page.size() == query.limit()) {
+				nextCursor = query.cursorOf(page.getLast());
+				break;
+			}
+			page.add(entry);
+		}
+		int totalCount = query.isFiltered() ? (int) entries.stream().filter(filter).count() : entries.size();
+		return new BrowseResult(repositoryId, normalizedPath, getParentPath(normalizedPath), page, totalCount,
+				nextCursor);
+	}
+
+	/**
+	 * Stream the repository contents at the specified path starting from the cursor of
+	 * the query. Unlike {@link #browseRepository(String, String, BrowseQuery)} entries
+	 * are not collected into a page, so the stream can be written to a response one entry
+	 * at a time.
+	 * @param repositoryId the repository identifier
+	 * @param path the path within the repository (null or empty for root)
+	 * @param query the cursor, maximum number of entries, sort order and filter
+	 * @return stream of entries
+	 */
+	public Stream<RepositoryEntry> streamRepository(String repositoryId, String path, BrowseQuery query)
+			throws IOException {
+		List<RepositoryEntry> entries = sortedEntries(repositoryId, path, query);
+		return entries.subList(query.startIndex(entries), entries.size())
+			.stream()
+			.filter(query.filter())
+			.limit(query.limit());
+	}
+
+	private List<RepositoryEntry> sortedEntries(String repositoryId, String path, BrowseQuery query)
+			throws IOException {
 		// Validate repository exists
 		if (!properties.repositories().containsKey(repositoryId)) {
 			throw new IllegalArgumentException("Repository not found: " + repositoryId);
@@ -94,26 +178,63 @@ public class BrowserService {
 			throw new IllegalArgumentException("Invalid path: " + path);
 		}
 
-		// Check if path exists
-		if (!Files.exists(targetPath)) {
-			return new BrowseResult(repositoryId, normalizedPath, getParentPath(normalizedPath), List.of());
+		DirectoryListing listing = this.listingCache.getIfPresent(targetPath);
+		if (listing == null) {
+			// Check if path exists
+			if (!Files.isDirectory(targetPath)) {
+				return List.of();
+			}
+			listing = new DirectoryListing(listDirectory(repoRoot, targetPath));
+			this.listingCache.put(targetPath, listing);
 		}
+		return listing.sortedBy(query.sort(), query.descending());
+	}
 
-		// List directory contents
-		List<RepositoryEntry> entries = new ArrayList<>();
-		try (Stream<Path> stream = Files.list(targetPath)) {
-			stream.sorted(Comparator.comparing(Path::getFileName)).forEach(entryPath -> {
-				try {
-					RepositoryEntry entry = createRepositoryEntry(repositoryId, repoRoot, entryPath);
-					entries.add(entry);
-				}
-				catch (IOException e) {
-					// Skip entries that can't be read
-				}
-			});
+	@EventListener
+	void onArtifactStored(ArtifactStoredEvent event) {
+		invalidateListings(event.artifactPath(), false);
+	}
+
+	@EventListener
+	void onArtifactDeleted(ArtifactDeletedEvent event) {
+		invalidateListings(event.artifactPath(), true);
+	}
+
+	/**
+	 * Invalidate the listings of the directories containing the given path. A stored
+	 * artifact may have created any of its parent directories and changes their last
+	 * modified time.
+	 */
+	private void invalidateListings(ArtifactPath artifactPath, boolean deleted) {
+		Path repoRoot = basePath.resolve(artifactPath.repositoryId()).normalize();
+		Path target = repoRoot.resolve(artifactPath.path()).normalize();
+		if (!target.startsWith(repoRoot)) {
+			return;
+		}
+		if (deleted) {
+			// listings of the deleted directory and its descendants
+			this.listingCache.asMap().keySet().removeIf(key -> key.startsWith(target));
+		}
+		for (Path directory = target.getParent(); directory != null
+				&& directory.startsWith(repoRoot); directory = directory.getParent()) {
+			this.listingCache.invalidate(directory);
 		}
+	}
 
-		return new BrowseResult(repositoryId, normalizedPath, getParentPath(normalizedPath), entries);
+	/**
+	 * List a directory sorted by name, reading the attributes of each entry with a single
+	 * call
+	 */
+	private List<RepositoryEntry> listDirectory(Path repoRoot, Path directory) throws IOException {
+		List<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			stream.forEach(paths::add);
+		}
+		Stream<Path> stream = (paths.size() < PARALLEL_THRESHOLD) ? paths.stream() : paths.parallelStream();
+		return stream.map(entryPath -> createRepositoryEntry(repoRoot, entryPath))
+			.filter(Objects::nonNull)
+			.sorted(Comparator.comparing(RepositoryEntry::name))
+			.toList();
 	}
 
 	/**
@@ -171,47 +292,60 @@ public class BrowserService {
 				sha256);
 	}
 
-	private RepositoryEntry createRepositoryEntry(String repositoryId, Path repoRoot, Path entryPath)
-			throws IOException {
+	private RepositoryEntry createRepositoryEntry(Path repoRoot, Path entryPath) {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(entryPath, BasicFileAttributes.class);
+		}
+		catch (IOException e) {
+			// Skip entries that can't be read
+			return null;
+		}
 		String relativePath = repoRoot.relativize(entryPath).toString().replace('\\', '/');
 		String name = entryPath.getFileName().toString();
-		String type = Files.isDirectory(entryPath) ? "directory" : "file";
-		Instant lastModified = Files.getLastModifiedTime(entryPath).toInstant();
-
-		if ("file".equals(type)) {
-			long size = Files.size(entryPath);
-			return new RepositoryEntry(name, type, relativePath, size, lastModified);
-		}
-		else {
-			return new RepositoryEntry(name, type, relativePath, null, lastModified);
+		Instant lastModified = attributes.lastModifiedTime().toInstant();
+		if (attributes.isDirectory()) {
+			return new RepositoryEntry(name, "directory", relativePath, null, lastModified);
 		}
+		return new RepositoryEntry(name, "file", relativePath, attributes.size(), lastModified);
 	}
 
 	private RepositoryStats calculateRepositoryStats(Path repoPath) throws IOException {
-		long artifactCount = 0;
-		long totalSize = 0;
-		Instant lastUpdated = Instant.MIN;
-
-		try (Stream<Path> stream = Files.walk(repoPath)) {
-			List<Path> files = stream.filter(Files::isRegularFile).toList();
-
-			for (Path file : files) {
+		long[] artifactCount = { 0 };
+		long[] totalSize = { 0 };
+		Instant[] lastUpdated = { Instant.MIN };
+
+		// walkFileTree provides the attributes of each file without further calls
+		Files.walkFileTree(repoPath, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				if (!attributes.isRegularFile()) {
+					return FileVisitResult.CONTINUE;
+				}
 				// Count only main artifacts (skip checksums and metadata)
 				String fileName = file.getFileName().toString();
 				if (!fileName.endsWith(".sha1") && !fileName.endsWith(".sha256") && !fileName.endsWith(".md5")
 						&& !fileName.equals("maven-metadata.xml") && !fileName.equals("_remote.repositories")) {
-					artifactCount++;
+					artifactCount[0]++;
 				}
 
-				totalSize += Files.size(file);
-				Instant modified = Files.getLastModifiedTime(file).toInstant();
-				if (modified.isAfter(lastUpdated)) {
-					lastUpdated = modified;
+				totalSize[0] += attributes.size();
+				Instant modified = attributes.lastModifiedTime().toInstant();
+				if (modified.isAfter(lastUpdated[0])) {
+					lastUpdated[0] = modified;
 				}
+				return FileVisitResult.CONTINUE;
 			}
-		}
 
-		return new RepositoryStats(artifactCount, totalSize, lastUpdated.equals(Instant.MIN) ? null : lastUpdated);
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				// Skip files that can't be read
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		return new RepositoryStats(artifactCount[0], totalSize[0],
+				lastUpdated[0].equals(Instant.MIN) ? null : lastUpdated[0]);
 	}
 
 	private String normalizePath(String path) {
@@ -258,7 +392,7 @@ public class BrowserService {
 	}
 
 	public record BrowseResult(String repositoryId, String currentPath, String parentPath,
-			List<RepositoryEntry> entries) {
+			List<RepositoryEntry> entries, int totalCount, String nextCursor) {
 	}
 
 	public record RepositoryEntry(String name, String type, String path,
@@ -273,4 +407,26 @@ public class BrowserService {
 	private record RepositoryStats(long artifactCount, long totalSize, Instant lastUpdated) {
 	}
 
+	/**
+	 * Cached directory listing sorted by name. Listings in other orders are derived on
+	 * first use and kept with the listing.
+	 */
+	private static final class DirectoryListing {
+
+		private final List<RepositoryEntry> entries;
+
+		private final Map<BrowseSort, List<RepositoryEntry>> sorted = new ConcurrentHashMap<>();
+
+		DirectoryListing(List<RepositoryEntry> entries) {
+			this.entries = entries;
+		}
+
+		List<RepositoryEntry> sortedBy(BrowseSort sort, boolean descending) {
+			List<RepositoryEntry> ascending = (sort == BrowseSort.NAME) ? this.entries
+					: this.sorted.computeIfAbsent(sort, key -> this.entries.stream().sorted(key.comparator()).toList());
+			return descending ? ascending.reversed() : ascending;
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -1,16 +1,23 @@
 package am.ik.kagami.browser.web;
 
+import am.ik.kagami.browser.BrowseQuery;
+import am.ik.kagami.browser.BrowseSort;
 import am.ik.kagami.browser.BrowserService;
 import am.ik.kagami.browser.BrowserService.BrowseResult;
 import am.ik.kagami.browser.BrowserService.FileInfo;
+import am.ik.kagami.browser.BrowserService.RepositoryEntry;
 import am.ik.kagami.browser.BrowserService.RepositoryInfo;
 import java.io.IOException;
 import java.util.List;
+import java.util.stream.Stream;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
 
 /**
  * REST controller for browsing repository contents
@@ -18,10 +25,17 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class BrowserController {
 
+	static final int DEFAULT_PAGE_SIZE = 500;
+
+	static final int MAX_PAGE_SIZE = 5000;
+
 	private final BrowserService browserService;
 
-	public BrowserController(BrowserService browserService) {
+	private final JsonMapper jsonMapper;
+
+	public BrowserController(BrowserService browserService, JsonMapper jsonMapper) {
 		this.browserService = browserService;
+		this.jsonMapper = jsonMapper;
 	}
 
 	/**
@@ -35,16 +49,27 @@ public class BrowserController {
 	}
 
 	/**
-	 * Browse repository contents at specified path
+	 * Browse a page of the repository contents at specified path
 	 * @param repositoryId the repository identifier
 	 * @param path the path to browse (optional, defaults to root)
+	 * @param cursor the {@code nextCursor} of the previous page (optional, defaults to
+	 * the first page)
+	 * @param limit the maximum number of entries to return
+	 * @param sort {@code name}, {@code lastModified} or {@code size}
+	 * @param order {@code asc} or {@code desc}
+	 * @param q case-insensitive substring of entry names (optional)
+	 * @param type {@code file} or {@code directory} (optional)
 	 * @return browse result with entries
 	 */
 	@GetMapping("/repositories/{repositoryId}/browse")
 	public ResponseEntity<BrowseResult> browseRepository(@PathVariable String repositoryId,
-			@RequestParam(required = false) String path) {
+			@RequestParam(required = false) String path, @RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+			@RequestParam(defaultValue = "name") String sort, @RequestParam(defaultValue = "asc") String order,
+			@RequestParam(required = false) String q, @RequestParam(required = false) String type) {
 		try {
-			BrowseResult result = this.browserService.browseRepository(repositoryId, path);
+			BrowseQuery query = browseQuery(cursor, Math.min(limit, MAX_PAGE_SIZE), sort, order, q, type);
+			BrowseResult result = this.browserService.browseRepository(repositoryId, path, query);
 			return ResponseEntity.ok(result);
 		}
 		catch (IllegalArgumentException e) {
@@ -55,6 +80,54 @@ public class BrowserController {
 		}
 	}
 
+	/**
+	 * Stream the repository contents at specified path as newline-delimited JSON, one
+	 * entry per line. The directory listing is read and sorted in memory as for a page,
+	 * but the entries are serialized one at a time as they are written, so large
+	 * directories can be exported without buffering the whole response body.
+	 * @param repositoryId the repository identifier
+	 * @param path the path to browse (optional, defaults to root)
+	 * @param cursor the cursor to start after (optional)
+	 * @param limit the maximum number of entries to return (optional, defaults to all)
+	 * @param sort {@code name}, {@code lastModified} or {@code size}
+	 * @param order {@code asc} or {@code desc}
+	 * @param q case-insensitive substring of entry names (optional)
+	 * @param type {@code file} or {@code directory} (optional)
+	 * @return streamed entries
+	 */
+	@GetMapping(path = "/repositories/{repositoryId}/browse", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamRepository(@PathVariable String repositoryId,
+			@RequestParam(required = false) String path, @RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit, @RequestParam(defaultValue = "name") String sort,
+			@RequestParam(defaultValue = "asc") String order, @RequestParam(required = false) String q,
+			@RequestParam(required = false) String type) {
+		Stream<RepositoryEntry> entries;
+		try {
+			BrowseQuery query = browseQuery(cursor, (limit == null) ? Integer.MAX_VALUE : limit, sort, order, q, type);
+			entries = this.browserService.streamRepository(repositoryId, path, query);
+		}
+		catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		catch (IOException e) {
+			return ResponseEntity.internalServerError().build();
+		}
+		StreamingResponseBody body = outputStream -> {
+			for (RepositoryEntry entry : (Iterable<RepositoryEntry>) entries::iterator) {
+				outputStream.write(this.jsonMapper.writeValueAsBytes(entry));
+				outputStream.write('\n');
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+	}
+
+	private static BrowseQuery browseQuery(String cursor, int limit, String sort, String order, String q, String type) {
+		if (!order.equals("asc") && !order.equals("desc")) {
+			throw new IllegalArgumentException("Invalid order: " + order);
+		}
+		return new BrowseQuery(cursor, limit, BrowseSort.of(sort), order.equals("desc"), q, type);
+	}
+
 	/**
 	 * Get detailed information about a file
 	 * @param repositoryId the repository identifier
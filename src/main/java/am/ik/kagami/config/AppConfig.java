@@ -4,12 +4,14 @@ import java.time.InstantSource;
 import org.springframework.boot.restclient.RestClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.zalando.logbook.spring.LogbookClientHttpRequestInterceptor;
 
 /**
  * Configuration class for Kagami application
  */
 @Configuration(proxyBeanMethods = false)
+@EnableScheduling
 class AppConfig {
 
 	@Bean
@@ -2,8 +2,13 @@ package am.ik.kagami.config;
 
 import am.ik.kagami.KagamiProperties;
 import am.ik.kagami.KagamiProperties.AuthenticationType;
+import am.ik.kagami.artifact.web.ArtifactAuthorizationManager;
+import am.ik.kagami.token.TokenSigner;
 import am.ik.kagami.token.web.BasicToBearerTokenResolver;
+import am.ik.kagami.token.web.CachingJwtDecoder;
+import am.ik.kagami.token.web.RepositoryTokenValidator;
 import jakarta.servlet.http.HttpServletRequest;
+import java.time.InstantSource;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -28,15 +33,14 @@ import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.NoOpPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.web.BearerTokenAuthenticationEntryPoint;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
 
-import static org.springframework.http.HttpMethod.DELETE;
-import static org.springframework.http.HttpMethod.GET;
-import static org.springframework.http.HttpMethod.HEAD;
 import static org.springframework.security.authorization.AuthorityAuthorizationManager.hasRole;
 import static org.springframework.security.authorization.AuthorizationManagers.anyOf;
 import static org.springframework.security.oauth2.core.authorization.OAuth2AuthorizationManagers.hasScope;
@@ -52,17 +56,8 @@ class SecurityConfig {
 		HttpSecurity security = http
 		// @formatter:off
 			.authorizeHttpRequests(authz -> {
-				properties.repositories().forEach((repositoryId, repository) -> {
-					if (repository.isPrivate()) {
-						authz.requestMatchers(GET, "/artifacts/%s/**".formatted(repositoryId)).access(anyOf(hasScope("artifacts:read"), hasRole("USER")));
-						authz.requestMatchers(HEAD, "/artifacts/%s/**".formatted(repositoryId)).access(anyOf(hasScope("artifacts:read"), hasRole("USER")));
-					}
-					else {
-						authz.requestMatchers(GET, "/artifacts/%s/**".formatted(repositoryId)).permitAll();
-						authz.requestMatchers(HEAD, "/artifacts/%s/**".formatted(repositoryId)).permitAll();
-					}
-					authz.requestMatchers(DELETE, "/artifacts/%s/**".formatted(repositoryId)).access(anyOf(hasScope("artifacts:delete"), hasRole("USER")));
-				});
+				authz.requestMatchers("/artifacts/**").access(new ArtifactAuthorizationManager(properties.repositories()));
+				authz.requestMatchers("/delete-jobs/**").access(anyOf(hasScope("artifacts:delete"), hasRole("USER")));
 				authz.requestMatchers(EndpointRequest.toAnyEndpoint()).permitAll()
 					.requestMatchers("/", "/login", "/logout", "/*.css", "/assets/**", "/fonts/**", "/favicon.svg", "/error", "/.well-known/**", "/openid/v1/jwks").permitAll()
 					.requestMatchers("/me").authenticated()
@@ -73,8 +68,11 @@ class SecurityConfig {
 				.authenticationEntryPoint(artifactsEntryPoint)
 				.jwt(jwt -> {
 				}))
-			.exceptionHandling(exception -> exception.defaultAuthenticationEntryPointFor(artifactsEntryPoint,
-					PathPatternRequestMatcher.withDefaults().matcher("/artifacts/**")))
+			.exceptionHandling(exception -> exception
+				.defaultAuthenticationEntryPointFor(artifactsEntryPoint,
+						PathPatternRequestMatcher.withDefaults().matcher("/artifacts/**"))
+				.defaultAuthenticationEntryPointFor(artifactsEntryPoint,
+						PathPatternRequestMatcher.withDefaults().matcher("/delete-jobs/**")))
 			.csrf(csrf -> csrf.ignoringRequestMatchers("/artifacts/**", "/token"))
 			.logout(logout -> logout.logoutUrl("/logout")
 				.logoutSuccessUrl("/login?logout")
@@ -92,6 +90,19 @@ class SecurityConfig {
 		return security.build();
 	}
 
+	/**
+	 * Decoder for tokens issued by {@link TokenSigner}. Verified tokens are cached until
+	 * they expire so that the signature is not verified on every request of a build.
+	 */
+	@Bean
+	JwtDecoder jwtDecoder(KagamiProperties properties, TokenSigner tokenSigner,
+			RepositoryTokenValidator repositoryTokenValidator, HttpServletRequest request,
+			InstantSource instantSource) {
+		NimbusJwtDecoder delegate = new NimbusJwtDecoder(tokenSigner.keyRing().jwtProcessor());
+		return new CachingJwtDecoder(delegate, repositoryTokenValidator, request, instantSource,
+				properties.jwt().cache().maximumSize());
+	}
+
 	/**
 	 * Entry point for artifact endpoints that advertises the Basic authentication scheme
 	 * in addition to Bearer so that Maven clients configured with the standard
@@ -0,0 +1,56 @@
+package am.ik.kagami.repository;
+
+/**
+ * Outcome of fetching a file from a remote repository
+ */
+public enum FetchOutcome {
+
+	/**
+	 * The file was downloaded and stored
+	 */
+	FETCHED,
+
+	/**
+	 * The remote repository does not have the file
+	 */
+	NOT_FOUND,
+
+	/**
+	 * The file was not found by an earlier request and Maven Resolver has not tried again
+	 * because its update interval has not elapsed
+	 */
+	CACHED_NOT_FOUND,
+
+	/**
+	 * The file was downloaded but not stored because it did not match its checksum
+	 */
+	REJECTED,
+
+	/**
+	 * The remote repository refused the request with a client error other than not found,
+	 * e.g. because the credentials are wrong, which a retry doesn't change
+	 */
+	REFUSED,
+
+	/**
+	 * The request stopped waiting for the fetch because its deadline passed; the fetch
+	 * may still finish in the background
+	 */
+	TIMED_OUT,
+
+	/**
+	 * The file was not fetched because the fetch would have waited too long for the rate
+	 * limit of the remote repository
+	 */
+	THROTTLED,
+
+	/**
+	 * The file could not be fetched, e.g. because the remote repository is unavailable
+	 */
+	FAILED;
+
+	String tagValue() {
+		return name().toLowerCase();
+	}
+
+}
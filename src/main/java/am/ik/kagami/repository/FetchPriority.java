@@ -0,0 +1,23 @@
+package am.ik.kagami.repository;
+
+/**
+ * Priority of fetching a file from a remote repository whose rate of fetches is limited
+ */
+public enum FetchPriority {
+
+	/**
+	 * A client is waiting for the file
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Background work, e.g. a repair of the integrity scrubber, which waits for
+	 * interactive fetches
+	 */
+	BACKGROUND;
+
+	String tagValue() {
+		return name().toLowerCase();
+	}
+
+}
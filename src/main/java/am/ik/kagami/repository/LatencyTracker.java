@@ -0,0 +1,50 @@
+package am.ik.kagami.repository;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latencies of a remote repository to estimate a percentile.
+ * <p>
+ * The window is small, so that the estimate follows changes of the upstream latency
+ * within a few hundred requests, and sorting a copy of it is cheap compared to a request.
+ */
+class LatencyTracker {
+
+	static final int WINDOW_SIZE = 256;
+
+	// fewer samples do not give a meaningful tail percentile
+	static final int MIN_SAMPLES = 20;
+
+	private final long[] samples = new long[WINDOW_SIZE];
+
+	private int count;
+
+	private int next;
+
+	synchronized void record(long nanos) {
+		this.samples[this.next] = nanos;
+		this.next = (this.next + 1) % WINDOW_SIZE;
+		if (this.count < WINDOW_SIZE) {
+			this.count++;
+		}
+	}
+
+	/**
+	 * Estimate a percentile of the recorded latencies
+	 * @param percentile the percentile between 0 and 1
+	 * @return the latency in nanoseconds, or -1 if too few latencies have been recorded
+	 */
+	long percentile(double percentile) {
+		long[] sorted;
+		synchronized (this) {
+			if (this.count < MIN_SAMPLES) {
+				return -1;
+			}
+			sorted = Arrays.copyOf(this.samples, this.count);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.clamp(index, 0, sorted.length - 1)];
+	}
+
+}
@@ -0,0 +1,12 @@
+package am.ik.kagami.repository;
+
+/**
+ * A file in a remote repository as described by the answer to a HEAD request
+ *
+ * @param contentLength the size of the file, or -1 if the repository did not send it
+ * @param sha1 the SHA-1 checksum of the file in lower case hex, or null if the repository
+ * did not send it
+ */
+public record RemoteFile(long contentLength, String sha1) {
+
+}
@@ -0,0 +1,32 @@
+package am.ik.kagami.repository;
+
+/**
+ * Answer of a remote repository to a HEAD request for a file
+ *
+ * @param outcome {@link FetchOutcome#FETCHED} if the repository has the file,
+ * {@link FetchOutcome#NOT_FOUND} if it does not, or why it could not be asked
+ * @param file the file if the repository has it, otherwise null
+ */
+public record RemoteHead(FetchOutcome outcome, RemoteFile file) {
+
+	static final RemoteHead NOT_FOUND = new RemoteHead(FetchOutcome.NOT_FOUND, null);
+
+	static final RemoteHead REFUSED = new RemoteHead(FetchOutcome.REFUSED, null);
+
+	static final RemoteHead THROTTLED = new RemoteHead(FetchOutcome.THROTTLED, null);
+
+	static final RemoteHead FAILED = new RemoteHead(FetchOutcome.FAILED, null);
+
+	static RemoteHead found(RemoteFile file) {
+		return new RemoteHead(FetchOutcome.FETCHED, file);
+	}
+
+	/**
+	 * @return whether the repository answered whether it has the file, which may be
+	 * reused
+	 */
+	boolean isAnswer() {
+		return this.outcome == FetchOutcome.FETCHED || this.outcome == FetchOutcome.NOT_FOUND;
+	}
+
+}
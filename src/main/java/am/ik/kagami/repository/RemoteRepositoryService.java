@@ -1,19 +1,60 @@
 package am.ik.kagami.repository;
 
 import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactCoordinates;
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.storage.ArtifactStoredEvent;
+import am.ik.kagami.storage.PartialFile;
+import am.ik.kagami.storage.ResumableFile;
 import am.ik.kagami.storage.StorageService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.apache.http.client.HttpResponseException;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystem;
@@ -26,10 +67,17 @@ import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.Proxy;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.ChecksumFailureException;
 import org.eclipse.aether.util.repository.AuthenticationBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClient;
@@ -43,6 +91,22 @@ public class RemoteRepositoryService {
 
 	private static final Logger logger = LoggerFactory.getLogger(RemoteRepositoryService.class);
 
+	// sent by Artifactory and Nexus, and by Kagami itself
+	static final String X_CHECKSUM_SHA1 = "X-Checksum-SHA1";
+
+	// configuration keys of Maven Resolver that are not exposed as constants
+	static final String CONNECTOR_THREADS = "aether.connector.basic.threads";
+
+	static final String NAMED_LOCK_FACTORY = "aether.syncContext.named.factory";
+
+	static final String NAMED_LOCK_NAME_MAPPER = "aether.syncContext.named.nameMapper";
+
+	static final String NAMED_LOCK_TIME = "aether.syncContext.named.time";
+
+	static final String NAMED_LOCK_TIME_UNIT = "aether.syncContext.named.time.unit";
+
+	private static final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+
 	private final RepositorySystem repositorySystem;
 
 	private final StorageService storageService;
@@ -51,22 +115,48 @@ public class RemoteRepositoryService {
 
 	private final Map<String, RepositorySystemSession> sessions;
 
-	private final RestClient restClient;
+	private final Map<String, UpstreamTransport> transports;
 
 	private final KagamiProperties kagamiProperties;
 
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final Map<String, UpstreamMeters> meters;
+
+	private final ObservationRegistry observationRegistry;
+
+	private final Map<String, UpstreamHedger> hedgers;
+
+	private final Map<String, UpstreamRetrier> retriers;
+
+	private final Map<String, UpstreamLimiter> limiters;
+
+	// fetches in progress, which further requests for the same file wait for
+	private final Map<ArtifactPath, SharedFetch> fetches = new ConcurrentHashMap<>();
+
+	// answers to HEAD requests by repository; an empty answer means not found
+	private final Map<String, Cache<String, RemoteHead>> heads;
+
 	public RemoteRepositoryService(KagamiProperties properties, StorageService storageService,
-			RestClient.Builder restClientBuilder) {
+			RestClient.Builder restClientBuilder, ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+			ObservationRegistry observationRegistry) {
 		this.storageService = storageService;
+		this.eventPublisher = eventPublisher;
+		this.observationRegistry = observationRegistry;
 		this.repositories = new ConcurrentHashMap<>();
 		this.sessions = new ConcurrentHashMap<>();
+		this.meters = new ConcurrentHashMap<>();
+		this.hedgers = new ConcurrentHashMap<>();
+		this.retriers = new ConcurrentHashMap<>();
+		this.limiters = new ConcurrentHashMap<>();
+		this.heads = new ConcurrentHashMap<>();
 
 		// Store properties for later use in RestClient requests
 		this.kagamiProperties = properties;
 
 		// Determine proxy configuration early for both Maven Resolver and RestClient
 		String proxyUrl = determineProxyUrl(properties);
-		this.restClient = restClientBuilder.build();
+		this.transports = new ConcurrentHashMap<>();
 
 		// Initialize Maven Resolver components
 		this.repositorySystem = new RepositorySystemSupplier().get();
@@ -89,20 +179,41 @@ public class RemoteRepositoryService {
 					// Add proxy support if configured
 					if (StringUtils.hasText(proxyUrl)) {
 						try {
-							URL url = URI.create(proxyUrl).toURL();
-							repoBuilder.setProxy(new Proxy(url.getProtocol(), url.getHost(), url.getPort()));
-							logger.debug("Using proxy {} for repository {}", proxyUrl, repoId);
+							URI proxy = URI.create(proxyUrl);
+							URL url = proxy.toURL();
+							UpstreamTransport.ProxyCredentials credentials = UpstreamTransport.ProxyCredentials
+								.of(proxy);
+							Authentication proxyAuth = credentials != null
+									? new AuthenticationBuilder().addUsername(credentials.username())
+										.addPassword(credentials.password())
+										.build()
+									: null;
+							repoBuilder.setProxy(new Proxy(url.getProtocol(), url.getHost(),
+									UpstreamTransport.proxyPort(proxy), proxyAuth));
+							logger.debug("Using proxy {} for repository {}", UpstreamTransport.redact(proxyUrl),
+									repoId);
 						}
-						catch (MalformedURLException e) {
-							logger.warn("Invalid proxy URL: {}", proxyUrl, e);
+						catch (MalformedURLException | IllegalArgumentException e) {
+							logger.warn("Invalid proxy URL: {}", UpstreamTransport.redact(proxyUrl), e);
 						}
 					}
 
 					RemoteRepository remoteRepo = repoBuilder.build();
 					this.repositories.put(repoId, remoteRepo);
+					UpstreamTransport transport = new UpstreamTransport(repoId, repo,
+							StringUtils.hasText(proxyUrl) ? proxyUrl : null, restClientBuilder, meterRegistry);
+					this.transports.put(repoId, transport);
+
+					UpstreamRetrier retrier = new UpstreamRetrier(repoId, repo.fetch().retry(), meterRegistry);
+					this.retriers.put(repoId, retrier);
 
 					// Create repository-specific session
-					this.sessions.put(repoId, createSession(repoId));
+					this.sessions.put(repoId, createSession(repoId, repo.resolver(), transport, retrier));
+					this.meters.put(repoId, new UpstreamMeters(repoId, meterRegistry));
+					this.hedgers.put(repoId, new UpstreamHedger(repoId, repo, meterRegistry));
+					this.limiters.put(repoId, new UpstreamLimiter(repoId, repo.fetch().rateLimit(), meterRegistry));
+					this.heads.put(repoId,
+							Caffeine.newBuilder().maximumSize(10_000).expireAfterWrite(repo.fetch().headTtl()).build());
 				}
 			});
 		}
@@ -110,28 +221,231 @@ public class RemoteRepositoryService {
 
 	/**
 	 * Fetch an artifact from a remote repository using Maven Resolver
-	 * @param repositoryId the repository identifier
-	 * @param artifactPath the relative path of the artifact
+	 * @param artifactPath the path of the artifact
 	 * @return true if the artifact was successfully fetched and stored, false otherwise
 	 */
-	public boolean fetchArtifact(String repositoryId, String artifactPath) {
+	public boolean fetchArtifact(ArtifactPath artifactPath) {
+		return fetch(artifactPath) == FetchOutcome.FETCHED;
+	}
+
+	/**
+	 * Fetch an artifact from a remote repository for a client
+	 * @param artifactPath the path of the artifact
+	 * @return the outcome
+	 * @see #fetch(ArtifactPath, FetchPriority)
+	 */
+	public FetchOutcome fetch(ArtifactPath artifactPath) {
+		return fetch(artifactPath, FetchPriority.INTERACTIVE);
+	}
+
+	/**
+	 * Fetch an artifact from a remote repository using Maven Resolver. Concurrent
+	 * requests for the same file wait for one fetch, each until the deadline configured
+	 * for the repository, and the fetch has the highest priority of theirs. A fetch that
+	 * no request waits for anymore is cancelled or finished in the background, as
+	 * configured; one finished in the background is cancelled if it takes another
+	 * deadline.
+	 * @param artifactPath the path of the artifact
+	 * @param priority the priority of the fetch if the rate of fetches from the
+	 * repository is limited
+	 * @return the outcome; {@link FetchOutcome#NOT_FOUND} if the repository is not
+	 * configured, {@link FetchOutcome#THROTTLED} if the fetch would wait too long for the
+	 * rate limit, and {@link FetchOutcome#TIMED_OUT} if the deadline has passed
+	 */
+	public FetchOutcome fetch(ArtifactPath artifactPath, FetchPriority priority) {
+		String repositoryId = artifactPath.repositoryId();
 		RemoteRepository repository = this.repositories.get(repositoryId);
 		RepositorySystemSession session = this.sessions.get(repositoryId);
 		if (repository == null || session == null) {
-			return false;
+			return FetchOutcome.NOT_FOUND;
+		}
+		KagamiProperties.Repository.Fetch settings = this.kagamiProperties.repositories().get(repositoryId).fetch();
+		UpstreamMeters meters = this.meters.get(repositoryId);
+		SharedFetch[] started = new SharedFetch[1];
+		SharedFetch fetch = this.fetches.compute(artifactPath, (path, existing) -> {
+			if (existing != null && existing.join(priority)) {
+				return existing;
+			}
+			started[0] = new SharedFetch(path,
+					shared -> fetchNow(artifactPath, repository, session, meters, shared::priority));
+			started[0].join(priority);
+			return started[0];
+		});
+		if (fetch == started[0]) {
+			Thread.ofVirtual().name("upstream-fetch").start(contextSnapshotFactory.captureAll().wrap(fetch.task));
+		}
+		else {
+			meters.joined.increment();
+		}
+		FetchOutcome outcome = FetchOutcome.FAILED;
+		try {
+			outcome = fetch.task.get(settings.deadline().toNanos(), TimeUnit.NANOSECONDS);
 		}
+		catch (TimeoutException e) {
+			logger.debug("Stopped waiting for {} after {}", artifactPath, settings.deadline());
+			outcome = FetchOutcome.TIMED_OUT;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException | CancellationException e) {
+			logger.debug("Failed to fetch {}", artifactPath, e);
+		}
+		finally {
+			boolean finish = finishesWhenAbandoned(artifactPath, settings.abandoned());
+			if (fetch.leave(finish)) {
+				meters.abandoned.get(finish ? "finished" : "cancelled").increment();
+				if (finish) {
+					fetch.cancelAfter(settings.deadline(), meters.abandoned.get("expired"));
+				}
+			}
+		}
+		return outcome;
+	}
 
+	static boolean finishesWhenAbandoned(ArtifactPath artifactPath, KagamiProperties.Repository.AbandonPolicy policy) {
+		return switch (policy) {
+			case CANCEL -> false;
+			case FINISH -> true;
+			// metadata and snapshots change, so they may be stale by the time they are
+			// requested again
+			case FINISH_RELEASES ->
+				artifactPath.coordinates() != null && !artifactPath.coordinates().version().endsWith("-SNAPSHOT");
+		};
+	}
+
+	private FetchOutcome fetchNow(ArtifactPath artifactPath, RemoteRepository repository,
+			RepositorySystemSession session, UpstreamMeters meters, Supplier<FetchPriority> priority) {
+		String repositoryId = artifactPath.repositoryId();
+		Observation observation = Observation.createNotStarted("kagami.upstream.fetches", this.observationRegistry)
+			.contextualName("fetch " + repositoryId)
+			.lowCardinalityKeyValue("repository", repositoryId)
+			.lowCardinalityKeyValue("outcome", FetchOutcome.FAILED.tagValue())
+			.highCardinalityKeyValue("artifact.path", artifactPath.path())
+			.start();
+		FetchOutcome outcome = FetchOutcome.FAILED;
+		try (Observation.Scope scope = observation.openScope()) {
+			if (!this.limiters.get(repositoryId).acquire(priority)) {
+				logger.debug("Rate limit of {} exceeded, not fetching {}", repositoryId, artifactPath);
+				outcome = FetchOutcome.THROTTLED;
+				return outcome;
+			}
+			meters.inFlight.incrementAndGet();
+			try {
+				// a retry of a direct download resumes what the failed attempt downloaded
+				outcome = this.retriers.get(repositoryId)
+					.execute(() -> doFetch(artifactPath, repository, session, meters));
+			}
+			finally {
+				meters.inFlight.decrementAndGet();
+			}
+			return outcome;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return outcome;
+		}
+		finally {
+			observation.lowCardinalityKeyValue("outcome", outcome.tagValue()).stop();
+		}
+	}
+
+	/**
+	 * Describe a file in a remote repository without downloading it. Answers are reused
+	 * for the configured time, and concurrent requests for the same file share one
+	 * request to the repository.
+	 * @param artifactPath the path of the file
+	 * @return the answer; {@link FetchOutcome#NOT_FOUND} if the repository is not
+	 * configured
+	 */
+	public RemoteHead head(ArtifactPath artifactPath) {
+		String repositoryId = artifactPath.repositoryId();
+		RemoteRepository repository = this.repositories.get(repositoryId);
+		if (repository == null) {
+			return RemoteHead.NOT_FOUND;
+		}
+		UpstreamMeters meters = this.meters.get(repositoryId);
+		Cache<String, RemoteHead> heads = this.heads.get(repositoryId);
+		RemoteHead remoteHead = heads.getIfPresent(artifactPath.path());
+		if (remoteHead != null) {
+			meters.heads.get("cached").increment();
+			return remoteHead;
+		}
+		// failures are not cached, so they are passed on beside the cache
+		RemoteHead[] failure = new RemoteHead[1];
+		remoteHead = heads.get(artifactPath.path(), path -> {
+			RemoteHead answer = requestHead(artifactPath, repository);
+			meters.heads.get(answer.outcome() == FetchOutcome.FETCHED ? "found"
+					: answer.outcome() == FetchOutcome.NOT_FOUND ? "not_found" : "error")
+				.increment();
+			if (!answer.isAnswer()) {
+				failure[0] = answer;
+				return null;
+			}
+			return answer;
+		});
+		if (remoteHead != null) {
+			return remoteHead;
+		}
+		// another request's HEAD failed before this one could share it
+		return failure[0] != null ? failure[0] : RemoteHead.FAILED;
+	}
+
+	private RemoteHead requestHead(ArtifactPath artifactPath, RemoteRepository repository) {
+		try {
+			if (!this.limiters.get(artifactPath.repositoryId()).acquire(() -> FetchPriority.INTERACTIVE)) {
+				logger.debug("Rate limit of {} exceeded, not sending HEAD {}", artifactPath.repositoryId(),
+						artifactPath);
+				return RemoteHead.THROTTLED;
+			}
+			Response<RemoteFile> response = exchange(HttpMethod.HEAD, artifactPath.repositoryId(), repository,
+					artifactPath.path(), (headers, body) -> {
+						String sha1 = headers.getFirst(X_CHECKSUM_SHA1);
+						return new RemoteFile(headers.getContentLength(),
+								sha1 != null ? parseChecksum(sha1.getBytes(StandardCharsets.US_ASCII)) : null);
+					});
+			if (response.status().is2xxSuccessful()) {
+				return RemoteHead.found(response.body());
+			}
+			if (response.status().value() == 404) {
+				return RemoteHead.NOT_FOUND;
+			}
+			logger.debug("Status {} for HEAD {}", response.status(), artifactPath);
+			return isRefused(response.status().value()) ? RemoteHead.REFUSED : RemoteHead.FAILED;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (Exception e) {
+			logger.debug("Failed to send HEAD {}: {}", artifactPath, e.getMessage());
+		}
+		return RemoteHead.FAILED;
+	}
+
+	private FetchOutcome doFetch(ArtifactPath artifactPath, RemoteRepository repository,
+			RepositorySystemSession session, UpstreamMeters meters) {
 		try {
 			// Parse artifact path to create artifact coordinates
 			ArtifactCoordinates coords = parseArtifactPath(artifactPath);
 			if (coords == null) {
 				// If it's not a standard artifact path, fall back to direct HTTP download
 				logger.debug("Path is not a standard artifact, using HTTP for: {}", artifactPath);
-				boolean success = fetchNonStandardFile(repositoryId, artifactPath, repository);
-				if (!success) {
-					cleanupEmptyDirectories(repositoryId, artifactPath);
+				FetchOutcome outcome = download(artifactPath, repository, meters, false);
+				if (outcome != FetchOutcome.FETCHED) {
+					cleanupEmptyDirectories(artifactPath);
 				}
-				return success;
+				return outcome;
+			}
+
+			KagamiProperties.Repository.Fetch fetch = this.kagamiProperties.repositories()
+				.get(artifactPath.repositoryId())
+				.fetch();
+			if (fetch.engine() == KagamiProperties.Repository.FetchEngine.DIRECT) {
+				FetchOutcome outcome = download(artifactPath, repository, meters, fetch.verifyChecksums());
+				if (outcome != FetchOutcome.FETCHED) {
+					cleanupEmptyDirectories(artifactPath);
+				}
+				return outcome;
 			}
 
 			// Create artifact
@@ -144,59 +458,515 @@ public class RemoteRepositoryService {
 			artifactRequest.setRepositories(List.of(repository));
 
 			// Resolve artifact
-			ArtifactResult result = this.repositorySystem.resolveArtifact(session, artifactRequest);
+			ArtifactResult result = resolveArtifact(session, artifactRequest, artifactPath);
 
 			if (result.isResolved() && result.getArtifact() != null) {
 				File resolvedFile = result.getArtifact().getFile();
 				if (resolvedFile != null && resolvedFile.exists()) {
 					// Maven Resolver has already stored the artifact in
 					// repository-specific directory
-					return true;
+					meters.fetchedBytes.increment(resolvedFile.length());
+					this.eventPublisher.publishEvent(new ArtifactStoredEvent(artifactPath));
+					return FetchOutcome.FETCHED;
 				}
 			}
 		}
+		catch (ArtifactResolutionException e) {
+			logger.debug("Failed to fetch artifact via Maven Resolver: {}", artifactPath, e);
+			cleanupEmptyDirectories(artifactPath);
+			return outcomeOf(e);
+		}
 		catch (Exception e) {
-			// Log error but don't throw - return false to indicate failure
+			// Log error but don't throw - report a failure instead
 			logger.debug("Failed to fetch artifact via Maven Resolver: {}", artifactPath, e);
-			cleanupEmptyDirectories(repositoryId, artifactPath);
+			cleanupEmptyDirectories(artifactPath);
 		}
 
-		return false;
+		return FetchOutcome.FAILED;
+	}
+
+	private ArtifactCoordinates parseArtifactPath(ArtifactPath artifactPath) {
+		Observation observation = Observation.createNotStarted("kagami.artifact.parse", this.observationRegistry)
+			.contextualName("parse artifact path")
+			.start();
+		try {
+			ArtifactCoordinates coords = artifactPath.coordinates();
+			observation.lowCardinalityKeyValue("standard", String.valueOf(coords != null));
+			return coords;
+		}
+		finally {
+			observation.stop();
+		}
+	}
+
+	private ArtifactResult resolveArtifact(RepositorySystemSession session, ArtifactRequest artifactRequest,
+			ArtifactPath artifactPath) throws ArtifactResolutionException {
+		Observation observation = Observation.createNotStarted("kagami.resolver.resolve", this.observationRegistry)
+			.contextualName("resolve " + artifactPath.repositoryId())
+			.lowCardinalityKeyValue("repository", artifactPath.repositoryId())
+			.lowCardinalityKeyValue("outcome", FetchOutcome.FAILED.tagValue())
+			.highCardinalityKeyValue("artifact", artifactRequest.getArtifact().toString())
+			.start();
+		try (Observation.Scope scope = observation.openScope()) {
+			ArtifactResult result = this.repositorySystem.resolveArtifact(session, artifactRequest);
+			if (result.isResolved()) {
+				observation.lowCardinalityKeyValue("outcome", FetchOutcome.FETCHED.tagValue());
+			}
+			File resolvedFile = result.getArtifact() != null ? result.getArtifact().getFile() : null;
+			if (resolvedFile != null) {
+				observation.highCardinalityKeyValue("bytes", String.valueOf(resolvedFile.length()));
+			}
+			return result;
+		}
+		catch (ArtifactResolutionException e) {
+			observation.lowCardinalityKeyValue("outcome", outcomeOf(e).tagValue());
+			observation.error(e);
+			throw e;
+		}
+		finally {
+			observation.stop();
+		}
+	}
+
+	static FetchOutcome outcomeOf(ArtifactResolutionException e) {
+		for (Exception exception : e.getResult().getExceptions()) {
+			if (exception instanceof ArtifactNotFoundException notFound) {
+				return notFound.isFromCache() ? FetchOutcome.CACHED_NOT_FOUND : FetchOutcome.NOT_FOUND;
+			}
+		}
+		for (Exception exception : e.getResult().getExceptions()) {
+			if (exception.getCause() instanceof ChecksumFailureException) {
+				return FetchOutcome.REJECTED;
+			}
+		}
+		for (Exception exception : e.getResult().getExceptions()) {
+			for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+				if (cause instanceof HttpResponseException response && isRefused(response.getStatusCode())) {
+					return FetchOutcome.REFUSED;
+				}
+			}
+		}
+		return FetchOutcome.FAILED;
 	}
 
 	/**
-	 * Fetch non-standard files (like maven-metadata.xml) using direct HTTP
+	 * Whether a status is a client error that a retry doesn't change. Not found is
+	 * answered separately, and too many requests may be answered differently later.
 	 */
-	private boolean fetchNonStandardFile(String repositoryId, String artifactPath, RemoteRepository repository) {
-		// For non-standard files like maven-metadata.xml, we still need HTTP client
-		// Maven Resolver doesn't handle these directly
-		try {
-			// Get repository configuration for authentication
-			KagamiProperties.Repository repoConfig = this.kagamiProperties.repositories().get(repositoryId);
-			byte[] responseBytes = this.restClient.get()
-				.uri(repository.getUrl() + "/{artifactPath}", artifactPath)
-				.headers(headers -> {
-					if (repoConfig != null && StringUtils.hasText(repoConfig.username())
-							&& StringUtils.hasText(repoConfig.password())) {
-						headers.setBasicAuth(repoConfig.username(), repoConfig.password());
-					}
-				})
-				.retrieve()
-				.body(byte[].class);
-			if (responseBytes != null && responseBytes.length > 0) {
-				try (InputStream is = new ByteArrayInputStream(responseBytes)) {
-					this.storageService.store(repositoryId, artifactPath, is);
-					return true;
+	static boolean isRefused(int status) {
+		return status >= 400 && status < 500 && status != 404 && status != 429;
+	}
+
+	/**
+	 * Download a file using direct HTTP, streaming it into the storage. Maven Resolver
+	 * doesn't handle non-standard files like maven-metadata.xml, and the direct fetch
+	 * engine uses this for artifacts too.
+	 * @param verifyChecksum whether to verify the file against its SHA-1 checksum file,
+	 * which is then stored as well
+	 */
+	private FetchOutcome download(ArtifactPath artifactPath, RemoteRepository repository, UpstreamMeters meters,
+			boolean verifyChecksum) {
+		Observation observation = Observation.createNotStarted("kagami.upstream.download", this.observationRegistry)
+			.contextualName("download " + artifactPath.repositoryId())
+			.lowCardinalityKeyValue("repository", artifactPath.repositoryId())
+			// replaced once the upstream answers
+			.lowCardinalityKeyValue("upstream.status", "none")
+			.highCardinalityKeyValue("artifact.path", artifactPath.path())
+			.start();
+		AtomicReference<Future<byte[]>> checksum = new AtomicReference<>();
+		// set if the rest of a large file is downloaded in ranges
+		AtomicReference<FirstRange> ranged = new AtomicReference<>();
+		KagamiProperties.Repository.Fetch fetch = this.kagamiProperties.repositories()
+			.get(artifactPath.repositoryId())
+			.fetch();
+		ResumableFile resumable = null;
+		try (Observation.Scope scope = observation.openScope()) {
+			// null if another request is downloading the file already
+			ResumableFile partial = fetch.resume().enabled()
+					? this.storageService.resume(artifactPath, fetch.resume().maxAge()) : null;
+			resumable = partial;
+			boolean resuming = partial != null && partial.length() > 0;
+			Consumer<HttpHeaders> requestHeaders;
+			if (resuming) {
+				// the repository sends the whole file instead if it has changed since
+				requestHeaders = headers -> {
+					headers.set(HttpHeaders.RANGE, "bytes=" + partial.length() + "-");
+					headers.set(HttpHeaders.IF_RANGE, partial.validator());
+				};
+			}
+			else if (fetch.parallel().enabled()) {
+				// the first range tells the size of the file, so that the rest of a large
+				// file can be requested over more connections without waiting for another
+				// round trip
+				requestHeaders = headers -> headers.set(HttpHeaders.RANGE,
+						"bytes=0-" + (fetch.parallel().chunkSize().toBytes() - 1));
+			}
+			else {
+				requestHeaders = headers -> {
+				};
+			}
+			Response<Long> response = exchange(HttpMethod.GET, artifactPath.repositoryId(), repository,
+					artifactPath.path(), requestHeaders, (headers, body) -> {
+						PushbackInputStream pushback = new PushbackInputStream(body);
+						int first = pushback.read();
+						if (first < 0) {
+							return 0L;
+						}
+						pushback.unread(first);
+						if (verifyChecksum) {
+							checksum.set(expectedChecksum(artifactPath, repository, headers));
+						}
+						try {
+							ContentRange range = ContentRange.parse(headers.getFirst(HttpHeaders.CONTENT_RANGE));
+							if (resuming && range != null && range.start() == partial.length()) {
+								return resume(artifactPath, partial, range, pushback, checksum.get(), meters);
+							}
+							if (range != null && range.start() == 0 && range.end() + 1 < range.size()) {
+								// the other ranges wait until this response is closed,
+								// so that it doesn't hold a connection they need
+								PartialFile file = this.storageService.create(artifactPath, range.size());
+								ranged.set(new FirstRange(file, range, headers.getETag()));
+								long written = file.write(range.start(), pushback);
+								if (written != range.length()) {
+									throw new IOException("Received " + written + " bytes of range " + range);
+								}
+								return written;
+							}
+							if (range != null && range.start() != 0) {
+								if (partial != null) {
+									partial.discard();
+								}
+								throw new IOException("Received an unexpected range " + range);
+							}
+							// the whole file, or a repository that doesn't support ranges
+							VerifyingInputStream in = new VerifyingInputStream(pushback, checksum.get());
+							if (partial == null) {
+								this.storageService.store(artifactPath, in);
+								return in.count;
+							}
+							partial.restart(validatorOf(headers));
+							partial.append(in);
+							partial.publish();
+							return in.count;
+						}
+						catch (ChecksumMismatchException e) {
+							// nothing has been stored
+							if (partial != null) {
+								partial.discard();
+							}
+							logger.warn("Rejected {}: {}", artifactPath, e.getMessage());
+							meters.checksumFailures.increment();
+							return -1L;
+						}
+					});
+			if (resuming && response.status().value() == 416) {
+				// the rest of the file is empty, so the kept part is not the file it was
+				partial.discard();
+				return FetchOutcome.FAILED;
+			}
+			observation.lowCardinalityKeyValue("upstream.status", String.valueOf(response.status().value()));
+			// the first range of an empty file is not satisfiable; empty files are not
+			// stored either way
+			if (response.status().value() == 404 || response.status().value() == 416) {
+				return FetchOutcome.NOT_FOUND;
+			}
+			if (response.status().isError()) {
+				logger.debug("Status {} fetching {}", response.status(), artifactPath);
+				return isRefused(response.status().value()) ? FetchOutcome.REFUSED : FetchOutcome.FAILED;
+			}
+			long bytes = response.body() != null ? response.body() : 0;
+			FirstRange first = ranged.get();
+			if (first != null && bytes > 0) {
+				try {
+					bytes = downloadInRanges(artifactPath, repository, fetch.parallel(), meters, first, checksum.get());
+				}
+				catch (ChecksumMismatchException e) {
+					logger.warn("Rejected {}: {}", artifactPath, e.getMessage());
+					meters.checksumFailures.increment();
+					bytes = -1;
 				}
 			}
+			if (bytes < 0) {
+				return FetchOutcome.REJECTED;
+			}
+			if (bytes == 0) {
+				return FetchOutcome.NOT_FOUND;
+			}
+			observation.highCardinalityKeyValue("bytes", String.valueOf(bytes));
+			meters.fetchedBytes.increment(bytes);
+			// the checksum has been awaited to verify the file
+			Future<byte[]> expectedChecksum = checksum.get();
+			if (expectedChecksum != null && expectedChecksum.state() == Future.State.SUCCESS
+					&& expectedChecksum.resultNow() != null) {
+				// served from the storage from now on, like the checksum files that
+				// Maven Resolver keeps
+				this.storageService.store(ArtifactPath.of(artifactPath.repositoryId(), artifactPath.path() + ".sha1"),
+						new ByteArrayInputStream(expectedChecksum.resultNow()));
+			}
+			return FetchOutcome.FETCHED;
 		}
 		catch (RestClientException e) {
-			logger.debug("RestClient error fetching non-standard file {}: {}", artifactPath, e.getMessage());
+			observation.error(e);
+			logger.debug("RestClient error fetching {}: {}", artifactPath, e.getMessage());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			observation.error(e);
+		}
+		catch (IOException e) {
+			// of the ranges downloaded after the first one
+			observation.error(e);
+			logger.debug("I/O error fetching {}: {}", artifactPath, e.getMessage());
 		}
 		catch (Exception e) {
-			logger.warn("Unexpected error fetching non-standard file: {}", artifactPath, e);
+			observation.error(e);
+			logger.warn("Unexpected error fetching {}", artifactPath, e);
 		}
-		return false;
+		finally {
+			Future<byte[]> expectedChecksum = checksum.get();
+			if (expectedChecksum != null) {
+				expectedChecksum.cancel(true);
+			}
+			if (resumable != null) {
+				releaseResumable(resumable);
+			}
+			FirstRange first = ranged.get();
+			if (first != null) {
+				try {
+					// discards the file unless it has been published
+					first.file().close();
+				}
+				catch (IOException e) {
+					logger.debug("Failed to discard a partial download: {}", e.getMessage());
+				}
+			}
+			observation.stop();
+		}
+		return FetchOutcome.FAILED;
+	}
+
+	/**
+	 * Append the rest of a file to the part kept from an interrupted download
+	 * @return the number of bytes downloaded
+	 */
+	private long resume(ArtifactPath artifactPath, ResumableFile partial, ContentRange range, InputStream rest,
+			Future<byte[]> checksum, UpstreamMeters meters) throws IOException {
+		logger.debug("Resuming {} from {} of {} bytes", artifactPath, range.start(), range.size());
+		long appended = partial.append(rest);
+		if (partial.length() != range.size()) {
+			throw new IOException("Received " + partial.length() + " of " + range.size() + " bytes");
+		}
+		if (checksum != null) {
+			verify(checksum, partial.sha1());
+		}
+		partial.publish();
+		meters.resumed.increment();
+		return appended;
+	}
+
+	private static void releaseResumable(ResumableFile resumable) {
+		try {
+			// a download that can't be resumed is not kept
+			if (resumable.validator() == null) {
+				resumable.discard();
+			}
+		}
+		catch (IOException e) {
+			logger.debug("Failed to discard a partial download: {}", e.getMessage());
+		}
+		finally {
+			try {
+				resumable.close();
+			}
+			catch (IOException e) {
+				logger.debug("Failed to release a partial download: {}", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return the header that tells the version of a file for {@code If-Range}, or null
+	 * if there is none; weak entity tags can't be used
+	 */
+	static String validatorOf(HttpHeaders headers) {
+		String etag = headers.getETag();
+		if (etag != null && !etag.startsWith("W/")) {
+			return etag;
+		}
+		return headers.getFirst(HttpHeaders.LAST_MODIFIED);
+	}
+
+	/**
+	 * Download the rest of a large file in ranges over several connections at once, once
+	 * the response of the first range has been closed. The ranges are written into a file
+	 * of the full size, which is verified as a whole and only then stored.
+	 * @return the size of the file
+	 */
+	private long downloadInRanges(ArtifactPath artifactPath, RemoteRepository repository,
+			KagamiProperties.Repository.Fetch.Parallel parallel, UpstreamMeters meters, FirstRange first,
+			Future<byte[]> checksum) throws IOException {
+		PartialFile file = first.file();
+		long size = first.range().size();
+		// a file below the threshold is completed with one more request
+		long chunkSize = size >= parallel.threshold().toBytes() ? parallel.chunkSize().toBytes() : size;
+		Semaphore connections = new Semaphore(Math.max(parallel.connections(), 1));
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<Long>> ranges = new ArrayList<>();
+			for (long start = first.range().end() + 1; start < size; start += chunkSize) {
+				ContentRange range = new ContentRange(start, Math.min(start + chunkSize, size) - 1, size);
+				Callable<Long> download = () -> {
+					connections.acquire();
+					try {
+						return downloadRange(artifactPath, repository, file, range, first.etag());
+					}
+					finally {
+						connections.release();
+					}
+				};
+				ranges.add(executor.submit(contextSnapshotFactory.captureAll().wrap(download)));
+			}
+			try {
+				for (Future<Long> range : ranges) {
+					range.get();
+				}
+			}
+			catch (ExecutionException e) {
+				executor.shutdownNow();
+				throw e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+			}
+			catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while downloading ranges");
+			}
+			meters.ranges.increment(ranges.size());
+		}
+		if (checksum != null) {
+			verify(checksum, file.sha1());
+		}
+		file.publish();
+		return size;
+	}
+
+	private long downloadRange(ArtifactPath artifactPath, RemoteRepository repository, PartialFile file,
+			ContentRange range, String etag) throws Exception {
+		Response<Long> response = exchange(HttpMethod.GET, artifactPath.repositoryId(), repository, artifactPath.path(),
+				headers -> headers.set(HttpHeaders.RANGE, "bytes=" + range.start() + "-" + range.end()),
+				(headers, body) -> {
+					ContentRange received = ContentRange.parse(headers.getFirst(HttpHeaders.CONTENT_RANGE));
+					if (!range.equals(received)) {
+						throw new IOException("Requested range " + range + " but received " + received);
+					}
+					if (etag != null && !etag.equals(headers.getETag())) {
+						throw new IOException("Changed while downloading from " + etag + " to " + headers.getETag());
+					}
+					return file.write(range.start(), body);
+				});
+		if (response.status().value() != 206 || response.body() == null || response.body() != range.length()) {
+			throw new IOException("Failed to download range " + range + ": " + response.status());
+		}
+		return response.body();
+	}
+
+	/**
+	 * The SHA-1 checksum of a file being downloaded, from the response headers if the
+	 * repository sends it like Artifactory and Nexus do, or else fetched while the file
+	 * is downloaded, so that it only adds to the latency if it answers after the file
+	 */
+	private Future<byte[]> expectedChecksum(ArtifactPath artifactPath, RemoteRepository repository,
+			HttpHeaders headers) {
+		String header = headers.getFirst(X_CHECKSUM_SHA1);
+		if (header != null) {
+			return CompletableFuture.completedFuture(header.getBytes(StandardCharsets.US_ASCII));
+		}
+		FutureTask<byte[]> checksum = new FutureTask<>(() -> {
+			Response<byte[]> response = get(artifactPath.repositoryId(), repository, artifactPath.path() + ".sha1",
+					(checksumHeaders, body) -> body.readAllBytes());
+			return response.status().is2xxSuccessful() ? response.body() : null;
+		});
+		Thread.ofVirtual().name("upstream-checksum").start(contextSnapshotFactory.captureAll().wrap(checksum));
+		return checksum;
+	}
+
+	/**
+	 * Send a GET request to a repository, hedged if enabled for it
+	 * @param path the path relative to the repository URL
+	 * @param bodyHandler reads the body of a successful response
+	 */
+	private <T> Response<T> get(String repositoryId, RemoteRepository repository, String path,
+			BodyHandler<T> bodyHandler) throws Exception {
+		return exchange(HttpMethod.GET, repositoryId, repository, path, bodyHandler);
+	}
+
+	private <T> Response<T> exchange(HttpMethod method, String repositoryId, RemoteRepository repository, String path,
+			BodyHandler<T> bodyHandler) throws Exception {
+		return exchange(method, repositoryId, repository, path, headers -> {
+		}, bodyHandler);
+	}
+
+	private <T> Response<T> exchange(HttpMethod method, String repositoryId, RemoteRepository repository, String path,
+			Consumer<HttpHeaders> requestHeaders, BodyHandler<T> bodyHandler) throws Exception {
+		// Get repository configuration for authentication
+		KagamiProperties.Repository repoConfig = this.kagamiProperties.repositories().get(repositoryId);
+		UpstreamHedger hedger = this.hedgers.get(repositoryId);
+		RestClient restClient = this.transports.get(repositoryId).restClient();
+		return hedger
+			.execute((baseUrl, claim) -> restClient.method(method).uri(baseUrl + "/{path}", path).headers(headers -> {
+				// mirrors used for hedging do not get the credentials of the repository
+				if (repoConfig != null && baseUrl.equals(repository.getUrl())
+						&& StringUtils.hasText(repoConfig.username()) && StringUtils.hasText(repoConfig.password())) {
+					headers.setBasicAuth(repoConfig.username(), repoConfig.password());
+				}
+				requestHeaders.accept(headers);
+			}).exchange((request, clientResponse) -> {
+				HttpStatusCode status = clientResponse.getStatusCode();
+				if (status.is5xxServerError() || !claim.headersReceived()) {
+					// leave the answer to the other attempt if there is one
+					return new Response<T>(status, null);
+				}
+				return new Response<>(status, status.is2xxSuccessful()
+						? bodyHandler.handle(clientResponse.getHeaders(), clientResponse.getBody()) : null);
+			}));
+	}
+
+	/**
+	 * Verify a downloaded file against its checksum file once it has been fetched
+	 * @param actual the SHA-1 checksum of the file in lower case hex
+	 * @throws ChecksumMismatchException if the file doesn't match
+	 */
+	private static void verify(Future<byte[]> checksum, String actual) throws IOException {
+		byte[] checksumFile;
+		try {
+			checksumFile = checksum.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the checksum");
+		}
+		catch (ExecutionException e) {
+			// like the default checksum policy of Maven Resolver, a checksum that
+			// can't be fetched only warrants a warning
+			logger.warn("Failed to fetch the checksum, storing without verification", e.getCause());
+			return;
+		}
+		if (checksumFile == null) {
+			logger.debug("No checksum published, storing without verification");
+			return;
+		}
+		String expected = parseChecksum(checksumFile);
+		if (!actual.equals(expected)) {
+			throw new ChecksumMismatchException("SHA-1 checksum mismatch, expected " + expected + " but was " + actual);
+		}
+	}
+
+	static String parseChecksum(byte[] checksumFile) {
+		// the file may also contain the file name after the hash
+		String content = new String(checksumFile, StandardCharsets.US_ASCII).strip();
+		int end = 0;
+		while (end < content.length() && !Character.isWhitespace(content.charAt(end))) {
+			end++;
+		}
+		return content.substring(0, end).toLowerCase(Locale.ROOT);
 	}
 
 	/**
@@ -208,8 +978,12 @@ public class RemoteRepositoryService {
 		return this.repositories.containsKey(repositoryId);
 	}
 
-	private RepositorySystemSession createSession(String repositoryId) {
+	private RepositorySystemSession createSession(String repositoryId, KagamiProperties.Repository.Resolver resolver,
+			UpstreamTransport transport, UpstreamRetrier retrier) {
 		DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+		transport.configure(session);
+		retrier.configure(session);
+		configure(session, resolver);
 
 		// Use repository-specific directory within Kagami's storage path
 		// This eliminates duplicate storage while keeping repositories separate
@@ -221,12 +995,30 @@ public class RemoteRepositoryService {
 			throw new IllegalStateException("Failed to create storage directory: " + storagePath, e);
 		}
 
-		LocalRepository localRepo = new LocalRepository(storagePath.toFile());
+		// the enhanced manager is the default one, and only accepts the default type
+		LocalRepository localRepo = new LocalRepository(storagePath.toFile(),
+				resolver.localRepositoryManager() == KagamiProperties.Repository.Resolver.LocalRepositoryManager.SIMPLE
+						? "simple" : "default");
 		session.setLocalRepositoryManager(this.repositorySystem.newLocalRepositoryManager(session, localRepo));
 
 		return session;
 	}
 
+	static void configure(DefaultRepositorySystemSession session, KagamiProperties.Repository.Resolver resolver) {
+		session.setUpdatePolicy(resolver.updatePolicy());
+		session.setChecksumPolicy(resolver.checksumPolicy().name().toLowerCase(Locale.ROOT));
+		session.setConfigProperty(CONNECTOR_THREADS, resolver.connectorThreads());
+		KagamiProperties.Repository.Resolver.NamedLockFactory lockFactory = resolver.namedLockFactory();
+		session.setConfigProperty(NAMED_LOCK_FACTORY, lockFactory.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+		// locks per artifact rather than per version, so that the jar and the pom of a
+		// version can be fetched concurrently; file locks need names that are paths
+		session.setConfigProperty(NAMED_LOCK_NAME_MAPPER,
+				lockFactory == KagamiProperties.Repository.Resolver.NamedLockFactory.FILE_LOCK ? "file-gaecv"
+						: "gaecv");
+		session.setConfigProperty(NAMED_LOCK_TIME, resolver.lockTimeout().toMillis());
+		session.setConfigProperty(NAMED_LOCK_TIME_UNIT, TimeUnit.MILLISECONDS.name());
+	}
+
 	/**
 	 * Determine proxy URL from configuration or environment variables Priority: 1.
 	 * kagami.proxy.url property, 2. http_proxy env var, 3. HTTP_PROXY env var
@@ -234,21 +1026,22 @@ public class RemoteRepositoryService {
 	private String determineProxyUrl(KagamiProperties properties) {
 		// 1. Check configuration property
 		if (properties.proxy() != null && StringUtils.hasText(properties.proxy().url())) {
-			logger.debug("Using proxy from configuration: {}", properties.proxy().url());
+			logger.debug("Using proxy from configuration: {}", UpstreamTransport.redact(properties.proxy().url()));
 			return properties.proxy().url();
 		}
 
 		// 2. Check lowercase http_proxy environment variable
 		String httpProxy = System.getenv("http_proxy");
 		if (StringUtils.hasText(httpProxy)) {
-			logger.debug("Using proxy from http_proxy environment variable: {}", httpProxy);
+			logger.debug("Using proxy from http_proxy environment variable: {}", UpstreamTransport.redact(httpProxy));
 			return httpProxy;
 		}
 
 		// 3. Check uppercase HTTP_PROXY environment variable
 		String httpProxyUpper = System.getenv("HTTP_PROXY");
 		if (StringUtils.hasText(httpProxyUpper)) {
-			logger.debug("Using proxy from HTTP_PROXY environment variable: {}", httpProxyUpper);
+			logger.debug("Using proxy from HTTP_PROXY environment variable: {}",
+					UpstreamTransport.redact(httpProxyUpper));
 			return httpProxyUpper;
 		}
 
@@ -256,101 +1049,332 @@ public class RemoteRepositoryService {
 	}
 
 	/**
-	 * Parse artifact path to extract Maven coordinates
+	 * Clean up empty directories that may have been created during failed fetch attempts
+	 */
+	private void cleanupEmptyDirectories(ArtifactPath artifactPath) {
+		Observation observation = Observation.createNotStarted("kagami.storage.cleanup", this.observationRegistry)
+			.contextualName("cleanup " + artifactPath.repositoryId())
+			.lowCardinalityKeyValue("repository", artifactPath.repositoryId())
+			.start();
+		try {
+			Path storagePath = Path.of(this.kagamiProperties.storage().path()).resolve(artifactPath.repositoryId());
+			Path artifactDir = storagePath.resolve(artifactPath.path()).getParent();
+
+			// Walk up the directory tree and remove empty directories
+			while (artifactDir != null && artifactDir.startsWith(storagePath) && !artifactDir.equals(storagePath)) {
+				if (Files.exists(artifactDir) && Files.isDirectory(artifactDir)) {
+					try (var stream = Files.list(artifactDir)) {
+						if (stream.findFirst().isEmpty()) {
+							// Directory is empty, remove it
+							Files.delete(artifactDir);
+							logger.debug("Removed empty directory: {}", artifactDir);
+						}
+						else {
+							// Directory is not empty, stop cleanup
+							break;
+						}
+					}
+				}
+				artifactDir = artifactDir.getParent();
+			}
+		}
+		catch (Exception e) {
+			logger.debug("Failed to cleanup empty directories for {}: {}", artifactPath, e.getMessage());
+		}
+		finally {
+			observation.stop();
+		}
+	}
+
+	/**
+	 * Meters of the fetches from one remote repository
+	 */
+	private static final class UpstreamMeters {
+
+		private final Counter fetchedBytes;
+
+		private final Counter checksumFailures;
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final Counter ranges;
+
+		private final Counter resumed;
+
+		private final Counter joined;
+
+		// fetches that no request waits for anymore by whether they were cancelled or
+		// left to finish
+		private final Map<String, Counter> abandoned = new HashMap<>();
+
+		// HEAD requests by whether they were answered by the repository or from earlier
+		// answers
+		private final Map<String, Counter> heads = new HashMap<>();
+
+		UpstreamMeters(String repositoryId, MeterRegistry meterRegistry) {
+			for (String result : List.of("found", "not_found", "error", "cached")) {
+				this.heads.put(result,
+						Counter.builder("kagami.upstream.heads")
+							.description("HEAD requests for files that are not cached")
+							.tag("repository", repositoryId)
+							.tag("result", result)
+							.register(meterRegistry));
+			}
+			this.fetchedBytes = Counter.builder("kagami.upstream.fetched")
+				.description("Bytes fetched from the remote repository")
+				.baseUnit("bytes")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+			this.checksumFailures = Counter.builder("kagami.upstream.checksum.failures")
+				.description("Downloads rejected because they did not match their checksum")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+			this.joined = Counter.builder("kagami.upstream.joined")
+				.description("Requests that waited for a fetch of the same file by another request")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+			for (String action : List.of("cancelled", "finished", "expired")) {
+				this.abandoned.put(action,
+						Counter.builder("kagami.upstream.abandoned")
+							.description("Fetches that no request waited for anymore")
+							.tag("repository", repositoryId)
+							.tag("action", action)
+							.register(meterRegistry));
+			}
+			this.resumed = Counter.builder("kagami.upstream.resumed")
+				.description("Downloads that resumed an interrupted download")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+			this.ranges = Counter.builder("kagami.upstream.ranges")
+				.description("Ranges of large files downloaded over additional connections")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+			Gauge.builder("kagami.upstream.in.flight", this.inFlight, AtomicInteger::get)
+				.description("Fetches from the remote repository in progress")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+		}
+
+	}
+
+	/**
+	 * A fetch that concurrent requests for the same file wait for
 	 */
-	private ArtifactCoordinates parseArtifactPath(String path) {
-		// Example: org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar
-		// Example: org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar
-		// Example: org/springframework/spring-core/6.1.3/spring-core-6.1.3.pom
+	private final class SharedFetch {
+
+		private final FutureTask<FetchOutcome> task;
 
-		String[] parts = path.split("/");
-		if (parts.length < 4) {
-			return null; // Not a standard Maven path
+		private int waiters;
+
+		// the highest priority of the requests that joined it
+		private volatile FetchPriority priority = FetchPriority.BACKGROUND;
+
+		SharedFetch(ArtifactPath artifactPath, Function<SharedFetch, FetchOutcome> fetch) {
+			this.task = new FutureTask<>(() -> {
+				try {
+					return fetch.apply(this);
+				}
+				finally {
+					RemoteRepositoryService.this.fetches.remove(artifactPath, this);
+				}
+			});
 		}
 
-		// Extract version and filename
-		String version = parts[parts.length - 2];
-		String filename = parts[parts.length - 1];
+		/**
+		 * Start waiting for the fetch
+		 * @param priority the priority of the request, which the fetch gets if it is
+		 * higher than its own
+		 * @return false if the fetch has been cancelled, so that a new one is needed
+		 */
+		synchronized boolean join(FetchPriority priority) {
+			if (this.task.isCancelled()) {
+				return false;
+			}
+			this.waiters++;
+			if (priority.compareTo(this.priority) < 0) {
+				this.priority = priority;
+			}
+			return true;
+		}
 
-		// Extract artifactId
-		String artifactId = parts[parts.length - 3];
+		FetchPriority priority() {
+			return this.priority;
+		}
 
-		// Build groupId
-		StringBuilder groupId = new StringBuilder();
-		for (int i = 0; i < parts.length - 3; i++) {
-			if (i > 0) {
-				groupId.append(".");
+		/**
+		 * Stop waiting for the fetch
+		 * @param finish whether the fetch is left to finish if no other request waits for
+		 * it
+		 * @return true if the fetch was still running and no other request waits for it
+		 */
+		synchronized boolean leave(boolean finish) {
+			this.waiters--;
+			if (this.waiters > 0 || this.task.isDone()) {
+				return false;
+			}
+			if (!finish) {
+				this.task.cancel(true);
 			}
-			groupId.append(parts[i]);
+			return true;
 		}
 
-		// Parse filename to get classifier and extension
-		String expectedPrefix = artifactId + "-" + version;
-		if (!filename.startsWith(expectedPrefix)) {
-			return null; // Filename doesn't match expected pattern
+		/**
+		 * Cancel the fetch if it is still running after the given time and no request
+		 * waits for it by then
+		 * @param timeout the time the fetch may take
+		 * @param expired counts the fetches cancelled
+		 */
+		void cancelAfter(Duration timeout, Counter expired) {
+			Thread.ofVirtual().name("upstream-fetch-deadline").start(() -> {
+				try {
+					this.task.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+				}
+				catch (TimeoutException e) {
+					synchronized (this) {
+						if (this.waiters == 0 && this.task.cancel(true)) {
+							expired.increment();
+						}
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				catch (ExecutionException | CancellationException e) {
+					// failed or cancelled by itself
+				}
+			});
 		}
 
-		String remainder = filename.substring(expectedPrefix.length());
-		String classifier = "";
-		String extension = "jar";
+	}
+
+	private record Response<T>(HttpStatusCode status, T body) {
+	}
+
+	/**
+	 * The first range of a file that is downloaded in ranges
+	 *
+	 * @param file the file the ranges are written to
+	 * @param range the first range, which gives the size of the file
+	 * @param etag the {@code ETag} of the first range, which the other ranges must have
+	 * so that ranges of another version of the file are not mixed in
+	 */
+	private record FirstRange(PartialFile file, ContentRange range, String etag) {
+	}
 
-		if (remainder.startsWith("-")) {
-			// Has classifier
-			remainder = remainder.substring(1);
-			int dotIndex = remainder.lastIndexOf('.');
-			if (dotIndex > 0) {
-				classifier = remainder.substring(0, dotIndex);
-				extension = remainder.substring(dotIndex + 1);
+	/**
+	 * A range of bytes of a file, as in a {@code Content-Range} header
+	 */
+	record ContentRange(long start, long end, long size) {
+
+		/**
+		 * @return the range, or null if the header is missing or doesn't tell the size of
+		 * the file
+		 */
+		static ContentRange parse(String contentRange) {
+			if (contentRange == null || !contentRange.startsWith("bytes ")) {
+				return null;
+			}
+			int dash = contentRange.indexOf('-');
+			int slash = contentRange.indexOf('/');
+			if (dash < 0 || slash < dash) {
+				return null;
+			}
+			try {
+				return new ContentRange(Long.parseLong(contentRange.substring(6, dash).strip()),
+						Long.parseLong(contentRange.substring(dash + 1, slash).strip()),
+						Long.parseLong(contentRange.substring(slash + 1).strip()));
+			}
+			catch (NumberFormatException e) {
+				// e.g. an unknown size
+				return null;
 			}
 		}
-		else if (remainder.startsWith(".")) {
-			// No classifier, just extension
-			extension = remainder.substring(1);
+
+		long length() {
+			return this.end - this.start + 1;
 		}
 
-		// Handle checksum files
-		if (extension.contains(".")) {
-			// e.g., jar.sha1 -> extension is jar, but we'll return null for checksum
-			// files
-			return null;
+		@Override
+		public String toString() {
+			return this.start + "-" + this.end + "/" + this.size;
 		}
 
-		return new ArtifactCoordinates(groupId.toString(), artifactId, version, classifier, extension);
+	}
+
+	@FunctionalInterface
+	private interface BodyHandler<T> {
+
+		T handle(HttpHeaders headers, InputStream body) throws IOException;
+
 	}
 
 	/**
-	 * Clean up empty directories that may have been created during failed fetch attempts
+	 * Counts the bytes read and verifies them against a checksum file once the end of the
+	 * stream is reached, so that a mismatch fails the copy into the storage
 	 */
-	private void cleanupEmptyDirectories(String repositoryId, String artifactPath) {
-		try {
-			Path storagePath = Path.of(this.kagamiProperties.storage().path()).resolve(repositoryId);
-			Path artifactDir = storagePath.resolve(artifactPath).getParent();
+	private static final class VerifyingInputStream extends FilterInputStream {
 
-			// Walk up the directory tree and remove empty directories
-			while (artifactDir != null && artifactDir.startsWith(storagePath) && !artifactDir.equals(storagePath)) {
-				if (Files.exists(artifactDir) && Files.isDirectory(artifactDir)) {
-					try (var stream = Files.list(artifactDir)) {
-						if (stream.findFirst().isEmpty()) {
-							// Directory is empty, remove it
-							Files.delete(artifactDir);
-							logger.debug("Removed empty directory: {}", artifactDir);
-						}
-						else {
-							// Directory is not empty, stop cleanup
-							break;
-						}
-					}
+		private final Future<byte[]> checksum;
+
+		private final MessageDigest digest;
+
+		private long count;
+
+		VerifyingInputStream(InputStream in, Future<byte[]> checksum) {
+			super(in);
+			this.checksum = checksum;
+			try {
+				this.digest = checksum != null ? MessageDigest.getInstance("SHA-1") : null;
+			}
+			catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b < 0) {
+				verify();
+			}
+			else {
+				this.count++;
+				if (this.digest != null) {
+					this.digest.update((byte) b);
 				}
-				artifactDir = artifactDir.getParent();
 			}
+			return b;
 		}
-		catch (Exception e) {
-			logger.debug("Failed to cleanup empty directories for {}: {}", artifactPath, e.getMessage());
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n < 0) {
+				verify();
+			}
+			else {
+				this.count += n;
+				if (this.digest != null) {
+					this.digest.update(b, off, n);
+				}
+			}
+			return n;
+		}
+
+		private void verify() throws IOException {
+			if (this.digest != null) {
+				RemoteRepositoryService.verify(this.checksum, HexFormat.of().formatHex(this.digest.digest()));
+			}
 		}
+
 	}
 
-	private record ArtifactCoordinates(String groupId, String artifactId, String version, String classifier,
-			String extension) {
+	private static final class ChecksumMismatchException extends IOException {
+
+		ChecksumMismatchException(String message) {
+			super(message);
+		}
+
 	}
 
-}
\ No newline at end of file
+}
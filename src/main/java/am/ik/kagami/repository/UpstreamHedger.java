@@ -0,0 +1,269 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends hedged requests to a remote repository.
+ * <p>
+ * A request is first sent to the repository URL. If it has not received response headers
+ * within a percentile of recent response times, the same request is sent again, to the
+ * next mirror if any are configured. The first attempt that receives a response which is
+ * not a server error wins, and the other attempt is cancelled by interrupting its thread.
+ */
+class UpstreamHedger {
+
+	private static final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+
+	private final KagamiProperties.Repository.Hedge hedge;
+
+	private final String url;
+
+	private final List<String> mirrors;
+
+	private final AtomicInteger nextMirror = new AtomicInteger();
+
+	private final LatencyTracker latencies = new LatencyTracker();
+
+	private final Counter hedges;
+
+	private final Counter wins;
+
+	UpstreamHedger(String repositoryId, KagamiProperties.Repository repository, MeterRegistry meterRegistry) {
+		this.hedge = repository.hedge();
+		this.url = repository.url();
+		this.mirrors = this.hedge.mirrors().isEmpty() ? List.of(repository.url()) : this.hedge.mirrors();
+		this.hedges = Counter.builder("kagami.upstream.hedges")
+			.description("Hedged requests sent to the remote repository")
+			.tag("repository", repositoryId)
+			.register(meterRegistry);
+		this.wins = Counter.builder("kagami.upstream.hedge.wins")
+			.description("Hedged requests that answered before the first request")
+			.tag("repository", repositoryId)
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Execute a request, hedging it if enabled
+	 * @param attempt the request to send to a base URL
+	 * @return the result of the winning attempt, or of the first attempt if none won
+	 */
+	<T> T execute(Attempt<T> attempt) throws Exception {
+		if (!this.hedge.enabled()) {
+			return attempt.execute(this.url, () -> true);
+		}
+		Race<T> race = new Race<>(attempt);
+		race.start(this.url);
+		if (!race.awaitSettled(delayNanos())) {
+			this.hedges.increment();
+			race.start(this.mirrors.get(Math.floorMod(this.nextMirror.getAndIncrement(), this.mirrors.size())));
+		}
+		return race.awaitResult();
+	}
+
+	long delayNanos() {
+		long min = this.hedge.minDelay().toNanos();
+		long max = this.hedge.maxDelay().toNanos();
+		long percentile = this.latencies.percentile(this.hedge.percentile());
+		return percentile < 0 ? max : Math.clamp(percentile, min, max);
+	}
+
+	/**
+	 * A request to one base URL
+	 */
+	@FunctionalInterface
+	interface Attempt<T> {
+
+		/**
+		 * @param baseUrl the URL of the repository or a mirror
+		 * @param claim to be called once response headers have been received
+		 * @return the result
+		 */
+		T execute(String baseUrl, Claim claim) throws Exception;
+
+	}
+
+	@FunctionalInterface
+	interface Claim {
+
+		/**
+		 * Report that the response headers have been received, which makes this attempt
+		 * win unless another one has already. Server errors should fail instead of
+		 * claiming, so that another attempt can still win.
+		 * @return whether this attempt won; a losing attempt should abandon the response
+		 */
+		boolean headersReceived();
+
+	}
+
+	/**
+	 * The attempts of one request
+	 */
+	private final class Race<T> {
+
+		private final Attempt<T> attempt;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final Condition changed = this.lock.newCondition();
+
+		private final List<Entry<T>> entries = new ArrayList<>(2);
+
+		private Entry<T> winner;
+
+		Race(Attempt<T> attempt) {
+			this.attempt = attempt;
+		}
+
+		void start(String baseUrl) {
+			Entry<T> entry = new Entry<>(System.nanoTime());
+			Claim claim = () -> {
+				UpstreamHedger.this.latencies.record(System.nanoTime() - entry.start);
+				return claim(entry);
+			};
+			Runnable task = contextSnapshotFactory.captureAll().wrap(() -> {
+				try {
+					entry.result = this.attempt.execute(baseUrl, claim);
+				}
+				catch (Exception e) {
+					entry.failure = e;
+				}
+				complete(entry);
+			});
+			this.lock.lock();
+			try {
+				this.entries.add(entry);
+				entry.thread = Thread.ofVirtual().name("upstream-hedge").start(task);
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		private boolean claim(Entry<T> entry) {
+			this.lock.lock();
+			try {
+				if (this.winner != null) {
+					return this.winner == entry;
+				}
+				this.winner = entry;
+				for (Entry<T> other : this.entries) {
+					if (other != entry && !other.done) {
+						// cancels a request still waiting for the upstream, recording
+						// its time so far so that slow responses still raise the delay
+						UpstreamHedger.this.latencies.record(System.nanoTime() - other.start);
+						other.thread.interrupt();
+					}
+				}
+				if (this.entries.indexOf(entry) > 0) {
+					UpstreamHedger.this.wins.increment();
+				}
+				this.changed.signalAll();
+				return true;
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void complete(Entry<T> entry) {
+			this.lock.lock();
+			try {
+				entry.done = true;
+				this.changed.signalAll();
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Wait until an attempt has won or all attempts have completed
+		 * @return false if neither happened within the timeout
+		 */
+		boolean awaitSettled(long timeoutNanos) throws InterruptedException {
+			this.lock.lock();
+			try {
+				long remaining = timeoutNanos;
+				while (this.winner == null && !allDone()) {
+					if (remaining <= 0) {
+						return false;
+					}
+					remaining = this.changed.awaitNanos(remaining);
+				}
+				return true;
+			}
+			catch (InterruptedException e) {
+				cancelAll();
+				throw e;
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		T awaitResult() throws Exception {
+			Entry<T> result;
+			this.lock.lock();
+			try {
+				while (!(this.winner != null && this.winner.done) && !allDone()) {
+					this.changed.await();
+				}
+				result = this.winner;
+				if (result == null) {
+					// prefer an attempt answered with a server error to a failed one
+					result = this.entries.stream()
+						.filter(entry -> entry.failure == null)
+						.findFirst()
+						.orElse(this.entries.getFirst());
+				}
+			}
+			catch (InterruptedException e) {
+				cancelAll();
+				throw e;
+			}
+			finally {
+				this.lock.unlock();
+			}
+			if (result.failure != null) {
+				throw result.failure;
+			}
+			return result.result;
+		}
+
+		private boolean allDone() {
+			return this.entries.stream().allMatch(entry -> entry.done);
+		}
+
+		private void cancelAll() {
+			this.entries.forEach(entry -> entry.thread.interrupt());
+		}
+
+	}
+
+	private static final class Entry<T> {
+
+		private final long start;
+
+		private Thread thread;
+
+		private volatile boolean done;
+
+		private T result;
+
+		private Exception failure;
+
+		Entry(long start) {
+			this.start = start;
+		}
+
+	}
+
+}
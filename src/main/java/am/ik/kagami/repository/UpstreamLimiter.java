@@ -0,0 +1,197 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Limits the rate at which requests to a remote repository start.
+ * <p>
+ * A token bucket is refilled at the configured rate up to the burst size, and each
+ * request takes a token. Requests that find the bucket empty wait in a queue in which
+ * interactive requests go ahead of background ones, and requests of the same priority go
+ * in the order they arrived. A request that would wait longer than the maximum wait fails
+ * at once rather than adding to the queue, and one that has waited that long because
+ * others went ahead of it fails then.
+ */
+class UpstreamLimiter {
+
+	private final KagamiProperties.Repository.Fetch.RateLimit rateLimit;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition changed = this.lock.newCondition();
+
+	// waiting requests in the order they arrived, guarded by lock
+	private final List<Waiter> queue = new ArrayList<>();
+
+	// guarded by lock
+	private double tokens;
+
+	// guarded by lock
+	private long refilledAt;
+
+	private final Map<FetchPriority, Timer> waits = new EnumMap<>(FetchPriority.class);
+
+	private final Map<FetchPriority, Counter> rejected = new EnumMap<>(FetchPriority.class);
+
+	UpstreamLimiter(String repositoryId, KagamiProperties.Repository.Fetch.RateLimit rateLimit,
+			MeterRegistry meterRegistry) {
+		this.rateLimit = rateLimit;
+		this.tokens = rateLimit.burst();
+		this.refilledAt = System.nanoTime();
+		for (FetchPriority priority : FetchPriority.values()) {
+			this.waits.put(priority,
+					Timer.builder("kagami.upstream.limiter.wait")
+						.description("Time requests waited for the rate limit of the remote repository")
+						.tag("repository", repositoryId)
+						.tag("priority", priority.tagValue())
+						.register(meterRegistry));
+			this.rejected.put(priority,
+					Counter.builder("kagami.upstream.limiter.rejected")
+						.description("Requests that failed because they would have waited too long for the rate limit")
+						.tag("repository", repositoryId)
+						.tag("priority", priority.tagValue())
+						.register(meterRegistry));
+			Gauge.builder("kagami.upstream.limiter.queued", this, limiter -> limiter.queued(priority))
+				.description("Requests waiting for the rate limit of the remote repository")
+				.tag("repository", repositoryId)
+				.tag("priority", priority.tagValue())
+				.register(meterRegistry);
+		}
+	}
+
+	/**
+	 * Wait until a request may start
+	 * @param priority the priority of the request, which may be raised while it waits
+	 * @return false if the request would wait or has waited longer than the maximum wait
+	 */
+	boolean acquire(Supplier<FetchPriority> priority) throws InterruptedException {
+		if (!this.rateLimit.enabled()) {
+			return true;
+		}
+		Waiter waiter = new Waiter(priority);
+		long start = System.nanoTime();
+		long deadline = start + this.rateLimit.maxWait().toNanos();
+		this.lock.lock();
+		try {
+			refill(start);
+			if (this.queue.isEmpty() && this.tokens >= 1) {
+				this.tokens--;
+				this.waits.get(waiter.priority()).record(0, TimeUnit.NANOSECONDS);
+				return true;
+			}
+			// requests of the same or a higher priority go first
+			long ahead = this.queue.stream()
+				.filter(other -> other.priority().compareTo(waiter.priority()) <= 0)
+				.count();
+			if (nanosUntil(ahead + 1) > this.rateLimit.maxWait().toNanos()) {
+				this.rejected.get(waiter.priority()).increment();
+				return false;
+			}
+			this.queue.add(waiter);
+			try {
+				while (true) {
+					long now = System.nanoTime();
+					refill(now);
+					boolean next = next() == waiter;
+					if (next && this.tokens >= 1) {
+						this.tokens--;
+						this.queue.remove(waiter);
+						// the request after it may be able to start as well
+						this.changed.signalAll();
+						this.waits.get(waiter.priority()).record(now - start, TimeUnit.NANOSECONDS);
+						return true;
+					}
+					if (now - deadline >= 0) {
+						this.queue.remove(waiter);
+						this.changed.signalAll();
+						this.rejected.get(waiter.priority()).increment();
+						return false;
+					}
+					if (!next && this.tokens >= 1) {
+						// the priority of another request has been raised while it waited
+						this.changed.signalAll();
+					}
+					long timeout = deadline - now;
+					this.changed.awaitNanos(next ? Math.min(timeout, nanosUntil(1)) : timeout);
+				}
+			}
+			catch (InterruptedException e) {
+				this.queue.remove(waiter);
+				this.changed.signalAll();
+				throw e;
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void refill(long now) {
+		this.tokens = Math.min(this.rateLimit.burst(),
+				this.tokens + (now - this.refilledAt) * this.rateLimit.rate() / TimeUnit.SECONDS.toNanos(1));
+		this.refilledAt = now;
+	}
+
+	/**
+	 * @return the time until the bucket holds the given number of tokens, if no request
+	 * takes any in the meantime
+	 */
+	private long nanosUntil(long tokens) {
+		double missing = tokens - this.tokens;
+		return missing <= 0 ? 0 : (long) Math.ceil(missing / this.rateLimit.rate() * TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * @return the waiting request that goes next
+	 */
+	private Waiter next() {
+		Waiter next = null;
+		for (Waiter waiter : this.queue) {
+			if (next == null || waiter.priority().compareTo(next.priority()) < 0) {
+				next = waiter;
+			}
+		}
+		return next;
+	}
+
+	private int queued(FetchPriority priority) {
+		this.lock.lock();
+		try {
+			return (int) this.queue.stream().filter(waiter -> waiter.priority() == priority).count();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * A waiting request; compared by identity, as requests may share the supplier of
+	 * their priority
+	 */
+	private static final class Waiter {
+
+		private final Supplier<FetchPriority> priority;
+
+		Waiter(Supplier<FetchPriority> priority) {
+			this.priority = priority;
+		}
+
+		FetchPriority priority() {
+			return this.priority.get();
+		}
+
+	}
+
+}
@@ -0,0 +1,119 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries fetches from a remote repository that failed.
+ * <p>
+ * A retry waits for a random time up to an exponential backoff ("full jitter"), so that
+ * the fetches that failed together are not retried together. Retries are capped by a
+ * budget shared by all fetches from the repository: each fetch adds a fraction of a retry
+ * to it and each retry takes a whole one. While a repository is failing, retries thus add
+ * at most that fraction to the load on it rather than multiplying it.
+ */
+class UpstreamRetrier {
+
+	private static final Logger logger = LoggerFactory.getLogger(UpstreamRetrier.class);
+
+	private final KagamiProperties.Repository.Fetch.Retry retry;
+
+	private final Counter retries;
+
+	private final Counter denied;
+
+	// retries available, guarded by this
+	private double budget;
+
+	UpstreamRetrier(String repositoryId, KagamiProperties.Repository.Fetch.Retry retry, MeterRegistry meterRegistry) {
+		this.retry = retry;
+		this.budget = retry.burst();
+		this.retries = Counter.builder("kagami.upstream.retries")
+			.description("Fetches from the remote repository retried after a failure")
+			.tag("repository", repositoryId)
+			.register(meterRegistry);
+		this.denied = Counter.builder("kagami.upstream.retries.denied")
+			.description("Failed fetches not retried because the retry budget was spent")
+			.tag("repository", repositoryId)
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Leave retries to this retrier rather than to the HTTP transport of a Maven Resolver
+	 * session, so that they are within the budget
+	 */
+	void configure(DefaultRepositorySystemSession session) {
+		if (this.retry.enabled()) {
+			session.setConfigProperty(ConfigurationProperties.HTTP_RETRY_HANDLER_COUNT, 0);
+		}
+	}
+
+	/**
+	 * Execute a fetch, retrying it while it fails and the budget allows
+	 * @param fetch the fetch, which should resume what an earlier attempt left behind
+	 * @return the outcome of the last attempt
+	 */
+	FetchOutcome execute(Supplier<FetchOutcome> fetch) {
+		if (!this.retry.enabled()) {
+			return fetch.get();
+		}
+		deposit();
+		FetchOutcome outcome = fetch.get();
+		for (int attempt = 1; outcome == FetchOutcome.FAILED && attempt < this.retry.maxAttempts(); attempt++) {
+			// an interrupted fetch was cancelled rather than failed
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
+			if (!withdraw()) {
+				this.denied.increment();
+				break;
+			}
+			Duration backoff = Duration.ofNanos(backoffNanos(attempt));
+			logger.debug("Retrying a failed fetch in {}", backoff);
+			try {
+				Thread.sleep(backoff);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			this.retries.increment();
+			outcome = fetch.get();
+		}
+		return outcome;
+	}
+
+	/**
+	 * @param retry the number of the retry, starting at 1
+	 * @return a random wait up to the backoff of the retry
+	 */
+	long backoffNanos(int retry) {
+		long max = this.retry.maxBackoff().toNanos();
+		long bound = Math.min(this.retry.initialBackoff().toNanos(), max);
+		for (int i = 1; i < retry && bound < max; i++) {
+			bound = bound > max / 2 ? max : bound * 2;
+		}
+		return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+	}
+
+	private synchronized void deposit() {
+		this.budget = Math.min(this.budget + this.retry.budget(), this.retry.burst());
+	}
+
+	private synchronized boolean withdraw() {
+		if (this.budget < 1) {
+			return false;
+		}
+		this.budget--;
+		return true;
+	}
+
+}
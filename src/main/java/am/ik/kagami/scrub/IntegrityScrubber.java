@@ -0,0 +1,442 @@
+package am.ik.kagami.scrub;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.KagamiProperties.ScrubAction;
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.repository.FetchOutcome;
+import am.ik.kagami.repository.FetchPriority;
+import am.ik.kagami.repository.RemoteRepositoryService;
+import am.ik.kagami.storage.ArtifactDeletedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Periodically verifies cached files against their checksum files.
+ * <p>
+ * Each run walks the repositories and hashes every file that has a {@code .sha512},
+ * {@code .sha256} or {@code .sha1} sibling, using the strongest one available. Files are
+ * hashed on a small thread pool; all reads share an I/O budget so that a run does not
+ * compete with serving artifacts. A file that does not match its checksum is handled
+ * according to {@link KagamiProperties.Scrub#action()}. Progress and results are
+ * published as {@code kagami.scrub.*} metrics.
+ */
+@Service
+public class IntegrityScrubber {
+
+	private static final Logger logger = LoggerFactory.getLogger(IntegrityScrubber.class);
+
+	static final String QUARANTINE_DIRECTORY = ".quarantine";
+
+	private static final List<Checksum> CHECKSUMS = List.of(new Checksum("SHA-512", ".sha512"),
+			new Checksum("SHA-256", ".sha256"), new Checksum("SHA-1", ".sha1"));
+
+	private static final List<String> SKIPPED_SUFFIXES = List.of(".sha512", ".sha256", ".sha1", ".md5", ".asc",
+			".lastUpdated", "_remote.repositories", "resolver-status.properties");
+
+	// files modified more recently may still be being written
+	private static final Duration SETTLE_TIME = Duration.ofMinutes(1);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal
+		.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+	private final KagamiProperties properties;
+
+	private final KagamiProperties.Scrub scrub;
+
+	private final Path basePath;
+
+	private final RemoteRepositoryService remoteRepositoryService;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private final AtomicLong progress = new AtomicLong();
+
+	private final AtomicLong lastCompletedEpochSecond = new AtomicLong();
+
+	private final Counter verifiedCounter;
+
+	private final Counter corruptCounter;
+
+	private final Counter unverifiedCounter;
+
+	private final Counter failedCounter;
+
+	private final Counter repairedCounter;
+
+	private final Counter bytesCounter;
+
+	public IntegrityScrubber(KagamiProperties properties, RemoteRepositoryService remoteRepositoryService,
+			ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.scrub = properties.scrub();
+		this.basePath = Path.of(properties.storage().path()).toAbsolutePath().normalize();
+		this.remoteRepositoryService = remoteRepositoryService;
+		this.eventPublisher = eventPublisher;
+		this.verifiedCounter = filesCounter(meterRegistry, "verified");
+		this.corruptCounter = filesCounter(meterRegistry, "corrupt");
+		this.unverifiedCounter = filesCounter(meterRegistry, "unverified");
+		this.failedCounter = filesCounter(meterRegistry, "failed");
+		this.repairedCounter = filesCounter(meterRegistry, "repaired");
+		this.bytesCounter = Counter.builder("kagami.scrub.bytes")
+			.description("Bytes read by the integrity scrubber")
+			.baseUnit("bytes")
+			.register(meterRegistry);
+		Gauge.builder("kagami.scrub.running", this.running, running -> running.get() ? 1 : 0)
+			.description("Whether the integrity scrubber is running")
+			.register(meterRegistry);
+		Gauge.builder("kagami.scrub.progress", this.progress, AtomicLong::get)
+			.description("Files checked by the current or last integrity scrub")
+			.baseUnit("files")
+			.register(meterRegistry);
+		Gauge.builder("kagami.scrub.last.completed", this.lastCompletedEpochSecond, AtomicLong::get)
+			.description("Time the last integrity scrub completed")
+			.baseUnit("seconds")
+			.register(meterRegistry);
+	}
+
+	private static Counter filesCounter(MeterRegistry meterRegistry, String result) {
+		return Counter.builder("kagami.scrub.files")
+			.description("Files checked by the integrity scrubber")
+			.tag("result", result)
+			.register(meterRegistry);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void onApplicationReady() {
+		if (!this.scrub.enabled()) {
+			return;
+		}
+		Thread.ofPlatform().daemon().name("integrity-scrubber").start(() -> {
+			try {
+				Thread.sleep(this.scrub.initialDelay());
+				while (true) {
+					try {
+						scrub();
+					}
+					catch (RuntimeException e) {
+						logger.warn("Integrity scrub failed", e);
+					}
+					Thread.sleep(this.scrub.interval());
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	/**
+	 * Verify all cached files once
+	 * @return the counts of this run, or null if a run is already in progress
+	 */
+	public ScrubReport scrub() throws InterruptedException {
+		if (!this.running.compareAndSet(false, true)) {
+			return null;
+		}
+		try {
+			long start = System.nanoTime();
+			this.progress.set(0);
+			ScrubReport report;
+			try (Run run = new Run(Instant.now().minus(SETTLE_TIME))) {
+				for (String repositoryId : this.properties.repositories().keySet()) {
+					Path repoRoot = this.basePath.resolve(repositoryId);
+					if (Files.isDirectory(repoRoot)) {
+						run.walk(repositoryId, repoRoot);
+					}
+				}
+				report = run.finish();
+			}
+			this.lastCompletedEpochSecond.set(Instant.now().getEpochSecond());
+			logger.info("Integrity scrub completed in {} s: {}",
+					Duration.ofNanos(System.nanoTime() - start).toSeconds(), report);
+			return report;
+		}
+		finally {
+			this.running.set(false);
+		}
+	}
+
+	static boolean isScrubbed(String fileName) {
+		if (fileName.startsWith("maven-metadata")) {
+			// metadata changes upstream and may be cached separately from its checksum
+			return false;
+		}
+		for (String suffix : SKIPPED_SUFFIXES) {
+			if (fileName.endsWith(suffix)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read the expected hash from a checksum file, which may be followed by a file name
+	 * @return the lower-cased hash, or null if the file does not contain a hash
+	 */
+	static String readChecksum(Path checksumFile, int hexLength) throws IOException {
+		String content = Files.readString(checksumFile).strip();
+		int end = 0;
+		while (end < content.length() && !Character.isWhitespace(content.charAt(end))) {
+			end++;
+		}
+		String hash = content.substring(0, end).toLowerCase();
+		if (hash.length() != hexLength || !hash.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+			return null;
+		}
+		return hash;
+	}
+
+	private record Checksum(String algorithm, String extension) {
+
+		MessageDigest newDigest() {
+			try {
+				return MessageDigest.getInstance(this.algorithm);
+			}
+			catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
+	/**
+	 * State of a single scrub run; closing it stops the verifications of a run that
+	 * didn't finish
+	 */
+	private final class Run implements AutoCloseable {
+
+		private final FileTime settledBefore;
+
+		private final IoBudget budget = new IoBudget(IntegrityScrubber.this.scrub.readRate().toBytes());
+
+		private final ExecutorService executor;
+
+		// bounds the files queued while the tree is walked
+		private final Semaphore permits;
+
+		private final LongAdder verified = new LongAdder();
+
+		private final LongAdder corrupt = new LongAdder();
+
+		private final LongAdder unverified = new LongAdder();
+
+		private final LongAdder failed = new LongAdder();
+
+		private final LongAdder repaired = new LongAdder();
+
+		private final LongAdder bytesRead = new LongAdder();
+
+		Run(Instant settledBefore) {
+			int parallelism = Math.max(1, IntegrityScrubber.this.scrub.parallelism());
+			this.settledBefore = FileTime.from(settledBefore);
+			this.executor = Executors.newFixedThreadPool(parallelism,
+					Thread.ofPlatform().name("integrity-scrubber-", 0).daemon().factory());
+			this.permits = new Semaphore(parallelism * 2);
+		}
+
+		void walk(String repositoryId, Path repoRoot) throws InterruptedException {
+			try {
+				Files.walkFileTree(repoRoot, new SimpleFileVisitor<>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+						if (!attributes.isRegularFile() || !isScrubbed(file.getFileName().toString())
+								|| attributes.lastModifiedTime().compareTo(Run.this.settledBefore) > 0) {
+							return FileVisitResult.CONTINUE;
+						}
+						Checksum checksum = CHECKSUMS.stream()
+							.filter(candidate -> Files.exists(checksumFile(file, candidate)))
+							.findFirst()
+							.orElse(null);
+						if (checksum == null) {
+							count(Run.this.unverified, IntegrityScrubber.this.unverifiedCounter);
+							return FileVisitResult.CONTINUE;
+						}
+						String path = repoRoot.relativize(file).toString().replace('\\', '/');
+						try {
+							Run.this.permits.acquire();
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return FileVisitResult.TERMINATE;
+						}
+						Run.this.executor.execute(() -> {
+							try {
+								verify(ArtifactPath.of(repositoryId, path), file, attributes.lastModifiedTime(),
+										checksum);
+							}
+							finally {
+								Run.this.permits.release();
+							}
+						});
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException e) {
+						count(Run.this.failed, IntegrityScrubber.this.failedCounter);
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+			catch (IOException e) {
+				logger.warn("Failed to scrub repository {}", repositoryId, e);
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedException();
+			}
+		}
+
+		ScrubReport finish() throws InterruptedException {
+			this.executor.shutdown();
+			while (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.debug("Waiting for integrity scrub to finish");
+			}
+			return new ScrubReport(this.verified.sum(), this.corrupt.sum(), this.unverified.sum(), this.failed.sum(),
+					this.repaired.sum(), this.bytesRead.sum());
+		}
+
+		@Override
+		public void close() {
+			this.executor.shutdownNow();
+		}
+
+		private void verify(ArtifactPath artifactPath, Path file, FileTime lastModified, Checksum checksum) {
+			try {
+				MessageDigest digest = checksum.newDigest();
+				String expected = readChecksum(checksumFile(file, checksum), digest.getDigestLength() * 2);
+				if (expected == null) {
+					count(this.unverified, IntegrityScrubber.this.unverifiedCounter);
+					return;
+				}
+				String actual = HexFormat.of().formatHex(hash(file, digest));
+				if (actual.equals(expected)) {
+					count(this.verified, IntegrityScrubber.this.verifiedCounter);
+					return;
+				}
+				if (!Files.getLastModifiedTime(file).equals(lastModified)) {
+					// replaced while it was hashed; verify it on the next run
+					return;
+				}
+				count(this.corrupt, IntegrityScrubber.this.corruptCounter);
+				logger.warn("Corrupt file {}: {} is {} but expected {}", artifactPath, checksum.algorithm(), actual,
+						expected);
+				repair(artifactPath, file, checksum);
+			}
+			catch (NoSuchFileException e) {
+				// deleted while the storage was walked
+			}
+			catch (IOException e) {
+				logger.debug("Failed to verify {}", artifactPath, e);
+				count(this.failed, IntegrityScrubber.this.failedCounter);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				IntegrityScrubber.this.progress.incrementAndGet();
+			}
+		}
+
+		private byte[] hash(Path file, MessageDigest digest) throws IOException, InterruptedException {
+			ByteBuffer buffer = buffers.get();
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				buffer.clear();
+				int read;
+				while ((read = channel.read(buffer)) > 0) {
+					this.budget.acquire(read);
+					buffer.flip();
+					digest.update(buffer);
+					this.bytesRead.add(read);
+					IntegrityScrubber.this.bytesCounter.increment(read);
+					buffer.clear();
+				}
+			}
+			return digest.digest();
+		}
+
+		private void repair(ArtifactPath artifactPath, Path file, Checksum checksum) throws IOException {
+			ScrubAction action = IntegrityScrubber.this.scrub.action();
+			if (action == ScrubAction.REPORT) {
+				return;
+			}
+			// the checksum file may be the corrupt one, so quarantine all of them
+			quarantine(artifactPath, file);
+			for (Checksum candidate : CHECKSUMS) {
+				Path checksumFile = checksumFile(file, candidate);
+				if (Files.exists(checksumFile)) {
+					quarantine(
+							ArtifactPath.of(artifactPath.repositoryId(), artifactPath.path() + candidate.extension()),
+							checksumFile);
+				}
+			}
+			if (action == ScrubAction.REFETCH) {
+				RemoteRepositoryService remote = IntegrityScrubber.this.remoteRepositoryService;
+				// clients that are waiting for files go first
+				if (remote.fetch(artifactPath, FetchPriority.BACKGROUND) == FetchOutcome.FETCHED && remote.fetch(
+						ArtifactPath.of(artifactPath.repositoryId(), artifactPath.path() + checksum.extension()),
+						FetchPriority.BACKGROUND) == FetchOutcome.FETCHED) {
+					count(this.repaired, IntegrityScrubber.this.repairedCounter);
+				}
+				else {
+					logger.warn("Failed to fetch {} again", artifactPath);
+				}
+			}
+		}
+
+		private void quarantine(ArtifactPath artifactPath, Path file) throws IOException {
+			Path target = IntegrityScrubber.this.basePath.resolve(QUARANTINE_DIRECTORY)
+				.resolve(artifactPath.repositoryId())
+				.resolve(artifactPath.path());
+			Files.createDirectories(target.getParent());
+			Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+			IntegrityScrubber.this.eventPublisher.publishEvent(new ArtifactDeletedEvent(artifactPath));
+		}
+
+		private static void count(LongAdder adder, Counter counter) {
+			adder.increment();
+			counter.increment();
+		}
+
+	}
+
+	private static Path checksumFile(Path file, Checksum checksum) {
+		return file.resolveSibling(file.getFileName() + checksum.extension());
+	}
+
+}
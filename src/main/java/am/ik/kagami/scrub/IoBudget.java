@@ -0,0 +1,43 @@
+package am.ik.kagami.scrub;
+
+import java.time.Duration;
+
+/**
+ * Limits the rate of reads shared by several threads. Each read reserves the time its
+ * bytes take at the configured rate; a thread sleeps until its reservation starts.
+ */
+class IoBudget {
+
+	private final long bytesPerSecond;
+
+	private long nextFreeNanos = System.nanoTime();
+
+	/**
+	 * @param bytesPerSecond the maximum rate, or zero or less for no limit
+	 */
+	IoBudget(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	void acquire(long bytes) throws InterruptedException {
+		if (this.bytesPerSecond <= 0) {
+			return;
+		}
+		long waitNanos = reserve(bytes);
+		if (waitNanos > 0) {
+			Thread.sleep(Duration.ofNanos(waitNanos));
+		}
+	}
+
+	private synchronized long reserve(long bytes) {
+		long now = System.nanoTime();
+		if (this.nextFreeNanos - now < 0) {
+			// unused budget is not saved up for later bursts
+			this.nextFreeNanos = now;
+		}
+		long waitNanos = this.nextFreeNanos - now;
+		this.nextFreeNanos += bytes * 1_000_000_000L / this.bytesPerSecond;
+		return waitNanos;
+	}
+
+}
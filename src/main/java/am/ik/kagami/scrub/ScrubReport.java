@@ -0,0 +1,15 @@
+package am.ik.kagami.scrub;
+
+/**
+ * Counts of a scrub run
+ *
+ * @param verifiedFiles files matching their checksum
+ * @param corruptFiles files not matching their checksum
+ * @param unverifiedFiles files without a checksum file
+ * @param failedFiles files that could not be read
+ * @param repairedFiles corrupt files fetched again successfully
+ * @param bytesRead the number of bytes hashed
+ */
+public record ScrubReport(long verifiedFiles, long corruptFiles, long unverifiedFiles, long failedFiles,
+		long repairedFiles, long bytesRead) {
+}
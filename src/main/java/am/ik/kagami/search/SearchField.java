@@ -0,0 +1,57 @@
+package am.ik.kagami.search;
+
+import am.ik.kagami.artifact.ArtifactCoordinates;
+
+/**
+ * Indexed fields of a cached artifact with the prefix selecting them in a query
+ */
+enum SearchField {
+
+	GROUP_ID("g", true),
+
+	ARTIFACT_ID("a", true),
+
+	VERSION("v", true),
+
+	CLASSIFIER("c", true),
+
+	// there is a file name per artifact, too many terms to scan for fuzzy matches
+	FILE_NAME("f", false);
+
+	private final String prefix;
+
+	private final boolean fuzzy;
+
+	SearchField(String prefix, boolean fuzzy) {
+		this.prefix = prefix;
+		this.fuzzy = fuzzy;
+	}
+
+	boolean isFuzzy() {
+		return this.fuzzy;
+	}
+
+	String value(ArtifactCoordinates coordinates, String fileName) {
+		return switch (this) {
+			case GROUP_ID -> coordinates.groupId();
+			case ARTIFACT_ID -> coordinates.artifactId();
+			case VERSION -> coordinates.version();
+			case CLASSIFIER -> coordinates.classifier();
+			case FILE_NAME -> fileName;
+		};
+	}
+
+	/**
+	 * Resolve a field from the prefix of a query term such as {@code a:spring-core}
+	 * @return the field, or null if the prefix is unknown
+	 */
+	static SearchField of(String prefix) {
+		for (SearchField field : values()) {
+			if (field.prefix.equals(prefix)) {
+				return field;
+			}
+		}
+		return null;
+	}
+
+}
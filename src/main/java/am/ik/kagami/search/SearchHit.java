@@ -0,0 +1,8 @@
+package am.ik.kagami.search;
+
+/**
+ * Cached artifact matching a search query
+ */
+public record SearchHit(String repositoryId, String path, String groupId, String artifactId, String version,
+		String classifier, String extension) {
+}
@@ -0,0 +1,534 @@
+package am.ik.kagami.search;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactCoordinates;
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.storage.ArtifactDeletedEvent;
+import am.ik.kagami.storage.ArtifactStoredEvent;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory search index over the Maven coordinates of cached artifacts.
+ * <p>
+ * Each field keeps a sorted dictionary from lower-cased terms to the artifacts having
+ * that term, so a prefix query is a range lookup instead of a walk over the storage. The
+ * index is rebuilt from storage in the background at startup and kept up to date with
+ * store and delete events afterwards.
+ * <p>
+ * A query consists of whitespace separated terms that all have to match. A term matches
+ * any field unless it is prefixed with a field, e.g.
+ * {@code g:org.springframework a:spring-core v:6.1}. Terms match as prefixes of the field
+ * values; fuzzy queries additionally match field values within a small edit distance.
+ */
+@Service
+public class SearchIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(SearchIndex.class);
+
+	private static final List<SearchField> ALL_FIELDS = List.of(SearchField.values());
+
+	static final int MAX_CANDIDATES = 10_000;
+
+	private final Path basePath;
+
+	private final KagamiProperties properties;
+
+	// repository id -> path -> artifact, sorted to remove deleted directories by range
+	private final Map<String, NavigableMap<String, IndexedArtifact>> artifacts = new ConcurrentHashMap<>();
+
+	private final Map<SearchField, NavigableMap<String, Set<IndexedArtifact>>> dictionaries = new EnumMap<>(
+			SearchField.class);
+
+	private final Object rebuildLock = new Object();
+
+	private volatile long generation;
+
+	private volatile int size;
+
+	public SearchIndex(KagamiProperties properties) {
+		this.properties = properties;
+		this.basePath = Path.of(properties.storage().path()).toAbsolutePath().normalize();
+		for (SearchField field : SearchField.values()) {
+			this.dictionaries.put(field, new ConcurrentSkipListMap<>());
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void onApplicationReady() {
+		Thread.ofPlatform().daemon().name("search-index-rebuild").start(this::rebuild);
+	}
+
+	@EventListener
+	void onArtifactStored(ArtifactStoredEvent event) {
+		add(event.artifactPath());
+	}
+
+	@EventListener
+	void onArtifactDeleted(ArtifactDeletedEvent event) {
+		remove(event.artifactPath());
+	}
+
+	/**
+	 * Rebuild the index from the artifacts in storage. Artifacts stored or deleted while
+	 * the storage is walked are indexed through their events as usual.
+	 */
+	public void rebuild() {
+		synchronized (this.rebuildLock) {
+			long start = System.nanoTime();
+			long rebuildGeneration;
+			synchronized (this) {
+				rebuildGeneration = ++this.generation;
+			}
+			for (String repositoryId : this.properties.repositories().keySet()) {
+				Path repoRoot = this.basePath.resolve(repositoryId);
+				if (!Files.isDirectory(repoRoot)) {
+					continue;
+				}
+				try {
+					Files.walkFileTree(repoRoot, new SimpleFileVisitor<>() {
+						@Override
+						public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+							if (attributes.isRegularFile()) {
+								add(ArtifactPath.of(repositoryId,
+										repoRoot.relativize(file).toString().replace('\\', '/')));
+							}
+							return FileVisitResult.CONTINUE;
+						}
+
+						@Override
+						public FileVisitResult visitFileFailed(Path file, IOException e) {
+							// Skip files that can't be read
+							return FileVisitResult.CONTINUE;
+						}
+					});
+				}
+				catch (IOException e) {
+					logger.warn("Failed to index repository {}", repositoryId, e);
+				}
+			}
+			// artifacts neither found in storage nor stored during the rebuild are gone
+			synchronized (this) {
+				for (NavigableMap<String, IndexedArtifact> repositoryArtifacts : this.artifacts.values()) {
+					List<IndexedArtifact> stale = repositoryArtifacts.values()
+						.stream()
+						.filter(artifact -> artifact.generation < rebuildGeneration)
+						.toList();
+					stale.forEach(this::unindex);
+				}
+			}
+			logger.info("Indexed {} artifacts in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+		}
+	}
+
+	/**
+	 * Return the number of indexed artifacts
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	synchronized void add(ArtifactPath artifactPath) {
+		ArtifactCoordinates coordinates = artifactPath.coordinates();
+		if (coordinates == null) {
+			// checksums, signatures and metadata are not searchable
+			return;
+		}
+		NavigableMap<String, IndexedArtifact> repositoryArtifacts = this.artifacts
+			.computeIfAbsent(artifactPath.repositoryId(), key -> new ConcurrentSkipListMap<>());
+		IndexedArtifact existing = repositoryArtifacts.get(artifactPath.path());
+		if (existing != null) {
+			// the coordinates are derived from the path and cannot have changed
+			existing.generation = this.generation;
+			return;
+		}
+		IndexedArtifact artifact = new IndexedArtifact(artifactPath, coordinates, this.generation);
+		repositoryArtifacts.put(artifactPath.path(), artifact);
+		this.size++;
+		for (SearchField field : SearchField.values()) {
+			String term = artifact.terms[field.ordinal()];
+			if (!term.isEmpty()) {
+				this.dictionaries.get(field).computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(artifact);
+			}
+		}
+	}
+
+	/**
+	 * Remove an artifact, or all artifacts below a directory
+	 */
+	synchronized void remove(ArtifactPath artifactPath) {
+		NavigableMap<String, IndexedArtifact> repositoryArtifacts = this.artifacts.get(artifactPath.repositoryId());
+		if (repositoryArtifacts == null) {
+			return;
+		}
+		String path = artifactPath.path();
+		String directory = path.endsWith("/") ? path : path + "/";
+		List<IndexedArtifact> removed = new ArrayList<>(
+				repositoryArtifacts.subMap(directory, true, directory + Character.MAX_VALUE, false).values());
+		IndexedArtifact artifact = repositoryArtifacts.get(path);
+		if (artifact != null) {
+			removed.add(artifact);
+		}
+		removed.forEach(this::unindex);
+	}
+
+	private void unindex(IndexedArtifact artifact) {
+		if (!this.artifacts.get(artifact.repositoryId).remove(artifact.path, artifact)) {
+			return;
+		}
+		this.size--;
+		for (SearchField field : SearchField.values()) {
+			String term = artifact.terms[field.ordinal()];
+			Map<String, Set<IndexedArtifact>> dictionary = this.dictionaries.get(field);
+			Set<IndexedArtifact> postings = dictionary.get(term);
+			if (postings != null && postings.remove(artifact) && postings.isEmpty()) {
+				dictionary.remove(term);
+			}
+		}
+	}
+
+	/**
+	 * Search cached artifacts
+	 * @param query whitespace separated terms, optionally prefixed with {@code g:},
+	 * {@code a:}, {@code v:}, {@code c:} or {@code f:} to match only the group id,
+	 * artifact id, version, classifier or file name
+	 * @param repositoryId the repository to search (null for all repositories)
+	 * @param fuzzy whether terms also match values within a small edit distance
+	 * @param limit the maximum number of hits to return
+	 * @return the best matching hits, exact matches before prefix and fuzzy matches. Only
+	 * the first {@value #MAX_CANDIDATES} matches are ranked and counted, so very broad
+	 * queries do not visit the whole index.
+	 */
+	public SearchResult search(String query, String repositoryId, boolean fuzzy, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Invalid limit: " + limit);
+		}
+		List<TermMatcher> matchers = parse(query, fuzzy);
+		if (matchers.isEmpty()) {
+			throw new IllegalArgumentException("Query is required");
+		}
+
+		// collect candidates from the most selective term and check the others on them
+		TermMatcher selective = null;
+		long selectiveCount = MAX_CANDIDATES + 1;
+		for (TermMatcher matcher : matchers) {
+			long count = matcher.estimateCount(selectiveCount);
+			if (selective == null || count < selectiveCount) {
+				selective = matcher;
+				selectiveCount = count;
+			}
+		}
+		Comparator<ScoredArtifact> ranking = Comparator.comparingInt(ScoredArtifact::score)
+			.reversed()
+			.thenComparing(scored -> scored.artifact().repositoryId)
+			.thenComparing(scored -> scored.artifact().path);
+		PriorityQueue<ScoredArtifact> top = new PriorityQueue<>(ranking.reversed());
+		int totalCount = 0;
+		boolean totalCountExact = true;
+		candidates: for (SearchField field : selective.fields) {
+			for (Set<IndexedArtifact> postings : selective.postings(field)) {
+				for (IndexedArtifact artifact : postings) {
+					if ((repositoryId != null && !repositoryId.equals(artifact.repositoryId))
+							|| selective.matchedByEarlierField(artifact, field)) {
+						continue;
+					}
+					int score = 0;
+					for (TermMatcher matcher : matchers) {
+						int termScore = matcher.score(artifact);
+						if (termScore < 0) {
+							score = -1;
+							break;
+						}
+						score += termScore;
+					}
+					if (score < 0) {
+						continue;
+					}
+					if (totalCount == MAX_CANDIDATES) {
+						totalCountExact = false;
+						break candidates;
+					}
+					totalCount++;
+					ScoredArtifact scored = new ScoredArtifact(artifact, score);
+					if (top.size() < limit) {
+						top.add(scored);
+					}
+					else if (ranking.compare(scored, top.peek()) < 0) {
+						top.poll();
+						top.add(scored);
+					}
+				}
+			}
+		}
+		List<SearchHit> hits = top.stream().sorted(ranking).map(scored -> scored.artifact().toHit()).toList();
+		return new SearchResult(hits, totalCount, totalCountExact);
+	}
+
+	private List<TermMatcher> parse(String query, boolean fuzzy) {
+		List<TermMatcher> matchers = new ArrayList<>();
+		if (query == null) {
+			return matchers;
+		}
+		for (String token : query.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+			if (token.isEmpty()) {
+				continue;
+			}
+			List<SearchField> fields = ALL_FIELDS;
+			int colon = token.indexOf(':');
+			if (colon > 0) {
+				SearchField field = SearchField.of(token.substring(0, colon));
+				if (field == null) {
+					throw new IllegalArgumentException("Unknown field: " + token.substring(0, colon));
+				}
+				fields = List.of(field);
+				token = token.substring(colon + 1);
+				if (token.isEmpty()) {
+					continue;
+				}
+			}
+			matchers.add(new TermMatcher(token, fields, fuzzy));
+		}
+		return matchers;
+	}
+
+	/**
+	 * Maximum number of edits for a fuzzy match, none for very short terms that would
+	 * match almost anything
+	 */
+	static int maxEdits(String term) {
+		return (term.length() < 3) ? 0 : (term.length() < 6) ? 1 : 2;
+	}
+
+	/**
+	 * Levenshtein distance of two strings, or {@code maxDistance + 1} as soon as the
+	 * distance is known to exceed {@code maxDistance}. Only the cells within
+	 * {@code maxDistance} of the diagonal are computed.
+	 */
+	static int distance(CharSequence a, CharSequence b, int maxDistance) {
+		int n = b.length();
+		if (Math.abs(a.length() - n) > maxDistance) {
+			return maxDistance + 1;
+		}
+		int outside = maxDistance + 1;
+		int[] previous = new int[n + 1];
+		int[] current = new int[n + 1];
+		for (int j = 0; j <= n; j++) {
+			previous[j] = Math.min(j, outside);
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			int from = Math.max(1, i - maxDistance);
+			int to = Math.min(n, i + maxDistance);
+			current[0] = Math.min(i, outside);
+			if (from > 1) {
+				current[from - 1] = outside;
+			}
+			int rowMinimum = current[0];
+			char c = a.charAt(i - 1);
+			for (int j = from; j <= to; j++) {
+				int cost = (c == b.charAt(j - 1)) ? 0 : 1;
+				int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+				current[j] = Math.min(value, outside);
+				rowMinimum = Math.min(rowMinimum, current[j]);
+			}
+			if (to < n) {
+				current[to + 1] = outside;
+			}
+			if (rowMinimum > maxDistance) {
+				return outside;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[n];
+	}
+
+	/**
+	 * A single query term with the dictionary terms it matches
+	 */
+	private final class TermMatcher {
+
+		private final String text;
+
+		private final List<SearchField> fields;
+
+		private final Map<SearchField, Set<String>> fuzzyTerms = new EnumMap<>(SearchField.class);
+
+		TermMatcher(String text, List<SearchField> fields, boolean fuzzy) {
+			this.text = text;
+			this.fields = fields;
+			int maxEdits = maxEdits(text);
+			if (fuzzy && maxEdits > 0) {
+				for (SearchField field : fields) {
+					if (field.isFuzzy()) {
+						this.fuzzyTerms.put(field, fuzzyTerms(dictionaries.get(field), maxEdits));
+					}
+				}
+			}
+		}
+
+		private Set<String> fuzzyTerms(NavigableMap<String, Set<IndexedArtifact>> dictionary, int maxEdits) {
+			Set<String> terms = new HashSet<>();
+			// like most fuzzy queries, assume the first character is not misspelled,
+			// to scan only a fraction of the dictionary
+			String first = this.text.substring(0, 1);
+			for (String term : dictionary.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+				// a term longer than the query matches if its prefix is close enough
+				CharSequence candidate = (term.length() > this.text.length() + maxEdits)
+						? term.subSequence(0, this.text.length()) : term;
+				if (distance(this.text, candidate, maxEdits) <= maxEdits) {
+					terms.add(term);
+				}
+			}
+			return terms;
+		}
+
+		/**
+		 * Return the postings of the dictionary terms matching this term in the given
+		 * field
+		 */
+		Collection<Set<IndexedArtifact>> postings(SearchField field) {
+			NavigableMap<String, Set<IndexedArtifact>> dictionary = dictionaries.get(field);
+			// iterating the range avoids looking up each prefix term again
+			Map<String, Set<IndexedArtifact>> prefixPostings = dictionary.subMap(this.text, true,
+					this.text + Character.MAX_VALUE, false);
+			Set<String> fuzzy = this.fuzzyTerms.get(field);
+			if (fuzzy == null) {
+				return prefixPostings.values();
+			}
+			// fuzzy terms include most prefix terms; collect both without duplicates
+			Map<String, Set<IndexedArtifact>> postings = new HashMap<>(prefixPostings);
+			for (String term : fuzzy) {
+				Set<IndexedArtifact> termPostings = dictionary.get(term);
+				if (termPostings != null) {
+					postings.put(term, termPostings);
+				}
+			}
+			return postings.values();
+		}
+
+		/**
+		 * Estimate the number of candidates of this term, counting artifacts matching in
+		 * several fields more than once
+		 * @param max the count to stop at, as a term with more candidates is not used
+		 * @return the estimated count, or {@code max} if there are at least as many
+		 */
+		long estimateCount(long max) {
+			long count = 0;
+			for (SearchField field : this.fields) {
+				for (Set<IndexedArtifact> postings : postings(field)) {
+					count += postings.size();
+					if (count >= max) {
+						return max;
+					}
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Score the artifact for this term
+		 * @return 2 for an exact match, 1 for a prefix match, 0 for a fuzzy match and -1
+		 * if the term does not match
+		 */
+		int score(IndexedArtifact artifact) {
+			int score = -1;
+			for (SearchField field : this.fields) {
+				score = Math.max(score, score(artifact, field));
+				if (score == 2) {
+					break;
+				}
+			}
+			return score;
+		}
+
+		private int score(IndexedArtifact artifact, SearchField field) {
+			String term = artifact.terms[field.ordinal()];
+			if (term.isEmpty()) {
+				return -1;
+			}
+			if (term.startsWith(this.text)) {
+				return (term.length() == this.text.length()) ? 2 : 1;
+			}
+			Set<String> fuzzy = this.fuzzyTerms.get(field);
+			return (fuzzy != null && fuzzy.contains(term)) ? 0 : -1;
+		}
+
+		/**
+		 * Whether the artifact has already been visited through the postings of a field
+		 * before the given one
+		 */
+		boolean matchedByEarlierField(IndexedArtifact artifact, SearchField field) {
+			for (SearchField earlier : this.fields) {
+				if (earlier == field) {
+					return false;
+				}
+				if (score(artifact, earlier) >= 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+	private static final class IndexedArtifact {
+
+		private final String repositoryId;
+
+		private final String path;
+
+		private final ArtifactCoordinates coordinates;
+
+		// lower-cased field values by field ordinal
+		private final String[] terms;
+
+		private volatile long generation;
+
+		IndexedArtifact(ArtifactPath artifactPath, ArtifactCoordinates coordinates, long generation) {
+			this.repositoryId = artifactPath.repositoryId();
+			this.path = artifactPath.path();
+			this.coordinates = coordinates;
+			this.generation = generation;
+			this.terms = new String[SearchField.values().length];
+			for (SearchField field : SearchField.values()) {
+				this.terms[field.ordinal()] = field.value(coordinates, artifactPath.fileName())
+					.toLowerCase(Locale.ROOT);
+			}
+		}
+
+		SearchHit toHit() {
+			return new SearchHit(this.repositoryId, this.path, this.coordinates.groupId(),
+					this.coordinates.artifactId(), this.coordinates.version(), this.coordinates.classifier(),
+					this.coordinates.extension());
+		}
+
+	}
+
+	private record ScoredArtifact(IndexedArtifact artifact, int score) {
+	}
+
+}
@@ -0,0 +1,14 @@
+package am.ik.kagami.search;
+
+import java.util.List;
+
+/**
+ * Result of a search, the best matching hits first
+ *
+ * @param hits the hits up to the requested limit
+ * @param totalCount the number of matching artifacts
+ * @param totalCountExact false if the search stopped counting at 10,000 matches and there
+ * are more
+ */
+public record SearchResult(List<SearchHit> hits, int totalCount, boolean totalCountExact) {
+}
@@ -0,0 +1,44 @@
+package am.ik.kagami.search.web;
+
+import am.ik.kagami.search.SearchIndex;
+import am.ik.kagami.search.SearchResult;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for searching cached artifacts
+ */
+@RestController
+public class SearchController {
+
+	static final int MAX_LIMIT = 1000;
+
+	private final SearchIndex searchIndex;
+
+	public SearchController(SearchIndex searchIndex) {
+		this.searchIndex = searchIndex;
+	}
+
+	/**
+	 * Search cached artifacts by group id, artifact id, version, classifier and file name
+	 * @param q the query, e.g. {@code spring-core} or {@code g:org.springframework v:6.1}
+	 * @param repositoryId the repository to search (optional, defaults to all)
+	 * @param fuzzy whether to match terms within a small edit distance
+	 * @param limit the maximum number of hits to return
+	 * @return matching artifacts
+	 */
+	@GetMapping("/search")
+	public ResponseEntity<SearchResult> search(@RequestParam String q,
+			@RequestParam(required = false) String repositoryId, @RequestParam(defaultValue = "false") boolean fuzzy,
+			@RequestParam(defaultValue = "50") int limit) {
+		try {
+			return ResponseEntity.ok(this.searchIndex.search(q, repositoryId, fuzzy, Math.min(limit, MAX_LIMIT)));
+		}
+		catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+
+}
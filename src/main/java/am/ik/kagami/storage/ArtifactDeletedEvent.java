@@ -0,0 +1,11 @@
+package am.ik.kagami.storage;
+
+import am.ik.kagami.artifact.ArtifactPath;
+
+/**
+ * Event published when an artifact or a directory has been deleted from the storage
+ *
+ * @param artifactPath the path of the deleted artifact or directory
+ */
+public record ArtifactDeletedEvent(ArtifactPath artifactPath) {
+}
@@ -0,0 +1,11 @@
+package am.ik.kagami.storage;
+
+import am.ik.kagami.artifact.ArtifactPath;
+
+/**
+ * Event published when an artifact has been written to the storage
+ *
+ * @param artifactPath the path of the stored artifact
+ */
+public record ArtifactStoredEvent(ArtifactPath artifactPath) {
+}
@@ -0,0 +1,108 @@
+package am.ik.kagami.storage;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of deleting an artifact or a directory. Directories are deleted in the
+ * background; the job can be polled until it is no longer running.
+ */
+public final class DeleteJob {
+
+	public enum State {
+
+		RUNNING, COMPLETED, FAILED
+
+	}
+
+	private final String id;
+
+	private final String repositoryId;
+
+	private final String path;
+
+	private final Instant startedAt;
+
+	private final AtomicLong deletedFiles = new AtomicLong();
+
+	private final AtomicLong failedFiles = new AtomicLong();
+
+	private volatile State state = State.RUNNING;
+
+	private volatile boolean background = true;
+
+	private volatile Instant completedAt;
+
+	DeleteJob(String repositoryId, String path, Instant startedAt) {
+		this.id = UUID.randomUUID().toString();
+		this.repositoryId = repositoryId;
+		this.path = path;
+		this.startedAt = startedAt;
+	}
+
+	/**
+	 * Create a job for a single file that has already been deleted
+	 */
+	static DeleteJob completed(String repositoryId, String path, Instant now) {
+		DeleteJob job = new DeleteJob(repositoryId, path, now);
+		job.deletedFiles.set(1);
+		job.background = false;
+		job.complete(now);
+		return job;
+	}
+
+	public String id() {
+		return this.id;
+	}
+
+	public String repositoryId() {
+		return this.repositoryId;
+	}
+
+	public String path() {
+		return this.path;
+	}
+
+	public State state() {
+		return this.state;
+	}
+
+	public boolean isRunning() {
+		return this.state == State.RUNNING;
+	}
+
+	/**
+	 * Return whether this job deletes in the background and can be polled, even if it has
+	 * already finished
+	 */
+	public boolean isBackground() {
+		return this.background;
+	}
+
+	/**
+	 * Return a snapshot of the progress of this job
+	 */
+	public Progress progress() {
+		return new Progress(this.id, this.repositoryId, this.path, this.state, this.deletedFiles.get(),
+				this.failedFiles.get(), this.startedAt, this.completedAt);
+	}
+
+	void addDeleted(long count) {
+		this.deletedFiles.addAndGet(count);
+	}
+
+	void addFailed(long count) {
+		this.failedFiles.addAndGet(count);
+	}
+
+	void complete(Instant now) {
+		this.completedAt = now;
+		this.state = (this.failedFiles.get() == 0) ? State.COMPLETED : State.FAILED;
+	}
+
+	public record Progress(String id, String repositoryId, String path, State state, long deletedFiles,
+			long failedFiles, Instant startedAt, Instant completedAt) {
+	}
+
+}
@@ -0,0 +1,282 @@
+package am.ik.kagami.storage;
+
+import am.ik.kagami.KagamiProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Deletes directories in the background.
+ * <p>
+ * A directory is first moved into a trash directory next to the repositories with a
+ * single atomic rename, so its contents disappear from the repository before the request
+ * returns. The files are then unlinked in batches on a small thread pool while the job
+ * reports its progress. Contents left in the trash, e.g. by a restart, are purged when
+ * the application starts.
+ */
+@Service
+public class DeleteJobService {
+
+	private static final Logger logger = LoggerFactory.getLogger(DeleteJobService.class);
+
+	static final String TRASH_DIRECTORY = ".trash";
+
+	static final int BATCH_SIZE = 1000;
+
+	private static final int PARALLELISM = 4;
+
+	// how long finished jobs can be polled
+	private static final Duration RETENTION = Duration.ofHours(1);
+
+	private static final Duration NEVER = Duration.ofNanos(Long.MAX_VALUE);
+
+	private final Path trashPath;
+
+	private final InstantSource instantSource;
+
+	private final ExecutorService unlinkExecutor = Executors.newFixedThreadPool(PARALLELISM,
+			Thread.ofPlatform().name("storage-delete-", 0).daemon().factory());
+
+	private final Cache<String, DeleteJob> jobs = Caffeine.newBuilder()
+		.expireAfter(Expiry.writing((String id, DeleteJob job) -> job.isRunning() ? NEVER : RETENTION))
+		.build();
+
+	public DeleteJobService(KagamiProperties properties, InstantSource instantSource) {
+		this.trashPath = Path.of(properties.storage().path()).toAbsolutePath().normalize().resolve(TRASH_DIRECTORY);
+		this.instantSource = instantSource;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void onApplicationReady() {
+		if (!Files.isDirectory(this.trashPath)) {
+			return;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.trashPath)) {
+			for (Path leftover : stream) {
+				DeleteJob job = new DeleteJob(null, leftover.getFileName().toString(), this.instantSource.instant());
+				// already accounted for when it was moved away in an earlier run
+				Thread.ofVirtual().name("delete-" + job.id()).start(() -> purge(job, leftover, (files, bytes) -> {
+				}));
+			}
+		}
+		catch (IOException e) {
+			logger.warn("Failed to purge {}", this.trashPath, e);
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		this.unlinkExecutor.shutdownNow();
+	}
+
+	/**
+	 * Remove a directory from its repository and delete its contents in the background
+	 * @param repositoryId the repository identifier
+	 * @param path the path of the directory within the repository
+	 * @param directory the directory to delete
+	 * @return the running job
+	 * @throws IOException if the directory cannot be moved out of the repository
+	 */
+	public DeleteJob submit(String repositoryId, String path, Path directory) throws IOException {
+		return submit(repositoryId, path, directory, (files, bytes) -> {
+		});
+	}
+
+	/**
+	 * Remove a directory from its repository and delete its contents in the background
+	 * @param repositoryId the repository identifier
+	 * @param path the path of the directory within the repository
+	 * @param directory the directory to delete
+	 * @param listener notified of the files deleted, batch by batch
+	 * @return the running job
+	 * @throws IOException if the directory cannot be moved out of the repository
+	 */
+	DeleteJob submit(String repositoryId, String path, Path directory, DeletionListener listener) throws IOException {
+		DeleteJob job = new DeleteJob(repositoryId, path, this.instantSource.instant());
+		Path target = this.trashPath.resolve(job.id());
+		Files.createDirectories(this.trashPath);
+		Path root;
+		try {
+			Files.move(directory, target, StandardCopyOption.ATOMIC_MOVE);
+			root = target;
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			// e.g. the repository directory is a mount point; delete in place instead
+			logger.warn("Cannot move {} to {}, deleting in place", directory, target);
+			root = directory;
+		}
+		this.jobs.put(job.id(), job);
+		Path purged = root;
+		Thread.ofVirtual().name("delete-" + job.id()).start(() -> purge(job, purged, listener));
+		return job;
+	}
+
+	/**
+	 * Create a finished job for a file that has been deleted synchronously
+	 */
+	DeleteJob completed(String repositoryId, String path) {
+		return DeleteJob.completed(repositoryId, path, this.instantSource.instant());
+	}
+
+	/**
+	 * Return a job by its id
+	 * @param id the job id
+	 * @return the job, or null if it is unknown or finished more than an hour ago
+	 */
+	public DeleteJob getJob(String id) {
+		return this.jobs.getIfPresent(id);
+	}
+
+	private void purge(DeleteJob job, Path root, DeletionListener listener) {
+		// bound the number of batches queued while the tree is walked
+		Semaphore permits = new Semaphore(PARALLELISM * 2);
+		List<Path> directories = new ArrayList<>();
+		try {
+			var visitor = new SimpleFileVisitor<Path>() {
+				private List<DoomedFile> files = new ArrayList<>(BATCH_SIZE);
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+					this.files.add(new DoomedFile(file, attributes.size()));
+					if (this.files.size() == BATCH_SIZE) {
+						flush();
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					job.addFailed(1);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+					// children are visited before their parents
+					directories.add(dir);
+					return FileVisitResult.CONTINUE;
+				}
+
+				void flush() {
+					if (!this.files.isEmpty()) {
+						submitBatch(job, this.files, permits, listener);
+						this.files = new ArrayList<>(BATCH_SIZE);
+					}
+				}
+			};
+			Files.walkFileTree(root, visitor);
+			visitor.flush();
+			// wait for all batches
+			permits.acquire(PARALLELISM * 2);
+			for (Path directory : directories) {
+				try {
+					Files.deleteIfExists(directory);
+				}
+				catch (IOException e) {
+					logger.debug("Failed to delete {}", directory, e);
+					job.addFailed(1);
+				}
+			}
+		}
+		catch (IOException e) {
+			logger.warn("Failed to delete {}", root, e);
+			job.addFailed(1);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			job.addFailed(1);
+		}
+		job.complete(this.instantSource.instant());
+		if (job.repositoryId() != null) {
+			// restart the retention period
+			this.jobs.put(job.id(), job);
+		}
+		logger.info("Finished deleting {}", job.progress());
+	}
+
+	private void submitBatch(DeleteJob job, List<DoomedFile> files, Semaphore permits, DeletionListener listener) {
+		try {
+			permits.acquire();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			job.addFailed(files.size());
+			return;
+		}
+		try {
+			this.unlinkExecutor.execute(() -> {
+				try {
+					unlink(job, files, listener);
+				}
+				finally {
+					permits.release();
+				}
+			});
+		}
+		catch (RuntimeException e) {
+			permits.release();
+			job.addFailed(files.size());
+		}
+	}
+
+	private static void unlink(DeleteJob job, List<DoomedFile> files, DeletionListener listener) {
+		long deleted = 0;
+		long deletedBytes = 0;
+		long failed = 0;
+		for (DoomedFile file : files) {
+			try {
+				Files.delete(file.path());
+				deleted++;
+				deletedBytes += file.size();
+			}
+			catch (NoSuchFileException e) {
+				deleted++;
+				deletedBytes += file.size();
+			}
+			catch (IOException e) {
+				logger.debug("Failed to delete {}", file.path(), e);
+				failed++;
+			}
+		}
+		job.addDeleted(deleted);
+		job.addFailed(failed);
+		listener.deleted(deleted, deletedBytes);
+	}
+
+	/**
+	 * Receives the files deleted by a job
+	 */
+	@FunctionalInterface
+	interface DeletionListener {
+
+		void deleted(long files, long bytes);
+
+	}
+
+	private record DoomedFile(Path path, long size) {
+	}
+
+}
@@ -1,17 +1,43 @@
 package am.ik.kagami.storage;
 
 import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Comparator;
-import java.util.stream.Stream;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.PathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
 /**
  * Local file system implementation of StorageService
@@ -19,30 +45,232 @@ import org.springframework.util.StringUtils;
 @Service
 public class LocalStorageService implements StorageService {
 
+	private static final Logger logger = LoggerFactory.getLogger(LocalStorageService.class);
+
+	// how often partial files not resumed in time are deleted
+	private static final Duration PURGE_INTERVAL = Duration.ofMinutes(10);
+
+	// interrupted downloads by repository, kept out of the repositories so that they
+	// are neither served nor indexed
+	static final String PARTIAL_DIRECTORY = ".partial";
+
+	// files being written, which are moved into the repositories once complete; on the
+	// same file system as the repositories, so that the move is atomic
+	static final String INCOMING_DIRECTORY = ".incoming";
+
+	private static final String VALIDATOR_SUFFIX = ".validator";
+
 	private final Path basePath;
 
-	public LocalStorageService(KagamiProperties properties) {
+	private final Path partialPath;
+
+	private final Path incomingPath;
+
+	private final Map<String, KagamiProperties.Repository> repositories;
+
+	// partial files opened by a download, which are not resumed by another
+	private final Set<Path> resuming = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, Path> repositoryPaths = new ConcurrentHashMap<>();
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final DeleteJobService deleteJobService;
+
+	private final StorageMetrics metrics;
+
+	private final Duration usageRecountInterval;
+
+	private final ObservationRegistry observationRegistry;
+
+	private final StoredChecksums checksums = new StoredChecksums();
+
+	public LocalStorageService(KagamiProperties properties, ApplicationEventPublisher eventPublisher,
+			DeleteJobService deleteJobService, MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+		this.eventPublisher = eventPublisher;
+		this.deleteJobService = deleteJobService;
+		this.observationRegistry = observationRegistry;
 		this.basePath = Path.of(properties.storage().path()).toAbsolutePath().normalize();
+		this.partialPath = this.basePath.resolve(PARTIAL_DIRECTORY);
+		this.incomingPath = this.basePath.resolve(INCOMING_DIRECTORY);
+		this.repositories = properties.repositories();
 		try {
 			Files.createDirectories(this.basePath);
+			Files.createDirectories(this.incomingPath);
 		}
 		catch (IOException e) {
 			throw new IllegalStateException("Failed to create storage directory: " + this.basePath, e);
 		}
+		purgeIncoming();
+		this.metrics = new StorageMetrics(this.basePath, properties.repositories().keySet(), meterRegistry);
+		this.usageRecountInterval = properties.storage().usageRecountInterval();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void onApplicationReady() {
+		Thread.ofPlatform().daemon().name("storage-usage").start(() -> {
+			try {
+				this.metrics.count();
+				long countedAt = System.nanoTime();
+				while (true) {
+					purgeStalePartials();
+					Thread.sleep(PURGE_INTERVAL);
+					if (this.usageRecountInterval.isPositive()
+							&& System.nanoTime() - countedAt >= this.usageRecountInterval.toNanos()) {
+						this.metrics.count();
+						countedAt = System.nanoTime();
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	@EventListener
+	void onArtifactStored(ArtifactStoredEvent event) {
+		// also published for files that Maven Resolver writes directly
+		ArtifactPath artifactPath = event.artifactPath();
+		this.metrics.recordStored(artifactPath.repositoryId(), resolvePath(artifactPath));
+	}
+
+	@Override
+	public void store(ArtifactPath artifactPath, InputStream inputStream) throws IOException {
+		validatePath(artifactPath);
+		Path targetPath = resolvePath(artifactPath);
+		Observation observation = Observation.createNotStarted("kagami.storage.store", this.observationRegistry)
+			.contextualName("store " + artifactPath.repositoryId())
+			.lowCardinalityKeyValue("repository", artifactPath.repositoryId())
+			.highCardinalityKeyValue("artifact.path", artifactPath.path())
+			.start();
+		Path tempPath = null;
+		try {
+			Files.createDirectories(targetPath.getParent());
+			tempPath = partPath(targetPath);
+			DigestInputStream digesting = StoredChecksums.algorithmOf(targetPath.toString()) == null
+					? this.checksums.digesting(inputStream) : null;
+			long bytes = Files.copy(digesting != null ? digesting : inputStream, tempPath);
+			moveIntoPlace(artifactPath, tempPath, targetPath);
+			if (digesting != null) {
+				this.checksums.stored(targetPath, digesting);
+			}
+			observation.highCardinalityKeyValue("bytes", String.valueOf(bytes));
+		}
+		catch (IOException e) {
+			if (tempPath != null) {
+				Files.deleteIfExists(tempPath);
+			}
+			observation.error(e);
+			throw e;
+		}
+		finally {
+			observation.stop();
+		}
+		this.eventPublisher.publishEvent(new ArtifactStoredEvent(artifactPath));
 	}
 
 	@Override
-	public void store(String repositoryId, String artifactPath, InputStream inputStream) throws IOException {
+	public PartialFile create(ArtifactPath artifactPath, long size) throws IOException {
 		validatePath(artifactPath);
-		Path targetPath = resolvePath(repositoryId, artifactPath);
+		Path targetPath = resolvePath(artifactPath);
 		Files.createDirectories(targetPath.getParent());
-		Files.copy(inputStream, targetPath, StandardCopyOption.REPLACE_EXISTING);
+		Path tempPath = partPath(targetPath);
+		FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		try {
+			if (size > 0) {
+				// extended at once rather than by every part written beyond its end
+				channel.write(ByteBuffer.allocate(1), size - 1);
+			}
+		}
+		catch (IOException e) {
+			channel.close();
+			Files.deleteIfExists(tempPath);
+			throw e;
+		}
+		return new LocalPartialFile(artifactPath, targetPath, tempPath, channel);
+	}
+
+	@Override
+	public ResumableFile resume(ArtifactPath artifactPath, Duration maxAge) throws IOException {
+		validatePath(artifactPath);
+		Path targetPath = resolvePath(artifactPath);
+		// named after the path, so that no directories are left behind
+		Path file = this.partialPath.resolve(artifactPath.repositoryId())
+			.resolve(UUID.nameUUIDFromBytes(artifactPath.path().getBytes(StandardCharsets.UTF_8)).toString());
+		if (!this.resuming.add(file)) {
+			return null;
+		}
+		try {
+			return new LocalResumableFile(artifactPath, targetPath, file, maxAge);
+		}
+		catch (IOException | RuntimeException e) {
+			this.resuming.remove(file);
+			throw e;
+		}
+	}
+
+	/**
+	 * Delete the files left behind by writes that a previous run didn't finish
+	 */
+	private void purgeIncoming() {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.incomingPath)) {
+			for (Path file : files) {
+				Files.deleteIfExists(file);
+			}
+		}
+		catch (IOException e) {
+			logger.warn("Failed to purge unfinished writes in {}", this.incomingPath, e);
+		}
+	}
+
+	/**
+	 * Delete interrupted downloads that have not been resumed within the configured time
+	 */
+	void purgeStalePartials() {
+		this.repositories.forEach((repositoryId, repository) -> {
+			Path repositoryPartials = this.partialPath.resolve(repositoryId);
+			if (!Files.isDirectory(repositoryPartials)) {
+				return;
+			}
+			FileTime staleBefore = FileTime.from(Instant.now().minus(repository.fetch().resume().maxAge()));
+			try {
+				Files.walkFileTree(repositoryPartials, new SimpleFileVisitor<>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+						String name = file.getFileName().toString();
+						if (name.endsWith(VALIDATOR_SUFFIX)) {
+							// deleted with its file, or left behind by one
+							Path data = file
+								.resolveSibling(name.substring(0, name.length() - VALIDATOR_SUFFIX.length()));
+							if (!Files.exists(data)) {
+								Files.deleteIfExists(file);
+							}
+						}
+						else if (attributes.lastModifiedTime().compareTo(staleBefore) < 0
+								&& !LocalStorageService.this.resuming.contains(file)) {
+							Files.deleteIfExists(file);
+							Files.deleteIfExists(file.resolveSibling(name + VALIDATOR_SUFFIX));
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+			catch (IOException e) {
+				logger.warn("Failed to purge interrupted downloads of {}", repositoryId, e);
+			}
+		});
 	}
 
 	@Override
-	public Resource retrieve(String repositoryId, String artifactPath) {
+	public Resource retrieve(ArtifactPath artifactPath) {
 		validatePath(artifactPath);
-		Path targetPath = resolvePath(repositoryId, artifactPath);
+		Path targetPath = resolvePath(artifactPath);
 		if (Files.exists(targetPath) && Files.isRegularFile(targetPath)) {
 			return new PathResource(targetPath);
 		}
@@ -50,56 +278,367 @@ public class LocalStorageService implements StorageService {
 	}
 
 	@Override
-	public boolean delete(String repositoryId, String artifactPath) throws IOException {
+	public Resource retrieveChecksum(ArtifactPath checksumPath) throws IOException {
+		validatePath(checksumPath);
+		String path = checksumPath.path();
+		String algorithm = StoredChecksums.algorithmOf(path);
+		if (algorithm == null) {
+			return null;
+		}
+		Path file = resolvePath(ArtifactPath.of(checksumPath.repositoryId(), path.substring(0, path.lastIndexOf('.'))));
+		BasicFileAttributes attributes = checksummedAttributes(file);
+		if (attributes == null) {
+			return null;
+		}
+		String checksum = this.checksums.remembered(file, algorithm, attributes);
+		if (checksum == null) {
+			try {
+				checksum = StoredChecksums.compute(file, algorithm);
+			}
+			catch (NoSuchFileException e) {
+				// deleted in the meantime
+				return null;
+			}
+			// kept in memory rather than stored, so that the checksum files in the
+			// storage are those of the upstream
+			this.checksums.remember(file, algorithm, attributes, checksum);
+		}
+		return new ByteArrayResource(checksum.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@Override
+	public String knownChecksum(ArtifactPath artifactPath, String extension) throws IOException {
+		validatePath(artifactPath);
+		String algorithm = StoredChecksums.ALGORITHMS.get(extension);
+		if (algorithm == null) {
+			throw new IllegalArgumentException("Unsupported checksum: " + extension);
+		}
+		Path file = resolvePath(artifactPath);
+		BasicFileAttributes attributes = checksummedAttributes(file);
+		if (attributes == null) {
+			return null;
+		}
+		String checksum = this.checksums.remembered(file, algorithm, attributes);
+		if (checksum != null) {
+			return checksum;
+		}
+		checksum = StoredChecksums.read(file.resolveSibling(file.getFileName() + "." + extension), algorithm);
+		if (checksum != null) {
+			this.checksums.remember(file, algorithm, attributes, checksum);
+		}
+		return checksum;
+	}
+
+	/**
+	 * @return the attributes of a stored file to get a checksum of, or null if it is not
+	 * stored or is a checksum file itself
+	 */
+	private static BasicFileAttributes checksummedAttributes(Path file) throws IOException {
+		if (StoredChecksums.algorithmOf(file.getFileName().toString()) != null) {
+			return null;
+		}
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			return attributes.isRegularFile() ? attributes : null;
+		}
+		catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public DeleteJob delete(ArtifactPath artifactPath) throws IOException {
 		validatePath(artifactPath);
-		Path targetPath = resolvePath(repositoryId, artifactPath);
+		Path targetPath = resolvePath(artifactPath);
 
 		if (!Files.exists(targetPath)) {
-			return false;
+			return null;
 		}
 
+		DeleteJob job;
 		if (Files.isDirectory(targetPath)) {
-			// Delete directory recursively
-			try (Stream<Path> walk = Files.walk(targetPath)) {
-				walk.sorted(Comparator.reverseOrder()).forEach(path -> {
-					try {
-						Files.delete(path);
-					}
-					catch (IOException e) {
-						throw new RuntimeException("Failed to delete: " + path, e);
-					}
-				});
-			}
+			// Move the directory away at once and delete its contents in the background
+			job = this.deleteJobService.submit(artifactPath.repositoryId(), artifactPath.path(), targetPath,
+					(files, bytes) -> this.metrics.recordRemoved(artifactPath.repositoryId(), files, bytes));
 		}
 		else {
 			// Delete single file
-			Files.delete(targetPath);
+			try {
+				long bytes = Files.size(targetPath);
+				Files.delete(targetPath);
+				this.metrics.recordRemoved(artifactPath.repositoryId(), 1, bytes);
+			}
+			catch (NoSuchFileException e) {
+				return null;
+			}
+			job = this.deleteJobService.completed(artifactPath.repositoryId(), artifactPath.path());
 		}
 
-		return true;
+		this.eventPublisher.publishEvent(new ArtifactDeletedEvent(artifactPath));
+		return job;
 	}
 
-	private Path resolvePath(String repositoryId, String artifactPath) {
-		// Resolve and normalize to prevent path traversal
-		Path resolved = this.basePath.resolve(repositoryId).resolve(artifactPath).normalize();
+	/**
+	 * Move a written file into place, accounting for the file it replaces; the file
+	 * itself is accounted for by the event published once it is stored
+	 */
+	private void moveIntoPlace(ArtifactPath artifactPath, Path source, Path targetPath) throws IOException {
+		long replaced;
+		try {
+			replaced = Files.size(targetPath);
+		}
+		catch (NoSuchFileException e) {
+			replaced = -1;
+		}
+		Files.move(source, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		if (replaced >= 0) {
+			this.metrics.recordRemoved(artifactPath.repositoryId(), 1, replaced);
+		}
+	}
+
+	/**
+	 * A temporary file for a file to be stored. Files are written there and moved into
+	 * place, so that readers never see a partial file and a failed or rejected download
+	 * leaves nothing behind in the repository; not Files.createTempFile, which restricts
+	 * the permissions to the owner.
+	 */
+	private Path partPath(Path targetPath) {
+		return this.incomingPath.resolve(
+				targetPath.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".part");
+	}
+
+	Path resolvePath(ArtifactPath artifactPath) {
+		// The artifact path has already been checked for traversal, so the
+		// resolved path does not need to be normalized
+		Path resolved = repositoryPath(artifactPath.repositoryId()).resolve(artifactPath.path());
 
 		// Ensure the resolved path is within the base path
 		if (!resolved.startsWith(this.basePath)) {
-			throw new IllegalArgumentException("Invalid path: " + artifactPath);
+			throw new IllegalArgumentException("Invalid path: " + artifactPath.path());
 		}
 
 		return resolved;
 	}
 
-	private void validatePath(String artifactPath) {
-		if (!StringUtils.hasText(artifactPath)) {
-			throw new IllegalArgumentException("Artifact path cannot be null or empty");
+	private Path repositoryPath(String repositoryId) {
+		Path repositoryPath = this.repositoryPaths.get(repositoryId);
+		if (repositoryPath == null) {
+			if (repositoryId.isEmpty() || repositoryId.contains("..") || repositoryId.indexOf('/') >= 0
+					|| repositoryId.indexOf('\\') >= 0 || repositoryId.startsWith(".")) {
+				// names starting with a dot are reserved, e.g. for the trash directory
+				throw new IllegalArgumentException("Invalid repository: " + repositoryId);
+			}
+			repositoryPath = this.repositoryPaths.computeIfAbsent(repositoryId, this.basePath::resolve);
+		}
+		return repositoryPath;
+	}
+
+	void validatePath(ArtifactPath artifactPath) {
+		if (!artifactPath.isValid()) {
+			if (artifactPath.path().isBlank()) {
+				throw new IllegalArgumentException("Artifact path cannot be null or empty");
+			}
+			throw new IllegalArgumentException("Invalid path: " + artifactPath.path());
+		}
+	}
+
+	private final class LocalPartialFile implements PartialFile {
+
+		private static final int BUFFER_SIZE = 65536;
+
+		private final ArtifactPath artifactPath;
+
+		private final Path targetPath;
+
+		private final Path tempPath;
+
+		private final FileChannel channel;
+
+		private volatile String sha1;
+
+		private volatile boolean published;
+
+		LocalPartialFile(ArtifactPath artifactPath, Path targetPath, Path tempPath, FileChannel channel) {
+			this.artifactPath = artifactPath;
+			this.targetPath = targetPath;
+			this.tempPath = tempPath;
+			this.channel = channel;
+		}
+
+		@Override
+		public long write(long position, InputStream inputStream) throws IOException {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long written = 0;
+			int n;
+			while ((n = inputStream.read(buffer)) >= 0) {
+				ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, n);
+				while (bytes.hasRemaining()) {
+					// positional writes do not share the position of the channel
+					this.channel.write(bytes, position + written + bytes.position());
+				}
+				written += n;
+			}
+			return written;
+		}
+
+		@Override
+		public String sha1() throws IOException {
+			this.sha1 = StoredChecksums.compute(this.tempPath, "SHA-1");
+			return this.sha1;
+		}
+
+		@Override
+		public void publish() throws IOException {
+			this.channel.close();
+			moveIntoPlace(this.artifactPath, this.tempPath, this.targetPath);
+			this.published = true;
+			if (this.sha1 != null) {
+				LocalStorageService.this.checksums.remember(this.targetPath, "SHA-1",
+						Files.readAttributes(this.targetPath, BasicFileAttributes.class), this.sha1);
+			}
+			LocalStorageService.this.eventPublisher.publishEvent(new ArtifactStoredEvent(this.artifactPath));
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+			if (!this.published) {
+				Files.deleteIfExists(this.tempPath);
+			}
+		}
+
+	}
+
+	private final class LocalResumableFile implements ResumableFile {
+
+		private static final int BUFFER_SIZE = 65536;
+
+		private final ArtifactPath artifactPath;
+
+		private final Path targetPath;
+
+		private final Path file;
+
+		private final Path validatorFile;
+
+		private long length;
+
+		private String validator;
+
+		private String sha1;
+
+		private boolean closed;
+
+		LocalResumableFile(ArtifactPath artifactPath, Path targetPath, Path file, Duration maxAge) throws IOException {
+			this.artifactPath = artifactPath;
+			this.targetPath = targetPath;
+			this.file = file;
+			this.validatorFile = file.resolveSibling(file.getFileName() + VALIDATOR_SUFFIX);
+			BasicFileAttributes attributes;
+			try {
+				attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			}
+			catch (NoSuchFileException e) {
+				return;
+			}
+			String validator = null;
+			try {
+				validator = Files.readString(this.validatorFile).strip();
+			}
+			catch (NoSuchFileException e) {
+				// the version of the file can't be told
+			}
+			if (validator == null || validator.isEmpty()
+					|| attributes.lastModifiedTime().toInstant().isBefore(Instant.now().minus(maxAge))) {
+				discard();
+				return;
+			}
+			this.length = attributes.size();
+			this.validator = validator;
 		}
 
-		// Check for path traversal attempts
-		if (artifactPath.contains("..") || artifactPath.contains("~")) {
-			throw new IllegalArgumentException("Invalid path: " + artifactPath);
+		@Override
+		public long length() {
+			return this.length;
 		}
+
+		@Override
+		public String validator() {
+			return this.validator;
+		}
+
+		@Override
+		public void restart(String validator) throws IOException {
+			Files.createDirectories(this.file.getParent());
+			Files
+				.newByteChannel(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)
+				.close();
+			if (validator != null) {
+				Files.writeString(this.validatorFile, validator);
+			}
+			else {
+				Files.deleteIfExists(this.validatorFile);
+			}
+			this.length = 0;
+			this.validator = validator;
+			this.sha1 = null;
+		}
+
+		@Override
+		public long append(InputStream inputStream) throws IOException {
+			this.sha1 = null;
+			long appended = 0;
+			try (OutputStream out = Files.newOutputStream(this.file, StandardOpenOption.CREATE,
+					StandardOpenOption.APPEND)) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int n;
+				while ((n = inputStream.read(buffer)) >= 0) {
+					out.write(buffer, 0, n);
+					// counted as written so far if the download is interrupted
+					appended += n;
+					this.length += n;
+				}
+			}
+			return appended;
+		}
+
+		@Override
+		public String sha1() throws IOException {
+			this.sha1 = StoredChecksums.compute(this.file, "SHA-1");
+			return this.sha1;
+		}
+
+		@Override
+		public void publish() throws IOException {
+			Files.createDirectories(this.targetPath.getParent());
+			moveIntoPlace(this.artifactPath, this.file, this.targetPath);
+			Files.deleteIfExists(this.validatorFile);
+			if (this.sha1 != null) {
+				LocalStorageService.this.checksums.remember(this.targetPath, "SHA-1",
+						Files.readAttributes(this.targetPath, BasicFileAttributes.class), this.sha1);
+			}
+			this.length = 0;
+			this.validator = null;
+			LocalStorageService.this.eventPublisher.publishEvent(new ArtifactStoredEvent(this.artifactPath));
+		}
+
+		@Override
+		public void discard() throws IOException {
+			Files.deleteIfExists(this.file);
+			Files.deleteIfExists(this.validatorFile);
+			this.length = 0;
+			this.validator = null;
+		}
+
+		@Override
+		public void close() {
+			if (!this.closed) {
+				this.closed = true;
+				LocalStorageService.this.resuming.remove(this.file);
+			}
+		}
+
 	}
 
-}
\ No newline at end of file
+}
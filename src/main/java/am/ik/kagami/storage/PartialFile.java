@@ -0,0 +1,35 @@
+package am.ik.kagami.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A file that is written in parts, possibly concurrently, before it is stored. It is not
+ * served until it is published; closing it without publishing discards it.
+ */
+public interface PartialFile extends Closeable {
+
+	/**
+	 * Write a part of the file
+	 * @param position the offset of the part in the file
+	 * @param inputStream the content of the part, read to the end
+	 * @return the number of bytes written
+	 * @throws IOException if an I/O error occurs
+	 */
+	long write(long position, InputStream inputStream) throws IOException;
+
+	/**
+	 * Compute the SHA-1 checksum of the file as written so far
+	 * @return the checksum in lower case hex
+	 * @throws IOException if an I/O error occurs
+	 */
+	String sha1() throws IOException;
+
+	/**
+	 * Move the file into place, replacing a stored file of the same path
+	 * @throws IOException if an I/O error occurs
+	 */
+	void publish() throws IOException;
+
+}
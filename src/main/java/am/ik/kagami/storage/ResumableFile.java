@@ -0,0 +1,61 @@
+package am.ik.kagami.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A file that is downloaded to the end before it is stored, and that is kept if the
+ * download is interrupted so that a later download can resume it. Closing it releases it
+ * to later downloads without discarding it.
+ */
+public interface ResumableFile extends Closeable {
+
+	/**
+	 * @return the number of bytes downloaded so far, including those of earlier downloads
+	 */
+	long length();
+
+	/**
+	 * @return the {@code ETag} or {@code Last-Modified} header of the version of the file
+	 * being downloaded, or null if nothing has been downloaded or the version can't be
+	 * told apart
+	 */
+	String validator();
+
+	/**
+	 * Discard what has been downloaded so far and start over
+	 * @param validator the {@code ETag} or {@code Last-Modified} header of the version of
+	 * the file to download, or null if there is none
+	 * @throws IOException if an I/O error occurs
+	 */
+	void restart(String validator) throws IOException;
+
+	/**
+	 * Append the next part of the file
+	 * @param inputStream the content of the part, read to the end
+	 * @return the number of bytes appended
+	 * @throws IOException if an I/O error occurs; the bytes appended until then are kept
+	 */
+	long append(InputStream inputStream) throws IOException;
+
+	/**
+	 * Compute the SHA-1 checksum of the file as downloaded so far
+	 * @return the checksum in lower case hex
+	 * @throws IOException if an I/O error occurs
+	 */
+	String sha1() throws IOException;
+
+	/**
+	 * Move the file into place, replacing a stored file of the same path
+	 * @throws IOException if an I/O error occurs
+	 */
+	void publish() throws IOException;
+
+	/**
+	 * Delete what has been downloaded, e.g. because it doesn't match its checksum
+	 * @throws IOException if an I/O error occurs
+	 */
+	void discard() throws IOException;
+
+}
@@ -0,0 +1,114 @@
+package am.ik.kagami.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size meters of the local storage per repository.
+ * <p>
+ * The size and file count of a repository are counted by walking its directory at
+ * startup, which is too expensive to do often on a large storage, and kept current by the
+ * files stored, replaced and deleted since. Files moved away by other means, like the
+ * quarantine of the integrity scrubber, are only accounted for by the next count.
+ */
+class StorageMetrics {
+
+	private static final Logger logger = LoggerFactory.getLogger(StorageMetrics.class);
+
+	private final Path basePath;
+
+	private final Map<String, Usage> usages = new ConcurrentHashMap<>();
+
+	StorageMetrics(Path basePath, Set<String> repositoryIds, MeterRegistry meterRegistry) {
+		this.basePath = basePath;
+		for (String repositoryId : repositoryIds) {
+			Usage usage = new Usage();
+			Gauge.builder("kagami.storage.size", usage.bytes, AtomicLong::get)
+				.description("Size of the cached files")
+				.baseUnit("bytes")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+			Gauge.builder("kagami.storage.files", usage.files, AtomicLong::get)
+				.description("Number of cached files")
+				.tag("repository", repositoryId)
+				.register(meterRegistry);
+			this.usages.put(repositoryId, usage);
+		}
+	}
+
+	void recordStored(String repositoryId, Path file) {
+		Usage usage = this.usages.get(repositoryId);
+		if (usage == null) {
+			return;
+		}
+		try {
+			usage.bytes.addAndGet(Files.size(file));
+			usage.files.incrementAndGet();
+		}
+		catch (IOException e) {
+			// deleted again; the next count will tell
+		}
+	}
+
+	void recordRemoved(String repositoryId, long files, long bytes) {
+		Usage usage = this.usages.get(repositoryId);
+		if (usage == null) {
+			return;
+		}
+		usage.bytes.addAndGet(-bytes);
+		usage.files.addAndGet(-files);
+	}
+
+	void count() {
+		this.usages.forEach((repositoryId, usage) -> {
+			Path repoPath = this.basePath.resolve(repositoryId);
+			if (!Files.isDirectory(repoPath)) {
+				return;
+			}
+			long[] totals = new long[2];
+			try {
+				Files.walkFileTree(repoPath, new SimpleFileVisitor<>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+						if (attributes.isRegularFile()) {
+							totals[0] += attributes.size();
+							totals[1]++;
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+				});
+				usage.bytes.set(totals[0]);
+				usage.files.set(totals[1]);
+			}
+			catch (IOException e) {
+				logger.warn("Failed to compute the size of {}", repoPath, e);
+			}
+		});
+	}
+
+	private static final class Usage {
+
+		private final AtomicLong bytes = new AtomicLong();
+
+		private final AtomicLong files = new AtomicLong();
+
+	}
+
+}
@@ -1,7 +1,9 @@
 package am.ik.kagami.storage;
 
+import am.ik.kagami.artifact.ArtifactPath;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import org.springframework.core.io.Resource;
 
 /**
@@ -11,28 +13,73 @@ public interface StorageService {
 
 	/**
 	 * Store an artifact from an input stream
-	 * @param repositoryId the repository identifier
-	 * @param artifactPath the relative path of the artifact
+	 * @param artifactPath the path of the artifact
 	 * @param inputStream the input stream to read from
 	 * @throws IOException if an I/O error occurs
 	 */
-	void store(String repositoryId, String artifactPath, InputStream inputStream) throws IOException;
+	void store(ArtifactPath artifactPath, InputStream inputStream) throws IOException;
+
+	/**
+	 * Create a file of a known size that is written in parts, such as the ranges of a
+	 * download over several connections, and stored once it is published
+	 * @param artifactPath the path of the artifact
+	 * @param size the size of the file, which is allocated up front
+	 * @return the file to write
+	 * @throws IOException if an I/O error occurs
+	 */
+	PartialFile create(ArtifactPath artifactPath, long size) throws IOException;
+
+	/**
+	 * Open the download of a file that is kept if it is interrupted, so that a later
+	 * download of the same file can resume it
+	 * @param artifactPath the path of the artifact
+	 * @param maxAge how long an interrupted download is kept; an older one is discarded
+	 * @return the file to download, holding what earlier downloads have downloaded, or
+	 * null if another download of the same file is in progress
+	 * @throws IOException if an I/O error occurs
+	 */
+	ResumableFile resume(ArtifactPath artifactPath, Duration maxAge) throws IOException;
 
 	/**
 	 * Retrieve an artifact as a Resource
-	 * @param repositoryId the repository identifier
-	 * @param artifactPath the relative path of the artifact
+	 * @param artifactPath the path of the artifact
 	 * @return the artifact as a Resource, or null if not found
 	 */
-	Resource retrieve(String repositoryId, String artifactPath);
+	Resource retrieve(ArtifactPath artifactPath);
+
+	/**
+	 * Retrieve a checksum file computed from a stored file, for a checksum file that
+	 * isn't stored itself. The computed checksum is remembered for a while but not
+	 * stored, so that the stored checksum files are only those of the remote repository.
+	 * @param checksumPath the path of the checksum file, ending with {@code .sha1},
+	 * {@code .md5}, {@code .sha256} or {@code .sha512}
+	 * @return the checksum file as a Resource, or null if the path is not a checksum file
+	 * or the file it belongs to is not stored
+	 * @throws IOException if an I/O error occurs
+	 */
+	Resource retrieveChecksum(ArtifactPath checksumPath) throws IOException;
+
+	/**
+	 * Get a checksum of a stored file that is known without reading the file: computed
+	 * while it was stored, remembered from an earlier request, or read from its stored
+	 * checksum file.
+	 * @param artifactPath the path of the file
+	 * @param extension the extension of the checksum file, such as {@code sha1}
+	 * @return the checksum in lower case hex, or null if it is not known, the file is not
+	 * stored or is a checksum file itself
+	 * @throws IOException if an I/O error occurs
+	 */
+	String knownChecksum(ArtifactPath artifactPath, String extension) throws IOException;
 
 	/**
-	 * Delete an artifact or directory from storage
-	 * @param repositoryId the repository identifier
-	 * @param artifactPath the relative path of the artifact or directory
-	 * @return true if deletion was successful, false if the path didn't exist
+	 * Delete an artifact or directory from storage. The path stops being served before
+	 * this method returns, but the contents of a directory may still be deleted in the
+	 * background.
+	 * @param artifactPath the path of the artifact or directory
+	 * @return the deletion, which is still running for a directory, or null if the path
+	 * didn't exist
 	 * @throws IOException if an I/O error occurs during deletion
 	 */
-	boolean delete(String repositoryId, String artifactPath) throws IOException;
+	DeleteJob delete(ArtifactPath artifactPath) throws IOException;
 
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package am.ik.kagami.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Checksums of stored files, served in place of checksum files that have not been fetched
+ * from the upstream and sent as response headers.
+ * <p>
+ * Checksums are remembered for recently used files, so that they are not read from their
+ * checksum files on every request. The SHA-1 digest, which Maven and Gradle request for
+ * every file, is computed while a file is stored, so that the checksum request that
+ * usually follows the download doesn't read the file again. Other digests are computed
+ * from the file when they are first requested. Computed checksums are only remembered
+ * here and never stored as checksum files.
+ */
+class StoredChecksums {
+
+	// digest algorithms by the file extension of their checksum files
+	static final Map<String, String> ALGORITHMS = Map.of("sha1", "SHA-1", "md5", "MD5", "sha256", "SHA-256", "sha512",
+			"SHA-512");
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final Cache<Key, Digest> recent = Caffeine.newBuilder().maximumSize(20_000).build();
+
+	/**
+	 * @return the algorithm of a checksum file, or null if the path is not a checksum
+	 * file
+	 */
+	static String algorithmOf(String path) {
+		int dot = path.lastIndexOf('.');
+		return dot < 0 ? null : ALGORITHMS.get(path.substring(dot + 1));
+	}
+
+	/**
+	 * Wrap the content of a file to be stored to compute its SHA-1 digest
+	 */
+	DigestInputStream digesting(InputStream inputStream) {
+		return new DigestInputStream(inputStream, newDigest("SHA-1"));
+	}
+
+	/**
+	 * Remember the SHA-1 digest of a file that has been stored
+	 */
+	void stored(Path file, DigestInputStream inputStream) throws IOException {
+		remember(file, "SHA-1", Files.readAttributes(file, BasicFileAttributes.class),
+				HexFormat.of().formatHex(inputStream.getMessageDigest().digest()));
+	}
+
+	/**
+	 * @return the remembered checksum of a file, or null if none is remembered or the
+	 * file has been replaced since
+	 */
+	String remembered(Path file, String algorithm, BasicFileAttributes attributes) {
+		Digest digest = this.recent.getIfPresent(new Key(file, algorithm));
+		// the file may also have been replaced by Maven Resolver
+		if (digest != null && attributes.lastModifiedTime().equals(digest.lastModified())
+				&& attributes.size() == digest.size()) {
+			return digest.hex();
+		}
+		return null;
+	}
+
+	void remember(Path file, String algorithm, BasicFileAttributes attributes, String hex) {
+		this.recent.put(new Key(file, algorithm), new Digest(hex, attributes.lastModifiedTime(), attributes.size()));
+	}
+
+	/**
+	 * Read a checksum file
+	 * @return the checksum in lower case hex, or null if the file doesn't exist or
+	 * doesn't contain a checksum of the algorithm
+	 */
+	static String read(Path checksumFile, String algorithm) throws IOException {
+		String content;
+		try {
+			content = Files.readString(checksumFile).strip();
+		}
+		catch (NoSuchFileException e) {
+			return null;
+		}
+		// the file may also contain the file name after the hash
+		int end = 0;
+		while (end < content.length() && !Character.isWhitespace(content.charAt(end))) {
+			end++;
+		}
+		String hex = content.substring(0, end).toLowerCase(Locale.ROOT);
+		if (hex.length() != newDigest(algorithm).getDigestLength() * 2
+				|| !hex.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+			return null;
+		}
+		return hex;
+	}
+
+	/**
+	 * Compute the checksum of a file
+	 * @return the checksum in lower case hex
+	 */
+	static String compute(Path file, String algorithm) throws IOException {
+		MessageDigest digest = newDigest(algorithm);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(file)) {
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				digest.update(buffer, 0, n);
+			}
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	private static MessageDigest newDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private record Key(Path file, String algorithm) {
+	}
+
+	private record Digest(String hex, FileTime lastModified, long size) {
+	}
+
+}
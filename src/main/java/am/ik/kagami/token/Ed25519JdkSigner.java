@@ -0,0 +1,54 @@
+package am.ik.kagami.token;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.util.Base64URL;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Set;
+
+/**
+ * EdDSA signer backed by the JDK Ed25519 implementation. Nimbus' own
+ * {@link com.nimbusds.jose.crypto.Ed25519Signer} requires Google Tink.
+ */
+class Ed25519JdkSigner implements JWSSigner {
+
+	private final PrivateKey privateKey;
+
+	private final JCAContext jcaContext = new JCAContext();
+
+	Ed25519JdkSigner(PrivateKey privateKey) {
+		this.privateKey = privateKey;
+	}
+
+	@Override
+	public Base64URL sign(JWSHeader header, byte[] signingInput) throws JOSEException {
+		if (!JWSAlgorithm.EdDSA.equals(header.getAlgorithm())) {
+			throw new JOSEException("Unsupported JWS algorithm: " + header.getAlgorithm());
+		}
+		try {
+			Signature signature = Signature.getInstance("Ed25519");
+			signature.initSign(this.privateKey);
+			signature.update(signingInput);
+			return Base64URL.encode(signature.sign());
+		}
+		catch (GeneralSecurityException e) {
+			throw new JOSEException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+		return Set.of(JWSAlgorithm.EdDSA);
+	}
+
+	@Override
+	public JCAContext getJCAContext() {
+		return this.jcaContext;
+	}
+
+}
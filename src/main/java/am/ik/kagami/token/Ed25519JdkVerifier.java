@@ -0,0 +1,58 @@
+package am.ik.kagami.token;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.util.Base64URL;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Set;
+
+/**
+ * EdDSA verifier backed by the JDK Ed25519 implementation. Nimbus' own
+ * {@link com.nimbusds.jose.crypto.Ed25519Verifier} requires Google Tink.
+ */
+class Ed25519JdkVerifier implements JWSVerifier {
+
+	private final PublicKey publicKey;
+
+	private final JCAContext jcaContext = new JCAContext();
+
+	Ed25519JdkVerifier(PublicKey publicKey) {
+		this.publicKey = publicKey;
+	}
+
+	@Override
+	public boolean verify(JWSHeader header, byte[] signingInput, Base64URL signature) throws JOSEException {
+		if (!JWSAlgorithm.EdDSA.equals(header.getAlgorithm())) {
+			return false;
+		}
+		try {
+			Signature verifier = Signature.getInstance("Ed25519");
+			verifier.initVerify(this.publicKey);
+			verifier.update(signingInput);
+			return verifier.verify(signature.decode());
+		}
+		catch (SignatureException e) {
+			return false;
+		}
+		catch (GeneralSecurityException e) {
+			throw new JOSEException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+		return Set.of(JWSAlgorithm.EdDSA);
+	}
+
+	@Override
+	public JCAContext getJCAContext() {
+		return this.jcaContext;
+	}
+
+}
@@ -0,0 +1,106 @@
+package am.ik.kagami.token;
+
+import am.ik.kagami.KagamiProperties;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.EdECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Key used to sign and verify tokens
+ *
+ * @param keyId the key id ({@code kid})
+ * @param algorithm the signature algorithm
+ * @param publicJwk the public key as published in the JWKS endpoint
+ * @param publicKey the public key
+ * @param activateAt the time from which the key is used to sign tokens, or null if the
+ * key is active from the start
+ * @param signer the signer, or null if the key is only used to verify tokens
+ * @param verifier the verifier
+ */
+public record TokenKey(String keyId, JWSAlgorithm algorithm, JWK publicJwk, PublicKey publicKey, Instant activateAt,
+		JWSSigner signer, JWSVerifier verifier) {
+
+	// length of the Ed25519 public key in its X.509 encoding
+	private static final int ED25519_KEY_LENGTH = 32;
+
+	public static TokenKey of(KagamiProperties.Jwt.Key key) {
+		String keyId = key.keyId();
+		PrivateKey privateKey = key.privateKey();
+		try {
+			return switch (key.publicKey()) {
+				case RSAPublicKey publicKey -> new TokenKey(keyId, JWSAlgorithm.RS256,
+						new RSAKey.Builder(publicKey).keyID(keyId)
+							.keyUse(KeyUse.SIGNATURE)
+							.algorithm(JWSAlgorithm.RS256)
+							.build(),
+						publicKey, key.activateAt(), privateKey == null ? null : new RSASSASigner(privateKey),
+						new RSASSAVerifier(publicKey));
+				case ECPublicKey publicKey -> {
+					if (!Curve.P_256.equals(Curve.forECParameterSpec(publicKey.getParams()))) {
+						throw new IllegalStateException("Only P-256 EC keys are supported: " + keyId);
+					}
+					yield new TokenKey(keyId, JWSAlgorithm.ES256,
+							new ECKey.Builder(Curve.P_256, publicKey).keyID(keyId)
+								.keyUse(KeyUse.SIGNATURE)
+								.algorithm(JWSAlgorithm.ES256)
+								.build(),
+							publicKey, key.activateAt(),
+							privateKey == null ? null : new ECDSASigner((ECPrivateKey) privateKey),
+							new ECDSAVerifier(publicKey));
+				}
+				case EdECPublicKey publicKey -> {
+					byte[] encoded = publicKey.getEncoded();
+					Base64URL x = Base64URL
+						.encode(Arrays.copyOfRange(encoded, encoded.length - ED25519_KEY_LENGTH, encoded.length));
+					yield new TokenKey(keyId, JWSAlgorithm.EdDSA,
+							new OctetKeyPair.Builder(Curve.Ed25519, x).keyID(keyId)
+								.keyUse(KeyUse.SIGNATURE)
+								.algorithm(JWSAlgorithm.EdDSA)
+								.build(),
+							publicKey, key.activateAt(), privateKey == null ? null : new Ed25519JdkSigner(privateKey),
+							new Ed25519JdkVerifier(publicKey));
+				}
+				default -> throw new IllegalStateException(
+						"Unsupported key algorithm '%s': %s".formatted(key.publicKey().getAlgorithm(), keyId));
+			};
+		}
+		catch (JOSEException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Whether the key can be used to sign tokens
+	 */
+	public boolean canSign() {
+		return this.signer != null;
+	}
+
+	/**
+	 * Whether the key is activated at the given time
+	 */
+	public boolean isActiveAt(Instant now) {
+		return this.activateAt == null || !this.activateAt.isAfter(now);
+	}
+
+}
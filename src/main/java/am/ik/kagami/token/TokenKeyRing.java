@@ -0,0 +1,166 @@
+package am.ik.kagami.token;
+
+import am.ik.kagami.KagamiProperties;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.proc.JWSVerifierFactory;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.nimbusds.jwt.proc.JWTProcessor;
+import java.security.Key;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Set of keys used to sign and verify tokens. All keys are published and accepted for
+ * verification, while tokens are signed with the active key that was activated last, so a
+ * new key can be rolled out by publishing it with a future activation time before it
+ * starts signing tokens.
+ */
+public class TokenKeyRing {
+
+	private final List<TokenKey> keys;
+
+	private final Map<String, TokenKey> keysById;
+
+	private final InstantSource instantSource;
+
+	private final JWKSet jwkSet;
+
+	private volatile TokenKey signingKey;
+
+	public TokenKeyRing(List<KagamiProperties.Jwt.Key> keys, InstantSource instantSource) {
+		this.keys = keys.stream().map(TokenKey::of).toList();
+		this.keysById = this.keys.stream().collect(Collectors.toUnmodifiableMap(TokenKey::keyId, Function.identity()));
+		this.instantSource = instantSource;
+		this.jwkSet = new JWKSet(this.keys.stream().map(TokenKey::publicJwk).toList());
+		this.signingKey = selectSigningKey();
+	}
+
+	/**
+	 * Return the key used to sign new tokens
+	 */
+	public TokenKey signingKey() {
+		return this.signingKey;
+	}
+
+	/**
+	 * Switch the signing key to the active key that was activated last
+	 * @return true if the signing key has changed
+	 */
+	public boolean rotate() {
+		TokenKey next = selectSigningKey();
+		if (next == this.signingKey) {
+			return false;
+		}
+		this.signingKey = next;
+		return true;
+	}
+
+	public List<TokenKey> keys() {
+		return this.keys;
+	}
+
+	/**
+	 * Return the public keys to publish in the JWKS endpoint
+	 */
+	public JWKSet jwkSet() {
+		return this.jwkSet;
+	}
+
+	public Set<JWSAlgorithm> algorithms() {
+		Set<JWSAlgorithm> algorithms = new LinkedHashSet<>();
+		this.keys.forEach(key -> algorithms.add(key.algorithm()));
+		return algorithms;
+	}
+
+	/**
+	 * Create a processor that verifies the signature of a token with the key identified
+	 * by its {@code kid} header, or with any key of the same algorithm if the token has
+	 * no {@code kid}. Claims are not verified because Spring Security validates them.
+	 */
+	public JWTProcessor<SecurityContext> jwtProcessor() {
+		DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+		processor.setJWSKeySelector((header, context) -> verificationKeys(header));
+		processor.setJWSVerifierFactory(new KeyRingVerifierFactory());
+		processor.setJWTClaimsSetVerifier((claims, context) -> {
+		});
+		return processor;
+	}
+
+	private List<Key> verificationKeys(JWSHeader header) {
+		String keyId = header.getKeyID();
+		if (keyId != null) {
+			TokenKey key = this.keysById.get(keyId);
+			return (key != null && key.algorithm().equals(header.getAlgorithm())) ? List.of(key.publicKey())
+					: List.of();
+		}
+		List<Key> keys = new ArrayList<>();
+		for (TokenKey key : this.keys) {
+			if (key.algorithm().equals(header.getAlgorithm())) {
+				keys.add(key.publicKey());
+			}
+		}
+		return keys;
+	}
+
+	private TokenKey selectSigningKey() {
+		Instant now = this.instantSource.instant();
+		TokenKey selected = null;
+		for (TokenKey key : this.keys) {
+			if (!key.canSign() || !key.isActiveAt(now)) {
+				continue;
+			}
+			// keys activated at the same time are superseded by keys listed later
+			if (selected == null || activateAt(key).compareTo(activateAt(selected)) >= 0) {
+				selected = key;
+			}
+		}
+		if (selected == null) {
+			throw new IllegalStateException("No active signing key is configured");
+		}
+		return selected;
+	}
+
+	private static Instant activateAt(TokenKey key) {
+		return key.activateAt() == null ? Instant.MIN : key.activateAt();
+	}
+
+	private class KeyRingVerifierFactory implements JWSVerifierFactory {
+
+		private final JCAContext jcaContext = new JCAContext();
+
+		@Override
+		public JWSVerifier createJWSVerifier(JWSHeader header, Key key) throws JOSEException {
+			for (TokenKey tokenKey : keys) {
+				if (tokenKey.publicKey() == key) {
+					return tokenKey.verifier();
+				}
+			}
+			throw new JOSEException("Unknown verification key");
+		}
+
+		@Override
+		public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+			return algorithms();
+		}
+
+		@Override
+		public JCAContext getJCAContext() {
+			return this.jcaContext;
+		}
+
+	}
+
+}
@@ -3,45 +3,71 @@ package am.ik.kagami.token;
 import am.ik.kagami.KagamiProperties;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JOSEObjectType;
-import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
-import com.nimbusds.jose.JWSSigner;
-import com.nimbusds.jose.JWSVerifier;
-import com.nimbusds.jose.crypto.RSASSASigner;
-import com.nimbusds.jose.crypto.RSASSAVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import java.time.InstantSource;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 @Component
 public class TokenSigner {
 
-	private final JWSSigner signer;
+	private static final Logger logger = LoggerFactory.getLogger(TokenSigner.class);
 
-	private final JWSVerifier verifier;
+	private final TokenKeyRing keyRing;
 
-	public TokenSigner(KagamiProperties properties) {
-		KagamiProperties.Jwt jwtProps = properties.jwt();
-		this.signer = new RSASSASigner(jwtProps.privateKey());
-		this.verifier = new RSASSAVerifier(jwtProps.publicKey());
-		// validate the key pair
+	public TokenSigner(KagamiProperties properties, InstantSource instantSource) {
+		this.keyRing = new TokenKeyRing(properties.jwt().keys(), instantSource);
+		// validate the key pairs
 		JWTClaimsSet claimsSet = new JWTClaimsSet.Builder().subject("test").build();
-		SignedJWT signedJWT = sign(claimsSet);
-		try {
-			if (!signedJWT.verify(this.verifier)) {
-				throw new IllegalStateException("The pair of public key and private key is wrong.");
+		for (TokenKey key : this.keyRing.keys()) {
+			if (!key.canSign()) {
+				continue;
+			}
+			SignedJWT signedJWT = sign(claimsSet, key);
+			try {
+				if (!signedJWT.verify(key.verifier())) {
+					throw new IllegalStateException("The pair of public key and private key is wrong: " + key.keyId());
+				}
+			}
+			catch (JOSEException e) {
+				throw new IllegalStateException(e);
 			}
 		}
-		catch (JOSEException e) {
-			throw new IllegalStateException(e);
-		}
+		logger.info("Signing tokens with the key {} ({})", this.keyRing.signingKey().keyId(),
+				this.keyRing.signingKey().algorithm());
 	}
 
 	public SignedJWT sign(JWTClaimsSet claimsSet) {
-		JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.RS256).type(JOSEObjectType.JWT).build();
+		return sign(claimsSet, this.keyRing.signingKey());
+	}
+
+	public TokenKeyRing keyRing() {
+		return this.keyRing;
+	}
+
+	/**
+	 * Switch to a key whose activation time has come
+	 */
+	@Scheduled(fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+	public void rotateKeys() {
+		TokenKey previous = this.keyRing.signingKey();
+		if (this.keyRing.rotate()) {
+			TokenKey current = this.keyRing.signingKey();
+			logger.info("Rotated the token signing key from {} ({}) to {} ({})", previous.keyId(), previous.algorithm(),
+					current.keyId(), current.algorithm());
+		}
+	}
+
+	private static SignedJWT sign(JWTClaimsSet claimsSet, TokenKey key) {
+		JWSHeader header = new JWSHeader.Builder(key.algorithm()).type(JOSEObjectType.JWT).keyID(key.keyId()).build();
 		SignedJWT signedJWT = new SignedJWT(header, claimsSet);
 		try {
-			signedJWT.sign(this.signer);
+			signedJWT.sign(key.signer());
 		}
 		catch (JOSEException e) {
 			throw new IllegalStateException(e);
@@ -49,4 +75,4 @@ public class TokenSigner {
 		return signedJWT;
 	}
 
-}
\ No newline at end of file
+}
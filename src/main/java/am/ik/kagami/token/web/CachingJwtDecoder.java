@@ -0,0 +1,127 @@
+package am.ik.kagami.token.web;
+
+import am.ik.kagami.artifact.ArtifactPath;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.servlet.http.HttpServletRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link JwtDecoder} that caches verified tokens until they expire. Maven and Gradle send
+ * the same token on every request of a build, so only the first request pays for the
+ * signature verification. The result of {@link RepositoryTokenValidator} is memoized per
+ * token and repository as well.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+	// a token is used for a handful of repositories, more than this is not memoized
+	private static final int MAX_REPOSITORIES_PER_TOKEN = 64;
+
+	private final JwtDecoder delegate;
+
+	private final RepositoryTokenValidator repositoryTokenValidator;
+
+	private final HttpServletRequest request;
+
+	private final InstantSource instantSource;
+
+	private final Cache<ByteBuffer, VerifiedJwt> cache;
+
+	/**
+	 * @param delegate the decoder that verifies the signature and the timestamps of the
+	 * token
+	 * @param repositoryTokenValidator the validator that checks the repository of the
+	 * current request against the token
+	 * @param request the current request
+	 * @param instantSource the source of the current time
+	 * @param maximumSize the maximum number of verified tokens to keep
+	 */
+	public CachingJwtDecoder(JwtDecoder delegate, RepositoryTokenValidator repositoryTokenValidator,
+			HttpServletRequest request, InstantSource instantSource, long maximumSize) {
+		this.delegate = delegate;
+		this.repositoryTokenValidator = repositoryTokenValidator;
+		this.request = request;
+		this.instantSource = instantSource;
+		this.cache = Caffeine.newBuilder()
+			.maximumSize(maximumSize)
+			.expireAfter(Expiry.<ByteBuffer, VerifiedJwt>creating(
+					(key, verified) -> Duration.between(instantSource.instant(), verified.jwt().getExpiresAt())))
+			.build();
+	}
+
+	@Override
+	public Jwt decode(String token) throws JwtException {
+		ByteBuffer key = hash(token);
+		VerifiedJwt verified = this.cache.getIfPresent(key);
+		if (verified == null) {
+			Jwt jwt = this.delegate.decode(token);
+			verified = new VerifiedJwt(jwt, new ConcurrentHashMap<>());
+			Instant expiresAt = jwt.getExpiresAt();
+			// tokens without expiration are not cached
+			if (expiresAt != null && expiresAt.isAfter(this.instantSource.instant())) {
+				this.cache.put(key, verified);
+			}
+		}
+		ArtifactPath artifactPath = ArtifactPath.from(this.request);
+		if (artifactPath != null) {
+			OAuth2TokenValidatorResult result = verified.validate(artifactPath.repositoryId(),
+					this.repositoryTokenValidator);
+			if (result.hasErrors()) {
+				throw new JwtValidationException(validationExceptionMessage(result), result.getErrors());
+			}
+		}
+		return verified.jwt();
+	}
+
+	static ByteBuffer hash(String token) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// same message as NimbusJwtDecoder
+	private static String validationExceptionMessage(OAuth2TokenValidatorResult result) {
+		for (OAuth2Error error : result.getErrors()) {
+			if (StringUtils.hasLength(error.getDescription())) {
+				return "An error occurred while attempting to decode the Jwt: " + error.getDescription();
+			}
+		}
+		return "Unable to validate Jwt";
+	}
+
+	private record VerifiedJwt(Jwt jwt, Map<String, OAuth2TokenValidatorResult> repositoryResults) {
+
+		OAuth2TokenValidatorResult validate(String repositoryId, RepositoryTokenValidator validator) {
+			OAuth2TokenValidatorResult result = this.repositoryResults.get(repositoryId);
+			if (result == null) {
+				result = validator.validate(this.jwt, repositoryId);
+				if (this.repositoryResults.size() < MAX_REPOSITORIES_PER_TOKEN) {
+					this.repositoryResults.put(repositoryId, result);
+				}
+			}
+			return result;
+		}
+
+	}
+
+}
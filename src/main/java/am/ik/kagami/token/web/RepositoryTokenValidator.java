@@ -1,7 +1,9 @@
 package am.ik.kagami.token.web;
 
+import am.ik.kagami.artifact.ArtifactPath;
 import am.ik.kagami.token.KagamiJwtClaims;
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.List;
 import org.springframework.security.oauth2.core.OAuth2Error;
 import org.springframework.security.oauth2.core.OAuth2TokenValidator;
 import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
@@ -23,29 +25,44 @@ public class RepositoryTokenValidator implements OAuth2TokenValidator<Jwt> {
 
 	@Override
 	public OAuth2TokenValidatorResult validate(Jwt token) {
-		String requestURI = request.getRequestURI();
-		if (requestURI.contains("/artifacts")) {
-			if (!token.hasClaim(KagamiJwtClaims.REPOSITORIES)) {
-				return OAuth2TokenValidatorResult.failure(new OAuth2Error(BearerTokenErrorCodes.INVALID_TOKEN,
-						"Token does not contain '%s' claim".formatted(KagamiJwtClaims.REPOSITORIES), null));
-			}
-			// extract repository id from the request URI that looks like
-			// /artifacts/{repositoryId}/...
-			String[] pathSegments = requestURI.split("/");
-			if (pathSegments.length > 1) {
-				String repositoryId = pathSegments[2];
-				boolean isValidRepository = token.getClaimAsStringList(KagamiJwtClaims.REPOSITORIES)
-					.stream()
-					.anyMatch(repo -> matcher.match(repo, repositoryId));
-				if (!isValidRepository) {
-					return OAuth2TokenValidatorResult.failure(new OAuth2Error(BearerTokenErrorCodes.INSUFFICIENT_SCOPE,
-							"Token does not contain the repository '%s' in '%s' claim".formatted(repositoryId,
-									KagamiJwtClaims.REPOSITORIES),
-							null));
-				}
-			}
+		// the request URI looks like /artifacts/{repositoryId}/...
+		ArtifactPath artifactPath = ArtifactPath.from(this.request);
+		if (artifactPath == null) {
+			return OAuth2TokenValidatorResult.success();
+		}
+		return validate(token, artifactPath.repositoryId());
+	}
+
+	/**
+	 * Validate that the token grants access to the given repository
+	 * @param token the token
+	 * @param repositoryId the repository identifier
+	 * @return the validation result
+	 */
+	public OAuth2TokenValidatorResult validate(Jwt token, String repositoryId) {
+		if (!token.hasClaim(KagamiJwtClaims.REPOSITORIES)) {
+			return OAuth2TokenValidatorResult.failure(new OAuth2Error(BearerTokenErrorCodes.INVALID_TOKEN,
+					"Token does not contain '%s' claim".formatted(KagamiJwtClaims.REPOSITORIES), null));
+		}
+		if (!matchesRepository(token.getClaimAsStringList(KagamiJwtClaims.REPOSITORIES), repositoryId)) {
+			return OAuth2TokenValidatorResult.failure(new OAuth2Error(BearerTokenErrorCodes.INSUFFICIENT_SCOPE,
+					"Token does not contain the repository '%s' in '%s' claim".formatted(repositoryId,
+							KagamiJwtClaims.REPOSITORIES),
+					null));
 		}
 		return OAuth2TokenValidatorResult.success();
 	}
 
+	private boolean matchesRepository(List<String> repositories, String repositoryId) {
+		for (String repository : repositories) {
+			// Most claims list plain repository ids, so avoid the pattern matcher when
+			// possible
+			if (repository.equals(repositoryId)
+					|| (this.matcher.isPattern(repository) && this.matcher.match(repository, repositoryId))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
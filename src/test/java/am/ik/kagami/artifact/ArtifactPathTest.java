@@ -0,0 +1,80 @@
+package am.ik.kagami.artifact;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ArtifactPathTest {
+
+	@Test
+	void parseRequestPath() {
+		ArtifactPath artifactPath = ArtifactPath
+			.parse("/artifacts/central/org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+		assertThat(artifactPath).isNotNull();
+		assertThat(artifactPath.repositoryId()).isEqualTo("central");
+		assertThat(artifactPath.path()).isEqualTo("org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+		assertThat(artifactPath.fileName()).isEqualTo("spring-core-6.1.3.jar");
+		assertThat(artifactPath.isValid()).isTrue();
+	}
+
+	@Test
+	void parseNonArtifactPath() {
+		assertThat(ArtifactPath.parse("/repositories/central")).isNull();
+		assertThat(ArtifactPath.parse("/artifacts/central")).isNull();
+		assertThat(ArtifactPath.parse("/artifacts//foo")).isNull();
+	}
+
+	@Test
+	void fromRequestWithContextPath() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET",
+				"/kagami/artifacts/central/org/example/demo/1.0/demo-1.0.pom");
+		request.setContextPath("/kagami");
+		ArtifactPath artifactPath = ArtifactPath.from(request);
+		assertThat(artifactPath).isEqualTo(ArtifactPath.of("central", "org/example/demo/1.0/demo-1.0.pom"));
+		assertThat(ArtifactPath.from(request)).isSameAs(artifactPath);
+	}
+
+	@Test
+	void invalidPaths() {
+		assertThat(ArtifactPath.of("central", "").isValid()).isFalse();
+		assertThat(ArtifactPath.of("central", "org/../../etc/passwd").isValid()).isFalse();
+		assertThat(ArtifactPath.of("central", "~/.m2/settings.xml").isValid()).isFalse();
+		assertThat(ArtifactPath.of("central", "/etc/passwd").isValid()).isFalse();
+		assertThat(ArtifactPath.of("central", "org/springframework/").isValid()).isTrue();
+	}
+
+	@Test
+	void coordinates() {
+		assertThat(
+				ArtifactPath.of("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar").coordinates())
+			.isEqualTo(new ArtifactCoordinates("org.springframework", "spring-core", "6.1.3", "", "jar"));
+		assertThat(
+				ArtifactPath.of("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3.pom").coordinates())
+			.isEqualTo(new ArtifactCoordinates("org.springframework", "spring-core", "6.1.3", "", "pom"));
+		assertThat(ArtifactPath.of("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar")
+			.coordinates())
+			.isEqualTo(new ArtifactCoordinates("org.springframework", "spring-core", "6.1.3", "sources", "jar"));
+		assertThat(ArtifactPath.of("central", "com/example/demo/1.0.0-SNAPSHOT/demo-1.0.0-SNAPSHOT.jar").coordinates())
+			.isEqualTo(new ArtifactCoordinates("com.example", "demo", "1.0.0-SNAPSHOT", "", "jar"));
+	}
+
+	@Test
+	void coordinatesOfNonStandardPaths() {
+		assertThat(ArtifactPath.of("central", "org/springframework/spring-core/maven-metadata.xml").coordinates())
+			.isNull();
+		assertThat(ArtifactPath.of("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar.sha1")
+			.coordinates()).isNull();
+		assertThat(
+				ArtifactPath.of("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar.sha1")
+					.coordinates())
+			.isNull();
+		assertThat(ArtifactPath.of("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar.asc")
+			.coordinates()).isNull();
+		assertThat(ArtifactPath.of("central", "org/springframework/spring-core/6.1.3/other-6.1.3.jar").coordinates())
+			.isNull();
+		assertThat(ArtifactPath.of("central", "spring-core/6.1.3/spring-core-6.1.3.jar").coordinates()).isNull();
+		assertThat(ArtifactPath.of("central", "org/springframework/").coordinates()).isNull();
+	}
+
+}
@@ -1,22 +1,42 @@
 package am.ik.kagami.artifact.web;
 
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.storage.StorageService;
+import am.ik.kagami.token.KagamiJwtClaims;
+import com.jayway.jsonpath.JsonPath;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.JwtRequestPostProcessor;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -32,14 +52,64 @@ class ArtifactControllerTest {
 	@TempDir
 	static Path tempDir;
 
+	// a remote repository answering every request with 502 Bad Gateway
+	static HttpServer failingUpstream;
+
+	static final AtomicInteger failingRequests = new AtomicInteger();
+
 	@DynamicPropertySource
-	static void configureProperties(DynamicPropertyRegistry registry) {
+	static void configureProperties(DynamicPropertyRegistry registry) throws IOException {
 		registry.add("kagami.storage.path", () -> tempDir.toString());
+		failingUpstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		failingUpstream.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		failingUpstream.createContext("/", exchange -> {
+			failingRequests.incrementAndGet();
+			if (exchange.getRequestURI().getPath().contains("/slow/")) {
+				try {
+					Thread.sleep(500);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			exchange.sendResponseHeaders(502, -1);
+			exchange.close();
+		});
+		failingUpstream.start();
+		registry.add("kagami.repositories.test-failing.url",
+				() -> "http://127.0.0.1:" + failingUpstream.getAddress().getPort());
+		registry.add("kagami.repositories.test-failing.fetch.engine", () -> "direct");
+		registry.add("kagami.repositories.test-failing.fetch.retry.initial-backoff", () -> "10ms");
+		registry.add("kagami.repositories.test-failing.fetch.deadline", () -> "200ms");
+		registry.add("kagami.repositories.test-failing.fetch.abandoned", () -> "cancel");
+		// not created before the storage is counted at startup
+		registry.add("kagami.repositories.test-usage.url",
+				() -> "http://127.0.0.1:" + failingUpstream.getAddress().getPort());
+		// a single fetch, and no waiting for the next one
+		registry.add("kagami.repositories.test-throttled.url",
+				() -> "http://127.0.0.1:" + failingUpstream.getAddress().getPort());
+		registry.add("kagami.repositories.test-throttled.fetch.engine", () -> "direct");
+		registry.add("kagami.repositories.test-throttled.fetch.retry.enabled", () -> "false");
+		registry.add("kagami.repositories.test-throttled.fetch.rate-limit.enabled", () -> "true");
+		registry.add("kagami.repositories.test-throttled.fetch.rate-limit.rate", () -> "0.001");
+		registry.add("kagami.repositories.test-throttled.fetch.rate-limit.burst", () -> "1");
+		registry.add("kagami.repositories.test-throttled.fetch.rate-limit.max-wait", () -> "1500ms");
+	}
+
+	@AfterAll
+	static void stopUpstream() {
+		failingUpstream.stop(0);
 	}
 
 	@Autowired
 	private MockMvc mockMvc;
 
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private StorageService storageService;
+
 	@Test
 	void getArtifact_whenNotInCache_shouldFetchFromRemoteAndCache() throws Exception {
 		// First request - artifact not in cache
@@ -59,6 +129,217 @@ class ArtifactControllerTest {
 			.andExpect(content().contentType("application/xml"));
 	}
 
+	@Test
+	void getArtifact_shouldRecordCacheLookups() throws Exception {
+		Path cachedFile = tempDir.resolve("test-central/test/metrics/1.0/metrics-1.0.jar");
+		Files.createDirectories(cachedFile.getParent());
+		Files.writeString(cachedFile, "jar content");
+		double hits = lookups("hit");
+		double notFound = lookups("not_found") + lookups("negative_hit");
+		double servedBytes = this.meterRegistry.get("kagami.artifacts.served")
+			.tag("repository", "test-central")
+			.counter()
+			.count();
+
+		this.mockMvc.perform(get("/artifacts/test-central/test/metrics/1.0/metrics-1.0.jar"))
+			.andExpect(status().isOk());
+		this.mockMvc.perform(get("/artifacts/test-central/test/metrics/1.0/metrics-1.0-missing.jar"))
+			.andExpect(status().isNotFound());
+
+		assertThat(lookups("hit")).isEqualTo(hits + 1);
+		assertThat(lookups("not_found") + lookups("negative_hit")).isEqualTo(notFound + 1);
+		assertThat(
+				this.meterRegistry.get("kagami.artifacts.served").tag("repository", "test-central").counter().count())
+			.isEqualTo(servedBytes + "jar content".length());
+		assertThat(this.meterRegistry.get("kagami.upstream.fetches")
+			.tag("repository", "test-central")
+			.tag("outcome", "not_found")
+			.timer()
+			.count()).isPositive();
+		assertThat(this.meterRegistry.get("kagami.resolver.resolve")
+			.tag("repository", "test-central")
+			.tag("outcome", "not_found")
+			.timer()
+			.count()).isPositive();
+		assertThat(this.meterRegistry.get("kagami.artifact.parse").tag("standard", "true").timer().count())
+			.isPositive();
+	}
+
+	@Test
+	void getArtifact_whenChecksumOfCachedFile_shouldComputeIt() throws Exception {
+		Path cachedFile = tempDir.resolve("test-central/test/checksum/1.0/checksum-1.0.jar");
+		Files.createDirectories(cachedFile.getParent());
+		Files.writeString(cachedFile, "demo");
+		double computed = lookups("computed");
+
+		this.mockMvc.perform(get("/artifacts/test-central/test/checksum/1.0/checksum-1.0.jar.sha1"))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType("text/plain"))
+			.andExpect(content().string("89e495e7941cf9e40e6980d14a16bf023ccd4c91"));
+		this.mockMvc.perform(get("/artifacts/test-central/test/checksum/1.0/checksum-1.0.jar.sha256"))
+			.andExpect(status().isOk())
+			.andExpect(content().string("2a97516c354b68848cdbd8f54a226a0a55b21ed138e207ad6c5cbb9c00aa5aea"));
+		// remembered once computed, but not stored
+		this.mockMvc.perform(get("/artifacts/test-central/test/checksum/1.0/checksum-1.0.jar.sha1"))
+			.andExpect(status().isOk())
+			.andExpect(content().string("89e495e7941cf9e40e6980d14a16bf023ccd4c91"));
+
+		assertThat(lookups("computed")).isEqualTo(computed + 3);
+		assertThat(cachedFile.resolveSibling("checksum-1.0.jar.sha1")).doesNotExist();
+		assertThat(cachedFile.resolveSibling("checksum-1.0.jar.sha256")).doesNotExist();
+		// checksums of missing files and of checksum files are left to the upstream
+		this.mockMvc.perform(get("/artifacts/test-central/test/checksum/1.0/checksum-1.0.pom.sha1"))
+			.andExpect(status().isNotFound());
+		this.mockMvc.perform(get("/artifacts/test-central/test/checksum/1.0/checksum-1.0.jar.sha1.md5"))
+			.andExpect(status().isNotFound());
+		assertThat(lookups("computed")).isEqualTo(computed + 3);
+	}
+
+	@Test
+	void getArtifact_whenCached_shouldSendChecksumHeaders() throws Exception {
+		// the SHA-1 checksum is computed while the file is stored, the SHA-256 one is
+		// read from the checksum file of the upstream
+		this.storageService.store(ArtifactPath.of("test-central", "test/headers/1.0/headers-1.0.jar"),
+				new ByteArrayInputStream("demo".getBytes(StandardCharsets.UTF_8)));
+		this.storageService.store(ArtifactPath.of("test-central", "test/headers/1.0/headers-1.0.jar.sha256"),
+				new ByteArrayInputStream("2a97516c354b68848cdbd8f54a226a0a55b21ed138e207ad6c5cbb9c00aa5aea"
+					.getBytes(StandardCharsets.US_ASCII)));
+
+		this.mockMvc.perform(get("/artifacts/test-central/test/headers/1.0/headers-1.0.jar"))
+			.andExpect(status().isOk())
+			.andExpect(header().string("X-Checksum-SHA1", "89e495e7941cf9e40e6980d14a16bf023ccd4c91"))
+			.andExpect(header().string("X-Checksum-SHA256",
+					"2a97516c354b68848cdbd8f54a226a0a55b21ed138e207ad6c5cbb9c00aa5aea"));
+		assertThat(tempDir.resolve("test-central/test/headers/1.0/headers-1.0.jar.sha1")).doesNotExist();
+		this.mockMvc.perform(get("/artifacts/test-central/test/headers/1.0/headers-1.0.jar.sha256"))
+			.andExpect(status().isOk())
+			.andExpect(header().doesNotExist("X-Checksum-SHA1"));
+	}
+
+	@Test
+	void getArtifact_whenChecksumNotKnown_shouldNotHashFileForHeaders() throws Exception {
+		Path cachedFile = tempDir.resolve("test-central/test/unknown/1.0/unknown-1.0.jar");
+		Files.createDirectories(cachedFile.getParent());
+		Files.writeString(cachedFile, "demo");
+
+		this.mockMvc.perform(get("/artifacts/test-central/test/unknown/1.0/unknown-1.0.jar"))
+			.andExpect(status().isOk())
+			.andExpect(header().doesNotExist("X-Checksum-SHA1"))
+			.andExpect(header().doesNotExist("X-Checksum-SHA256"));
+		assertThat(cachedFile.resolveSibling("unknown-1.0.jar.sha1")).doesNotExist();
+	}
+
+	@Test
+	void headArtifact_whenCached_shouldAnswerFromStorage() throws Exception {
+		this.storageService.store(ArtifactPath.of("test-central", "test/head/1.0/head-1.0.jar"),
+				new ByteArrayInputStream("demo".getBytes(StandardCharsets.UTF_8)));
+
+		this.mockMvc.perform(head("/artifacts/test-central/test/head/1.0/head-1.0.jar"))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType("application/java-archive"))
+			.andExpect(header().longValue("Content-Length", 4))
+			.andExpect(header().string("X-Checksum-SHA1", "89e495e7941cf9e40e6980d14a16bf023ccd4c91"))
+			.andExpect(content().bytes(new byte[0]));
+	}
+
+	@Test
+	void headArtifact_whenNotCached_shouldNotFetchIt() throws Exception {
+		this.mockMvc.perform(head("/artifacts/test-central/junit/junit/4.13.1/junit-4.13.1.pom"))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType("application/xml"))
+			.andExpect(header().exists("Content-Length"));
+		this.mockMvc.perform(head("/artifacts/test-central/junit/junit/4.13.1/junit-4.13.1-missing.pom"))
+			.andExpect(status().isNotFound());
+
+		assertThat(tempDir.resolve("test-central/junit/junit/4.13.1")).doesNotExist();
+	}
+
+	@Test
+	void headArtifact_whenUpstreamFails_shouldReturn502() throws Exception {
+		this.mockMvc.perform(head("/artifacts/test-failing/test/failing/1.0/failing-1.0.pom"))
+			.andExpect(status().isBadGateway());
+	}
+
+	private double lookups(String result) {
+		return this.meterRegistry.get("kagami.cache.lookups")
+			.tag("repository", "test-central")
+			.tag("result", result)
+			.counter()
+			.count();
+	}
+
+	@Test
+	void getArtifact_whenUpstreamFailsEveryAttempt_shouldReturn502() throws Exception {
+		int requests = failingRequests.get();
+
+		// a 404 would be remembered by Maven as the file not existing
+		this.mockMvc.perform(get("/artifacts/test-failing/test/failing/1.0/failing-1.0.jar"))
+			.andExpect(status().isBadGateway());
+
+		assertThat(failingRequests.get() - requests).isEqualTo(3);
+		assertThat(this.meterRegistry.get("kagami.cache.lookups")
+			.tag("repository", "test-failing")
+			.tag("result", "error")
+			.counter()
+			.count()).isEqualTo(1);
+	}
+
+	@Test
+	void getArtifact_whenDeadlinePassed_shouldReturn504() throws Exception {
+		this.mockMvc.perform(get("/artifacts/test-failing/test/slow/1.0/slow-1.0.jar"))
+			.andExpect(status().isGatewayTimeout());
+	}
+
+	@Test
+	void getArtifact_whenRateLimitExceeded_shouldReturn503() throws Exception {
+		this.mockMvc.perform(get("/artifacts/test-throttled/test/throttled/1.0/throttled-1.0.jar"))
+			.andExpect(status().isBadGateway());
+
+		this.mockMvc.perform(get("/artifacts/test-throttled/test/throttled/1.0/throttled-1.0.pom"))
+			.andExpect(status().isServiceUnavailable())
+			.andExpect(header().string("Retry-After", "2"));
+		this.mockMvc.perform(head("/artifacts/test-throttled/test/throttled/1.0/throttled-1.0.pom"))
+			.andExpect(status().isServiceUnavailable())
+			.andExpect(header().string("Retry-After", "2"));
+		assertThat(this.meterRegistry.get("kagami.cache.lookups")
+			.tag("repository", "test-throttled")
+			.tag("result", "throttled")
+			.counter()
+			.count()).isEqualTo(1);
+	}
+
+	@Test
+	void storageUsage_shouldFollowStoredAndDeletedFiles() throws Exception {
+		this.storageService.store(ArtifactPath.of("test-usage", "test/usage/1.0/usage-1.0.jar"),
+				new ByteArrayInputStream("demo".getBytes(StandardCharsets.UTF_8)));
+		this.storageService.store(ArtifactPath.of("test-usage", "test/usage/1.0/usage-1.0.pom"),
+				new ByteArrayInputStream("pom".getBytes(StandardCharsets.UTF_8)));
+		assertThat(storageUsage("kagami.storage.files")).isEqualTo(2);
+		assertThat(storageUsage("kagami.storage.size")).isEqualTo(7);
+
+		// replaced
+		this.storageService.store(ArtifactPath.of("test-usage", "test/usage/1.0/usage-1.0.jar"),
+				new ByteArrayInputStream("demo2".getBytes(StandardCharsets.UTF_8)));
+		assertThat(storageUsage("kagami.storage.files")).isEqualTo(2);
+		assertThat(storageUsage("kagami.storage.size")).isEqualTo(8);
+
+		this.storageService.delete(ArtifactPath.of("test-usage", "test/usage/1.0/usage-1.0.pom"));
+		assertThat(storageUsage("kagami.storage.files")).isEqualTo(1);
+		assertThat(storageUsage("kagami.storage.size")).isEqualTo(5);
+
+		// deleted in the background
+		this.storageService.delete(ArtifactPath.of("test-usage", "test"));
+		for (int i = 0; i < 100 && storageUsage("kagami.storage.files") > 0; i++) {
+			Thread.sleep(20);
+		}
+		assertThat(storageUsage("kagami.storage.files")).isZero();
+		assertThat(storageUsage("kagami.storage.size")).isZero();
+	}
+
+	private double storageUsage(String name) {
+		return this.meterRegistry.get(name).tag("repository", "test-usage").gauge().value();
+	}
+
 	@Test
 	void getArtifact_whenRepositoryNotConfigured_shouldReturn404() throws Exception {
 		this.mockMvc.perform(get("/artifacts/unknown-repo/some/artifact/1.0/artifact-1.0.jar"))
@@ -81,7 +362,7 @@ class ArtifactControllerTest {
 	}
 
 	@Test
-	void deleteArtifact_whenDirectoryExists_shouldDeleteRecursivelyAndReturn204() throws Exception {
+	void deleteArtifact_whenDirectoryExists_shouldDeleteRecursivelyInBackgroundAndReturn202() throws Exception {
 		// Create a test directory structure
 		Path testDir = tempDir.resolve("test-central/test/artifact/1.0");
 		Files.createDirectories(testDir);
@@ -89,10 +370,55 @@ class ArtifactControllerTest {
 		Files.writeString(testDir.resolve("artifact-1.0.pom"), "pom content");
 
 		// Delete the directory
-		this.mockMvc.perform(delete("/artifacts/test-central/test/artifact/1.0/")).andExpect(status().isNoContent());
+		String location = this.mockMvc.perform(delete("/artifacts/test-central/test/artifact/1.0/"))
+			.andExpect(status().isAccepted())
+			.andExpect(header().string("Location", startsWith("http://localhost/delete-jobs/")))
+			.andExpect(jsonPath("$.repositoryId").value("test-central"))
+			.andExpect(jsonPath("$.path").value("test/artifact/1.0/"))
+			.andReturn()
+			.getResponse()
+			.getHeader("Location");
 
-		// Verify directory was deleted
+		// The directory is gone from the repository before the contents are deleted
 		assertThat(testDir).doesNotExist();
+
+		// Poll the job until the contents are deleted
+		String jobPath = location.substring("http://localhost".length());
+		String state = "RUNNING";
+		for (int i = 0; i < 50 && state.equals("RUNNING"); i++) {
+			Thread.sleep(100);
+			state = JsonPath.read(this.mockMvc.perform(get(jobPath))
+				.andExpect(status().isOk())
+				.andReturn()
+				.getResponse()
+				.getContentAsString(), "$.state");
+		}
+		assertThat(state).isEqualTo("COMPLETED");
+		this.mockMvc.perform(get(jobPath)).andExpect(jsonPath("$.deletedFiles").value(2));
+		assertThat(tempDir.resolve(".trash")).isEmptyDirectory();
+	}
+
+	@Test
+	void getDeleteJob_withTokenForOtherRepository_shouldReturn404() throws Exception {
+		Path testDir = tempDir.resolve("test-central/test/job/1.0");
+		Files.createDirectories(testDir);
+		Files.writeString(testDir.resolve("job-1.0.jar"), "jar content");
+		String location = this.mockMvc.perform(delete("/artifacts/test-central/test/job/1.0/"))
+			.andExpect(status().isAccepted())
+			.andReturn()
+			.getResponse()
+			.getHeader("Location");
+		String jobPath = location.substring("http://localhost".length());
+
+		this.mockMvc.perform(get(jobPath).with(deleteToken("other-repo"))).andExpect(status().isNotFound());
+		this.mockMvc.perform(get(jobPath).with(deleteToken("test-*")))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.repositoryId").value("test-central"));
+	}
+
+	@Test
+	void getDeleteJob_whenNotExists_shouldReturn404() throws Exception {
+		this.mockMvc.perform(get("/delete-jobs/unknown")).andExpect(status().isNotFound());
 	}
 
 	@Test
@@ -119,4 +445,9 @@ class ArtifactControllerTest {
 			.andExpect(content().contentType("application/xml"));
 	}
 
+	static JwtRequestPostProcessor deleteToken(String repositories) {
+		return jwt().jwt(token -> token.claim(KagamiJwtClaims.REPOSITORIES, List.of(repositories)))
+			.authorities(new SimpleGrantedAuthority("SCOPE_artifacts:delete"));
+	}
+
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package am.ik.kagami.browser.web;
 
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.storage.StorageService;
+import com.jayway.jsonpath.JsonPath;
+import java.io.ByteArrayInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import org.junit.jupiter.api.Test;
@@ -7,13 +11,19 @@ import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -37,6 +47,9 @@ class BrowserControllerTest {
 	@Autowired
 	private MockMvc mockMvc;
 
+	@Autowired
+	private StorageService storageService;
+
 	@Test
 	void getRepositories_shouldReturnConfiguredRepositories() throws Exception {
 		this.mockMvc.perform(get("/repositories"))
@@ -78,6 +91,127 @@ class BrowserControllerTest {
 		System.out.println("File Response: " + fileResult.andReturn().getResponse().getContentAsString());
 	}
 
+	@Test
+	void browseRepository_withCursor_shouldReturnNextPage() throws Exception {
+		Path pagedDir = tempDir.resolve("test-repo").resolve("com/example/paged");
+		Files.createDirectories(pagedDir);
+		for (String name : new String[] { "e.jar", "a.jar", "d.jar", "b.jar", "c.jar" }) {
+			Files.writeString(pagedDir.resolve(name), name);
+		}
+
+		String firstPage = this.mockMvc
+			.perform(get("/repositories/test-repo/browse").param("path", "com/example/paged").param("limit", "2"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.totalCount").value(5))
+			.andExpect(jsonPath("$.entries.length()").value(2))
+			.andExpect(jsonPath("$.entries[0].name").value("a.jar"))
+			.andExpect(jsonPath("$.entries[1].name").value("b.jar"))
+			.andExpect(jsonPath("$.nextCursor").isString())
+			.andReturn()
+			.getResponse()
+			.getContentAsString();
+		String cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+		// an entry stored before the cursor does not shift the next page
+		Files.writeString(pagedDir.resolve("a0.jar"), "a0");
+		this.storageService.store(ArtifactPath.of("test-repo", "com/example/paged/a1.jar"),
+				new ByteArrayInputStream("a1".getBytes()));
+
+		String secondPage = this.mockMvc
+			.perform(get("/repositories/test-repo/browse").param("path", "com/example/paged")
+				.param("limit", "2")
+				.param("cursor", cursor))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.entries.length()").value(2))
+			.andExpect(jsonPath("$.entries[0].name").value("c.jar"))
+			.andExpect(jsonPath("$.entries[1].name").value("d.jar"))
+			.andReturn()
+			.getResponse()
+			.getContentAsString();
+
+		this.mockMvc
+			.perform(get("/repositories/test-repo/browse").param("path", "com/example/paged")
+				.param("limit", "2")
+				.param("cursor", JsonPath.<String>read(secondPage, "$.nextCursor")))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.entries.length()").value(1))
+			.andExpect(jsonPath("$.entries[0].name").value("e.jar"))
+			.andExpect(jsonPath("$.nextCursor").doesNotExist());
+	}
+
+	@Test
+	void browseRepository_withSortAndFilter_shouldReturnMatchingEntries() throws Exception {
+		Path sortedDir = tempDir.resolve("test-repo").resolve("com/example/sorted");
+		Files.createDirectories(sortedDir.resolve("lib-directory"));
+		Files.writeString(sortedDir.resolve("lib-small.jar"), "s");
+		Files.writeString(sortedDir.resolve("LIB-large.jar"), "large");
+		Files.writeString(sortedDir.resolve("other.jar"), "other content");
+
+		this.mockMvc
+			.perform(get("/repositories/test-repo/browse").param("path", "com/example/sorted")
+				.param("sort", "size")
+				.param("order", "desc")
+				.param("q", "lib")
+				.param("type", "file"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.totalCount").value(2))
+			.andExpect(jsonPath("$.entries.length()").value(2))
+			.andExpect(jsonPath("$.entries[0].name").value("LIB-large.jar"))
+			.andExpect(jsonPath("$.entries[1].name").value("lib-small.jar"));
+	}
+
+	@Test
+	void browseRepository_withInvalidParameters_shouldReturn400() throws Exception {
+		this.mockMvc.perform(get("/repositories/test-repo/browse").param("sort", "unknown"))
+			.andExpect(status().isBadRequest());
+		this.mockMvc.perform(get("/repositories/test-repo/browse").param("cursor", "not a cursor"))
+			.andExpect(status().isBadRequest());
+		this.mockMvc.perform(get("/repositories/test-repo/browse").param("limit", "0"))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void streamRepository_shouldWriteNewlineDelimitedEntries() throws Exception {
+		Path streamedDir = tempDir.resolve("test-repo").resolve("com/example/streamed");
+		Files.createDirectories(streamedDir);
+		Files.writeString(streamedDir.resolve("b.jar"), "b");
+		Files.writeString(streamedDir.resolve("a.jar"), "a");
+
+		MvcResult result = this.mockMvc
+			.perform(get("/repositories/test-repo/browse").param("path", "com/example/streamed")
+				.accept(MediaType.APPLICATION_NDJSON))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+
+		String body = this.mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+			.andReturn()
+			.getResponse()
+			.getContentAsString();
+		assertThat(body.lines().map(line -> JsonPath.<String>read(line, "$.name")).toList()).containsExactly("a.jar",
+				"b.jar");
+	}
+
+	@Test
+	void browseRepository_afterArtifactStored_shouldReturnNewEntry() throws Exception {
+		Path cachedDir = tempDir.resolve("test-repo").resolve("com/example/cached");
+		Files.createDirectories(cachedDir);
+		Files.writeString(cachedDir.resolve("a.jar"), "a");
+
+		this.mockMvc.perform(get("/repositories/test-repo/browse").param("path", "com/example/cached"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.entries.length()").value(1));
+
+		this.storageService.store(ArtifactPath.of("test-repo", "com/example/cached/b.jar"),
+				new ByteArrayInputStream("b".getBytes()));
+
+		this.mockMvc.perform(get("/repositories/test-repo/browse").param("path", "com/example/cached"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.entries.length()").value(2))
+			.andExpect(jsonPath("$.entries[1].name").value("b.jar"));
+	}
+
 	@Test
 	void browseRepository_whenRepositoryNotExists_shouldReturn400() throws Exception {
 		this.mockMvc.perform(get("/repositories/unknown-repo/browse")).andExpect(status().isBadRequest());
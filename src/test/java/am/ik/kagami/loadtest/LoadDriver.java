@@ -0,0 +1,150 @@
+package am.ik.kagami.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Replays the request sequences of a {@link Workload} against Kagami with a fixed number
+ * of concurrent clients and records the latency of every request together with the heap
+ * and GC activity of the JVM during the pass.
+ */
+public class LoadDriver {
+
+	private final HttpClient httpClient;
+
+	private final String baseUrl;
+
+	private final int concurrency;
+
+	public LoadDriver(String baseUrl, int concurrency) {
+		this.baseUrl = baseUrl;
+		this.concurrency = concurrency;
+		this.httpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+	}
+
+	/**
+	 * Run one pass over all request sequences of the workload
+	 * @param name the name of the pass in the report
+	 * @param workload the workload to replay
+	 * @return the result of the pass
+	 */
+	public PassResult run(String name, Workload workload) throws InterruptedException {
+		List<Sample> samples = new ArrayList<>(workload.requestCount());
+		Semaphore permits = new Semaphore(this.concurrency);
+		JvmSnapshot before = JvmSnapshot.take(true);
+		long start = System.nanoTime();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (List<String> sequence : workload.sequences()) {
+				permits.acquire();
+				executor.execute(() -> {
+					try {
+						for (String path : sequence) {
+							Sample sample = request(path);
+							synchronized (samples) {
+								samples.add(sample);
+							}
+						}
+					}
+					finally {
+						permits.release();
+					}
+				});
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		JvmSnapshot after = JvmSnapshot.take(false);
+		return new PassResult(name, List.copyOf(samples), Duration.ofNanos(elapsed), before, after);
+	}
+
+	private Sample request(String path) {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(this.baseUrl + "/" + path))
+			.timeout(Duration.ofMinutes(2))
+			.GET()
+			.build();
+		long start = System.nanoTime();
+		try {
+			HttpResponse<InputStream> response = this.httpClient.send(request,
+					HttpResponse.BodyHandlers.ofInputStream());
+			long bytes;
+			try (InputStream body = response.body()) {
+				bytes = body.transferTo(OutputStream.nullOutputStream());
+			}
+			return new Sample(path, response.statusCode(), bytes, System.nanoTime() - start);
+		}
+		catch (IOException e) {
+			return new Sample(path, -1, 0, System.nanoTime() - start);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new Sample(path, -1, 0, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * A single request made by the driver
+	 *
+	 * @param path the requested artifact path
+	 * @param status the response status, or -1 if the request failed
+	 * @param bytes the number of body bytes received
+	 * @param latencyNanos the time until the whole body was received
+	 */
+	public record Sample(String path, int status, long bytes, long latencyNanos) {
+
+	}
+
+	public record PassResult(String name, List<Sample> samples, Duration elapsed, JvmSnapshot before,
+			JvmSnapshot after) {
+
+	}
+
+	/**
+	 * Heap and GC counters of the running JVM
+	 *
+	 * @param gcCount the total number of collections
+	 * @param gcTimeMillis the total time spent in collections
+	 * @param heapUsed the currently used heap
+	 * @param heapPeak the peak heap usage since the last reset
+	 */
+	public record JvmSnapshot(long gcCount, long gcTimeMillis, long heapUsed, long heapPeak) {
+
+		static JvmSnapshot take(boolean resetPeak) {
+			long gcCount = 0;
+			long gcTime = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				gcCount += Math.max(0, gc.getCollectionCount());
+				gcTime += Math.max(0, gc.getCollectionTime());
+			}
+			long heapPeak = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					heapPeak += pool.getPeakUsage().getUsed();
+					if (resetPeak) {
+						pool.resetPeakUsage();
+					}
+				}
+			}
+			long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+			return new JvmSnapshot(gcCount, gcTime, heapUsed, heapPeak);
+		}
+
+	}
+
+}
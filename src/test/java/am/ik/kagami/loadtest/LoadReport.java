@@ -0,0 +1,75 @@
+package am.ik.kagami.loadtest;
+
+import am.ik.kagami.loadtest.LoadDriver.PassResult;
+import am.ik.kagami.loadtest.LoadDriver.Sample;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Renders the results of load test passes as a plain text report
+ */
+public final class LoadReport {
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private LoadReport() {
+	}
+
+	public static String render(Map<String, Object> settings, Iterable<PassResult> passes, MockUpstream upstream) {
+		StringBuilder report = new StringBuilder();
+		report.append("== Settings\n");
+		settings.forEach((key, value) -> report.append("  %-16s %s%n".formatted(key, value)));
+		for (PassResult pass : passes) {
+			report.append("\n== ").append(pass.name()).append('\n');
+			report.append(renderPass(pass));
+		}
+		report.append("\n== Upstream\n");
+		report.append("  %-16s %d%n".formatted("requests", upstream.requests()));
+		report.append("  %-16s %d%n".formatted("errors", upstream.errors()));
+		report.append("  %-16s %s%n".formatted("bytes sent", megabytes(upstream.bytesSent())));
+		return report.toString();
+	}
+
+	static String renderPass(PassResult pass) {
+		StringBuilder report = new StringBuilder();
+		long[] latencies = pass.samples().stream().mapToLong(Sample::latencyNanos).sorted().toArray();
+		long bytes = pass.samples().stream().mapToLong(Sample::bytes).sum();
+		double seconds = pass.elapsed().toNanos() / 1e9;
+		Map<Integer, Long> statuses = new TreeMap<>();
+		pass.samples().forEach(sample -> statuses.merge(sample.status(), 1L, Long::sum));
+		report.append("  %-16s %d%n".formatted("requests", latencies.length));
+		report.append("  %-16s %s%n".formatted("statuses", statuses));
+		report.append("  %-16s %.3f s%n".formatted("elapsed", seconds));
+		report.append("  %-16s %.1f req/s%n".formatted("throughput", latencies.length / seconds));
+		report.append("  %-16s %.2f MB/s%n".formatted("bandwidth", bytes / seconds / (1024 * 1024)));
+		for (double percentile : PERCENTILES) {
+			report.append("  %-16s %.2f ms%n".formatted("p" + formatPercentile(percentile),
+					percentile(latencies, percentile) / 1e6));
+		}
+		report.append("  %-16s %.2f ms%n".formatted("max",
+				(latencies.length == 0 ? 0 : latencies[latencies.length - 1]) / 1e6));
+		report.append("  %-16s %d%n".formatted("gc count", pass.after().gcCount() - pass.before().gcCount()));
+		report
+			.append("  %-16s %d ms%n".formatted("gc time", pass.after().gcTimeMillis() - pass.before().gcTimeMillis()));
+		report.append("  %-16s %s%n".formatted("heap peak", megabytes(pass.after().heapPeak())));
+		report.append("  %-16s %s%n".formatted("heap after", megabytes(pass.after().heapUsed())));
+		return report.toString();
+	}
+
+	static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+	}
+
+	private static String formatPercentile(double percentile) {
+		return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+	}
+
+	private static String megabytes(long bytes) {
+		return "%.1f MB".formatted(bytes / (1024.0 * 1024.0));
+	}
+
+}
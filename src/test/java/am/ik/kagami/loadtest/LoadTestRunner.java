@@ -0,0 +1,116 @@
+package am.ik.kagami.loadtest;
+
+import am.ik.kagami.KagamiApplication;
+import am.ik.kagami.loadtest.LoadDriver.PassResult;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Runs Kagami against a local {@link MockUpstream} and replays a synthetic Maven/Gradle
+ * workload: one cold pass where every request is a cache miss followed by warm passes
+ * where every request is a cache hit. Everything runs in this JVM on the loopback
+ * interface, so no network access is required.
+ * <p>
+ * Options are passed as {@code --name=value}, e.g.
+ * {@code --artifacts=500 --concurrency=64 --latency=80ms --bandwidth=5MB --error-rate=0.01}.
+ */
+public class LoadTestRunner {
+
+	public static void main(String[] args) throws Exception {
+		// DevTools would restart the application in a new class loader
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		Map<String, String> options = parseOptions(args);
+		int artifacts = Integer.parseInt(options.getOrDefault("artifacts", "200"));
+		int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+		int warmPasses = Integer.parseInt(options.getOrDefault("warm-passes", "3"));
+		long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+		double gradleRatio = Double.parseDouble(options.getOrDefault("gradle-ratio", "0.3"));
+		double metadataRatio = Double.parseDouble(options.getOrDefault("metadata-ratio", "0.05"));
+		Duration latency = DurationStyle.detectAndParse(options.getOrDefault("latency", "50ms"));
+		Duration latencyJitter = DurationStyle.detectAndParse(options.getOrDefault("latency-jitter", "20ms"));
+		DataSize bandwidth = DataSize.parse(options.getOrDefault("bandwidth", "10MB"));
+		double errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+		Path reportPath = Path.of(options.getOrDefault("report", "target/loadtest-report.txt"));
+
+		Map<String, Object> settings = new LinkedHashMap<>();
+		settings.put("artifacts", artifacts);
+		settings.put("concurrency", concurrency);
+		settings.put("warm passes", warmPasses);
+		settings.put("seed", seed);
+		settings.put("gradle ratio", gradleRatio);
+		settings.put("metadata ratio", metadataRatio);
+		settings.put("latency", "%dms +/- %dms".formatted(latency.toMillis(), latencyJitter.toMillis()));
+		settings.put("bandwidth", bandwidth.toBytes() <= 0 ? "unlimited" : bandwidth + "/s per response");
+		settings.put("error rate", errorRate);
+		settings.put("max heap", DataSize.ofBytes(Runtime.getRuntime().maxMemory()).toMegabytes() + "MB");
+
+		Workload workload = Workload.generate(seed, artifacts, gradleRatio, metadataRatio);
+		Path storage = Files.createTempDirectory("kagami-loadtest");
+		try (MockUpstream upstream = new MockUpstream(0,
+				new MockUpstream.Settings(latency, latencyJitter, bandwidth.toBytes(), errorRate))) {
+			workload.registerWith(upstream);
+			upstream.run();
+			try (ConfigurableApplicationContext context = startKagami(storage, upstream.port())) {
+				String port = context.getEnvironment().getRequiredProperty("local.server.port");
+				LoadDriver driver = new LoadDriver("http://127.0.0.1:%s/artifacts/central".formatted(port),
+						concurrency);
+				List<PassResult> passes = new ArrayList<>();
+				passes.add(driver.run("cold (cache miss)", workload));
+				for (int i = 1; i <= warmPasses; i++) {
+					passes.add(driver.run("warm #%d (cache hit)".formatted(i), workload));
+				}
+				String report = LoadReport.render(settings, passes, upstream);
+				System.out.println(report);
+				Files.createDirectories(reportPath.toAbsolutePath().getParent());
+				Files.writeString(reportPath, report);
+				System.out.println("Report written to " + reportPath.toAbsolutePath());
+			}
+		}
+		finally {
+			deleteQuietly(storage);
+		}
+	}
+
+	static ConfigurableApplicationContext startKagami(Path storage, int upstreamPort) {
+		return new SpringApplicationBuilder(KagamiApplication.class)
+			.properties("server.port=0", "kagami.storage.path=" + storage,
+					"kagami.repositories.central.url=http://127.0.0.1:%d".formatted(upstreamPort),
+					"logging.level.root=warn", "logging.structured.format.console=",
+					"management.tracing.sampling.probability=0", "management.otlp.metrics.export.enabled=false",
+					"logbook.predicate.exclude[0].path=/artifacts/**")
+			.run();
+	}
+
+	static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new LinkedHashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("Options must be given as --name=value: " + arg);
+			}
+			int delimiter = arg.indexOf('=');
+			options.put(arg.substring(2, delimiter), arg.substring(delimiter + 1));
+		}
+		return options;
+	}
+
+	private static void deleteQuietly(Path path) {
+		try {
+			FileSystemUtils.deleteRecursively(path);
+		}
+		catch (IOException e) {
+			// ignore
+		}
+	}
+
+}
@@ -0,0 +1,264 @@
+package am.ik.kagami.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A multi-threaded upstream Maven repository for load tests. Artifact contents are
+ * generated deterministically from their path, so nothing has to be kept in memory and
+ * checksum sidecars are always consistent with the served bytes. Response latency,
+ * per-connection bandwidth and the ratio of failing requests are configurable.
+ */
+public class MockUpstream implements AutoCloseable {
+
+	private static final int CHUNK_SIZE = 8192;
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	private final Settings settings;
+
+	private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+
+	private final Map<String, String> sha1s = new ConcurrentHashMap<>();
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	public MockUpstream(int port, Settings settings) {
+		try {
+			this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.settings = settings;
+		this.executor = Executors.newVirtualThreadPerTaskExecutor();
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(this.executor);
+	}
+
+	/**
+	 * Register a file that the upstream serves
+	 * @param path the path of the file relative to the repository root
+	 * @param size the size of the generated content in bytes
+	 */
+	public void register(String path, long size) {
+		this.sizes.put(path, size);
+	}
+
+	public void run() {
+		this.server.start();
+	}
+
+	public int port() {
+		return this.server.getAddress().getPort();
+	}
+
+	public long requests() {
+		return this.requests.get();
+	}
+
+	public long errors() {
+		return this.errors.get();
+	}
+
+	public long bytesSent() {
+		return this.bytesSent.get();
+	}
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.executor.close();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			this.requests.incrementAndGet();
+			String path = exchange.getRequestURI().getPath().substring(1);
+			boolean head = "HEAD".equals(exchange.getRequestMethod());
+			sleep(latency());
+			if (this.settings.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < this.settings.errorRate()) {
+				this.errors.incrementAndGet();
+				exchange.sendResponseHeaders(503, -1);
+				return;
+			}
+			if (path.endsWith(".sha1") && this.sizes.containsKey(path.substring(0, path.length() - 5))) {
+				String target = path.substring(0, path.length() - 5);
+				byte[] body = this.sha1s.computeIfAbsent(target, this::sha1).getBytes(StandardCharsets.US_ASCII);
+				exchange.getResponseHeaders().set("Content-Type", "text/plain");
+				send(exchange, head, body.length, out -> out.write(body));
+				return;
+			}
+			Long size = this.sizes.get(path);
+			if (size == null) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+			send(exchange, head, size, out -> generate(path, size, out));
+		}
+	}
+
+	private void send(HttpExchange exchange, boolean head, long length, BodyWriter writer) throws IOException {
+		if (head) {
+			exchange.getResponseHeaders().set("Content-Length", Long.toString(length));
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(200, length == 0 ? -1 : length);
+		try (OutputStream body = new ThrottledOutputStream(exchange.getResponseBody(),
+				this.settings.bytesPerSecond())) {
+			writer.write(body);
+		}
+		this.bytesSent.addAndGet(length);
+	}
+
+	private Duration latency() {
+		long jitter = this.settings.latencyJitter().toMillis();
+		if (jitter <= 0) {
+			return this.settings.latency();
+		}
+		return this.settings.latency().plusMillis(ThreadLocalRandom.current().nextLong(-jitter, jitter + 1));
+	}
+
+	private String sha1(String path) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			generate(path, this.sizes.get(path), new OutputStream() {
+				@Override
+				public void write(int b) {
+					digest.update((byte) b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+					digest.update(b, off, len);
+				}
+			});
+			return HexFormat.of().formatHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static void generate(String path, long size, OutputStream out) throws IOException {
+		SplittableRandom random = new SplittableRandom(path.hashCode());
+		byte[] chunk = new byte[CHUNK_SIZE];
+		long remaining = size;
+		while (remaining > 0) {
+			int length = (int) Math.min(chunk.length, remaining);
+			for (int i = 0; i < length; i++) {
+				chunk[i] = (byte) random.nextInt(256);
+			}
+			out.write(chunk, 0, length);
+			remaining -= length;
+		}
+	}
+
+	private static void sleep(Duration duration) {
+		if (duration.isNegative() || duration.isZero()) {
+			return;
+		}
+		try {
+			Thread.sleep(duration);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Settings of the simulated upstream
+	 *
+	 * @param latency the delay before response headers are sent
+	 * @param latencyJitter the maximum random deviation added to the latency
+	 * @param bytesPerSecond the bandwidth of each response, or 0 for unlimited
+	 * @param errorRate the ratio of requests answered with 503 Service Unavailable
+	 */
+	public record Settings(Duration latency, Duration latencyJitter, long bytesPerSecond, double errorRate) {
+
+	}
+
+	@FunctionalInterface
+	private interface BodyWriter {
+
+		void write(OutputStream out) throws IOException;
+
+	}
+
+	/**
+	 * Caps the write rate of a single response by sleeping between chunks
+	 */
+	private static class ThrottledOutputStream extends OutputStream {
+
+		private final OutputStream delegate;
+
+		private final long bytesPerSecond;
+
+		private final long startNanos = System.nanoTime();
+
+		private long written;
+
+		ThrottledOutputStream(OutputStream delegate, long bytesPerSecond) {
+			this.delegate = delegate;
+			this.bytesPerSecond = bytesPerSecond;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.delegate.write(b);
+			throttle(1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.delegate.write(b, off, len);
+			throttle(len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.delegate.close();
+		}
+
+		private void throttle(int length) {
+			if (this.bytesPerSecond <= 0) {
+				return;
+			}
+			this.written += length;
+			long expectedNanos = this.written * 1_000_000_000L / this.bytesPerSecond;
+			long aheadNanos = expectedNanos - (System.nanoTime() - this.startNanos);
+			if (aheadNanos > 0) {
+				sleep(Duration.ofNanos(aheadNanos));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,108 @@
+package am.ik.kagami.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A synthetic dependency set and the request sequences that Maven and Gradle clients
+ * issue to resolve it. Maven fetches the POM and the JAR together with their SHA-1
+ * sidecars, while Gradle fetches the POM, the Gradle module metadata and the JAR without
+ * checksums. A fraction of the artifacts are additionally resolved through
+ * {@code maven-metadata.xml} as for version ranges and plugins.
+ */
+public class Workload {
+
+	private final List<Artifact> artifacts;
+
+	private final List<List<String>> sequences;
+
+	private Workload(List<Artifact> artifacts, List<List<String>> sequences) {
+		this.artifacts = artifacts;
+		this.sequences = sequences;
+	}
+
+	/**
+	 * Generate a reproducible workload
+	 * @param seed the random seed
+	 * @param artifactCount the number of distinct artifacts
+	 * @param gradleRatio the ratio of artifacts resolved with the Gradle request mix
+	 * @param metadataRatio the ratio of artifacts that also request
+	 * {@code maven-metadata.xml}
+	 * @return the workload
+	 */
+	public static Workload generate(long seed, int artifactCount, double gradleRatio, double metadataRatio) {
+		Random random = new Random(seed);
+		List<Artifact> artifacts = new ArrayList<>(artifactCount);
+		List<List<String>> sequences = new ArrayList<>(artifactCount);
+		for (int i = 0; i < artifactCount; i++) {
+			String groupPath = "com/example/group%d".formatted(i % Math.max(1, artifactCount / 10));
+			String artifactId = "lib-%d".formatted(i);
+			String version = "%d.%d.%d".formatted(1 + random.nextInt(3), random.nextInt(10), random.nextInt(5));
+			// POMs are a few KB, JARs follow a log-normal distribution around 100 KB
+			long pomSize = 1024 + random.nextInt(16 * 1024);
+			long moduleSize = 1024 + random.nextInt(4 * 1024);
+			long jarSize = Math.min(32L * 1024 * 1024,
+					Math.max(1024, (long) Math.exp(Math.log(100 * 1024) + random.nextGaussian() * 1.2)));
+			Artifact artifact = new Artifact(groupPath, artifactId, version, pomSize, moduleSize, jarSize);
+			artifacts.add(artifact);
+			List<String> sequence = new ArrayList<>();
+			if (random.nextDouble() < metadataRatio) {
+				sequence.add(artifact.metadataPath());
+			}
+			if (random.nextDouble() < gradleRatio) {
+				sequence.add(artifact.path("pom"));
+				sequence.add(artifact.path("module"));
+				sequence.add(artifact.path("jar"));
+			}
+			else {
+				sequence.add(artifact.path("pom"));
+				sequence.add(artifact.path("pom") + ".sha1");
+				sequence.add(artifact.path("jar"));
+				sequence.add(artifact.path("jar") + ".sha1");
+			}
+			sequences.add(List.copyOf(sequence));
+		}
+		Collections.shuffle(sequences, random);
+		return new Workload(List.copyOf(artifacts), List.copyOf(sequences));
+	}
+
+	/**
+	 * Register all files of this workload with the mock upstream
+	 * @param upstream the mock upstream
+	 */
+	public void registerWith(MockUpstream upstream) {
+		for (Artifact artifact : this.artifacts) {
+			upstream.register(artifact.path("pom"), artifact.pomSize());
+			upstream.register(artifact.path("module"), artifact.moduleSize());
+			upstream.register(artifact.path("jar"), artifact.jarSize());
+			upstream.register(artifact.metadataPath(), 512);
+		}
+	}
+
+	/**
+	 * Request sequences, one per artifact, in the order a client issues them
+	 */
+	public List<List<String>> sequences() {
+		return this.sequences;
+	}
+
+	public int requestCount() {
+		return this.sequences.stream().mapToInt(List::size).sum();
+	}
+
+	record Artifact(String groupPath, String artifactId, String version, long pomSize, long moduleSize, long jarSize) {
+
+		String path(String extension) {
+			return "%s/%s/%s/%s-%s.%s".formatted(this.groupPath, this.artifactId, this.version, this.artifactId,
+					this.version, extension);
+		}
+
+		String metadataPath() {
+			return "%s/%s/maven-metadata.xml".formatted(this.groupPath, this.artifactId);
+		}
+
+	}
+
+}
@@ -1,13 +1,41 @@
 package am.ik.kagami.repository;
 
 import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.storage.DeleteJobService;
+import am.ik.kagami.storage.LocalStorageService;
 import am.ik.kagami.storage.StorageService;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.client.RestClient;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,6 +46,31 @@ import static org.assertj.core.api.Assertions.assertThat;
 @ExtendWith(MockitoExtension.class)
 class RemoteRepositoryServiceTest {
 
+	static final KagamiProperties.Repository.Fetch DIRECT = new KagamiProperties.Repository.Fetch(
+			KagamiProperties.Repository.FetchEngine.DIRECT, true, Duration.ofMinutes(1));
+
+	static final KagamiProperties.Repository.Fetch RESOLVER = new KagamiProperties.Repository.Fetch(
+			KagamiProperties.Repository.FetchEngine.RESOLVER, true, Duration.ofMinutes(1));
+
+	static final KagamiProperties.Repository.Fetch PARALLEL = FetchSettings.defaults()
+		.withParallel(DataSize.ofKilobytes(1), DataSize.ofKilobytes(16), 3)
+		.build();
+
+	static final KagamiProperties.Repository.Fetch RETRYING = FetchSettings.defaults()
+		.withRetry(true, Duration.ofMillis(10), Duration.ofMillis(100))
+		.build();
+
+	// leaves resuming an interrupted download to the next request
+	static final KagamiProperties.Repository.Fetch NO_RETRY = FetchSettings.defaults()
+		.withVerifyChecksums(false)
+		.withRetry(false, Duration.ofMillis(10), Duration.ofMillis(100))
+		.build();
+
+	static final KagamiProperties.Repository.Resolver SIMPLE_RESOLVER = new KagamiProperties.Repository.Resolver(
+			"daily", KagamiProperties.Repository.Resolver.ChecksumPolicy.WARN,
+			KagamiProperties.Repository.Resolver.LocalRepositoryManager.SIMPLE, 1,
+			KagamiProperties.Repository.Resolver.NamedLockFactory.RWLOCK_LOCAL, Duration.ofMinutes(5));
+
 	@Mock
 	private StorageService storageService;
 
@@ -29,7 +82,8 @@ class RemoteRepositoryServiceTest {
 				new KagamiProperties.Proxy("http://config-proxy:8080"), new KagamiProperties.Jwt(null, null),
 				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
 
-		var service = new RemoteRepositoryService(properties, storageService, RestClient.builder());
+		var service = new RemoteRepositoryService(properties, storageService, RestClient.builder(), event -> {
+		}, new SimpleMeterRegistry(), ObservationRegistry.NOOP);
 
 		// Verify service was created successfully
 		assertThat(service.isRepositoryConfigured("test")).isTrue();
@@ -43,7 +97,8 @@ class RemoteRepositoryServiceTest {
 				new KagamiProperties.Proxy(""), new KagamiProperties.Jwt(null, null),
 				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
 
-		var service = new RemoteRepositoryService(properties, storageService, RestClient.builder());
+		var service = new RemoteRepositoryService(properties, storageService, RestClient.builder(), event -> {
+		}, new SimpleMeterRegistry(), ObservationRegistry.NOOP);
 
 		// Verify service was created successfully
 		assertThat(service.isRepositoryConfigured("test")).isTrue();
@@ -58,10 +113,901 @@ class RemoteRepositoryServiceTest {
 				new KagamiProperties.Proxy(""), new KagamiProperties.Jwt(null, null),
 				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
 
-		var service = new RemoteRepositoryService(properties, storageService, RestClient.builder());
+		var service = new RemoteRepositoryService(properties, storageService, RestClient.builder(), event -> {
+		}, new SimpleMeterRegistry(), ObservationRegistry.NOOP);
 
 		// Verify service was created successfully
 		assertThat(service.isRepositoryConfigured("authenticated-repo")).isTrue();
 	}
 
-}
\ No newline at end of file
+	@Test
+	void directEngineStoresVerifiedArtifactAndChecksum(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		HttpServer server = upstream(jar, "89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, DIRECT, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+			Path directory = storagePath.resolve("test/com/example/demo/1.0");
+			assertThat(directory.resolve("demo-1.0.jar")).hasBinaryContent(jar);
+			assertThat(directory.resolve("demo-1.0.jar.sha1")).hasContent("89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+			// no tracking files of Maven Resolver
+			try (var files = Files.list(directory)) {
+				assertThat(files).hasSize(2);
+			}
+			assertThat(storagePath.resolve(".incoming")).isEmptyDirectory();
+			assertThat(meterRegistry.get("kagami.upstream.fetched").counter().count()).isEqualTo(jar.length);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void unfinishedWritesArePurgedAtStartup(@TempDir Path storagePath) throws Exception {
+		Path unfinished = storagePath.resolve(".incoming/demo-1.0.jar.1234abcd.part");
+		Files.createDirectories(unfinished.getParent());
+		Files.writeString(unfinished, "de");
+		HttpServer server = upstream("demo".getBytes(StandardCharsets.UTF_8),
+				"89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+		try {
+			service(server, storagePath, new SimpleMeterRegistry(), DIRECT, SIMPLE_RESOLVER);
+
+			assertThat(storagePath.resolve(".incoming")).isEmptyDirectory();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineVerifiesAgainstChecksumHeader(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		List<String> requested = new CopyOnWriteArrayList<>();
+		server.createContext("/", exchange -> {
+			requested.add(exchange.getRequestURI().getPath());
+			if (exchange.getRequestURI().getPath().equals("/com/example/demo/1.0/demo-1.0.jar")) {
+				exchange.getResponseHeaders().add("X-Checksum-SHA1", "89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+				exchange.sendResponseHeaders(200, jar.length);
+				exchange.getResponseBody().write(jar);
+			}
+			else {
+				exchange.sendResponseHeaders(404, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+		try {
+			RemoteRepositoryService service = service(server, storagePath, new SimpleMeterRegistry(), DIRECT,
+					SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar.sha1"))
+				.hasContent("89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+			// the checksum file is not requested
+			assertThat(requested).containsExactly("/com/example/demo/1.0/demo-1.0.jar");
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineRejectsChecksumMismatch(@TempDir Path storagePath) throws Exception {
+		HttpServer server = upstream("demo".getBytes(StandardCharsets.UTF_8),
+				"0000000000000000000000000000000000000000");
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, DIRECT, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.REJECTED);
+			assertThat(storagePath.resolve("test/com")).doesNotExist();
+			assertThat(storagePath.resolve(".incoming")).isEmptyDirectory();
+			assertThat(meterRegistry.get("kagami.upstream.checksum.failures").counter().count()).isEqualTo(1);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineReportsNotFound(@TempDir Path storagePath) throws Exception {
+		HttpServer server = upstream("demo".getBytes(StandardCharsets.UTF_8),
+				"89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+		try {
+			RemoteRepositoryService service = service(server, storagePath, new SimpleMeterRegistry(), DIRECT,
+					SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/2.0/demo-2.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.NOT_FOUND);
+			assertThat(storagePath.resolve("test/com")).doesNotExist();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineDownloadsLargeFileInRanges(@TempDir Path storagePath) throws Exception {
+		byte[] jar = new byte[100_000];
+		new Random(42).nextBytes(jar);
+		List<String> ranges = new CopyOnWriteArrayList<>();
+		HttpServer server = rangeUpstream(jar, sha1(jar), ranges);
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, PARALLEL, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+			Path directory = storagePath.resolve("test/com/example/demo/1.0");
+			assertThat(directory.resolve("demo-1.0.jar")).hasBinaryContent(jar);
+			assertThat(directory.resolve("demo-1.0.jar.sha1")).hasContent(sha1(jar));
+			try (var files = Files.list(directory)) {
+				assertThat(files).hasSize(2);
+			}
+			// 7 ranges of 16KiB
+			assertThat(ranges).hasSize(7).contains("bytes=0-16383", "bytes=98304-99999");
+			assertThat(meterRegistry.get("kagami.upstream.ranges").counter().count()).isEqualTo(6);
+			assertThat(meterRegistry.get("kagami.upstream.fetched").counter().count()).isEqualTo(jar.length);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineDownloadsLargeFilesInRangesOverOneConnection(@TempDir Path storagePath) throws Exception {
+		byte[] jar = new byte[100_000];
+		new Random(42).nextBytes(jar);
+		HttpServer server = rangeUpstream(jar, sha1(jar), new CopyOnWriteArrayList<>());
+		try {
+			RemoteRepositoryService service = service(server, storagePath, new SimpleMeterRegistry(), PARALLEL,
+					SIMPLE_RESOLVER, 1);
+
+			// the first range must not hold the only connection while the others wait
+			// for it
+			FetchOutcome outcome;
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				outcome = executor
+					.submit(() -> service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar")))
+					.get(30, TimeUnit.SECONDS);
+			}
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar")).hasBinaryContent(jar);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineRejectsLargeFileInRangesWithChecksumMismatch(@TempDir Path storagePath) throws Exception {
+		byte[] jar = new byte[100_000];
+		HttpServer server = rangeUpstream(jar, "0000000000000000000000000000000000000000",
+				new CopyOnWriteArrayList<>());
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, PARALLEL, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.REJECTED);
+			// including the partial file
+			assertThat(storagePath.resolve("test/com")).doesNotExist();
+			assertThat(storagePath.resolve(".incoming")).isEmptyDirectory();
+			assertThat(meterRegistry.get("kagami.upstream.checksum.failures").counter().count()).isEqualTo(1);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineDownloadsWholeFileWithoutRangeSupport(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		HttpServer server = upstream(jar, "89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+		try {
+			RemoteRepositoryService service = service(server, storagePath, new SimpleMeterRegistry(), PARALLEL,
+					SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar")).hasBinaryContent(jar);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineResumesInterruptedDownload(@TempDir Path storagePath) throws Exception {
+		byte[] jar = new byte[100_000];
+		new Random(42).nextBytes(jar);
+		List<String> requests = new CopyOnWriteArrayList<>();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			requests.add(range + " " + exchange.getRequestHeaders().getFirst("If-Range"));
+			exchange.getResponseHeaders().add("ETag", "\"v1\"");
+			if (range == null) {
+				// the connection drops half way
+				exchange.sendResponseHeaders(200, jar.length);
+				exchange.getResponseBody().write(jar, 0, jar.length / 2);
+			}
+			else {
+				int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+				exchange.getResponseHeaders()
+					.add("Content-Range", "bytes " + start + "-" + (jar.length - 1) + "/" + jar.length);
+				exchange.sendResponseHeaders(206, jar.length - start);
+				exchange.getResponseBody().write(jar, start, jar.length - start);
+			}
+			exchange.close();
+		});
+		server.start();
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, NO_RETRY, SIMPLE_RESOLVER);
+			ArtifactPath artifactPath = ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar");
+
+			assertThat(service.fetch(artifactPath)).isEqualTo(FetchOutcome.FAILED);
+			assertThat(service.fetch(artifactPath)).isEqualTo(FetchOutcome.FETCHED);
+
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar")).hasBinaryContent(jar);
+			assertThat(requests).containsExactly("null null", "bytes=50000- \"v1\"");
+			assertThat(meterRegistry.get("kagami.upstream.resumed").counter().count()).isEqualTo(1);
+			assertThat(storagePath.resolve(".partial/test")).isEmptyDirectory();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineRetriesInterruptedDownloadFromWhereItStopped(@TempDir Path storagePath) throws Exception {
+		byte[] jar = new byte[100_000];
+		new Random(42).nextBytes(jar);
+		List<String> requests = new CopyOnWriteArrayList<>();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			if (exchange.getRequestURI().getPath().endsWith(".sha1")) {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+				return;
+			}
+			requests.add(String.valueOf(range));
+			exchange.getResponseHeaders().add("ETag", "\"v1\"");
+			if (range == null) {
+				// the connection drops half way
+				exchange.sendResponseHeaders(200, jar.length);
+				exchange.getResponseBody().write(jar, 0, jar.length / 2);
+			}
+			else {
+				int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+				exchange.getResponseHeaders()
+					.add("Content-Range", "bytes " + start + "-" + (jar.length - 1) + "/" + jar.length);
+				exchange.sendResponseHeaders(206, jar.length - start);
+				exchange.getResponseBody().write(jar, start, jar.length - start);
+			}
+			exchange.close();
+		});
+		server.start();
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, RETRYING, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar")).hasBinaryContent(jar);
+			assertThat(requests).containsExactly("null", "bytes=50000-");
+			assertThat(meterRegistry.get("kagami.upstream.retries").counter().count()).isEqualTo(1);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineDoesNotRetryRefusedRequest(@TempDir Path storagePath) throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = statusUpstream("demo".getBytes(StandardCharsets.UTF_8), requests, 403);
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, RETRYING, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.REFUSED);
+			assertThat(requests).hasValue(1);
+			assertThat(meterRegistry.get("kagami.upstream.retries").counter().count()).isZero();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineRetriesServerErrorsAndTooManyRequests(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = statusUpstream(jar, requests, 503, 429, 200);
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, RETRYING, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+			assertThat(requests).hasValue(3);
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar")).hasBinaryContent(jar);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void resolverEngineDoesNotRetryRefusedRequest(@TempDir Path storagePath) throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = statusUpstream("demo".getBytes(StandardCharsets.UTF_8), requests, 403);
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, RESOLVER, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.REFUSED);
+			assertThat(requests).hasValue(1);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void refusedStatuses() {
+		assertThat(RemoteRepositoryService.isRefused(401)).isTrue();
+		assertThat(RemoteRepositoryService.isRefused(403)).isTrue();
+		assertThat(RemoteRepositoryService.isRefused(404)).isFalse();
+		assertThat(RemoteRepositoryService.isRefused(429)).isFalse();
+		assertThat(RemoteRepositoryService.isRefused(500)).isFalse();
+		assertThat(RemoteRepositoryService.isRefused(503)).isFalse();
+	}
+
+	@Test
+	void directEngineDoesNotRetryChecksumMismatch(@TempDir Path storagePath) throws Exception {
+		HttpServer server = upstream("demo".getBytes(StandardCharsets.UTF_8),
+				"0000000000000000000000000000000000000000");
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, RETRYING, SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.REJECTED);
+			assertThat(meterRegistry.get("kagami.upstream.retries").counter().count()).isZero();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void directEngineRestartsInterruptedDownloadOfChangedFile(@TempDir Path storagePath) throws Exception {
+		byte[] jar = new byte[100_000];
+		new Random(42).nextBytes(jar);
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			// If-Range doesn't match the new version, so the whole file is sent
+			exchange.getResponseHeaders().add("ETag", "\"v" + requests.incrementAndGet() + "\"");
+			exchange.sendResponseHeaders(200, jar.length);
+			exchange.getResponseBody().write(jar, 0, requests.get() == 1 ? jar.length / 2 : jar.length);
+			exchange.close();
+		});
+		server.start();
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, NO_RETRY, SIMPLE_RESOLVER);
+			ArtifactPath artifactPath = ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar");
+
+			assertThat(service.fetch(artifactPath)).isEqualTo(FetchOutcome.FAILED);
+			assertThat(service.fetch(artifactPath)).isEqualTo(FetchOutcome.FETCHED);
+
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar")).hasBinaryContent(jar);
+			assertThat(meterRegistry.get("kagami.upstream.resumed").counter().count()).isZero();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void concurrentFetchesOfSameFileShareOneDownload(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		AtomicInteger downloads = new AtomicInteger();
+		HttpServer server = slowUpstream(jar, Duration.ofMillis(300), downloads);
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry,
+					lifecycle(Duration.ofSeconds(10), KagamiProperties.Repository.AbandonPolicy.CANCEL),
+					SIMPLE_RESOLVER);
+			ArtifactPath artifactPath = ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar");
+
+			List<FetchOutcome> outcomes;
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				List<Future<FetchOutcome>> futures = new ArrayList<>();
+				for (int i = 0; i < 3; i++) {
+					futures.add(executor.submit(() -> service.fetch(artifactPath)));
+				}
+				outcomes = new ArrayList<>();
+				for (Future<FetchOutcome> future : futures) {
+					outcomes.add(future.get());
+				}
+			}
+
+			assertThat(outcomes).containsOnly(FetchOutcome.FETCHED);
+			assertThat(downloads).hasValue(1);
+			assertThat(meterRegistry.get("kagami.upstream.joined").counter().count()).isEqualTo(2);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void abandonedFetchIsCancelled(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		HttpServer server = slowUpstream(jar, Duration.ofMillis(500), new AtomicInteger());
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry,
+					lifecycle(Duration.ofMillis(100), KagamiProperties.Repository.AbandonPolicy.CANCEL),
+					SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.TIMED_OUT);
+			assertThat(meterRegistry.get("kagami.upstream.abandoned").tag("action", "cancelled").counter().count())
+				.isEqualTo(1);
+			Thread.sleep(1000);
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar")).doesNotExist();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void abandonedFetchOfReleaseFinishesInBackground(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		HttpServer server = slowUpstream(jar, Duration.ofMillis(500), new AtomicInteger());
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			// finishes within another deadline in the background
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry,
+					lifecycle(Duration.ofMillis(400), KagamiProperties.Repository.AbandonPolicy.FINISH_RELEASES),
+					SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.TIMED_OUT);
+			assertThat(meterRegistry.get("kagami.upstream.abandoned").tag("action", "finished").counter().count())
+				.isEqualTo(1);
+			Path stored = storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar");
+			for (int i = 0; i < 50 && !Files.exists(stored); i++) {
+				Thread.sleep(100);
+			}
+			assertThat(stored).hasBinaryContent(jar);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void fetchFinishingInBackgroundIsCancelledAfterAnotherDeadline(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		HttpServer server = slowUpstream(jar, Duration.ofSeconds(1), new AtomicInteger());
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry,
+					lifecycle(Duration.ofMillis(100), KagamiProperties.Repository.AbandonPolicy.FINISH_RELEASES),
+					SIMPLE_RESOLVER);
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.TIMED_OUT);
+			Counter expired = meterRegistry.get("kagami.upstream.abandoned").tag("action", "expired").counter();
+			for (int i = 0; i < 50 && expired.count() == 0; i++) {
+				Thread.sleep(20);
+			}
+			assertThat(expired.count()).isEqualTo(1);
+			Thread.sleep(1200);
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/demo-1.0.jar")).doesNotExist();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void fetchBeyondRateLimitFailsWithoutRequest(@TempDir Path storagePath) throws Exception {
+		byte[] jar = "demo".getBytes(StandardCharsets.UTF_8);
+		AtomicInteger downloads = new AtomicInteger();
+		HttpServer server = slowUpstream(jar, Duration.ZERO, downloads);
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			// one fetch per minute, and no waiting for the next one
+			KagamiProperties.Repository.Fetch fetch = FetchSettings.defaults()
+				.withVerifyChecksums(false)
+				.withRetry(true, Duration.ofMillis(10), Duration.ofMillis(100))
+				.withRateLimit(1.0 / 60, 1, Duration.ofMillis(100))
+				.build();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, fetch, SIMPLE_RESOLVER);
+
+			assertThat(service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar")))
+				.isEqualTo(FetchOutcome.FETCHED);
+			assertThat(service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.pom"),
+					FetchPriority.BACKGROUND))
+				.isEqualTo(FetchOutcome.THROTTLED);
+
+			assertThat(downloads).hasValue(1);
+			assertThat(meterRegistry.get("kagami.upstream.limiter.rejected")
+				.tag("priority", "background")
+				.counter()
+				.count()).isEqualTo(1);
+			assertThat(meterRegistry.get("kagami.upstream.retries").counter().count()).isZero();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void finishesWhenAbandonedOnlyReleasesByDefault() {
+		KagamiProperties.Repository.AbandonPolicy policy = KagamiProperties.Repository.AbandonPolicy.FINISH_RELEASES;
+		assertThat(RemoteRepositoryService
+			.finishesWhenAbandoned(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"), policy)).isTrue();
+		assertThat(RemoteRepositoryService.finishesWhenAbandoned(
+				ArtifactPath.of("test", "com/example/demo/1.0-SNAPSHOT/demo-1.0-20250101.000000-1.jar"), policy))
+			.isFalse();
+		assertThat(RemoteRepositoryService
+			.finishesWhenAbandoned(ArtifactPath.of("test", "com/example/demo/maven-metadata.xml"), policy)).isFalse();
+	}
+
+	@Test
+	void parseContentRange() {
+		assertThat(RemoteRepositoryService.ContentRange.parse("bytes 0-16383/100000"))
+			.isEqualTo(new RemoteRepositoryService.ContentRange(0, 16383, 100000));
+		assertThat(RemoteRepositoryService.ContentRange.parse("bytes 0-16383/*")).isNull();
+		assertThat(RemoteRepositoryService.ContentRange.parse(null)).isNull();
+	}
+
+	@Test
+	void headReusesAnswersOfRepository(@TempDir Path storagePath) throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		List<String> requested = new CopyOnWriteArrayList<>();
+		server.createContext("/", exchange -> {
+			requested.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+			if (exchange.getRequestURI().getPath().equals("/com/example/demo/1.0/demo-1.0.jar")) {
+				exchange.getResponseHeaders().add("X-Checksum-SHA1", "89E495E7941CF9E40E6980D14A16BF023CCD4C91");
+				exchange.getResponseHeaders().add("Content-Length", "4");
+				exchange.sendResponseHeaders(200, -1);
+			}
+			else {
+				exchange.sendResponseHeaders(404, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, RESOLVER, SIMPLE_RESOLVER);
+			ArtifactPath found = ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar");
+			ArtifactPath missing = ArtifactPath.of("test", "com/example/demo/2.0/demo-2.0.jar");
+
+			RemoteFile remoteFile = new RemoteFile(4, "89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+			assertThat(service.head(found)).isEqualTo(new RemoteHead(FetchOutcome.FETCHED, remoteFile));
+			assertThat(service.head(found)).isEqualTo(new RemoteHead(FetchOutcome.FETCHED, remoteFile));
+			assertThat(service.head(missing)).isEqualTo(new RemoteHead(FetchOutcome.NOT_FOUND, null));
+			assertThat(service.head(missing)).isEqualTo(new RemoteHead(FetchOutcome.NOT_FOUND, null));
+
+			assertThat(requested).containsExactly("HEAD /com/example/demo/1.0/demo-1.0.jar",
+					"HEAD /com/example/demo/2.0/demo-2.0.jar");
+			assertThat(meterRegistry.get("kagami.upstream.heads").tag("result", "cached").counter().count())
+				.isEqualTo(2);
+			assertThat(storagePath.resolve("test/com")).doesNotExist();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void headFailuresAreNotReused(@TempDir Path storagePath) throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = statusUpstream(new byte[0], requests, 503, 503, 403);
+		try {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			RemoteRepositoryService service = service(server, storagePath, meterRegistry, RESOLVER, SIMPLE_RESOLVER);
+			ArtifactPath artifactPath = ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar");
+
+			assertThat(service.head(artifactPath).outcome()).isEqualTo(FetchOutcome.FAILED);
+			assertThat(service.head(artifactPath).outcome()).isEqualTo(FetchOutcome.FAILED);
+			assertThat(service.head(artifactPath).outcome()).isEqualTo(FetchOutcome.REFUSED);
+
+			assertThat(requests).hasValue(3);
+			assertThat(meterRegistry.get("kagami.upstream.heads").tag("result", "error").counter().count())
+				.isEqualTo(3);
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void resolverEngineUsesConfiguredLocalRepositoryManager(@TempDir Path storagePath) throws Exception {
+		HttpServer server = upstream("demo".getBytes(StandardCharsets.UTF_8),
+				"89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+		try {
+			RemoteRepositoryService service = service(server, storagePath, new SimpleMeterRegistry(), RESOLVER,
+					new KagamiProperties.Repository.Resolver("never",
+							KagamiProperties.Repository.Resolver.ChecksumPolicy.FAIL,
+							KagamiProperties.Repository.Resolver.LocalRepositoryManager.ENHANCED, 1,
+							KagamiProperties.Repository.Resolver.NamedLockFactory.FILE_LOCK, Duration.ofSeconds(10)));
+
+			FetchOutcome outcome = service.fetch(ArtifactPath.of("test", "com/example/demo/1.0/demo-1.0.jar"));
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+			assertThat(storagePath.resolve("test/com/example/demo/1.0/_remote.repositories")).exists();
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void resolverSessionSettings() {
+		DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+
+		RemoteRepositoryService.configure(session, SIMPLE_RESOLVER);
+
+		assertThat(session.getUpdatePolicy()).isEqualTo("daily");
+		assertThat(session.getChecksumPolicy()).isEqualTo("warn");
+		assertThat(session.getConfigProperties()).containsEntry(RemoteRepositoryService.CONNECTOR_THREADS, 1)
+			.containsEntry(RemoteRepositoryService.NAMED_LOCK_FACTORY, "rwlock-local")
+			.containsEntry(RemoteRepositoryService.NAMED_LOCK_NAME_MAPPER, "gaecv")
+			.containsEntry(RemoteRepositoryService.NAMED_LOCK_TIME, 300_000L)
+			.containsEntry(RemoteRepositoryService.NAMED_LOCK_TIME_UNIT, "MILLISECONDS");
+	}
+
+	@Test
+	void fileLocksArePerArtifact() {
+		DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+
+		RemoteRepositoryService.configure(session,
+				new KagamiProperties.Repository.Resolver("daily",
+						KagamiProperties.Repository.Resolver.ChecksumPolicy.WARN,
+						KagamiProperties.Repository.Resolver.LocalRepositoryManager.SIMPLE, 1,
+						KagamiProperties.Repository.Resolver.NamedLockFactory.FILE_LOCK, Duration.ofMinutes(5)));
+
+		assertThat(session.getConfigProperties()).containsEntry(RemoteRepositoryService.NAMED_LOCK_FACTORY, "file-lock")
+			.containsEntry(RemoteRepositoryService.NAMED_LOCK_NAME_MAPPER, "file-gaecv");
+	}
+
+	@Test
+	void parseChecksumIgnoresFileName() {
+		assertThat(RemoteRepositoryService
+			.parseChecksum("89E495E7941CF9E40E6980D14A16BF023CCD4C91  demo-1.0.jar\n".getBytes(StandardCharsets.UTF_8)))
+			.isEqualTo("89e495e7941cf9e40e6980d14a16bf023ccd4c91");
+	}
+
+	static HttpServer upstream(byte[] jar, String sha1) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			byte[] body = switch (path) {
+				case "/com/example/demo/1.0/demo-1.0.jar" -> jar;
+				case "/com/example/demo/1.0/demo-1.0.jar.sha1" -> sha1.getBytes(StandardCharsets.US_ASCII);
+				default -> null;
+			};
+			if (body == null) {
+				exchange.sendResponseHeaders(404, -1);
+			}
+			else {
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			}
+			exchange.close();
+		});
+		server.start();
+		return server;
+	}
+
+	/**
+	 * An upstream that serves ranges of the jar like most repositories do
+	 */
+	static HttpServer rangeUpstream(byte[] jar, String sha1, List<String> ranges) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			if (path.equals("/com/example/demo/1.0/demo-1.0.jar.sha1")) {
+				byte[] body = sha1.getBytes(StandardCharsets.US_ASCII);
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			}
+			else if (path.equals("/com/example/demo/1.0/demo-1.0.jar") && range != null) {
+				ranges.add(range);
+				String[] bounds = range.substring("bytes=".length()).split("-");
+				int start = Integer.parseInt(bounds[0]);
+				int end = Math.min(Integer.parseInt(bounds[1]), jar.length - 1);
+				exchange.getResponseHeaders().add("ETag", "\"v1\"");
+				exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + jar.length);
+				exchange.sendResponseHeaders(206, end - start + 1);
+				exchange.getResponseBody().write(jar, start, end - start + 1);
+			}
+			else {
+				exchange.sendResponseHeaders(404, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+		return server;
+	}
+
+	/**
+	 * An upstream that answers requests for the jar after a delay, without a checksum
+	 */
+	/**
+	 * An upstream that answers requests for the file with the given statuses in turn, and
+	 * sends the file with the last one if it is 200
+	 */
+	static HttpServer statusUpstream(byte[] jar, AtomicInteger requests, int... statuses) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			if (exchange.getRequestURI().getPath().endsWith(".sha1")) {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+				return;
+			}
+			int status = statuses[Math.min(requests.getAndIncrement(), statuses.length - 1)];
+			if (status == 200) {
+				exchange.sendResponseHeaders(200, jar.length);
+				exchange.getResponseBody().write(jar);
+			}
+			else {
+				exchange.sendResponseHeaders(status, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+		return server;
+	}
+
+	static HttpServer slowUpstream(byte[] jar, Duration delay, AtomicInteger downloads) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/", exchange -> {
+			if (exchange.getRequestURI().getPath().equals("/com/example/demo/1.0/demo-1.0.jar")) {
+				downloads.incrementAndGet();
+				try {
+					Thread.sleep(delay);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				exchange.sendResponseHeaders(200, jar.length);
+				exchange.getResponseBody().write(jar);
+			}
+			else {
+				exchange.sendResponseHeaders(404, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+		return server;
+	}
+
+	static KagamiProperties.Repository.Fetch lifecycle(Duration deadline,
+			KagamiProperties.Repository.AbandonPolicy abandoned) {
+		return FetchSettings.defaults().withVerifyChecksums(false).withDeadline(deadline, abandoned).build();
+	}
+
+	static String sha1(byte[] content) throws NoSuchAlgorithmException {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(content));
+	}
+
+	static RemoteRepositoryService service(HttpServer server, Path storagePath, SimpleMeterRegistry meterRegistry,
+			KagamiProperties.Repository.Fetch fetch, KagamiProperties.Repository.Resolver resolver) {
+		return service(server, storagePath, meterRegistry, fetch, resolver, 50);
+	}
+
+	static RemoteRepositoryService service(HttpServer server, Path storagePath, SimpleMeterRegistry meterRegistry,
+			KagamiProperties.Repository.Fetch fetch, KagamiProperties.Repository.Resolver resolver,
+			int maxConnections) {
+		KagamiProperties.Repository repository = new KagamiProperties.Repository(
+				"http://127.0.0.1:" + server.getAddress().getPort(), null, null, false,
+				new KagamiProperties.Repository.Hedge(false, 0.95, Duration.ofMillis(50), Duration.ofSeconds(1),
+						List.of()),
+				new KagamiProperties.Repository.Http(false, maxConnections, Duration.ofSeconds(10),
+						Duration.ofSeconds(60), Duration.ofMinutes(5)),
+				fetch, resolver);
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage(storagePath.toString()),
+				Map.of("test", repository), new KagamiProperties.Proxy(""), new KagamiProperties.Jwt(null, null),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
+		LocalStorageService storageService = new LocalStorageService(properties, event -> {
+		}, new DeleteJobService(properties, InstantSource.system()), meterRegistry, ObservationRegistry.NOOP);
+		return new RemoteRepositoryService(properties, storageService, RestClient.builder(), event -> {
+		}, meterRegistry, ObservationRegistry.NOOP);
+	}
+
+	/**
+	 * Fetch settings of the direct engine, which are the defaults unless overridden
+	 */
+	record FetchSettings(KagamiProperties.Repository.Fetch fetch) {
+
+		static FetchSettings defaults() {
+			return new FetchSettings(new KagamiProperties.Repository.Fetch(
+					KagamiProperties.Repository.FetchEngine.DIRECT, true, Duration.ofMinutes(1)));
+		}
+
+		FetchSettings withVerifyChecksums(boolean verifyChecksums) {
+			return with(verifyChecksums, this.fetch.parallel(), this.fetch.deadline(), this.fetch.abandoned(),
+					this.fetch.retry(), this.fetch.rateLimit());
+		}
+
+		FetchSettings withParallel(DataSize threshold, DataSize rangeSize, int connections) {
+			return with(this.fetch.verifyChecksums(),
+					new KagamiProperties.Repository.Fetch.Parallel(true, threshold, rangeSize, connections),
+					this.fetch.deadline(), this.fetch.abandoned(), this.fetch.retry(), this.fetch.rateLimit());
+		}
+
+		FetchSettings withDeadline(Duration deadline, KagamiProperties.Repository.AbandonPolicy abandoned) {
+			return with(this.fetch.verifyChecksums(), this.fetch.parallel(), deadline, abandoned, this.fetch.retry(),
+					this.fetch.rateLimit());
+		}
+
+		FetchSettings withRetry(boolean enabled, Duration initialBackoff, Duration maxBackoff) {
+			KagamiProperties.Repository.Fetch.Retry retry = this.fetch.retry();
+			return with(this.fetch.verifyChecksums(), this.fetch.parallel(), this.fetch.deadline(),
+					this.fetch.abandoned(), new KagamiProperties.Repository.Fetch.Retry(enabled, retry.maxAttempts(),
+							initialBackoff, maxBackoff, retry.budget(), retry.burst()),
+					this.fetch.rateLimit());
+		}
+
+		FetchSettings withRateLimit(double rate, int burst, Duration maxWait) {
+			return with(this.fetch.verifyChecksums(), this.fetch.parallel(), this.fetch.deadline(),
+					this.fetch.abandoned(), this.fetch.retry(),
+					new KagamiProperties.Repository.Fetch.RateLimit(true, rate, burst, maxWait));
+		}
+
+		KagamiProperties.Repository.Fetch build() {
+			return this.fetch;
+		}
+
+		private FetchSettings with(boolean verifyChecksums, KagamiProperties.Repository.Fetch.Parallel parallel,
+				Duration deadline, KagamiProperties.Repository.AbandonPolicy abandoned,
+				KagamiProperties.Repository.Fetch.Retry retry, KagamiProperties.Repository.Fetch.RateLimit rateLimit) {
+			return new FetchSettings(new KagamiProperties.Repository.Fetch(this.fetch.engine(), verifyChecksums,
+					this.fetch.headTtl(), parallel, this.fetch.resume(), deadline, abandoned, retry, rateLimit));
+		}
+
+	}
+
+}
@@ -0,0 +1,126 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamHedgerTest {
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void disabledHedgingSendsOneRequest() throws Exception {
+		UpstreamHedger hedger = hedger(false, List.of());
+		Queue<String> urls = new ConcurrentLinkedQueue<>();
+
+		String result = hedger.execute((baseUrl, claim) -> {
+			urls.add(baseUrl);
+			Thread.sleep(100);
+			return claim.headersReceived() ? "primary" : null;
+		});
+
+		assertThat(result).isEqualTo("primary");
+		assertThat(urls).containsExactly("https://primary.example.com");
+		assertThat(this.meterRegistry.get("kagami.upstream.hedges").counter().count()).isZero();
+	}
+
+	@Test
+	void fastResponseIsNotHedged() throws Exception {
+		UpstreamHedger hedger = hedger(true, List.of("https://mirror.example.com"));
+
+		String result = hedger.execute((baseUrl, claim) -> claim.headersReceived() ? baseUrl : null);
+
+		assertThat(result).isEqualTo("https://primary.example.com");
+		assertThat(this.meterRegistry.get("kagami.upstream.hedges").counter().count()).isZero();
+	}
+
+	@Test
+	void slowResponseIsHedgedToMirrorAndCancelled() throws Exception {
+		UpstreamHedger hedger = hedger(true, List.of("https://mirror.example.com"));
+		CountDownLatch primaryCancelled = new CountDownLatch(1);
+
+		String result = hedger.execute((baseUrl, claim) -> {
+			if (baseUrl.equals("https://primary.example.com")) {
+				try {
+					Thread.sleep(Duration.ofSeconds(10));
+				}
+				catch (InterruptedException e) {
+					primaryCancelled.countDown();
+					throw e;
+				}
+			}
+			return claim.headersReceived() ? baseUrl : null;
+		});
+
+		assertThat(result).isEqualTo("https://mirror.example.com");
+		assertThat(primaryCancelled.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(this.meterRegistry.get("kagami.upstream.hedges").counter().count()).isEqualTo(1);
+		assertThat(this.meterRegistry.get("kagami.upstream.hedge.wins").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void serverErrorLeavesAnswerToHedge() throws Exception {
+		UpstreamHedger hedger = hedger(true, List.of());
+		AtomicInteger attempts = new AtomicInteger();
+
+		String result = hedger.execute((baseUrl, claim) -> {
+			if (attempts.getAndIncrement() == 0) {
+				// answers with a server error after the hedge has been sent
+				Thread.sleep(300);
+				return "error";
+			}
+			Thread.sleep(200);
+			return claim.headersReceived() ? "ok" : null;
+		});
+
+		assertThat(result).isEqualTo("ok");
+		assertThat(attempts).hasValue(2);
+	}
+
+	@Test
+	void delayIsMaxDelayUntilEnoughResponseTimes() {
+		UpstreamHedger hedger = hedger(true, List.of());
+		assertThat(hedger.delayNanos()).isEqualTo(Duration.ofMillis(200).toNanos());
+	}
+
+	@Test
+	void latencyTrackerEstimatesPercentile() {
+		LatencyTracker tracker = new LatencyTracker();
+		assertThat(tracker.percentile(0.95)).isEqualTo(-1);
+		for (int i = 1; i <= 100; i++) {
+			tracker.record(i);
+		}
+		assertThat(tracker.percentile(0.95)).isEqualTo(95);
+		assertThat(tracker.percentile(0.5)).isEqualTo(50);
+		for (int i = 0; i < LatencyTracker.WINDOW_SIZE; i++) {
+			tracker.record(1000);
+		}
+		assertThat(tracker.percentile(0.5)).isEqualTo(1000);
+	}
+
+	UpstreamHedger hedger(boolean enabled, List<String> mirrors) {
+		KagamiProperties.Repository repository = new KagamiProperties.Repository("https://primary.example.com", null,
+				null, false,
+				new KagamiProperties.Repository.Hedge(enabled, 0.95, Duration.ofMillis(20), Duration.ofMillis(200),
+						mirrors),
+				new KagamiProperties.Repository.Http(true, 50, Duration.ofSeconds(10), Duration.ofSeconds(60),
+						Duration.ofMinutes(5)),
+				new KagamiProperties.Repository.Fetch(KagamiProperties.Repository.FetchEngine.RESOLVER, true,
+						Duration.ofMinutes(1)),
+				new KagamiProperties.Repository.Resolver("daily",
+						KagamiProperties.Repository.Resolver.ChecksumPolicy.WARN,
+						KagamiProperties.Repository.Resolver.LocalRepositoryManager.SIMPLE, 1,
+						KagamiProperties.Repository.Resolver.NamedLockFactory.RWLOCK_LOCAL, Duration.ofMinutes(5)));
+		return new UpstreamHedger("central", repository, this.meterRegistry);
+	}
+
+}
@@ -0,0 +1,160 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamLimiterTest {
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void disabledLimiterDoesNotWait() throws Exception {
+		UpstreamLimiter limiter = limiter(false, 1, 1, Duration.ofMillis(10));
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(limiter.acquire(() -> FetchPriority.INTERACTIVE)).isTrue();
+		}
+	}
+
+	@Test
+	void burstStartsAtOnceAndFurtherRequestsWaitForTheRate() throws Exception {
+		UpstreamLimiter limiter = limiter(true, 2, 2, Duration.ofSeconds(5));
+		long start = System.nanoTime();
+
+		assertThat(limiter.acquire(() -> FetchPriority.INTERACTIVE)).isTrue();
+		assertThat(limiter.acquire(() -> FetchPriority.INTERACTIVE)).isTrue();
+		long burst = System.nanoTime() - start;
+		assertThat(limiter.acquire(() -> FetchPriority.INTERACTIVE)).isTrue();
+		long third = System.nanoTime() - start;
+
+		// the third request waits about half a second for a token, far longer than the
+		// burst
+		assertThat(third).isGreaterThanOrEqualTo(Duration.ofMillis(450).toNanos());
+		assertThat(burst).isLessThan(third - Duration.ofMillis(250).toNanos());
+		assertThat(this.meterRegistry.get("kagami.upstream.limiter.wait")
+			.tag("priority", "interactive")
+			.timer()
+			.max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(450);
+	}
+
+	@Test
+	void requestThatWouldWaitTooLongFailsAtOnce() throws Exception {
+		// the next token comes after a minute, so the second request would wait that long
+		UpstreamLimiter limiter = limiter(true, 1.0 / 60, 1, Duration.ofSeconds(5));
+		assertThat(limiter.acquire(() -> FetchPriority.INTERACTIVE)).isTrue();
+		long start = System.nanoTime();
+
+		assertThat(limiter.acquire(() -> FetchPriority.INTERACTIVE)).isFalse();
+
+		assertThat(System.nanoTime() - start).isLessThan(Duration.ofSeconds(5).toNanos());
+		assertThat(this.meterRegistry.get("kagami.upstream.limiter.rejected")
+			.tag("priority", "interactive")
+			.counter()
+			.count()).isEqualTo(1);
+	}
+
+	@Test
+	void interactiveRequestsGoAheadOfBackgroundRequests() throws Exception {
+		UpstreamLimiter limiter = limiter(true, 10, 1, Duration.ofSeconds(5));
+		assertThat(limiter.acquire(() -> FetchPriority.BACKGROUND)).isTrue();
+		Queue<FetchPriority> started = new ConcurrentLinkedQueue<>();
+
+		Thread background = Thread.ofVirtual().start(() -> acquire(limiter, FetchPriority.BACKGROUND, started));
+		awaitQueued(FetchPriority.BACKGROUND, 1);
+		Thread interactive = Thread.ofVirtual().start(() -> acquire(limiter, FetchPriority.INTERACTIVE, started));
+		awaitQueued(FetchPriority.INTERACTIVE, 1);
+		background.join();
+		interactive.join();
+
+		assertThat(started).containsExactly(FetchPriority.INTERACTIVE, FetchPriority.BACKGROUND);
+		assertThat(queued(FetchPriority.BACKGROUND)).isZero();
+		assertThat(queued(FetchPriority.INTERACTIVE)).isZero();
+	}
+
+	@Test
+	void raisedPriorityGoesAhead() throws Exception {
+		UpstreamLimiter limiter = limiter(true, 10, 1, Duration.ofSeconds(5));
+		assertThat(limiter.acquire(() -> FetchPriority.BACKGROUND)).isTrue();
+		Queue<String> started = new ConcurrentLinkedQueue<>();
+		AtomicReference<FetchPriority> raised = new AtomicReference<>(FetchPriority.BACKGROUND);
+
+		Thread first = Thread.ofVirtual()
+			.start(() -> acquire(limiter, () -> FetchPriority.BACKGROUND, "first", started));
+		awaitQueued(FetchPriority.BACKGROUND, 1);
+		Thread second = Thread.ofVirtual().start(() -> acquire(limiter, raised::get, "second", started));
+		awaitQueued(FetchPriority.BACKGROUND, 2);
+		raised.set(FetchPriority.INTERACTIVE);
+		first.join();
+		second.join();
+
+		assertThat(started).containsExactly("second", "first");
+	}
+
+	@Test
+	void backgroundRequestPushedBackByInteractiveRequestsFailsAfterMaxWait() throws Exception {
+		UpstreamLimiter limiter = limiter(true, 10, 1, Duration.ofMillis(150));
+		assertThat(limiter.acquire(() -> FetchPriority.BACKGROUND)).isTrue();
+		Queue<FetchPriority> started = new ConcurrentLinkedQueue<>();
+
+		Thread background = Thread.ofVirtual().start(() -> acquire(limiter, FetchPriority.BACKGROUND, started));
+		awaitQueued(FetchPriority.BACKGROUND, 1);
+		List<Thread> interactive = List.of(
+				Thread.ofVirtual().start(() -> acquire(limiter, FetchPriority.INTERACTIVE, started)),
+				Thread.ofVirtual().start(() -> acquire(limiter, FetchPriority.INTERACTIVE, started)));
+		background.join();
+		for (Thread thread : interactive) {
+			thread.join();
+		}
+
+		assertThat(started).containsExactly(FetchPriority.INTERACTIVE);
+		assertThat(this.meterRegistry.get("kagami.upstream.limiter.rejected")
+			.tag("priority", "background")
+			.counter()
+			.count()).isEqualTo(1);
+	}
+
+	UpstreamLimiter limiter(boolean enabled, double rate, int burst, Duration maxWait) {
+		return new UpstreamLimiter("test",
+				new KagamiProperties.Repository.Fetch.RateLimit(enabled, rate, burst, maxWait), this.meterRegistry);
+	}
+
+	static void acquire(UpstreamLimiter limiter, FetchPriority priority, Queue<FetchPriority> started) {
+		acquire(limiter, () -> priority, priority, started);
+	}
+
+	static <T> void acquire(UpstreamLimiter limiter, Supplier<FetchPriority> priority, T name, Queue<T> started) {
+		try {
+			if (limiter.acquire(priority)) {
+				started.add(name);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	double queued(FetchPriority priority) {
+		return this.meterRegistry.get("kagami.upstream.limiter.queued")
+			.tag("priority", priority.tagValue())
+			.gauge()
+			.value();
+	}
+
+	void awaitQueued(FetchPriority priority, int count) throws InterruptedException {
+		for (int i = 0; i < 100 && queued(priority) < count; i++) {
+			Thread.sleep(5);
+		}
+		assertThat(queued(priority)).isEqualTo(count);
+	}
+
+}
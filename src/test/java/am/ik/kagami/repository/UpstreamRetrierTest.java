@@ -0,0 +1,144 @@
+package am.ik.kagami.repository;
+
+import am.ik.kagami.KagamiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamRetrierTest {
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void failedFetchIsRetriedUntilItSucceeds() {
+		UpstreamRetrier retrier = retrier(true, 3, 0.1, 10);
+		Queue<FetchOutcome> outcomes = new ArrayDeque<>(
+				List.of(FetchOutcome.FAILED, FetchOutcome.FAILED, FetchOutcome.FETCHED));
+
+		FetchOutcome outcome = retrier.execute(outcomes::remove);
+
+		assertThat(outcome).isEqualTo(FetchOutcome.FETCHED);
+		assertThat(this.meterRegistry.get("kagami.upstream.retries").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void retriesStopAfterMaxAttempts() {
+		UpstreamRetrier retrier = retrier(true, 3, 0.1, 10);
+		AtomicInteger attempts = new AtomicInteger();
+
+		FetchOutcome outcome = retrier.execute(() -> {
+			attempts.incrementAndGet();
+			return FetchOutcome.FAILED;
+		});
+
+		assertThat(outcome).isEqualTo(FetchOutcome.FAILED);
+		assertThat(attempts).hasValue(3);
+	}
+
+	@Test
+	void onlyFailuresAreRetried() {
+		UpstreamRetrier retrier = retrier(true, 3, 0.1, 10);
+		AtomicInteger attempts = new AtomicInteger();
+
+		for (FetchOutcome outcome : List.of(FetchOutcome.NOT_FOUND, FetchOutcome.CACHED_NOT_FOUND,
+				FetchOutcome.REJECTED, FetchOutcome.REFUSED)) {
+			assertThat(retrier.execute(() -> {
+				attempts.incrementAndGet();
+				return outcome;
+			})).isEqualTo(outcome);
+		}
+
+		assertThat(attempts).hasValue(4);
+		assertThat(this.meterRegistry.get("kagami.upstream.retries").counter().count()).isZero();
+	}
+
+	@Test
+	void disabledRetriesFetchOnce() {
+		UpstreamRetrier retrier = retrier(false, 3, 0.1, 10);
+		AtomicInteger attempts = new AtomicInteger();
+
+		FetchOutcome outcome = retrier.execute(() -> {
+			attempts.incrementAndGet();
+			return FetchOutcome.FAILED;
+		});
+
+		assertThat(outcome).isEqualTo(FetchOutcome.FAILED);
+		assertThat(attempts).hasValue(1);
+	}
+
+	@Test
+	void budgetCapsRetriesOfAllFetches() {
+		// one retry to start with, and another one for every fourth fetch after that
+		UpstreamRetrier retrier = retrier(true, 3, 0.25, 1);
+		AtomicInteger attempts = new AtomicInteger();
+
+		for (int i = 0; i < 8; i++) {
+			retrier.execute(() -> {
+				attempts.incrementAndGet();
+				return FetchOutcome.FAILED;
+			});
+		}
+
+		// 8 fetches and 2 retries rather than 16; the budget doesn't hold more than one
+		// retry, so the first fetch doesn't add to it
+		assertThat(attempts).hasValue(10);
+		assertThat(this.meterRegistry.get("kagami.upstream.retries").counter().count()).isEqualTo(2);
+		assertThat(this.meterRegistry.get("kagami.upstream.retries.denied").counter().count()).isEqualTo(8);
+	}
+
+	@Test
+	void interruptedFetchIsNotRetried() {
+		UpstreamRetrier retrier = retrier(true, 3, 0.1, 10);
+		AtomicInteger attempts = new AtomicInteger();
+
+		try {
+			FetchOutcome outcome = retrier.execute(() -> {
+				attempts.incrementAndGet();
+				Thread.currentThread().interrupt();
+				return FetchOutcome.FAILED;
+			});
+
+			assertThat(outcome).isEqualTo(FetchOutcome.FAILED);
+			assertThat(attempts).hasValue(1);
+		}
+		finally {
+			Thread.interrupted();
+		}
+	}
+
+	@Test
+	void backoffDoublesUpToMaxWithJitter() {
+		UpstreamRetrier retrier = new UpstreamRetrier("test", new KagamiProperties.Repository.Fetch.Retry(true, 10,
+				Duration.ofMillis(100), Duration.ofMillis(300), 0.1, 10), this.meterRegistry);
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(retrier.backoffNanos(1)).isBetween(0L, Duration.ofMillis(100).toNanos());
+			assertThat(retrier.backoffNanos(2)).isBetween(0L, Duration.ofMillis(200).toNanos());
+			assertThat(retrier.backoffNanos(3)).isBetween(0L, Duration.ofMillis(300).toNanos());
+			assertThat(retrier.backoffNanos(64)).isBetween(0L, Duration.ofMillis(300).toNanos());
+		}
+	}
+
+	@Test
+	void resolverRetriesAreTurnedOff() {
+		DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+
+		retrier(true, 3, 0.1, 10).configure(session);
+
+		assertThat(session.getConfigProperties()).containsEntry(ConfigurationProperties.HTTP_RETRY_HANDLER_COUNT, 0);
+	}
+
+	UpstreamRetrier retrier(boolean enabled, int maxAttempts, double budget, int burst) {
+		return new UpstreamRetrier("test", new KagamiProperties.Repository.Fetch.Retry(enabled, maxAttempts,
+				Duration.ofMillis(1), Duration.ofMillis(5), budget, burst), this.meterRegistry);
+	}
+
+}
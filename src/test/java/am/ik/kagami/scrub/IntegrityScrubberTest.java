@@ -0,0 +1,162 @@
+package am.ik.kagami.scrub;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.KagamiProperties.ScrubAction;
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.repository.FetchOutcome;
+import am.ik.kagami.repository.FetchPriority;
+import am.ik.kagami.repository.RemoteRepositoryService;
+import am.ik.kagami.storage.ArtifactDeletedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IntegrityScrubberTest {
+
+	@TempDir
+	Path storagePath;
+
+	@Mock
+	RemoteRepositoryService remoteRepositoryService;
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	List<Object> events = new ArrayList<>();
+
+	@Test
+	void reportCountsVerifiedCorruptAndUnverifiedFiles() throws Exception {
+		write("com/example/lib/1.0/lib-1.0.jar", "content", "sha1", "content");
+		write("com/example/lib/1.0/lib-1.0.pom", "<project/>", "sha512", "<project/>");
+		write("com/example/lib/1.1/lib-1.1.jar", "tampered", "sha256", "original");
+		write("com/example/lib/1.1/lib-1.1.pom", "no checksum", null, null);
+		write("com/example/lib/maven-metadata.xml", "<metadata/>", "sha1", "stale");
+
+		ScrubReport report = scrubber(ScrubAction.REPORT).scrub();
+
+		assertThat(report.verifiedFiles()).isEqualTo(2);
+		assertThat(report.corruptFiles()).isEqualTo(1);
+		assertThat(report.unverifiedFiles()).isEqualTo(1);
+		assertThat(report.failedFiles()).isZero();
+		assertThat(report.bytesRead()).isEqualTo("content".length() + "<project/>".length() + "tampered".length());
+		assertThat(this.storagePath.resolve("central/com/example/lib/1.1/lib-1.1.jar")).exists();
+		assertThat(this.meterRegistry.get("kagami.scrub.files").tag("result", "corrupt").counter().count())
+			.isEqualTo(1);
+		assertThat(this.meterRegistry.get("kagami.scrub.progress").gauge().value()).isEqualTo(3);
+		assertThat(this.meterRegistry.get("kagami.scrub.last.completed").gauge().value()).isPositive();
+		assertThat(this.events).isEmpty();
+		verifyNoInteractions(this.remoteRepositoryService);
+	}
+
+	@Test
+	void quarantineMovesCorruptFileAndChecksums() throws Exception {
+		write("com/example/lib/1.1/lib-1.1.jar", "tampered", "sha1", "original");
+
+		ScrubReport report = scrubber(ScrubAction.QUARANTINE).scrub();
+
+		assertThat(report.corruptFiles()).isEqualTo(1);
+		assertThat(report.repairedFiles()).isZero();
+		assertThat(this.storagePath.resolve("central/com/example/lib/1.1/lib-1.1.jar")).doesNotExist();
+		assertThat(this.storagePath.resolve("central/com/example/lib/1.1/lib-1.1.jar.sha1")).doesNotExist();
+		assertThat(this.storagePath.resolve(".quarantine/central/com/example/lib/1.1/lib-1.1.jar"))
+			.hasContent("tampered");
+		assertThat(this.storagePath.resolve(".quarantine/central/com/example/lib/1.1/lib-1.1.jar.sha1")).exists();
+		assertThat(this.events).containsExactly(
+				new ArtifactDeletedEvent(ArtifactPath.of("central", "com/example/lib/1.1/lib-1.1.jar")),
+				new ArtifactDeletedEvent(ArtifactPath.of("central", "com/example/lib/1.1/lib-1.1.jar.sha1")));
+		verifyNoInteractions(this.remoteRepositoryService);
+	}
+
+	@Test
+	void refetchDownloadsCorruptFileAgain() throws Exception {
+		write("com/example/lib/1.1/lib-1.1.jar", "tampered", "sha1", "original");
+		when(this.remoteRepositoryService.fetch(any(), any())).thenReturn(FetchOutcome.FETCHED);
+
+		ScrubReport report = scrubber(ScrubAction.REFETCH).scrub();
+
+		assertThat(report.corruptFiles()).isEqualTo(1);
+		assertThat(report.repairedFiles()).isEqualTo(1);
+		verify(this.remoteRepositoryService).fetch(ArtifactPath.of("central", "com/example/lib/1.1/lib-1.1.jar"),
+				FetchPriority.BACKGROUND);
+		verify(this.remoteRepositoryService).fetch(ArtifactPath.of("central", "com/example/lib/1.1/lib-1.1.jar.sha1"),
+				FetchPriority.BACKGROUND);
+		assertThat(this.meterRegistry.get("kagami.scrub.files").tag("result", "repaired").counter().count())
+			.isEqualTo(1);
+	}
+
+	@Test
+	void recentlyModifiedFilesAreSkipped() throws Exception {
+		write("com/example/lib/1.1/lib-1.1.jar", "tampered", "sha1", "original");
+		Files.setLastModifiedTime(this.storagePath.resolve("central/com/example/lib/1.1/lib-1.1.jar"),
+				FileTime.from(Instant.now()));
+
+		ScrubReport report = scrubber(ScrubAction.QUARANTINE).scrub();
+
+		assertThat(report).isEqualTo(new ScrubReport(0, 0, 0, 0, 0, 0));
+		assertThat(this.storagePath.resolve("central/com/example/lib/1.1/lib-1.1.jar")).exists();
+	}
+
+	@Test
+	void readChecksumAcceptsTrailingFileName() throws Exception {
+		Path file = this.storagePath.resolve("lib.jar.sha1");
+		Files.writeString(file, "DA39A3EE5E6B4B0D3255BFEF95601890AFD80709  lib.jar\n");
+
+		assertThat(IntegrityScrubber.readChecksum(file, 40)).isEqualTo("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+		assertThat(IntegrityScrubber.readChecksum(file, 64)).isNull();
+	}
+
+	IntegrityScrubber scrubber(ScrubAction action) {
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage(this.storagePath.toString()),
+				Map.of("central",
+						new KagamiProperties.Repository("https://repo.maven.apache.org/maven2", null, null, false)),
+				null, new KagamiProperties.Jwt(null, null),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()),
+				new KagamiProperties.Scrub(true, Duration.ofHours(1), Duration.ofHours(24), DataSize.ofMegabytes(10), 2,
+						action));
+		return new IntegrityScrubber(properties, this.remoteRepositoryService, this.events::add, this.meterRegistry);
+	}
+
+	void write(String path, String content, String algorithm, String checksummedContent) throws Exception {
+		Path file = this.storagePath.resolve("central").resolve(path);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+		settle(file);
+		if (algorithm != null) {
+			Path checksumFile = file.resolveSibling(file.getFileName() + "." + algorithm);
+			Files.writeString(checksumFile, hash(algorithm, checksummedContent));
+			settle(checksumFile);
+		}
+	}
+
+	static void settle(Path file) throws IOException {
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+	}
+
+	static String hash(String algorithm, String content) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance(algorithm.replace("sha", "SHA-"));
+		return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+}
@@ -0,0 +1,141 @@
+package am.ik.kagami.search;
+
+import am.ik.kagami.KagamiProperties;
+import am.ik.kagami.artifact.ArtifactPath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchIndexTest {
+
+	@TempDir
+	Path storagePath;
+
+	SearchIndex searchIndex;
+
+	@BeforeEach
+	void setUp() {
+		KagamiProperties properties = new KagamiProperties(new KagamiProperties.Storage(this.storagePath.toString()),
+				Map.of("central",
+						new KagamiProperties.Repository("https://repo.maven.apache.org/maven2", null, null, false),
+						"internal",
+						new KagamiProperties.Repository("https://maven.example.com/repository", null, null, true)),
+				null, new KagamiProperties.Jwt(null, null),
+				new KagamiProperties.Authentication(KagamiProperties.AuthenticationType.SIMPLE, List.of()));
+		this.searchIndex = new SearchIndex(properties);
+	}
+
+	@Test
+	void searchByPrefixRanksExactMatchesFirst() {
+		add("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+		add("central", "org/springframework/spring-core-test/6.1.3/spring-core-test-6.1.3.jar");
+		add("central", "org/springframework/spring-context/6.1.3/spring-context-6.1.3.jar");
+		add("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar.sha1");
+
+		SearchResult result = this.searchIndex.search("spring-core", null, false, 10);
+
+		assertThat(result.totalCount()).isEqualTo(2);
+		assertThat(result.hits()).extracting(SearchHit::artifactId).containsExactly("spring-core", "spring-core-test");
+		assertThat(result.hits().getFirst().groupId()).isEqualTo("org.springframework");
+		assertThat(result.hits().getFirst().extension()).isEqualTo("jar");
+	}
+
+	@Test
+	void searchByFieldsAndRepository() {
+		add("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+		add("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar");
+		add("central", "org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar.sha1");
+		add("central", "org/springframework/spring-core/6.2.0/spring-core-6.2.0.jar");
+		add("internal", "org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+
+		assertThat(this.searchIndex.search("g:org.spring a:spring-core v:6.1", "central", false, 10).hits())
+			.extracting(SearchHit::path)
+			.containsExactly("org/springframework/spring-core/6.1.3/spring-core-6.1.3-sources.jar",
+					"org/springframework/spring-core/6.1.3/spring-core-6.1.3.jar");
+		assertThat(this.searchIndex.search("c:sources", null, false, 10).hits()).extracting(SearchHit::classifier)
+			.containsExactly("sources");
+		assertThat(this.searchIndex.search("SPRING-CORE v:6.1.3", null, false, 10).totalCount()).isEqualTo(3);
+		assertThat(this.searchIndex.search("f:spring-core-6.2", null, false, 10).hits()).extracting(SearchHit::version)
+			.containsExactly("6.2.0");
+	}
+
+	@Test
+	void searchFuzzy() {
+		add("central", "com/fasterxml/jackson/core/jackson-databind/2.17.0/jackson-databind-2.17.0.jar");
+		add("central", "org/apache/commons/commons-lang3/3.14.0/commons-lang3-3.14.0.jar");
+
+		assertThat(this.searchIndex.search("jakson-databnd", null, false, 10).hits()).isEmpty();
+		assertThat(this.searchIndex.search("jakson-databnd", null, true, 10).hits()).extracting(SearchHit::artifactId)
+			.containsExactly("jackson-databind");
+		// a misspelled prefix
+		assertThat(this.searchIndex.search("comons", null, true, 10).hits()).extracting(SearchHit::artifactId)
+			.containsExactly("commons-lang3");
+	}
+
+	@Test
+	void removeDeletedArtifactsAndDirectories() {
+		add("central", "org/example/a/1.0/a-1.0.jar");
+		add("central", "org/example/a/2.0/a-2.0.jar");
+		add("central", "org/example/b/1.0/b-1.0.jar");
+
+		this.searchIndex.remove(ArtifactPath.of("central", "org/example/a/1.0/a-1.0.jar"));
+		assertThat(this.searchIndex.search("g:org.example", null, false, 10).hits()).extracting(SearchHit::path)
+			.containsExactly("org/example/a/2.0/a-2.0.jar", "org/example/b/1.0/b-1.0.jar");
+
+		this.searchIndex.remove(ArtifactPath.of("central", "org/example/"));
+		assertThat(this.searchIndex.search("g:org.example", null, false, 10).hits()).isEmpty();
+		assertThat(this.searchIndex.size()).isZero();
+	}
+
+	@Test
+	void rebuildFromStorage() throws IOException {
+		write("central/org/example/a/1.0/a-1.0.jar");
+		write("central/org/example/a/1.0/a-1.0.pom");
+		write("central/org/example/a/1.0/a-1.0.pom.sha1");
+		write("central/org/example/a/1.0/a-1.0-sources.jar.sha1");
+		write("central/org/example/a/1.0/a-1.0-sources.jar.asc");
+		write("central/org/example/a/maven-metadata.xml");
+		write("unknown/org/example/b/1.0/b-1.0.jar");
+		add("central", "org/example/gone/1.0/gone-1.0.jar");
+
+		this.searchIndex.rebuild();
+
+		assertThat(this.searchIndex.size()).isEqualTo(2);
+		assertThat(this.searchIndex.search("g:org.example", null, false, 10).hits()).extracting(SearchHit::extension)
+			.containsExactly("jar", "pom");
+	}
+
+	@Test
+	void rejectInvalidQuery() {
+		assertThatThrownBy(() -> this.searchIndex.search(" ", null, false, 10))
+			.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> this.searchIndex.search("x:foo", null, false, 10))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void distance() {
+		assertThat(SearchIndex.distance("kitten", "sitting", 5)).isEqualTo(3);
+		assertThat(SearchIndex.distance("kitten", "sitting", 2)).isEqualTo(3);
+		assertThat(SearchIndex.distance("spring", "spring", 0)).isZero();
+	}
+
+	void add(String repositoryId, String path) {
+		this.searchIndex.add(ArtifactPath.of(repositoryId, path));
+	}
+
+	void write(String path) throws IOException {
+		Path file = this.storagePath.resolve(path);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, path);
+	}
+
+}
@@ -0,0 +1,70 @@
+package am.ik.kagami.search.web;
+
+import am.ik.kagami.artifact.ArtifactPath;
+import am.ik.kagami.storage.StorageService;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for SearchController
+ */
+@SpringBootTest(properties = { "kagami.repositories.test-repo.url=https://repo.maven.apache.org/maven2",
+		"spring.security.user.name=test-user", "spring.security.user.password=test-password" })
+@AutoConfigureMockMvc
+@WithMockUser(username = "test-user", password = "test-password", roles = "USER")
+class SearchControllerTest {
+
+	@TempDir
+	static Path tempDir;
+
+	@DynamicPropertySource
+	static void configureProperties(DynamicPropertyRegistry registry) {
+		registry.add("kagami.storage.path", () -> tempDir.toString());
+	}
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private StorageService storageService;
+
+	@Test
+	void search_shouldFindStoredArtifact() throws Exception {
+		ArtifactPath artifactPath = ArtifactPath.of("test-repo",
+				"com/example/search-demo/1.0.0/search-demo-1.0.0-sources.jar");
+		this.storageService.store(artifactPath, new ByteArrayInputStream("demo".getBytes()));
+
+		this.mockMvc.perform(get("/search").param("q", "a:search-dem c:sources"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.totalCount").value(1))
+			.andExpect(jsonPath("$.hits[0].repositoryId").value("test-repo"))
+			.andExpect(jsonPath("$.hits[0].groupId").value("com.example"))
+			.andExpect(jsonPath("$.hits[0].version").value("1.0.0"))
+			.andExpect(jsonPath("$.hits[0].path").value(artifactPath.path()));
+
+		this.storageService.delete(ArtifactPath.of("test-repo", "com/example/search-demo/"));
+
+		this.mockMvc.perform(get("/search").param("q", "search-demo"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.totalCount").value(0));
+	}
+
+	@Test
+	void search_withUnknownField_shouldReturn400() throws Exception {
+		this.mockMvc.perform(get("/search").param("q", "x:demo")).andExpect(status().isBadRequest());
+	}
+
+}
@@ -0,0 +1,116 @@
+package am.ik.kagami.token;
+
+import am.ik.kagami.KagamiProperties;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenKeyRingTest {
+
+	final Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+	@Test
+	void signAndVerifyWithEachAlgorithm() throws Exception {
+		TokenKeyRing keyRing = new TokenKeyRing(List.of(key(rsaKeyPair(), "rsa", null), key(ecKeyPair(), "ec", null),
+				key(ed25519KeyPair(), "ed", null)), InstantSource.fixed(this.now));
+		assertThat(keyRing.algorithms()).containsExactly(JWSAlgorithm.RS256, JWSAlgorithm.ES256, JWSAlgorithm.EdDSA);
+		assertThat(keyRing.jwkSet().getKeys()).extracting(jwk -> jwk.getKeyID()).containsExactly("rsa", "ec", "ed");
+		assertThat(keyRing.jwkSet().getKeys()).noneMatch(jwk -> jwk.isPrivate());
+		for (TokenKey key : keyRing.keys()) {
+			SignedJWT jwt = sign(key, key.keyId());
+			assertThat(keyRing.jwtProcessor().process(jwt, null).getSubject()).isEqualTo("demo");
+		}
+	}
+
+	@Test
+	void verifyTokenWithoutKeyId() throws Exception {
+		TokenKeyRing keyRing = new TokenKeyRing(List.of(key(rsaKeyPair(), "old", null), key(rsaKeyPair(), "new", null)),
+				InstantSource.fixed(this.now));
+		SignedJWT jwt = sign(keyRing.keys().getFirst(), null);
+		assertThat(keyRing.jwtProcessor().process(jwt, null).getSubject()).isEqualTo("demo");
+	}
+
+	@Test
+	void rejectTokenSignedWithUnknownKey() throws Exception {
+		TokenKeyRing keyRing = new TokenKeyRing(List.of(key(ecKeyPair(), "ec", null)), InstantSource.fixed(this.now));
+		TokenKeyRing otherKeyRing = new TokenKeyRing(List.of(key(ecKeyPair(), "ec", null)),
+				InstantSource.fixed(this.now));
+		SignedJWT jwt = sign(otherKeyRing.signingKey(), "ec");
+		assertThatThrownBy(() -> keyRing.jwtProcessor().process(jwt, null)).hasMessageContaining("Signed JWT rejected");
+	}
+
+	@Test
+	void rotateToKeyWhenActivated() throws Exception {
+		AtomicReference<Instant> clock = new AtomicReference<>(this.now);
+		TokenKeyRing keyRing = new TokenKeyRing(
+				List.of(key(rsaKeyPair(), "current", null), key(ed25519KeyPair(), "next", this.now.plusSeconds(3600))),
+				clock::get);
+		assertThat(keyRing.signingKey().keyId()).isEqualTo("current");
+		assertThat(keyRing.rotate()).isFalse();
+		// the next key is published before it is activated
+		assertThat(keyRing.jwkSet().getKeyByKeyId("next")).isNotNull();
+
+		clock.set(this.now.plusSeconds(3600));
+		assertThat(keyRing.rotate()).isTrue();
+		assertThat(keyRing.signingKey().keyId()).isEqualTo("next");
+		assertThat(keyRing.signingKey().algorithm()).isEqualTo(JWSAlgorithm.EdDSA);
+	}
+
+	@Test
+	void verificationOnlyKeyIsNotUsedForSigning() throws Exception {
+		KeyPair retired = rsaKeyPair();
+		TokenKeyRing keyRing = new TokenKeyRing(
+				List.of(new KagamiProperties.Jwt.Key(retired.getPublic(), null, "retired", null),
+						key(ecKeyPair(), "current", null)),
+				InstantSource.fixed(this.now));
+		assertThat(keyRing.signingKey().keyId()).isEqualTo("current");
+	}
+
+	@Test
+	void noActiveSigningKey() throws Exception {
+		assertThatThrownBy(() -> new TokenKeyRing(List.of(key(ecKeyPair(), "next", this.now.plusSeconds(1))),
+				InstantSource.fixed(this.now)))
+			.isInstanceOf(IllegalStateException.class);
+	}
+
+	static SignedJWT sign(TokenKey key, String keyId) throws Exception {
+		JWSHeader header = new JWSHeader.Builder(key.algorithm()).type(JOSEObjectType.JWT).keyID(keyId).build();
+		SignedJWT jwt = new SignedJWT(header, new JWTClaimsSet.Builder().subject("demo").build());
+		jwt.sign(key.signer());
+		return SignedJWT.parse(jwt.serialize());
+	}
+
+	static KagamiProperties.Jwt.Key key(KeyPair keyPair, String keyId, Instant activateAt) {
+		return new KagamiProperties.Jwt.Key(keyPair.getPublic(), keyPair.getPrivate(), keyId, activateAt);
+	}
+
+	static KeyPair rsaKeyPair() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		return generator.generateKeyPair();
+	}
+
+	static KeyPair ecKeyPair() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		return generator.generateKeyPair();
+	}
+
+	static KeyPair ed25519KeyPair() throws Exception {
+		return KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+	}
+
+}
@@ -0,0 +1,77 @@
+package am.ik.kagami.token.web;
+
+import am.ik.kagami.token.KagamiJwtClaims;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingJwtDecoderTest {
+
+	final Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+	final AtomicInteger decodeCount = new AtomicInteger();
+
+	CachingJwtDecoder decoder(MockHttpServletRequest request, Instant expiresAt) {
+		JwtDecoder delegate = token -> {
+			this.decodeCount.incrementAndGet();
+			return Jwt.withTokenValue(token)
+				.header("alg", "RS256")
+				.subject("demo")
+				.issuedAt(this.now)
+				.expiresAt(expiresAt)
+				.claim(KagamiJwtClaims.REPOSITORIES, List.of("central", "private-*"))
+				.build();
+		};
+		return new CachingJwtDecoder(delegate, new RepositoryTokenValidator(request), request,
+				InstantSource.fixed(this.now), 100);
+	}
+
+	@Test
+	void verifiedTokenIsCached() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET",
+				"/artifacts/central/foo/bar/1.0/bar-1.0.pom");
+		CachingJwtDecoder decoder = decoder(request, this.now.plusSeconds(3600));
+		Jwt first = decoder.decode("token");
+		Jwt second = decoder.decode("token");
+		assertThat(second).isSameAs(first);
+		assertThat(this.decodeCount).hasValue(1);
+		decoder.decode("another-token");
+		assertThat(this.decodeCount).hasValue(2);
+	}
+
+	@Test
+	void tokenWithoutExpirationIsNotCached() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/repositories");
+		CachingJwtDecoder decoder = decoder(request, null);
+		decoder.decode("token");
+		decoder.decode("token");
+		assertThat(this.decodeCount).hasValue(2);
+	}
+
+	@Test
+	void repositoryIsValidatedForCachedToken() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET",
+				"/artifacts/central/foo/bar/1.0/bar-1.0.pom");
+		CachingJwtDecoder decoder = decoder(request, this.now.plusSeconds(3600));
+		decoder.decode("token");
+		request.setRequestURI("/artifacts/private-repo/foo/bar/1.0/bar-1.0.pom");
+		request.clearAttributes();
+		decoder.decode("token");
+		request.setRequestURI("/artifacts/mock/foo/bar/1.0/bar-1.0.pom");
+		request.clearAttributes();
+		assertThatThrownBy(() -> decoder.decode("token")).isInstanceOf(JwtValidationException.class)
+			.hasMessage("An error occurred while attempting to decode the Jwt: "
+					+ "Token does not contain the repository 'mock' in 'kagami:repositories' claim");
+		assertThat(this.decodeCount).hasValue(1);
+	}
+
+}
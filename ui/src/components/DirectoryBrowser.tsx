@@ -1,9 +1,10 @@
+import { useEffect, useState } from 'react';
 import { useBrowseRepository } from '../hooks/useApi';
 import { LoadingSpinner } from './ui/LoadingSpinner';
 import { Alert, AlertDescription } from './ui/Alert';
 import { FileIcon } from './ui/FileIcon';
 import { formatFileSize, formatRelativeTime } from '../utils/format';
-import type { RepositoryEntry } from '../types/api';
+import type { BrowseSort, RepositoryEntry } from '../types/api';
 
 interface DirectoryBrowserProps {
   repositoryId: string;
@@ -18,23 +19,83 @@ export function DirectoryBrowser({
   onNavigate,
   onShowFileInfo
 }: DirectoryBrowserProps) {
-  const { result, isLoading, error } = useBrowseRepository(repositoryId, currentPath);
+  const [sort, setSort] = useState<BrowseSort>('name');
+  const [order, setOrder] = useState<'asc' | 'desc'>('asc');
+  const [filter, setFilter] = useState('');
+  const [query, setQuery] = useState('');
+
+  // Start over with an empty filter in every directory
+  useEffect(() => {
+    setFilter('');
+    setQuery('');
+  }, [repositoryId, currentPath]);
+
+  // Debounce the filter so that typing does not send a request per key stroke
+  useEffect(() => {
+    const timer = setTimeout(() => setQuery(filter.trim()), 250);
+    return () => clearTimeout(timer);
+  }, [filter]);
+
+  const { result, isLoading, isLoadingMore, hasMore, loadMore, error } = useBrowseRepository(
+    repositoryId,
+    currentPath,
+    { sort, order, q: query || undefined }
+  );
+
+  const toolbar = (
+    <div className="flex items-center gap-3 border border-line border-t-0 bg-paper px-4 py-2">
+      <input
+        type="search"
+        value={filter}
+        onChange={(e) => setFilter(e.target.value)}
+        placeholder="Filter by name"
+        className="flex-1 min-w-0 bg-transparent border border-line px-2.5 py-1 text-[12px] font-mono focus:outline-none focus:border-ink"
+      />
+      <select
+        value={`${sort}:${order}`}
+        onChange={(e) => {
+          const [newSort, newOrder] = e.target.value.split(':');
+          setSort(newSort as BrowseSort);
+          setOrder(newOrder as 'asc' | 'desc');
+        }}
+        className="bg-transparent border border-line px-2 py-1 text-[12px] font-mono"
+      >
+        <option value="name:asc">Name A-Z</option>
+        <option value="name:desc">Name Z-A</option>
+        <option value="lastModified:desc">Newest first</option>
+        <option value="lastModified:asc">Oldest first</option>
+        <option value="size:desc">Largest first</option>
+        <option value="size:asc">Smallest first</option>
+      </select>
+      {result && (
+        <span className="registry-label text-[9.5px] text-ink-3 whitespace-nowrap">
+          {result.entries.length} / {result.totalCount}
+        </span>
+      )}
+    </div>
+  );
 
   if (isLoading) {
     return (
-      <div className="flex justify-center items-center h-64 border border-line border-t-0 bg-paper">
-        <LoadingSpinner size="lg" />
-      </div>
+      <>
+        {toolbar}
+        <div className="flex justify-center items-center h-64 border border-line border-t-0 bg-paper">
+          <LoadingSpinner size="lg" />
+        </div>
+      </>
     );
   }
 
   if (error) {
     return (
-      <Alert variant="error" className="border-t-0">
-        <AlertDescription>
-          Failed to browse directory: {error.message}
-        </AlertDescription>
-      </Alert>
+      <>
+        {toolbar}
+        <Alert variant="error" className="border-t-0">
+          <AlertDescription>
+            Failed to browse directory: {error.message}
+          </AlertDescription>
+        </Alert>
+      </>
     );
   }
 
@@ -85,85 +146,101 @@ export function DirectoryBrowser({
     'registry-label text-[9.5px] border border-line bg-transparent text-ink-2 px-2.5 py-1 cursor-pointer font-mono transition-colors hover:bg-ink hover:border-ink hover:text-white';
 
   return (
-    <div className="border border-line border-t-0 bg-paper">
-      {/* Parent directory navigation */}
-      {result.parentPath !== null && (
-        <div
-          className="grid grid-cols-[64px_minmax(0,1fr)] items-center border-b border-line cursor-pointer registry-row-hover"
-          onClick={() => onNavigate(result.parentPath || '')}
-        >
-          <div className="px-4 py-3 border-r border-line text-center">
-            <FileIcon fileName=".." type="directory" />
-          </div>
-          <div className="px-4 py-3 text-[13px] font-medium">../ Parent directory</div>
-        </div>
-      )}
-
-      {/* Directory entries */}
-      {result.entries.length === 0 ? (
-        <div className="px-6 py-8 text-center text-ink-3 text-sm">
-          This directory is empty.
-        </div>
-      ) : (
-        result.entries.map((entry, index) => (
+    <>
+      {toolbar}
+      <div className="border border-line border-t-0 bg-paper">
+        {/* Parent directory navigation */}
+        {result.parentPath !== null && (
           <div
-            key={entry.path}
-            className={`group grid grid-cols-[64px_minmax(0,1fr)_auto] items-center border-b border-line last:border-b-0 registry-row-hover registry-rise ${
-              entry.type === 'directory' ? 'cursor-pointer' : ''
-            }`}
-            style={{ animationDelay: `${0.04 + Math.min(index, 15) * 0.04}s` }}
-            onClick={() => entry.type === 'directory' ? handleEntryClick(entry) : undefined}
+            className="grid grid-cols-[64px_minmax(0,1fr)] items-center border-b border-line cursor-pointer registry-row-hover"
+            onClick={() => onNavigate(result.parentPath || '')}
           >
-            <div className="px-4 py-3 border-r border-line text-center overflow-hidden">
-              <FileIcon fileName={entry.name} type={entry.type} />
-            </div>
-            <div className="px-4 py-3 min-w-0">
-              <div className="text-[13px] font-medium truncate">{entry.name}</div>
+            <div className="px-4 py-3 border-r border-line text-center">
+              <FileIcon fileName=".." type="directory" />
             </div>
-            <div className="flex items-center gap-6 px-4 py-3">
-              <span className="text-[11.5px] text-ink-2 text-right min-w-[70px]">
-                {entry.type === 'file' && entry.size !== undefined ? formatFileSize(entry.size) : ''}
-              </span>
-              <span className="hidden md:inline text-[11.5px] text-ink-2 text-right min-w-[110px]">
-                {formatRelativeTime(entry.lastModified)}
-              </span>
-              <div className="flex gap-1.5 opacity-25 group-hover:opacity-100 transition-opacity">
-                {entry.type === 'file' && (
-                  <>
-                    <button
-                      className={fileActionButtonClass}
-                      onClick={(e) => {
-                        e.stopPropagation();
-                        onShowFileInfo(entry);
-                      }}
-                    >
-                      Info
-                    </button>
-                    <button
-                      className={fileActionButtonClass}
-                      onClick={(e) => {
-                        e.stopPropagation();
-                        handleDownload(entry);
-                      }}
-                    >
-                      Get
-                    </button>
-                  </>
-                )}
-                <button
-                  className={`${fileActionButtonClass} hover:bg-accent hover:border-accent`}
-                  onClick={(e) => {
-                    e.stopPropagation();
-                    handleDelete(entry);
-                  }}
-                >
-                  Del
-                </button>
+            <div className="px-4 py-3 text-[13px] font-medium">../ Parent directory</div>
+          </div>
+        )}
+
+        {/* Directory entries */}
+        {result.entries.length === 0 ? (
+          <div className="px-6 py-8 text-center text-ink-3 text-sm">
+            {query ? 'No entries match the filter.' : 'This directory is empty.'}
+          </div>
+        ) : (
+          result.entries.map((entry, index) => (
+            <div
+              key={entry.path}
+              className={`group grid grid-cols-[64px_minmax(0,1fr)_auto] items-center border-b border-line last:border-b-0 registry-row-hover registry-rise ${
+                entry.type === 'directory' ? 'cursor-pointer' : ''
+              }`}
+              style={{ animationDelay: `${0.04 + Math.min(index, 15) * 0.04}s` }}
+              onClick={() => entry.type === 'directory' ? handleEntryClick(entry) : undefined}
+            >
+              <div className="px-4 py-3 border-r border-line text-center overflow-hidden">
+                <FileIcon fileName={entry.name} type={entry.type} />
+              </div>
+              <div className="px-4 py-3 min-w-0">
+                <div className="text-[13px] font-medium truncate">{entry.name}</div>
+              </div>
+              <div className="flex items-center gap-6 px-4 py-3">
+                <span className="text-[11.5px] text-ink-2 text-right min-w-[70px]">
+                  {entry.type === 'file' && entry.size !== undefined ? formatFileSize(entry.size) : ''}
+                </span>
+                <span className="hidden md:inline text-[11.5px] text-ink-2 text-right min-w-[110px]">
+                  {formatRelativeTime(entry.lastModified)}
+                </span>
+                <div className="flex gap-1.5 opacity-25 group-hover:opacity-100 transition-opacity">
+                  {entry.type === 'file' && (
+                    <>
+                      <button
+                        className={fileActionButtonClass}
+                        onClick={(e) => {
+                          e.stopPropagation();
+                          onShowFileInfo(entry);
+                        }}
+                      >
+                        Info
+                      </button>
+                      <button
+                        className={fileActionButtonClass}
+                        onClick={(e) => {
+                          e.stopPropagation();
+                          handleDownload(entry);
+                        }}
+                      >
+                        Get
+                      </button>
+                    </>
+                  )}
+                  <button
+                    className={`${fileActionButtonClass} hover:bg-accent hover:border-accent`}
+                    onClick={(e) => {
+                      e.stopPropagation();
+                      handleDelete(entry);
+                    }}
+                  >
+                    Del
+                  </button>
+                </div>
               </div>
             </div>
+          ))
+        )}
+
+        {/* Next page */}
+        {hasMore && (
+          <div className="px-4 py-3 text-center border-t border-line">
+            <button
+              className={fileActionButtonClass}
+              disabled={isLoadingMore}
+              onClick={() => loadMore()}
+            >
+              {isLoadingMore ? 'Loading...' : `Load more (${result.totalCount - result.entries.length} remaining)`}
+            </button>
           </div>
-        ))
-      )}
-    </div>
+        )}
+      </div>
+    </>
   );
 }
@@ -1,5 +1,6 @@
 import useSWR from 'swr';
-import type { RepositoryListResponse, BrowseResult, FileInfo, UserInfo } from '../types/api';
+import useSWRInfinite from 'swr/infinite';
+import type { RepositoryListResponse, BrowseResult, BrowseOptions, FileInfo, UserInfo } from '../types/api';
 
 const fetcher = async (url: string) => {
   const response = await fetch(url);
@@ -22,16 +23,36 @@ export function useRepositories() {
   };
 }
 
-export function useBrowseRepository(repositoryId: string | null, path?: string) {
-  const url = repositoryId 
-    ? `/repositories/${encodeURIComponent(repositoryId)}/browse${path ? `?path=${encodeURIComponent(path)}` : ''}`
-    : null;
+export function useBrowseRepository(repositoryId: string | null, path?: string, options: BrowseOptions = {}) {
+  const getKey = (pageIndex: number, previousPage: BrowseResult | null) => {
+    if (!repositoryId || (previousPage && !previousPage.nextCursor)) {
+      return null;
+    }
+    const params = new URLSearchParams();
+    if (path) params.set('path', path);
+    if (options.sort) params.set('sort', options.sort);
+    if (options.order) params.set('order', options.order);
+    if (options.q) params.set('q', options.q);
+    if (options.type) params.set('type', options.type);
+    if (pageIndex > 0 && previousPage?.nextCursor) params.set('cursor', previousPage.nextCursor);
+    const query = params.toString();
+    return `/repositories/${encodeURIComponent(repositoryId)}/browse${query ? `?${query}` : ''}`;
+  };
+
+  const { data, error, isLoading, isValidating, size, setSize } = useSWRInfinite<BrowseResult>(getKey, fetcher);
 
-  const { data, error, isLoading } = useSWR<BrowseResult>(url, fetcher);
+  const firstPage = data?.[0];
+  const lastPage = data?.[data.length - 1];
+  const result = firstPage
+    ? { ...firstPage, entries: data!.flatMap((page) => page.entries), nextCursor: lastPage?.nextCursor ?? null }
+    : undefined;
 
   return {
-    result: data,
+    result,
     isLoading,
+    isLoadingMore: isValidating && data !== undefined && data.length < size,
+    hasMore: Boolean(lastPage?.nextCursor),
+    loadMore: () => setSize(size + 1),
     error,
   };
 }
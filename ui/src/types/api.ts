@@ -26,6 +26,17 @@ export interface BrowseResult {
   currentPath: string;
   parentPath: string | null;
   entries: RepositoryEntry[];
+  totalCount: number;
+  nextCursor: string | null;
+}
+
+export type BrowseSort = 'name' | 'lastModified' | 'size';
+
+export interface BrowseOptions {
+  sort?: BrowseSort;
+  order?: 'asc' | 'desc';
+  q?: string;
+  type?: 'file' | 'directory';
 }
 
 export interface FileInfo {